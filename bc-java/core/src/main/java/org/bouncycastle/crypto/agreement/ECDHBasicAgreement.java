@@ -10,6 +10,8 @@ import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
 import org.bouncycastle.math.ec.ECAlgorithms;
 import org.bouncycastle.math.ec.ECConstants;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECMultiplier;
 import org.bouncycastle.math.ec.ECPoint;
 
 /**
@@ -70,7 +72,7 @@ public class ECDHBasicAgreement
             Q = ECAlgorithms.referenceMultiply(Q, h);
         }
 
-        ECPoint P = Q.multiply(d).normalize();
+        ECPoint P = createPointMultiplier(params.getCurve()).multiply(Q, d).normalize();
         if (P.isInfinity())
         {
             throw new IllegalStateException("Infinity is not a valid agreement value for ECDH");
@@ -78,4 +80,12 @@ public class ECDHBasicAgreement
 
         return P.getAffineXCoord().toBigInteger();
     }
+
+    /**
+     * The multiplier used for the peer's (variable) public point; by default the curve's own multiplier.
+     */
+    protected ECMultiplier createPointMultiplier(ECCurve curve)
+    {
+        return curve.getMultiplier();
+    }
 }
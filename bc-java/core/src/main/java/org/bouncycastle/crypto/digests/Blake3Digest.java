@@ -1,7 +1,9 @@
 package org.bouncycastle.crypto.digests;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Stack;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.crypto.CryptoServicePurpose;
 import org.bouncycastle.crypto.CryptoServicesRegistrar;
@@ -45,6 +47,16 @@ public class Blake3Digest
      */
     private static final int CHUNKLEN = 1024;
 
+    /**
+     * Maximum number of chunks in a subtree hashed as a single task.
+     */
+    private static final int SUBTREECHUNKS = 256;
+
+    /**
+     * Buffer length for sequential ByteBuffer updates.
+     */
+    private static final int COPYLEN = 8192;
+
     /**
      * ChunkStart Flag.
      */
@@ -450,6 +462,88 @@ public class Blake3Digest
         thePos += pOffset + len;
     }
 
+    /**
+     * Update the message digest with part of an array, hashing complete subtrees of chunks concurrently on an
+     * executor. The result is the same as for {@link #update(byte[], int, int)}.
+     * <p>
+     * The calling thread hashes one subtree itself and then waits for the rest, so the executor must be able to
+     * run the tasks without waiting on the calling thread (e.g. a thread pool with spare threads). If it rejects
+     * a task, that subtree is hashed on the calling thread instead.
+     * </p>
+     *
+     * @param pMessage  the message buffer
+     * @param pOffset   the offset within the buffer
+     * @param pLen      the length of data to process
+     * @param pExecutor the executor for subtree tasks, or null to process the data sequentially
+     */
+    public void update(final byte[] pMessage,
+                       final int pOffset,
+                       final int pLen,
+                       final Executor pExecutor)
+    {
+        /* Determine the data that aligns the input to a chunk boundary */
+        final int myHead = getChunkAlignment(pLen);
+        if (pExecutor == null || myHead < 0)
+        {
+            update(pMessage, pOffset, pLen);
+            return;
+        }
+
+        /* Process the head sequentially and complete the chunk */
+        update(pMessage, pOffset, myHead);
+        flushChunk();
+
+        /* Hash all complete chunks (leaving at least one byte for the final chunk) as subtrees */
+        final int myPos = pOffset + myHead;
+        final int myChunks = (pLen - myHead - 1) / CHUNKLEN;
+        processSubtrees(pMessage, null, myPos, myChunks, pExecutor);
+
+        /* Process the tail sequentially */
+        final int myDone = myHead + myChunks * CHUNKLEN;
+        update(pMessage, pOffset + myDone, pLen - myDone);
+    }
+
+    /**
+     * Update the message digest with the remaining contents of a buffer (e.g. a memory-mapped region of a file),
+     * hashing complete subtrees of chunks concurrently on an executor as for
+     * {@link #update(byte[], int, int, Executor)}. The buffer's position is advanced to its limit.
+     *
+     * @param pBuffer   the message buffer
+     * @param pExecutor the executor for subtree tasks, or null to process the data sequentially
+     */
+    public void update(final ByteBuffer pBuffer,
+                       final Executor pExecutor)
+    {
+        /* Use the backing array directly if available */
+        final int myLen = pBuffer.remaining();
+        if (pBuffer.hasArray())
+        {
+            update(pBuffer.array(), pBuffer.arrayOffset() + pBuffer.position(), myLen, pExecutor);
+            pBuffer.position(pBuffer.limit());
+            return;
+        }
+
+        /* Determine the data that aligns the input to a chunk boundary */
+        final int myHead = getChunkAlignment(myLen);
+        if (pExecutor == null || myHead < 0)
+        {
+            updateSequential(pBuffer, myLen);
+            return;
+        }
+
+        /* Process the head sequentially and complete the chunk */
+        updateSequential(pBuffer, myHead);
+        flushChunk();
+
+        /* Hash all complete chunks (leaving at least one byte for the final chunk) as subtrees */
+        final int myChunks = (myLen - myHead - 1) / CHUNKLEN;
+        processSubtrees(null, pBuffer, pBuffer.position(), myChunks, pExecutor);
+        pBuffer.position(pBuffer.position() + myChunks * CHUNKLEN);
+
+        /* Process the tail sequentially */
+        updateSequential(pBuffer, pBuffer.remaining());
+    }
+
     public int doFinal(final byte[] pOutput,
                        final int pOutOffset)
     {
@@ -575,6 +669,226 @@ public class Blake3Digest
         return new Blake3Digest(this);
     }
 
+    /**
+     * Determine how much data must be processed sequentially to reach a chunk boundary.
+     *
+     * @param pLen the length of data available
+     * @return the length to reach a boundary, or -1 if there would be less than two chunks to hash in parallel
+     */
+    private int getChunkAlignment(final int pLen)
+    {
+        /* Check that we are not outputting */
+        if (outputting)
+        {
+            throw new IllegalStateException(ERR_OUTPUTTING);
+        }
+
+        /* The final block of any input is held in the buffer, so the current chunk may be complete */
+        final int myConsumed = theCurrBytes + thePos;
+        final int myHead = (CHUNKLEN - myConsumed) % CHUNKLEN;
+
+        return pLen - myHead > 2 * CHUNKLEN ? myHead : -1;
+    }
+
+    /**
+     * Complete the current chunk, whose final block is held in the buffer, knowing that more data follows.
+     */
+    private void flushChunk()
+    {
+        if (thePos == BLOCKLEN)
+        {
+            /* Process the buffer */
+            compressBlock(theBuffer, 0);
+
+            /* Reset the buffer */
+            thePos = 0;
+            Arrays.fill(theBuffer, (byte)0);
+        }
+    }
+
+    /**
+     * Process part of a buffer sequentially.
+     *
+     * @param pBuffer the message buffer
+     * @param pLen    the length of data to process
+     */
+    private void updateSequential(final ByteBuffer pBuffer,
+                                  final int pLen)
+    {
+        final byte[] myCopy = new byte[Math.min(pLen, COPYLEN)];
+        int myRemaining = pLen;
+        while (myRemaining > 0)
+        {
+            final int myLen = Math.min(myRemaining, myCopy.length);
+            pBuffer.get(myCopy, 0, myLen);
+            update(myCopy, 0, myLen);
+            myRemaining -= myLen;
+        }
+    }
+
+    /**
+     * Hash a run of complete chunks, starting at a chunk boundary, as subtrees on an executor, and add the
+     * resulting chaining values to the stack in order.
+     *
+     * @param pMessage  the message array (or null)
+     * @param pBuffer   the message buffer (if no array)
+     * @param pPos      the position of the first chunk in the array or buffer
+     * @param pChunks   the number of chunks
+     * @param pExecutor the executor
+     */
+    private void processSubtrees(final byte[] pMessage,
+                                 final ByteBuffer pBuffer,
+                                 final int pPos,
+                                 final int pChunks,
+                                 final Executor pExecutor)
+    {
+        /* Split the chunks into subtrees, each a power of two chunks aligned to its size */
+        final int myCount = countSubtrees(theCounter, pChunks);
+        final SubtreeTask[] myTasks = new SubtreeTask[myCount];
+
+        long myCounter = theCounter;
+        int myPos = pPos;
+        int myRemaining = pChunks;
+        for (int i = 0; i < myCount; i++)
+        {
+            final int mySize = getSubtreeSize(myCounter, myRemaining);
+            myTasks[i] = new SubtreeTask(new Blake3Digest(this), pMessage, pBuffer, myPos, myCounter, mySize);
+            myCounter += mySize;
+            myPos += mySize * CHUNKLEN;
+            myRemaining -= mySize;
+        }
+
+        /* Hash the subtrees */
+        ConcurrentTasks.invokeAll(myTasks, pExecutor);
+
+        /* Add the subtrees to the stack */
+        for (int i = 0; i < myCount; i++)
+        {
+            pushSubtree(myTasks[i].theResult, myTasks[i].theChunks);
+        }
+    }
+
+    /**
+     * Count the subtrees needed for a run of chunks.
+     *
+     * @param pCounter the counter of the first chunk
+     * @param pChunks  the number of chunks
+     * @return the number of subtrees
+     */
+    private static int countSubtrees(final long pCounter,
+                                     final int pChunks)
+    {
+        int myCount = 0;
+        long myCounter = pCounter;
+        int myRemaining = pChunks;
+        while (myRemaining > 0)
+        {
+            final int mySize = getSubtreeSize(myCounter, myRemaining);
+            myCounter += mySize;
+            myRemaining -= mySize;
+            myCount++;
+        }
+        return myCount;
+    }
+
+    /**
+     * Determine the size of the next subtree.
+     *
+     * @param pCounter the counter of its first chunk
+     * @param pChunks  the number of chunks remaining
+     * @return the largest power of two that divides the counter and is no more than the chunks remaining
+     */
+    private static int getSubtreeSize(final long pCounter,
+                                      final int pChunks)
+    {
+        int mySize = Integer.highestOneBit(Math.min(pChunks, SUBTREECHUNKS));
+        while ((pCounter & (mySize - 1)) != 0)
+        {
+            mySize >>>= 1;
+        }
+        return mySize;
+    }
+
+    /**
+     * Hash a subtree of complete chunks, none of which is the final chunk.
+     *
+     * @param pMessage the message buffer
+     * @param pMsgPos  the position of the first chunk
+     * @param pCounter the counter of the first chunk
+     * @param pChunks  the number of chunks (a power of two dividing the counter)
+     * @return the chaining value of the subtree
+     */
+    private int[] compressSubtree(final byte[] pMessage,
+                                  final int pMsgPos,
+                                  final long pCounter,
+                                  final int pChunks)
+    {
+        /* Start with an empty stack at the first chunk */
+        theCounter = pCounter;
+        theCurrBytes = 0;
+        theStack.clear();
+
+        /* Loop through the blocks */
+        final int myEnd = pMsgPos + pChunks * CHUNKLEN;
+        for (int myPos = pMsgPos; myPos < myEnd; myPos += BLOCKLEN)
+        {
+            /* Initialise state and compress message */
+            initChunkBlock(BLOCKLEN, false);
+            initM(pMessage, myPos);
+            compress();
+
+            /* Combine completed chunks within the subtree */
+            if (theCurrBytes == 0)
+            {
+                long myCount = theCounter - pCounter;
+                while ((myCount & 1) == 0)
+                {
+                    final int[] myLeft = (int[])theStack.pop();
+                    System.arraycopy(myLeft, 0, theM, 0, NUMWORDS);
+                    System.arraycopy(theChaining, 0, theM, NUMWORDS, NUMWORDS);
+                    initParentBlock();
+                    compress();
+                    myCount >>= 1;
+                }
+                theStack.push(Arrays.copyOf(theChaining, NUMWORDS));
+            }
+        }
+
+        return (int[])theStack.pop();
+    }
+
+    /**
+     * Add the chaining value of a subtree of complete chunks to the stack.
+     *
+     * @param pChaining the chaining value
+     * @param pChunks   the number of chunks (a power of two dividing the current counter)
+     */
+    private void pushSubtree(final int[] pChaining,
+                             final int pChunks)
+    {
+        /* Loop to combine blocks */
+        System.arraycopy(pChaining, 0, theChaining, 0, NUMWORDS);
+        theCounter += pChunks;
+        long myCount = theCounter / pChunks;
+        while ((myCount & 1) == 0)
+        {
+            /* Build the message to be hashed */
+            final int[] myLeft = (int[])theStack.pop();
+            System.arraycopy(myLeft, 0, theM, 0, NUMWORDS);
+            System.arraycopy(theChaining, 0, theM, NUMWORDS, NUMWORDS);
+
+            /* Create parent block */
+            initParentBlock();
+            compress();
+
+            /* Next block */
+            myCount >>= 1;
+        }
+
+        /* Add back to the stack */
+        theStack.push(Arrays.copyOf(theChaining, NUMWORDS));
+    }
+
     /**
      * Compress next block of the message.
      *
@@ -928,4 +1242,50 @@ public class Blake3Digest
         System.arraycopy(theV, 0, theChaining, 0, NUMWORDS);
     }
 
+    /**
+     * Task hashing a subtree with its own copy of the digest state.
+     */
+    private static class SubtreeTask
+        implements Runnable
+    {
+        private final Blake3Digest theDigest;
+        private final byte[] theMessage;
+        private final ByteBuffer theBuffer;
+        private final int thePos;
+        private final long theCounter;
+        private final int theChunks;
+        private int[] theResult;
+
+        SubtreeTask(final Blake3Digest pDigest,
+                    final byte[] pMessage,
+                    final ByteBuffer pBuffer,
+                    final int pPos,
+                    final long pCounter,
+                    final int pChunks)
+        {
+            theDigest = pDigest;
+            theMessage = pMessage;
+            theBuffer = pBuffer;
+            thePos = pPos;
+            theCounter = pCounter;
+            theChunks = pChunks;
+        }
+
+        public void run()
+        {
+            if (theMessage != null)
+            {
+                theResult = theDigest.compressSubtree(theMessage, thePos, theCounter, theChunks);
+            }
+            else
+            {
+                /* Copy the subtree out of the buffer */
+                final byte[] myCopy = new byte[theChunks * CHUNKLEN];
+                final ByteBuffer myBuffer = theBuffer.duplicate();
+                myBuffer.position(thePos);
+                myBuffer.get(myCopy);
+                theResult = theDigest.compressSubtree(myCopy, 0, theCounter, theChunks);
+            }
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package org.bouncycastle.crypto.digests;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the independent parts of a tree hash (leaves or subtrees) on an executor and waits for them to complete.
+ */
+final class ConcurrentTasks
+{
+    private ConcurrentTasks()
+    {
+    }
+
+    /**
+     * Run a set of tasks, all but the first on the executor and the first on the calling thread, and wait for
+     * them all to complete. A task the executor rejects is run on the calling thread instead.
+     *
+     * @param tasks    the tasks, which must not wait on each other or on the calling thread.
+     * @param executor the executor.
+     * @throws RuntimeException the first failure of any task, if any failed.
+     */
+    static void invokeAll(Runnable[] tasks, Executor executor)
+    {
+        CountDownLatch done = new CountDownLatch(tasks.length - 1);
+        AtomicReference failure = new AtomicReference();
+
+        for (int i = 1; i < tasks.length; ++i)
+        {
+            Runnable task = new Task(tasks[i], done, failure);
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+
+        try
+        {
+            tasks[0].run();
+        }
+        finally
+        {
+            awaitUninterruptibly(done);
+        }
+
+        Throwable t = (Throwable)failure.get();
+        if (t != null)
+        {
+            if (t instanceof RuntimeException)
+            {
+                throw (RuntimeException)t;
+            }
+            if (t instanceof Error)
+            {
+                throw (Error)t;
+            }
+            throw new IllegalStateException("hash task failed: " + t.getMessage());
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch)
+    {
+        boolean interrupted = false;
+        for (;;)
+        {
+            try
+            {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Task
+        implements Runnable
+    {
+        private final Runnable task;
+        private final CountDownLatch done;
+        private final AtomicReference failure;
+
+        Task(Runnable task, CountDownLatch done, AtomicReference failure)
+        {
+            this.task = task;
+            this.done = done;
+            this.failure = failure;
+        }
+
+        public void run()
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable t)
+            {
+                failure.compareAndSet(null, t);
+            }
+            finally
+            {
+                done.countDown();
+            }
+        }
+    }
+}
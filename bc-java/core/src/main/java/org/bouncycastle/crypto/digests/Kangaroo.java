@@ -1,5 +1,7 @@
 package org.bouncycastle.crypto.digests;
 
+import java.util.concurrent.Executor;
+
 import org.bouncycastle.crypto.*;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Bytes;
@@ -180,6 +182,21 @@ public final class Kangaroo
          */
         private static final byte[] FIRST = new byte[]{3, 0, 0, 0, 0, 0, 0, 0};
 
+        /**
+         * Maximum number of leaf hashing tasks per batch.
+         */
+        private static final int MAXTASKS = 64;
+
+        /**
+         * Minimum number of leaves per task.
+         */
+        private static final int MINTASKLEAVES = 8;
+
+        /**
+         * Maximum length of chaining values held per batch.
+         */
+        private static final int MAXBATCHCHAIN = 1 << 20;
+
         /**
          * The single byte buffer.
          */
@@ -300,6 +317,65 @@ public final class Kangaroo
             processData(pIn, pInOff, pLen);
         }
 
+        /**
+         * Update the digest with part of an array, hashing complete leaves concurrently on an executor. Each task
+         * hashes a run of consecutive leaves with its own sponge, and the chaining values are absorbed in order,
+         * so the result is the same as for {@link #update(byte[], int, int)}.
+         * <p>
+         * The calling thread hashes one run of leaves itself and then waits for the rest, so the executor must be
+         * able to run the tasks without waiting on the calling thread. If it rejects a task, that run of leaves is
+         * hashed on the calling thread instead.
+         * </p>
+         *
+         * @param pIn       the input buffer
+         * @param pInOff    the starting offset in the input buffer
+         * @param pLen      the length of data to process
+         * @param pExecutor the executor for leaf hashing tasks, or null to process the data sequentially
+         */
+        public void update(final byte[] pIn,
+                           final int pInOff,
+                           final int pLen,
+                           final Executor pExecutor)
+        {
+            /* Check validity */
+            if (squeezing)
+            {
+                throw new IllegalStateException("attempt to absorb while squeezing");
+            }
+
+            /* Fill the current node sequentially (unless a new leaf is waiting to start) */
+            int myProcessed = theCurrNode != 0 && theProcessed == 0
+                ? 0
+                : Math.min(pLen, BLKSIZE - theProcessed);
+            processData(pIn, pInOff, myProcessed);
+
+            /* Hash batches of complete leaves, leaving at least one byte for the final leaf */
+            if (pExecutor != null)
+            {
+                for (;;)
+                {
+                    final int myLeaves = Math.min((pLen - myProcessed - 1) / BLKSIZE, MAXBATCHCHAIN / theChainLen);
+                    final int myTasks = Math.min(MAXTASKS, myLeaves / MINTASKLEAVES);
+                    if (myTasks < 2)
+                    {
+                        break;
+                    }
+
+                    /* Complete the current node if it is full */
+                    if (theProcessed == BLKSIZE)
+                    {
+                        switchLeaf(true);
+                    }
+
+                    processLeaves(pIn, pInOff + myProcessed, myLeaves, myTasks, pExecutor);
+                    myProcessed += myLeaves * BLKSIZE;
+                }
+            }
+
+            /* Process the remaining data sequentially */
+            processData(pIn, pInOff + myProcessed, pLen - myProcessed);
+        }
+
         public int doFinal(final byte[] pOut,
                            final int pOutOffset)
         {
@@ -403,6 +479,42 @@ public final class Kangaroo
             }
         }
 
+        /**
+         * Hash complete leaves concurrently, starting at the (empty) current leaf.
+         *
+         * @param pIn       the input buffer
+         * @param pInOffSet the starting offset in the input buffer
+         * @param pLeaves   the number of leaves
+         * @param pTasks    the number of tasks
+         * @param pExecutor the executor
+         */
+        private void processLeaves(final byte[] pIn,
+                                   final int pInOffSet,
+                                   final int pLeaves,
+                                   final int pTasks,
+                                   final Executor pExecutor)
+        {
+            /* Split the leaves between the tasks */
+            final byte[] myChains = new byte[pLeaves * theChainLen];
+            final LeafTask[] myTasks = new LeafTask[pTasks];
+            int myFirst = 0;
+            for (int i = 0; i < pTasks; i++)
+            {
+                final int myCount = (pLeaves - myFirst) / (pTasks - i);
+                myTasks[i] = new LeafTask(new KangarooSponge(theChainLen << 2, theLeaf.theRounds), pIn,
+                    pInOffSet + myFirst * BLKSIZE, myCount, myChains, myFirst * theChainLen, theChainLen);
+                myFirst += myCount;
+            }
+
+            /* Hash the leaves */
+            ConcurrentTasks.invokeAll(myTasks, pExecutor);
+
+            /* Absorb the chaining values and move to the next leaf */
+            theTree.absorb(myChains, 0, myChains.length);
+            theCurrNode += pLeaves;
+            theProcessed = 0;
+        }
+
         public void reset()
         {
             theTree.initSponge();
@@ -534,6 +646,49 @@ public final class Kangaroo
         }
     }
 
+    /**
+     * Task hashing a run of consecutive complete leaves with its own sponge.
+     */
+    private static class LeafTask
+        implements Runnable
+    {
+        private final KangarooSponge theSponge;
+        private final byte[] theIn;
+        private final int theInOff;
+        private final int theCount;
+        private final byte[] theChains;
+        private final int theChainOff;
+        private final int theChainLen;
+
+        LeafTask(final KangarooSponge pSponge,
+                 final byte[] pIn,
+                 final int pInOff,
+                 final int pCount,
+                 final byte[] pChains,
+                 final int pChainOff,
+                 final int pChainLen)
+        {
+            theSponge = pSponge;
+            theIn = pIn;
+            theInOff = pInOff;
+            theCount = pCount;
+            theChains = pChains;
+            theChainOff = pChainOff;
+            theChainLen = pChainLen;
+        }
+
+        public void run()
+        {
+            for (int i = 0; i < theCount; i++)
+            {
+                theSponge.initSponge();
+                theSponge.absorb(theIn, theInOff + i * KangarooBase.BLKSIZE, KangarooBase.BLKSIZE);
+                theSponge.absorb(KangarooBase.INTERMEDIATE, 0, KangarooBase.INTERMEDIATE.length);
+                theSponge.squeeze(theChains, theChainOff + i * theChainLen, theChainLen);
+            }
+        }
+    }
+
     /**
      * The Kangaroo Sponge.
      */
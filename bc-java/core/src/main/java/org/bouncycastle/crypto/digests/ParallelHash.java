@@ -1,5 +1,7 @@
 package org.bouncycastle.crypto.digests;
 
+import java.util.concurrent.Executor;
+
 import org.bouncycastle.crypto.CryptoServicePurpose;
 import org.bouncycastle.crypto.CryptoServicesRegistrar;
 import org.bouncycastle.crypto.DataLengthException;
@@ -20,6 +22,14 @@ public class ParallelHash
 {
     private static final byte[] N_PARALLEL_HASH = Strings.toByteArray("ParallelHash");
 
+    /*
+     * When hashing blocks concurrently: the most tasks per batch of blocks, the least input worth a task, and the
+     * most block hashes held at a time.
+     */
+    private static final int MAX_TASKS = 64;
+    private static final int MIN_TASK_BYTES = 1 << 16;
+    private static final int MAX_BATCH_HASH_BYTES = 1 << 20;
+
     private final CSHAKEDigest cshake;
     private final CSHAKEDigest compressor;
     private final int bitLength;
@@ -146,6 +156,72 @@ public class ParallelHash
         }
     }
 
+    /**
+     * Update the digest with part of an array, hashing whole blocks concurrently on an executor. Each task hashes
+     * a run of consecutive blocks with its own copy of the block compressor, and the block hashes are absorbed in
+     * order, so the result is the same as for {@link #update(byte[], int, int)}.
+     * <p>
+     * The calling thread hashes one run of blocks itself and then waits for the rest, so the executor must be able
+     * to run the tasks without waiting on the calling thread. If it rejects a task, that run of blocks is hashed
+     * on the calling thread instead.
+     * </p>
+     *
+     * @param in the input array.
+     * @param inOff the offset of the input.
+     * @param len the length of the input.
+     * @param executor the executor for block hashing tasks, or null to hash sequentially.
+     */
+    public void update(byte[] in, int inOff, int len, Executor executor)
+        throws DataLengthException, IllegalStateException
+    {
+        len = Math.max(0,  len);
+
+        //
+        // fill the current block
+        //
+        int i = 0;
+        if (bufOff != 0)
+        {
+            i = Math.min(len, buffer.length - bufOff);
+            update(in, inOff, i);
+        }
+
+        if (executor != null)
+        {
+            int blockHashLen = compressorBuffer.length;
+
+            for (;;)
+            {
+                int blocks = Math.min((len - i) / B, MAX_BATCH_HASH_BYTES / blockHashLen);
+                int tasks = (int)Math.min(Math.min(blocks, MAX_TASKS), (long)blocks * B / MIN_TASK_BYTES);
+                if (tasks < 2)
+                {
+                    break;
+                }
+
+                byte[] blockHashes = new byte[blocks * blockHashLen];
+
+                Runnable[] compressors = new Runnable[tasks];
+                for (int t = 0, first = 0; t < tasks; ++t)
+                {
+                    int count = (blocks - first) / (tasks - t);
+                    compressors[t] = new BlockCompressor(new CSHAKEDigest(compressor), in, inOff + i + first * B, B,
+                        count, blockHashes, first * blockHashLen, blockHashLen);
+                    first += count;
+                }
+
+                ConcurrentTasks.invokeAll(compressors, executor);
+
+                cshake.update(blockHashes, 0, blockHashes.length);
+
+                nCount += blocks;
+                i += blocks * B;
+            }
+        }
+
+        update(in, inOff + i, len - i);
+    }
+
     private void compress()
     {
         compress(buffer, 0, bufOff);
@@ -228,4 +304,42 @@ public class ParallelHash
         bufOff = 0;
         firstOutput = true;
     }
+
+    /**
+     * Hashes a run of consecutive blocks, writing the block hashes in order.
+     */
+    private static class BlockCompressor
+        implements Runnable
+    {
+        private final CSHAKEDigest compressor;
+        private final byte[] in;
+        private final int inOff;
+        private final int blockSize;
+        private final int count;
+        private final byte[] out;
+        private final int outOff;
+        private final int hashLen;
+
+        BlockCompressor(CSHAKEDigest compressor, byte[] in, int inOff, int blockSize, int count, byte[] out,
+            int outOff, int hashLen)
+        {
+            this.compressor = compressor;
+            this.in = in;
+            this.inOff = inOff;
+            this.blockSize = blockSize;
+            this.count = count;
+            this.out = out;
+            this.outOff = outOff;
+            this.hashLen = hashLen;
+        }
+
+        public void run()
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                compressor.update(in, inOff + i * blockSize, blockSize);
+                compressor.doFinal(out, outOff + i * hashLen, hashLen);
+            }
+        }
+    }
 }
@@ -276,10 +276,27 @@ public class Salsa20Engine
             throw new MaxBytesExceededException("2^70 byte limit per IV would be exceeded; Change IV");
         }
 
-        for (int i = 0; i < len; i++)
+        int i = 0;
+        while (i < len)
         {
+            if (index == 0 && len - i >= 64)
+            {
+                // NOTE: A whole block of key stream, in a simple loop that the JIT can vectorize
+                int inPos = inOff + i, outPos = outOff + i;
+                for (int j = 0; j < 64; ++j)
+                {
+                    out[outPos + j] = (byte)(keyStream[j] ^ in[inPos + j]);
+                }
+                i += 64;
+
+                advanceCounter();
+                generateKeyStream(keyStream);
+                continue;
+            }
+
             out[i + outOff] = (byte)(keyStream[index] ^ in[i + inOff]);
             index = (index + 1) & 63;
+            ++i;
 
             if (index == 0)
             {
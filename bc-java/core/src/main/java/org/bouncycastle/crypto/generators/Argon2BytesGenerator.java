@@ -1,5 +1,10 @@
 package org.bouncycastle.crypto.generators;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.Blake2bDigest;
 import org.bouncycastle.crypto.params.Argon2Parameters;
@@ -36,6 +41,8 @@ public class Argon2BytesGenerator
 
     private static final byte[] ZERO_BYTES = new byte[4];
 
+    private final Executor executor;
+
     private Argon2Parameters parameters;
     private Block[] memory;
     private int segmentLength;
@@ -43,6 +50,24 @@ public class Argon2BytesGenerator
 
     public Argon2BytesGenerator()
     {
+        this(null);
+    }
+
+    /**
+     * Create a generator that fills the lanes of each segment concurrently (as RFC 9106 allows), with all but
+     * one lane run as tasks on the given executor and the remaining lane on the calling thread. The output is
+     * the same as for sequential filling.
+     * <p>
+     * The executor must be able to run the tasks without waiting on the calling thread (e.g. a
+     * {@link java.util.concurrent.ForkJoinPool}, or a thread pool that isn't also used to call this generator).
+     * If it rejects a task, that lane is filled on the calling thread instead.
+     * </p>
+     *
+     * @param executor the executor for lane tasks, or null to fill all lanes on the calling thread.
+     */
+    public Argon2BytesGenerator(Executor executor)
+    {
+        this.executor = executor;
     }
 
     /**
@@ -156,6 +181,13 @@ public class Argon2BytesGenerator
 
     private void fillMemoryBlocks()
     {
+        int lanes = parameters.getLanes();
+        if (null != executor && lanes > 1)
+        {
+            fillMemoryBlocksConcurrently(lanes);
+            return;
+        }
+
         FillBlock filler = new FillBlock();
         Position position = new Position();
         for (int pass = 0; pass < parameters.getIterations(); ++pass)
@@ -176,6 +208,117 @@ public class Argon2BytesGenerator
         }
     }
 
+    private void fillMemoryBlocksConcurrently(int lanes)
+    {
+        FillBlock[] fillers = new FillBlock[lanes];
+        for (int lane = 0; lane < lanes; ++lane)
+        {
+            fillers[lane] = new FillBlock();
+        }
+
+        for (int pass = 0; pass < parameters.getIterations(); ++pass)
+        {
+            for (int slice = 0; slice < ARGON2_SYNC_POINTS; ++slice)
+            {
+                fillSliceConcurrently(fillers, pass, slice);
+            }
+        }
+    }
+
+    /*
+     * Within a slice, each lane only references its own segment and blocks of other lanes outside the slice, so
+     * the segments can be filled in any order. The slice is complete (and its blocks visible to this thread) once
+     * the latch opens.
+     */
+    private void fillSliceConcurrently(FillBlock[] fillers, int pass, int slice)
+    {
+        int lanes = fillers.length;
+        final CountDownLatch done = new CountDownLatch(lanes - 1);
+        final AtomicReference failure = new AtomicReference();
+
+        for (int lane = 1; lane < lanes; ++lane)
+        {
+            final FillBlock filler = fillers[lane];
+            final Position position = new Position(pass, lane, slice);
+
+            Runnable task = new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        fillSegment(filler, position);
+                    }
+                    catch (Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            };
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+
+        try
+        {
+            fillSegment(fillers[0], new Position(pass, 0, slice));
+        }
+        finally
+        {
+            awaitUninterruptibly(done);
+        }
+
+        Throwable t = (Throwable)failure.get();
+        if (null != t)
+        {
+            if (t instanceof RuntimeException)
+            {
+                throw (RuntimeException)t;
+            }
+            if (t instanceof Error)
+            {
+                throw (Error)t;
+            }
+            throw new IllegalStateException("Argon2 lane failed: " + t.getMessage());
+        }
+    }
+
+    /*
+     * The lane tasks write to shared memory, so they must all finish before returning, even if interrupted.
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch)
+    {
+        boolean interrupted = false;
+        for (;;)
+        {
+            try
+            {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void fillSegment(FillBlock filler, Position position)
     {
         Block addressBlock = null, inputBlock = null;
@@ -698,5 +841,12 @@ public class Argon2BytesGenerator
         Position()
         {
         }
+
+        Position(int pass, int lane, int slice)
+        {
+            this.pass = pass;
+            this.lane = lane;
+            this.slice = slice;
+        }
     }
 }
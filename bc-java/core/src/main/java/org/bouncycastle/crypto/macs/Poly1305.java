@@ -185,63 +185,74 @@ public class Poly1305
         throws DataLengthException,
         IllegalStateException
     {
-        int copied = 0;
-        while (len > copied)
+        int available = BLOCK_SIZE - currentBlockOffset;
+        if (len < available)
         {
-            if (currentBlockOffset == BLOCK_SIZE)
-            {
-                processBlock();
-                currentBlockOffset = 0;
-            }
-
-            int toCopy = Math.min((len - copied), BLOCK_SIZE - currentBlockOffset);
-            System.arraycopy(in, copied + inOff, currentBlock, currentBlockOffset, toCopy);
-            copied += toCopy;
-            currentBlockOffset += toCopy;
+            System.arraycopy(in, inOff, currentBlock, currentBlockOffset, len);
+            currentBlockOffset += len;
+            return;
         }
 
-    }
+        int pos = 0;
+        if (currentBlockOffset > 0)
+        {
+            System.arraycopy(in, inOff, currentBlock, currentBlockOffset, available);
+            pos = available;
+            processBlocks(currentBlock, 0, 1);
+        }
 
-    private void processBlock()
-    {
-        if (currentBlockOffset < BLOCK_SIZE)
+        // NOTE: Whole blocks are processed directly from the input
+        int blocks = (len - pos) / BLOCK_SIZE;
+        if (blocks > 0)
         {
-            currentBlock[currentBlockOffset] = 1;
-            for (int i = currentBlockOffset + 1; i < BLOCK_SIZE; i++)
-            {
-                currentBlock[i] = 0;
-            }
+            processBlocks(in, inOff + pos, blocks);
+            pos += blocks * BLOCK_SIZE;
         }
 
-        final long t0 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 0);
-        final long t1 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 4);
-        final long t2 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 8);
-        final long t3 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 12);
+        currentBlockOffset = len - pos;
+        System.arraycopy(in, inOff + pos, currentBlock, 0, currentBlockOffset);
+    }
+
+    private void processBlocks(final byte[] buf, int off, int count)
+    {
+        processBlocks(buf, off, count, 1 << 24);
+    }
 
-        h0 += t0 & 0x3ffffff;
-        h1 += (((t1 << 32) | t0) >>> 26) & 0x3ffffff;
-        h2 += (((t2 << 32) | t1) >>> 20) & 0x3ffffff;
-        h3 += (((t3 << 32) | t2) >>> 14) & 0x3ffffff;
-        h4 += (t3 >>> 8);
+    private void processBlocks(final byte[] buf, int off, int count, final int hibit)
+    {
+        // NOTE: The accumulator is kept in locals for the duration of a run of blocks
+        int h0 = this.h0, h1 = this.h1, h2 = this.h2, h3 = this.h3, h4 = this.h4;
 
-        if (currentBlockOffset == BLOCK_SIZE)
+        while (--count >= 0)
         {
-            h4 += (1 << 24);
+            final long t0 = 0xffffffffL & Pack.littleEndianToInt(buf, off);
+            final long t1 = 0xffffffffL & Pack.littleEndianToInt(buf, off + 4);
+            final long t2 = 0xffffffffL & Pack.littleEndianToInt(buf, off + 8);
+            final long t3 = 0xffffffffL & Pack.littleEndianToInt(buf, off + 12);
+            off += BLOCK_SIZE;
+
+            h0 += t0 & 0x3ffffff;
+            h1 += (((t1 << 32) | t0) >>> 26) & 0x3ffffff;
+            h2 += (((t2 << 32) | t1) >>> 20) & 0x3ffffff;
+            h3 += (((t3 << 32) | t2) >>> 14) & 0x3ffffff;
+            h4 += (t3 >>> 8) + hibit;
+
+            long tp0 = mul32x32_64(h0,r0) + mul32x32_64(h1,s4) + mul32x32_64(h2,s3) + mul32x32_64(h3,s2) + mul32x32_64(h4,s1);
+            long tp1 = mul32x32_64(h0,r1) + mul32x32_64(h1,r0) + mul32x32_64(h2,s4) + mul32x32_64(h3,s3) + mul32x32_64(h4,s2);
+            long tp2 = mul32x32_64(h0,r2) + mul32x32_64(h1,r1) + mul32x32_64(h2,r0) + mul32x32_64(h3,s4) + mul32x32_64(h4,s3);
+            long tp3 = mul32x32_64(h0,r3) + mul32x32_64(h1,r2) + mul32x32_64(h2,r1) + mul32x32_64(h3,r0) + mul32x32_64(h4,s4);
+            long tp4 = mul32x32_64(h0,r4) + mul32x32_64(h1,r3) + mul32x32_64(h2,r2) + mul32x32_64(h3,r1) + mul32x32_64(h4,r0);
+
+            h0 = (int)tp0 & 0x3ffffff; tp1 += (tp0 >>> 26);
+            h1 = (int)tp1 & 0x3ffffff; tp2 += (tp1 >>> 26);
+            h2 = (int)tp2 & 0x3ffffff; tp3 += (tp2 >>> 26);
+            h3 = (int)tp3 & 0x3ffffff; tp4 += (tp3 >>> 26);
+            h4 = (int)tp4 & 0x3ffffff;
+            h0 += (int)(tp4 >>> 26) * 5;
+            h1 += (h0 >>> 26); h0 &= 0x3ffffff;
         }
 
-        long tp0 = mul32x32_64(h0,r0) + mul32x32_64(h1,s4) + mul32x32_64(h2,s3) + mul32x32_64(h3,s2) + mul32x32_64(h4,s1);
-        long tp1 = mul32x32_64(h0,r1) + mul32x32_64(h1,r0) + mul32x32_64(h2,s4) + mul32x32_64(h3,s3) + mul32x32_64(h4,s2);
-        long tp2 = mul32x32_64(h0,r2) + mul32x32_64(h1,r1) + mul32x32_64(h2,r0) + mul32x32_64(h3,s4) + mul32x32_64(h4,s3);
-        long tp3 = mul32x32_64(h0,r3) + mul32x32_64(h1,r2) + mul32x32_64(h2,r1) + mul32x32_64(h3,r0) + mul32x32_64(h4,s4);
-        long tp4 = mul32x32_64(h0,r4) + mul32x32_64(h1,r3) + mul32x32_64(h2,r2) + mul32x32_64(h3,r1) + mul32x32_64(h4,r0);
-
-        h0 = (int)tp0 & 0x3ffffff; tp1 += (tp0 >>> 26);
-        h1 = (int)tp1 & 0x3ffffff; tp2 += (tp1 >>> 26);
-        h2 = (int)tp2 & 0x3ffffff; tp3 += (tp2 >>> 26);
-        h3 = (int)tp3 & 0x3ffffff; tp4 += (tp3 >>> 26);
-        h4 = (int)tp4 & 0x3ffffff;
-        h0 += (int)(tp4 >>> 26) * 5;
-        h1 += (h0 >>> 26); h0 &= 0x3ffffff;
+        this.h0 = h0; this.h1 = h1; this.h2 = h2; this.h3 = h3; this.h4 = h4;
     }
 
     public int doFinal(final byte[] out, final int outOff)
@@ -256,7 +267,12 @@ public class Poly1305
         if (currentBlockOffset > 0)
         {
             // Process padded final block
-            processBlock();
+            currentBlock[currentBlockOffset] = 1;
+            for (int i = currentBlockOffset + 1; i < BLOCK_SIZE; i++)
+            {
+                currentBlock[i] = 0;
+            }
+            processBlocks(currentBlock, 0, 1, 0);
         }
 
         h1 += (h0 >>> 26); h0 &= 0x3ffffff;
@@ -0,0 +1,83 @@
+package org.bouncycastle.crypto.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+import org.bouncycastle.crypto.digests.Blake3Digest;
+
+/**
+ * Utility class for hashing (large) files with BLAKE3 by mapping them into memory a region at a time, optionally
+ * hashing the chunks of each region concurrently. The result is the same as passing the file contents to
+ * {@link Blake3Digest#update(byte[], int, int)}.
+ */
+public final class Blake3FileHasher
+{
+    /**
+     * The default size of each mapped region (64 MiB).
+     */
+    public static final int DEFAULT_REGION_SIZE = 1 << 26;
+
+    private Blake3FileHasher()
+    {
+    }
+
+    /**
+     * Update a digest with the contents of a file channel, from its start to its current size.
+     *
+     * @param digest   the digest to update.
+     * @param channel  a channel open for reading.
+     * @param executor the executor for hashing chunks concurrently, or null to hash sequentially.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static void update(Blake3Digest digest, FileChannel channel, Executor executor)
+        throws IOException
+    {
+        update(digest, channel, 0, channel.size(), DEFAULT_REGION_SIZE, executor);
+    }
+
+    /**
+     * Update a digest with part of the contents of a file channel. The channel's position is not changed.
+     *
+     * @param digest     the digest to update.
+     * @param channel    a channel open for reading.
+     * @param position   the position in the file to start from.
+     * @param length     the number of bytes to hash.
+     * @param regionSize the number of bytes to map at a time (at least 1024, a whole number of 1024 byte chunks).
+     * @param executor   the executor for hashing chunks concurrently, or null to hash sequentially.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static void update(Blake3Digest digest, FileChannel channel, long position, long length, int regionSize,
+        Executor executor)
+        throws IOException
+    {
+        if (position < 0 || length < 0)
+        {
+            throw new IllegalArgumentException("'position' and 'length' must be non-negative");
+        }
+        if (regionSize < 1024 || (regionSize & 1023) != 0)
+        {
+            throw new IllegalArgumentException("'regionSize' must be a positive multiple of 1024");
+        }
+
+        long remaining = length;
+        long pos = position;
+
+        while (remaining > 0)
+        {
+            int len = (int)Math.min(remaining, regionSize);
+
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            if (region.remaining() < len)
+            {
+                throw new IOException("file is shorter than expected");
+            }
+
+            digest.update(region, executor);
+
+            pos += len;
+            remaining -= len;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.bouncycastle.math.ec;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.raw.Nat;
+
+/**
+ * Fixed-point multiplier using a multi-block (Lim-Lee style) signed comb. Compared to
+ * {@link FixedPointCombMultiplier}, splitting the comb over several smaller tables trades memory for fewer
+ * doublings, while keeping each (constant-time) table scan short. Every comb column is a sum of signed powers
+ * of two, so no table entry is the point at infinity, and the sequence of point operations does not depend on
+ * the scalar.
+ * <p>
+ * The curve order must be known and odd, and the point to be multiplied must lie in the prime-order subgroup.
+ * </p>
+ */
+public class FixedPointBlockCombMultiplier extends AbstractECMultiplier
+{
+    protected final int teeth;
+    protected final int blocks;
+
+    /**
+     * Create a multiplier using 8 blocks of 5 teeth (i.e. 8 tables of 32 points).
+     */
+    public FixedPointBlockCombMultiplier()
+    {
+        this(5, 8);
+    }
+
+    /**
+     * Create a multiplier with a specific comb shape.
+     *
+     * @param teeth the number of teeth per block, in the range [1, 8].
+     * @param blocks the number of blocks, at least 1.
+     */
+    public FixedPointBlockCombMultiplier(int teeth, int blocks)
+    {
+        if (teeth < 1 || teeth > 8)
+        {
+            throw new IllegalArgumentException("'teeth' must be in the range [1, 8]");
+        }
+        if (blocks < 1)
+        {
+            throw new IllegalArgumentException("'blocks' must be positive");
+        }
+
+        this.teeth = teeth;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Build (or fetch the cached) lookup tables for a fixed point ahead of its first multiplication.
+     *
+     * @param p the fixed point.
+     * @return the precomputation, which is cached with the point.
+     */
+    public FixedPointBlockCombPreCompInfo precompute(ECPoint p)
+    {
+        return FixedPointUtil.precomputeBlockComb(p, teeth, blocks);
+    }
+
+    protected ECPoint multiplyPositive(ECPoint p, BigInteger k)
+    {
+        ECCurve c = p.getCurve();
+        BigInteger n = c.getOrder();
+
+        if (null == n || !n.testBit(0))
+        {
+            throw new IllegalStateException("fixed-point block comb requires a curve of known, odd order");
+        }
+        if (k.bitLength() > n.bitLength())
+        {
+            throw new IllegalStateException("fixed-point block comb doesn't support scalars larger than the curve order");
+        }
+
+        FixedPointBlockCombPreCompInfo info = precompute(p);
+        ECLookupTable[] lookupTables = info.getLookupTables();
+        int spacing = info.getSpacing();
+
+        int fullComb = teeth * blocks * spacing;
+
+        /*
+         * Since n is odd, an even k can be replaced with k + n to get an odd K. Then with M = (K - 1)/2 +
+         * 2^(fullComb - 1), K is the sum of (2.M_j - 1).2^j over the comb, i.e. every bit of M selects a sign.
+         */
+        int[] K = Nat.fromBigInteger(fullComb, k);
+        int[] N = Nat.fromBigInteger(fullComb, n);
+        Nat.cadd(K.length, ~K[0] & 1, K, N, K);
+        Nat.shiftDownBit(K.length, K, 0);
+        K[(fullComb - 1) >>> 5] |= 1 << (fullComb - 1);
+
+        ECPoint R = null;
+
+        for (int i = spacing - 1; i >= 0; --i)
+        {
+            for (int b = 0; b < blocks; ++b)
+            {
+                int secretIndex = 0;
+
+                for (int t = teeth - 1; t >= 0; --t)
+                {
+                    int j = (t * blocks + b) * spacing + i;
+                    int secretBit = K[j >>> 5] >>> (j & 0x1F);
+                    secretIndex = (secretIndex << 1) | (secretBit & 1);
+                }
+
+                ECPoint add = lookupTables[b].lookup(secretIndex);
+
+                if (null == R)
+                {
+                    R = add;
+                }
+                else if (b == 0)
+                {
+                    R = R.twicePlus(add);
+                }
+                else
+                {
+                    R = R.add(add);
+                }
+            }
+        }
+
+        return R;
+    }
+}
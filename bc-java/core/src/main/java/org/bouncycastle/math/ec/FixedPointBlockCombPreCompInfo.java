@@ -0,0 +1,57 @@
+package org.bouncycastle.math.ec;
+
+/**
+ * Class holding precomputation data for fixed-point multiplications using a multi-block signed comb.
+ */
+public class FixedPointBlockCombPreCompInfo implements PreCompInfo
+{
+    /**
+     * Lookup tables (one per block) for the precomputed {@link ECPoint}s.
+     */
+    protected ECLookupTable[] lookupTables = null;
+
+    /**
+     * The number of teeth per block, i.e. each lookup table has 2^teeth entries.
+     */
+    protected int teeth = -1;
+
+    /**
+     * The distance (in bits) between adjacent teeth of the comb.
+     */
+    protected int spacing = -1;
+
+    public ECLookupTable[] getLookupTables()
+    {
+        return lookupTables;
+    }
+
+    public void setLookupTables(ECLookupTable[] lookupTables)
+    {
+        this.lookupTables = lookupTables;
+    }
+
+    public int getBlocks()
+    {
+        return lookupTables == null ? 0 : lookupTables.length;
+    }
+
+    public int getTeeth()
+    {
+        return teeth;
+    }
+
+    public void setTeeth(int teeth)
+    {
+        this.teeth = teeth;
+    }
+
+    public int getSpacing()
+    {
+        return spacing;
+    }
+
+    public void setSpacing(int spacing)
+    {
+        this.spacing = spacing;
+    }
+}
@@ -5,6 +5,7 @@ import java.math.BigInteger;
 public class FixedPointUtil
 {
     public static final String PRECOMP_NAME = "bc_fixed_point";
+    public static final String BLOCK_COMB_PRECOMP_NAME = "bc_fixed_point_block_comb";
 
     public static int getCombSize(ECCurve c)
     {
@@ -17,6 +18,11 @@ public class FixedPointUtil
         return (preCompInfo instanceof FixedPointPreCompInfo) ? (FixedPointPreCompInfo)preCompInfo : null;
     }
 
+    public static FixedPointBlockCombPreCompInfo getFixedPointBlockCombPreCompInfo(PreCompInfo preCompInfo)
+    {
+        return (preCompInfo instanceof FixedPointBlockCombPreCompInfo) ? (FixedPointBlockCombPreCompInfo)preCompInfo : null;
+    }
+
     public static FixedPointPreCompInfo precompute(final ECPoint p)
     {
         final ECCurve c = p.getCurve();
@@ -84,4 +90,93 @@ public class FixedPointUtil
             }
         });
     }
+
+    /**
+     * Precompute the lookup tables for a multi-block signed comb (see {@link FixedPointBlockCombMultiplier}).
+     * The comb covers (getCombSize(c) + 1) bits, split into 'blocks' tables of 2^'teeth' entries each. Entry e of
+     * the table for block b is the sum over t of (+/-)2^((t.blocks + b).spacing).p, with the sign taken from bit t
+     * of e.
+     *
+     * @param p the (fixed) point to precompute for.
+     * @param teeth the number of teeth per block.
+     * @param blocks the number of blocks.
+     * @return the precomputation, which is cached with the point.
+     */
+    public static FixedPointBlockCombPreCompInfo precomputeBlockComb(final ECPoint p, final int teeth,
+        final int blocks)
+    {
+        if (teeth < 1 || teeth > 8)
+        {
+            throw new IllegalArgumentException("'teeth' must be in the range [1, 8]");
+        }
+        if (blocks < 1)
+        {
+            throw new IllegalArgumentException("'blocks' must be positive");
+        }
+
+        final ECCurve c = p.getCurve();
+
+        return (FixedPointBlockCombPreCompInfo)c.precompute(p, BLOCK_COMB_PRECOMP_NAME, new PreCompCallback()
+        {
+            public PreCompInfo precompute(PreCompInfo existing)
+            {
+                FixedPointBlockCombPreCompInfo existingBC = getFixedPointBlockCombPreCompInfo(existing);
+                if (existingBC != null && existingBC.getTeeth() == teeth && existingBC.getBlocks() == blocks)
+                {
+                    return existingBC;
+                }
+
+                int bits = getCombSize(c) + 1;
+                int segments = teeth * blocks;
+                int spacing = (bits + segments - 1) / segments;
+
+                // pow2Table[i] = 2^(i.spacing).p
+                ECPoint[] pow2Table = new ECPoint[segments];
+                pow2Table[0] = p;
+                for (int i = 1; i < segments; ++i)
+                {
+                    pow2Table[i] = pow2Table[i - 1].timesPow2(spacing);
+                }
+
+                c.normalizeAll(pow2Table);
+
+                int n = 1 << teeth;
+                ECLookupTable[] lookupTables = new ECLookupTable[blocks];
+
+                for (int b = 0; b < blocks; ++b)
+                {
+                    ECPoint[] lookupTable = new ECPoint[n];
+
+                    // Entry 0 has every tooth negative; setting bit t then adds 2.(tooth t)
+                    ECPoint sum = pow2Table[b];
+                    for (int t = 1; t < teeth; ++t)
+                    {
+                        sum = sum.add(pow2Table[t * blocks + b]);
+                    }
+                    lookupTable[0] = sum.negate();
+
+                    for (int t = 0; t < teeth; ++t)
+                    {
+                        ECPoint twiceTooth = pow2Table[t * blocks + b].twice();
+
+                        int step = 1 << t;
+                        for (int i = step; i < (step << 1); ++i)
+                        {
+                            lookupTable[i] = lookupTable[i - step].add(twiceTooth);
+                        }
+                    }
+
+                    c.normalizeAll(lookupTable);
+
+                    lookupTables[b] = c.createCacheSafeLookupTable(lookupTable, 0, n);
+                }
+
+                FixedPointBlockCombPreCompInfo result = new FixedPointBlockCombPreCompInfo();
+                result.setLookupTables(lookupTables);
+                result.setTeeth(teeth);
+                result.setSpacing(spacing);
+                return result;
+            }
+        });
+    }
 }
@@ -0,0 +1,147 @@
+package org.bouncycastle.math.ec;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.raw.Nat;
+
+/**
+ * Variable-base multiplier using a fixed window with signed, odd digits (a "regular" recoding), so that the
+ * sequence of point operations (one addition for every 'width' doublings) does not depend on the scalar, and
+ * table entries are selected via {@link ECCurve#createCacheSafeLookupTable(ECPoint[], int, int)}. This is
+ * intended for curves with a constant-time lookup table implementation (e.g. those in
+ * org.bouncycastle.math.ec.custom.sec).
+ * <p>
+ * The curve order must be known and odd, and the point to be multiplied must lie in the prime-order subgroup.
+ * </p>
+ */
+public class FixedWindowMultiplier extends AbstractECMultiplier
+{
+    protected final int width;
+
+    /**
+     * Create a multiplier choosing the window width from the size of the curve order.
+     */
+    public FixedWindowMultiplier()
+    {
+        this(0);
+    }
+
+    /**
+     * Create a multiplier with a specific window width.
+     *
+     * @param width the window width, in the range [2, 8], or 0 to choose one from the size of the curve order.
+     */
+    public FixedWindowMultiplier(int width)
+    {
+        if (width != 0 && (width < 2 || width > 8))
+        {
+            throw new IllegalArgumentException("'width' must be 0, or in the range [2, 8]");
+        }
+
+        this.width = width;
+    }
+
+    protected ECPoint multiplyPositive(ECPoint p, BigInteger k)
+    {
+        ECCurve c = p.getCurve();
+        BigInteger n = c.getOrder();
+
+        if (null == n || !n.testBit(0))
+        {
+            throw new IllegalStateException("fixed-window multiplier requires a curve of known, odd order");
+        }
+        if (k.bitLength() > n.bitLength())
+        {
+            throw new IllegalStateException("fixed-window multiplier doesn't support scalars larger than the curve order");
+        }
+
+        int w = width > 0 ? width : getDefaultWidth(n.bitLength());
+
+        /*
+         * The recoding needs an odd scalar; since n is odd, replace an even k with k + n (which gives the same
+         * result for a point of order n).
+         */
+        int bits = n.bitLength() + 1;
+        int[] K = Nat.fromBigInteger(bits, k);
+        int[] N = Nat.fromBigInteger(bits, n);
+        Nat.cadd(K.length, ~K[0] & 1, K, N, K);
+
+        /*
+         * For odd K, the digits d_i = (bits [w.i, w.i + w] of K, with the lowest forced to 1) - 2^w are odd, in
+         * the range [1 - 2^w, 2^w - 1], and with the top digit taken as (K >>> w.i) | 1 instead, sum to K.
+         */
+        int windows = (bits + w) / w;
+
+        ECLookupTable lookupTable = precomputeTable(c, p, w);
+
+        int top = getWindow(K, w * (windows - 1), w + 1) | 1;
+        ECPoint R = lookupTable.lookup((top + (1 << w) - 1) >>> 1);
+
+        for (int i = windows - 2; i >= 0; --i)
+        {
+            int digit = getWindow(K, w * i, w + 1) | 1;
+            ECPoint T = lookupTable.lookup((digit - 1) >>> 1);
+
+            R = R.timesPow2(w - 1).twicePlus(T);
+        }
+
+        return R;
+    }
+
+    protected int getDefaultWidth(int orderBits)
+    {
+        /*
+         * The doublings are the same for any width, so this balances the additions against the precomputation
+         * and the (linear) cost of each constant-time table scan, which favours a width of 5 up to at least 521 bits.
+         */
+        return 5;
+    }
+
+    /*
+     * A table of the 2^w odd multiples of p from (1 - 2^w).p to (2^w - 1).p, in order.
+     */
+    private static ECLookupTable precomputeTable(ECCurve c, ECPoint p, int w)
+    {
+        int half = 1 << (w - 1);
+
+        ECPoint[] odd = new ECPoint[half];
+        odd[0] = p.normalize();
+
+        if (half > 1)
+        {
+            ECPoint twiceP = p.twice();
+            for (int i = 1; i < half; ++i)
+            {
+                odd[i] = odd[i - 1].add(twiceP);
+            }
+
+            c.normalizeAll(odd);
+        }
+
+        ECPoint[] table = new ECPoint[half << 1];
+        for (int i = 0; i < half; ++i)
+        {
+            table[half + i] = odd[i];
+            table[half - 1 - i] = odd[i].negate();
+        }
+
+        return c.createCacheSafeLookupTable(table, 0, table.length);
+    }
+
+    private static int getWindow(int[] x, int pos, int count)
+    {
+        int word = pos >>> 5, shift = pos & 31;
+        if (word >= x.length)
+        {
+            return 0;
+        }
+
+        int bits = x[word] >>> shift;
+        if (shift + count > 32 && word + 1 < x.length)
+        {
+            bits |= x[word + 1] << (32 - shift);
+        }
+
+        return bits & ((1 << count) - 1);
+    }
+}
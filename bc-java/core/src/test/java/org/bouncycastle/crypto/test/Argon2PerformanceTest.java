@@ -0,0 +1,79 @@
+package org.bouncycastle.crypto.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.util.Strings;
+import org.bouncycastle.util.Times;
+
+/**
+ * Compares the time taken by Argon2id with lanes filled sequentially against lanes filled concurrently, for a
+ * range of memory sizes and lane counts.
+ */
+public class Argon2PerformanceTest extends TestCase
+{
+    static final int ITERATIONS = 3;
+    static final int NUM_ROUNDS = 5;
+
+    static final int[] MEMORY_KB = new int[]{ 1 << 10, 1 << 14, 1 << 16 };
+    static final int[] LANES = new int[]{ 1, 2, 4, 8 };
+
+    private static double time(Argon2BytesGenerator gen, Argon2Parameters parameters)
+    {
+        byte[] password = Strings.toByteArray("password");
+        byte[] out = new byte[32];
+
+        gen.init(parameters);
+
+        // Warm up
+        gen.generateBytes(password, out);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < NUM_ROUNDS; ++i)
+        {
+            long startTime = Times.nanoTime();
+            gen.generateBytes(password, out);
+            best = Math.min(best, Times.nanoTime() - startTime);
+        }
+
+        return best / 1000000.0;
+    }
+
+    public void testLanes()
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        System.out.println("Argon2id, " + ITERATIONS + " iterations, " + threads + " processor(s)");
+
+        try
+        {
+            for (int m = 0; m < MEMORY_KB.length; ++m)
+            {
+                for (int l = 0; l < LANES.length; ++l)
+                {
+                    Argon2Parameters parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                        .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                        .withIterations(ITERATIONS)
+                        .withMemoryAsKB(MEMORY_KB[m])
+                        .withParallelism(LANES[l])
+                        .withSalt(Strings.toByteArray("somesalt"))
+                        .build();
+
+                    double sequential = time(new Argon2BytesGenerator(), parameters);
+                    double concurrent = time(new Argon2BytesGenerator(executor), parameters);
+
+                    System.out.println("   m=" + MEMORY_KB[m] + "KiB, p=" + LANES[l] + ": sequential " + sequential
+                        + " millis, concurrent " + concurrent + " millis");
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package org.bouncycastle.crypto.test;
 
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
 import org.bouncycastle.crypto.params.Argon2Parameters;
@@ -32,7 +35,18 @@ public class Argon2Test
         }
 
         testPermutations();
-        testVectorsFromInternetDraft();
+        testVectorsFromInternetDraft(null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            testVectorsFromInternetDraft(executor);
+            testConcurrentLanes(executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
 
         int version = Argon2Parameters.ARGON2_VERSION_10;
 
@@ -249,7 +263,7 @@ public class Argon2Test
      *
      * @throws Exception
      */
-    private void testVectorsFromInternetDraft()
+    private void testVectorsFromInternetDraft(Executor executor)
     {
         byte[] ad = Hex.decode("040404040404040404040404");
         byte[] secret = Hex.decode("0303030303030303");
@@ -265,7 +279,7 @@ public class Argon2Test
             .withSecret(secret)
             .withSalt(salt);
 
-        Argon2BytesGenerator dig = new Argon2BytesGenerator();
+        Argon2BytesGenerator dig = new Argon2BytesGenerator(executor);
 
         dig.init(builder.build());
 
@@ -284,7 +298,7 @@ public class Argon2Test
             .withSecret(secret)
             .withSalt(salt);
 
-        dig = new Argon2BytesGenerator();
+        dig = new Argon2BytesGenerator(executor);
 
         dig.init(builder.build());
 
@@ -303,7 +317,7 @@ public class Argon2Test
             .withSecret(secret)
             .withSalt(salt);
 
-        dig = new Argon2BytesGenerator();
+        dig = new Argon2BytesGenerator(executor);
 
         dig.init(builder.build());
 
@@ -314,6 +328,48 @@ public class Argon2Test
 
     }
 
+    /**
+     * Filling lanes concurrently must give the same output as filling them sequentially.
+     */
+    private void testConcurrentLanes(Executor executor)
+    {
+        int[] types = new int[]{ Argon2Parameters.ARGON2_d, Argon2Parameters.ARGON2_i, Argon2Parameters.ARGON2_id };
+        int[] versions = new int[]{ Argon2Parameters.ARGON2_VERSION_10, Argon2Parameters.ARGON2_VERSION_13 };
+        byte[] password = Strings.toByteArray("password");
+
+        for (int t = 0; t < types.length; ++t)
+        {
+            for (int v = 0; v < versions.length; ++v)
+            {
+                for (int lanes = 1; lanes <= 6; ++lanes)
+                {
+                    Argon2Parameters parameters = new Argon2Parameters.Builder(types[t])
+                        .withVersion(versions[v])
+                        .withIterations(2)
+                        .withMemoryAsKB(64 * lanes + 8)
+                        .withParallelism(lanes)
+                        .withSalt(Strings.toByteArray("somesalt"))
+                        .build();
+
+                    Argon2BytesGenerator sequential = new Argon2BytesGenerator();
+                    sequential.init(parameters);
+                    byte[] expected = new byte[DEFAULT_OUTPUTLEN];
+                    sequential.generateBytes(password, expected);
+
+                    Argon2BytesGenerator concurrent = new Argon2BytesGenerator(executor);
+                    concurrent.init(parameters);
+                    for (int i = 0; i < 2; ++i)
+                    {
+                        byte[] result = new byte[DEFAULT_OUTPUTLEN];
+                        concurrent.generateBytes(password, result);
+                        isTrue("concurrent lanes failed: type " + types[t] + ", version " + versions[v] + ", lanes "
+                            + lanes, areEqual(expected, result));
+                    }
+                }
+            }
+        }
+    }
+
     private static int getJvmVersion()
     {
         String version = System.getProperty("java.specification.version");
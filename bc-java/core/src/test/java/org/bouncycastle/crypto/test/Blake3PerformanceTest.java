@@ -0,0 +1,76 @@
+package org.bouncycastle.crypto.test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import org.bouncycastle.crypto.digests.Blake3Digest;
+import org.bouncycastle.util.Times;
+
+/**
+ * Compares the throughput of BLAKE3 hashing sequentially against hashing subtrees concurrently, for a range of
+ * input sizes and thread counts.
+ */
+public class Blake3PerformanceTest extends TestCase
+{
+    static final int NUM_ROUNDS = 5;
+
+    static final int[] SIZES = new int[]{ 1 << 16, 1 << 20, 1 << 24 };
+    static final int[] THREADS = new int[]{ 1, 2, 4, 8 };
+
+    private static double throughput(byte[] data, ExecutorService executor)
+    {
+        Blake3Digest digest = new Blake3Digest();
+        byte[] out = new byte[32];
+
+        // Warm up
+        for (int i = 0; i < 3; ++i)
+        {
+            digest.update(data, 0, data.length, executor);
+            digest.doFinal(out, 0);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < NUM_ROUNDS; ++i)
+        {
+            long startTime = Times.nanoTime();
+            digest.update(data, 0, data.length, executor);
+            digest.doFinal(out, 0);
+            best = Math.min(best, Times.nanoTime() - startTime);
+        }
+
+        return (data.length / (1024.0 * 1024.0)) / (best / 1000000000.0);
+    }
+
+    public void testThroughput()
+    {
+        System.out.println("Blake3, " + Runtime.getRuntime().availableProcessors() + " processor(s)");
+
+        SecureRandom random = new SecureRandom();
+
+        for (int s = 0; s < SIZES.length; ++s)
+        {
+            byte[] data = new byte[SIZES[s]];
+            random.nextBytes(data);
+
+            StringBuffer sb = new StringBuffer();
+            sb.append("   " + (SIZES[s] >> 10) + "KiB: sequential " + (int)throughput(data, null) + " MB/s");
+
+            for (int t = 0; t < THREADS.length; ++t)
+            {
+                ExecutorService executor = Executors.newFixedThreadPool(THREADS[t]);
+                try
+                {
+                    sb.append(", " + THREADS[t] + " thread(s) " + (int)throughput(data, executor) + " MB/s");
+                }
+                finally
+                {
+                    executor.shutdown();
+                }
+            }
+
+            System.out.println(sb.toString());
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package org.bouncycastle.crypto.test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.bouncycastle.crypto.digests.Blake3Digest;
 import org.bouncycastle.crypto.params.Blake3Parameters;
+import org.bouncycastle.crypto.util.Blake3FileHasher;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.test.SimpleTest;
@@ -257,6 +266,8 @@ public class Blake3Test
         runTestCase(TEST16384);
         runTestCase(TEST31744);
         runTestCase(TEST102400);
+
+        testConcurrent();
     }
 
     /**
@@ -272,6 +283,125 @@ public class Blake3Test
         testDerived(pTest);
     }
 
+    /**
+     * Check that hashing with an executor matches the sequential digest.
+     */
+    private void testConcurrent()
+        throws Exception
+    {
+        final ExecutorService myExecutor = Executors.newFixedThreadPool(4);
+        try
+        {
+            /* Check the vectors, in each mode, from arrays and direct buffers */
+            final TestDef[] myTests = { TEST2048, TEST2049, TEST3072, TEST3073, TEST4096, TEST4097, TEST5120,
+                TEST5121, TEST6144, TEST6145, TEST7168, TEST7169, TEST8192, TEST8193, TEST16384, TEST31744,
+                TEST102400 };
+            for (int i = 0; i < myTests.length; i++)
+            {
+                final TestDef myTest = myTests[i];
+                final int[] mySplits = { 0, 1, 63, 64, 65, 1023, 1024, 1025, myTest.theLength / 3 };
+                for (int j = 0; j < mySplits.length; j++)
+                {
+                    checkConcurrent(myTest, null, myTest.theHash, mySplits[j], myExecutor);
+                    checkConcurrent(myTest, Blake3Parameters.key(BLAKE3KEY), myTest.theKeyed, mySplits[j], myExecutor);
+                    checkConcurrent(myTest, Blake3Parameters.context(BLAKE3CTX), myTest.theDerived, mySplits[j],
+                        myExecutor);
+                }
+            }
+
+            /* Check large inputs (several subtrees) against the sequential digest */
+            final SecureRandom myRandom = new SecureRandom();
+            final int[] myLengths = { (1 << 20) + 1, (3 << 20) + 12345, (1 << 22) };
+            for (int i = 0; i < myLengths.length; i++)
+            {
+                final byte[] myData = new byte[myLengths[i]];
+                myRandom.nextBytes(myData);
+
+                final byte[] myExpected = new byte[32];
+                final Blake3Digest myDigest = new Blake3Digest();
+                myDigest.update(myData, 0, myData.length);
+                myDigest.doFinal(myExpected, 0);
+
+                final int mySplit = myRandom.nextInt(5000);
+                final byte[] myOutput = new byte[32];
+                myDigest.update(myData, 0, mySplit);
+                myDigest.update(myData, mySplit, myData.length - mySplit, myExecutor);
+                myDigest.doFinal(myOutput, 0);
+                isTrue("concurrent large digest mismatch", Arrays.areEqual(myExpected, myOutput));
+
+                /* Hash a file, in small regions */
+                final File myFile = File.createTempFile("blake3", ".dat");
+                try
+                {
+                    final FileOutputStream myOut = new FileOutputStream(myFile);
+                    myOut.write(myData);
+                    myOut.close();
+
+                    final RandomAccessFile myIn = new RandomAccessFile(myFile, "r");
+                    try
+                    {
+                        Blake3FileHasher.update(myDigest, myIn.getChannel(), 0, myData.length, 1 << 18, myExecutor);
+                        myDigest.doFinal(myOutput, 0);
+                        isTrue("file digest mismatch", Arrays.areEqual(myExpected, myOutput));
+
+                        Blake3FileHasher.update(myDigest, myIn.getChannel(), null);
+                        myDigest.doFinal(myOutput, 0);
+                        isTrue("sequential file digest mismatch", Arrays.areEqual(myExpected, myOutput));
+                    }
+                    finally
+                    {
+                        myIn.close();
+                    }
+                }
+                finally
+                {
+                    myFile.delete();
+                }
+            }
+        }
+        finally
+        {
+            myExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Check a test vector hashed with an executor, after hashing an initial part sequentially.
+     *
+     * @param pTest     the test
+     * @param pParams   the parameters (or null)
+     * @param pExpected the expected output
+     * @param pSplit    the length to hash sequentially
+     * @param pExecutor the executor
+     */
+    private void checkConcurrent(final TestDef pTest,
+                                 final Blake3Parameters pParams,
+                                 final byte[] pExpected,
+                                 final int pSplit,
+                                 final ExecutorService pExecutor)
+    {
+        final Blake3Digest myDigest = new Blake3Digest();
+        final byte[] myOutput = new byte[pExpected.length];
+
+        /* From an array */
+        myDigest.init(pParams);
+        myDigest.update(pTest.theData, 0, pSplit);
+        myDigest.update(pTest.theData, pSplit, pTest.theLength - pSplit, pExecutor);
+        myDigest.doFinal(myOutput, 0, myOutput.length);
+        isTrue("concurrent digest mismatch", Arrays.areEqual(pExpected, myOutput));
+
+        /* From a direct buffer */
+        final ByteBuffer myBuffer = ByteBuffer.allocateDirect(pTest.theLength);
+        myBuffer.put(pTest.theData).flip();
+        myBuffer.position(pSplit);
+        myDigest.init(pParams);
+        myDigest.update(pTest.theData, 0, pSplit);
+        myDigest.update(myBuffer, pExecutor);
+        isTrue("buffer not consumed", !myBuffer.hasRemaining());
+        myDigest.doFinal(myOutput, 0, myOutput.length);
+        isTrue("concurrent buffer digest mismatch", Arrays.areEqual(pExpected, myOutput));
+    }
+
     /**
      * Run hashTest.
      *
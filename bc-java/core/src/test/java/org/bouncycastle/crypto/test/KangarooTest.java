@@ -1,6 +1,11 @@
 package org.bouncycastle.crypto.test;
 
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.bouncycastle.crypto.digests.Kangaroo.KangarooParameters;
+import org.bouncycastle.crypto.digests.Kangaroo.MarsupilamiFourteen;
 import org.bouncycastle.crypto.digests.Kangaroo.KangarooTwelve;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
@@ -26,6 +31,11 @@ public class KangarooTest
         }
     }
 
+    /**
+     * The executor for concurrent leaf hashing.
+     */
+    private ExecutorService theExecutor;
+
     public String getName()
     {
         return "Kangaroo12";
@@ -34,7 +44,41 @@ public class KangarooTest
     public void performTest()
         throws Exception
     {
-        new Kangaroo12Test().checkDigests(this);
+        theExecutor = Executors.newFixedThreadPool(4);
+        try
+        {
+            new Kangaroo12Test().checkDigests(this);
+            testConcurrent();
+        }
+        finally
+        {
+            theExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Check that MarsupilamiFourteen hashed with an executor matches the sequential digest.
+     */
+    private void testConcurrent()
+    {
+        final SecureRandom myRandom = new SecureRandom();
+        final byte[] myMsg = new byte[(3 << 20) + 4321];
+        myRandom.nextBytes(myMsg);
+
+        final MarsupilamiFourteen myDigest = new MarsupilamiFourteen();
+        final byte[] myExpected = new byte[myDigest.getDigestSize()];
+        myDigest.update(myMsg, 0, myMsg.length);
+        myDigest.doFinal(myExpected, 0);
+
+        final int[] mySplits = { 0, 1, 8191, 8192, 8193, 100000 };
+        for (int i = 0; i < mySplits.length; i++)
+        {
+            final byte[] myOutput = new byte[myExpected.length];
+            myDigest.update(myMsg, 0, mySplits[i]);
+            myDigest.update(myMsg, mySplits[i], myMsg.length - mySplits[i], theExecutor);
+            myDigest.doFinal(myOutput, 0);
+            isTrue("Concurrent mismatch", Arrays.areEqual(myExpected, myOutput));
+        }
     }
 
     /**
@@ -109,6 +153,17 @@ public class KangarooTest
 
         /* Check the result */
         isTrue("Result mismatch", Arrays.areEqual(myExpected, myOutput));
+
+        /* Check the result when hashing leaves concurrently */
+        myOutput = new byte[myXofLen];
+        myDigest.init(myParams);
+        myDigest.update(myMsg, 0, pMsgLen, theExecutor);
+        myDigest.doFinal(myOutput, 0, myOutput.length);
+        if (pOutLen != 0)
+        {
+            myOutput = Arrays.copyOfRange(myOutput, pOutLen - myExpected.length, pOutLen);
+        }
+        isTrue("Concurrent result mismatch", Arrays.areEqual(myExpected, myOutput));
     }
 
     /**
@@ -1,5 +1,9 @@
 package org.bouncycastle.crypto.test;
 
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.ParallelHash;
 import org.bouncycastle.util.Arrays;
@@ -118,6 +122,50 @@ public class ParallelHashTest
 
         testEmpty();
         testClone();
+        testConcurrent();
+    }
+
+    private void testConcurrent()
+    {
+        SecureRandom random = new SecureRandom();
+        byte[] input = new byte[(1 << 20) + 13];
+        random.nextBytes(input);
+
+        int[] bitLengths = new int[]{ 128, 256 };
+        int[] blockSizes = new int[]{ 8, 1000, 8192 };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            for (int b = 0; b < bitLengths.length; ++b)
+            {
+                for (int s = 0; s < blockSizes.length; ++s)
+                {
+                    int blockSize = blockSizes[s];
+                    ParallelHash pHash = new ParallelHash(bitLengths[b], Strings.toByteArray("Parallel Data"),
+                        blockSize);
+
+                    byte[] expected = new byte[100];
+                    pHash.update(input, 0, input.length);
+                    pHash.doFinal(expected, 0, expected.length);
+
+                    int[] splits = new int[]{ 0, 1, blockSize - 1, blockSize + 1, 70000 };
+                    for (int i = 0; i < splits.length; ++i)
+                    {
+                        byte[] res = new byte[expected.length];
+                        pHash.update(input, 0, splits[i]);
+                        pHash.update(input, splits[i], input.length - splits[i], executor);
+                        pHash.doFinal(res, 0, res.length);
+
+                        isTrue("concurrent mismatch", Arrays.areEqual(expected, res));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
     }
 
     private void testEmpty()
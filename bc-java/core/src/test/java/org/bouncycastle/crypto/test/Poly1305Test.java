@@ -116,6 +116,7 @@ public class Poly1305Test
         }
         testSequential();
         testReset();
+        testSplitUpdates();
         rfc7539Test();
     }
 
@@ -274,6 +275,48 @@ public class Poly1305Test
         }
     }
 
+    private void testSplitUpdates()
+    {
+        SecureRandom random = new SecureRandom();
+
+        byte[] k = new byte[32];
+        byte[] m = new byte[1000];
+        byte[] check = new byte[16];
+        byte[] out = new byte[16];
+
+        Mac poly = new Poly1305();
+
+        for (int i = 0; i < 100; ++i)
+        {
+            random.nextBytes(k);
+            random.nextBytes(m);
+            int len = random.nextInt(m.length + 1);
+
+            poly.init(new KeyParameter(k));
+            for (int j = 0; j < len; ++j)
+            {
+                poly.update(m[j]);
+            }
+            poly.doFinal(check, 0);
+
+            // Updates that straddle block boundaries must give the same result
+            poly.init(new KeyParameter(k));
+            int pos = 0;
+            while (pos < len)
+            {
+                int chunk = Math.min(len - pos, random.nextInt(50));
+                poly.update(m, pos, chunk);
+                pos += chunk;
+            }
+            poly.doFinal(out, 0);
+
+            if (!Arrays.areEqual(check, out))
+            {
+                fail("Mac mismatch for split updates");
+            }
+        }
+    }
+
     private void testInit()
     {
         CipherKeyGenerator gen = new Poly1305KeyGenerator();
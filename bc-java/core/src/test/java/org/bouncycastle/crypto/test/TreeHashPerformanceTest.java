@@ -0,0 +1,107 @@
+package org.bouncycastle.crypto.test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import org.bouncycastle.crypto.Xof;
+import org.bouncycastle.crypto.digests.Kangaroo;
+import org.bouncycastle.crypto.digests.ParallelHash;
+import org.bouncycastle.util.Strings;
+import org.bouncycastle.util.Times;
+
+/**
+ * Compares the throughput of ParallelHash and KangarooTwelve on a 1 GiB input hashed sequentially against
+ * hashing leaves concurrently, for a range of thread counts.
+ */
+public class TreeHashPerformanceTest extends TestCase
+{
+    static final int NUM_ROUNDS = 2;
+
+    static final int SIZE = 1 << 30;
+    static final int[] THREADS = new int[]{ 1, 2, 4, 8 };
+
+    private interface Hasher
+    {
+        Xof update(byte[] data, ExecutorService executor);
+    }
+
+    private static double throughput(Hasher hasher, byte[] data, ExecutorService executor)
+    {
+        byte[] out = new byte[64];
+
+        // Warm up
+        hasher.update(data, executor).doFinal(out, 0, out.length);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < NUM_ROUNDS; ++i)
+        {
+            long startTime = Times.nanoTime();
+            hasher.update(data, executor).doFinal(out, 0, out.length);
+            best = Math.min(best, Times.nanoTime() - startTime);
+        }
+
+        return (data.length / (1024.0 * 1024.0)) / (best / 1000000000.0);
+    }
+
+    private static void report(String name, Hasher hasher, byte[] data)
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("   " + name + ": sequential " + (int)throughput(hasher, data, null) + " MB/s");
+
+        for (int t = 0; t < THREADS.length; ++t)
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS[t]);
+            try
+            {
+                sb.append(", " + THREADS[t] + " thread(s) " + (int)throughput(hasher, data, executor) + " MB/s");
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+
+        System.out.println(sb.toString());
+    }
+
+    public void testThroughput()
+    {
+        System.out.println("Tree hashes, " + (SIZE >> 20) + "MiB input, " + Runtime.getRuntime().availableProcessors()
+            + " processor(s)");
+
+        byte[] data = new byte[SIZE];
+        new SecureRandom().nextBytes(data);
+
+        report("ParallelHash128 (B=8192)", new Hasher()
+        {
+            public Xof update(byte[] data, ExecutorService executor)
+            {
+                ParallelHash pHash = new ParallelHash(128, Strings.toByteArray("Benchmark"), 8192);
+                pHash.update(data, 0, data.length, executor);
+                return pHash;
+            }
+        }, data);
+
+        report("ParallelHash256 (B=8192)", new Hasher()
+        {
+            public Xof update(byte[] data, ExecutorService executor)
+            {
+                ParallelHash pHash = new ParallelHash(256, Strings.toByteArray("Benchmark"), 8192);
+                pHash.update(data, 0, data.length, executor);
+                return pHash;
+            }
+        }, data);
+
+        report("KangarooTwelve", new Hasher()
+        {
+            public Xof update(byte[] data, ExecutorService executor)
+            {
+                Kangaroo.KangarooTwelve k12 = new Kangaroo.KangarooTwelve();
+                k12.update(data, 0, data.length, executor);
+                return k12;
+            }
+        }, data);
+    }
+}
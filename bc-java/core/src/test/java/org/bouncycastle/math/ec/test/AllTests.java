@@ -27,6 +27,7 @@ public class AllTests
         suite.addTestSuite(ECAlgorithmsTest.class);
         suite.addTestSuite(ECPointTest.class);
         suite.addTestSuite(FixedPointTest.class);
+        suite.addTestSuite(FixedWindowMultiplierTest.class);
 
         return new BCTestSetup(suite);
     }
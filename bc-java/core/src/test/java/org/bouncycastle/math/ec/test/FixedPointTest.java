@@ -13,7 +13,10 @@ import org.bouncycastle.asn1.x9.ECNamedCurveTable;
 import org.bouncycastle.asn1.x9.X9ECParameters;
 import org.bouncycastle.crypto.ec.CustomNamedCurves;
 import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECConstants;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointBlockCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointBlockCombPreCompInfo;
 import org.bouncycastle.math.ec.FixedPointCombMultiplier;
 
 import junit.framework.Test;
@@ -64,6 +67,84 @@ public class FixedPointTest
         }
     }
 
+    public void testFixedPointBlockCombMultiplier()
+    {
+        final FixedPointBlockCombMultiplier M = new FixedPointBlockCombMultiplier();
+
+        Set names = new HashSet(enumToList(ECNamedCurveTable.getNames()));
+        names.addAll(enumToList(CustomNamedCurves.getNames()));
+
+        Iterator it = names.iterator();
+        while (it.hasNext())
+        {
+            String name = (String)it.next();
+
+            X9ECParameters x9A = ECNamedCurveTable.getByName(name);
+            X9ECParameters x9B = CustomNamedCurves.getByName(name);
+
+            X9ECParameters x9 = x9B != null ? x9B : x9A;
+            BigInteger n = x9.getN();
+            if (!n.testBit(0))
+            {
+                continue;
+            }
+
+            for (int i = 0; i < TESTS_PER_CURVE; ++i)
+            {
+                BigInteger k = new BigInteger(n.bitLength(), RANDOM).mod(n);
+                ECPoint pRef = ECAlgorithms.referenceMultiply(x9.getG(), k);
+
+                if (x9A != null)
+                {
+                    ECPoint pA = M.multiply(x9A.getG(), k);
+                    assertPointsEqual("Standard curve block comb failure", pRef, pA);
+                }
+
+                if (x9B != null)
+                {
+                    ECPoint pB = M.multiply(x9B.getG(), k);
+                    assertPointsEqual("Custom curve block comb failure", pRef, pB);
+                }
+            }
+        }
+    }
+
+    public void testBlockCombShapes()
+    {
+        X9ECParameters x9 = CustomNamedCurves.getByName("secp384r1");
+        BigInteger n = x9.getN();
+        ECPoint g = x9.getG();
+
+        BigInteger[] scalars = new BigInteger[]{ ECConstants.ONE, ECConstants.TWO, n.subtract(ECConstants.ONE),
+            n.subtract(ECConstants.TWO), n.shiftRight(1), ECConstants.ONE.shiftLeft(n.bitLength() - 1),
+            new BigInteger(n.bitLength(), RANDOM).mod(n) };
+
+        int[][] shapes = new int[][]{ { 1, 1 }, { 3, 2 }, { 4, 4 }, { 5, 4 }, { 6, 3 }, { 8, 1 } };
+
+        for (int s = 0; s < shapes.length; ++s)
+        {
+            int teeth = shapes[s][0], blocks = shapes[s][1];
+            FixedPointBlockCombMultiplier M = new FixedPointBlockCombMultiplier(teeth, blocks);
+
+            for (int i = 0; i < scalars.length; ++i)
+            {
+                BigInteger k = scalars[i];
+                assertPointsEqual("Block comb failure (" + teeth + " teeth, " + blocks + " blocks)",
+                    ECAlgorithms.referenceMultiply(g, k), M.multiply(g, k));
+            }
+        }
+
+        assertTrue(new FixedPointBlockCombMultiplier().multiply(g, ECConstants.ZERO).isInfinity());
+
+        // The tables are cached with the point, for the most recent shape
+        FixedPointBlockCombMultiplier M = new FixedPointBlockCombMultiplier();
+        FixedPointBlockCombPreCompInfo info = M.precompute(g);
+        assertEquals(8, info.getBlocks());
+        assertEquals(5, info.getTeeth());
+        assertEquals(32, info.getLookupTables()[0].getSize());
+        assertSame(info, M.precompute(g));
+    }
+
     private List enumToList(Enumeration en)
     {
         List rv = new ArrayList();
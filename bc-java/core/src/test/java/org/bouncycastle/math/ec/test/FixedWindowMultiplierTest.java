@@ -0,0 +1,132 @@
+package org.bouncycastle.math.ec.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.bouncycastle.asn1.x9.ECNamedCurveTable;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECConstants;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedWindowMultiplier;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class FixedWindowMultiplierTest
+    extends TestCase
+{
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final int TESTS_PER_CURVE = 5;
+
+    public void testFixedWindowMultiplier()
+    {
+        final FixedWindowMultiplier M = new FixedWindowMultiplier();
+
+        Set names = new HashSet(enumToList(ECNamedCurveTable.getNames()));
+        names.addAll(enumToList(CustomNamedCurves.getNames()));
+
+        Iterator it = names.iterator();
+        while (it.hasNext())
+        {
+            String name = (String)it.next();
+
+            X9ECParameters x9A = ECNamedCurveTable.getByName(name);
+            X9ECParameters x9B = CustomNamedCurves.getByName(name);
+
+            X9ECParameters x9 = x9B != null ? x9B : x9A;
+            if (!x9.getN().testBit(0))
+            {
+                continue;
+            }
+
+            BigInteger n = x9.getN();
+            ECPoint p = ECAlgorithms.referenceMultiply(x9.getG(), new BigInteger(n.bitLength() - 1, RANDOM));
+
+            for (int i = 0; i < TESTS_PER_CURVE; ++i)
+            {
+                BigInteger k = new BigInteger(n.bitLength(), RANDOM).mod(n);
+                if (i == 0)
+                {
+                    k = k.clearBit(0);
+                }
+                else if (i == 1)
+                {
+                    k = k.setBit(0);
+                }
+
+                ECPoint pRef = ECAlgorithms.referenceMultiply(p, k);
+
+                if (x9A != null)
+                {
+                    ECPoint pA = M.multiply(x9A.getCurve().importPoint(p), k);
+                    assertPointsEqual("Standard curve fixed-window failure", pRef, pA);
+                }
+
+                if (x9B != null)
+                {
+                    ECPoint pB = M.multiply(x9B.getCurve().importPoint(p), k);
+                    assertPointsEqual("Custom curve fixed-window failure", pRef, pB);
+                }
+            }
+        }
+    }
+
+    public void testEdgeScalars()
+    {
+        X9ECParameters x9 = CustomNamedCurves.getByName("secp256r1");
+        BigInteger n = x9.getN();
+        ECPoint g = x9.getG();
+
+        BigInteger[] scalars = new BigInteger[]{ ECConstants.ONE, ECConstants.TWO, ECConstants.THREE,
+            BigInteger.valueOf(32), n.subtract(ECConstants.ONE), n.subtract(ECConstants.TWO),
+            n.shiftRight(1), ECConstants.ONE.shiftLeft(n.bitLength() - 1) };
+
+        for (int width = 2; width <= 8; ++width)
+        {
+            FixedWindowMultiplier M = new FixedWindowMultiplier(width);
+
+            for (int i = 0; i < scalars.length; ++i)
+            {
+                BigInteger k = scalars[i];
+                assertPointsEqual("Fixed-window failure (width " + width + ")", ECAlgorithms.referenceMultiply(g, k),
+                    M.multiply(g, k));
+            }
+        }
+
+        assertTrue(new FixedWindowMultiplier().multiply(g, ECConstants.ZERO).isInfinity());
+    }
+
+    private List enumToList(Enumeration en)
+    {
+        List rv = new ArrayList();
+
+        while (en.hasMoreElements())
+        {
+            rv.add(en.nextElement());
+        }
+
+        return rv;
+    }
+
+    private void assertPointsEqual(String message, ECPoint a, ECPoint b)
+    {
+        // NOTE: We intentionally test points for equality in both directions
+        assertEquals(message, a, b);
+        assertEquals(message, b, a);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(FixedWindowMultiplierTest.class);
+    }
+}
@@ -6,9 +6,13 @@ import java.security.PrivateKey;
 import java.security.PrivilegedAction;
 import java.security.Provider;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,6 +47,7 @@ import org.bouncycastle.pqc.jcajce.provider.sphincs.Sphincs256KeyFactorySpi;
 import org.bouncycastle.pqc.jcajce.provider.sphincsplus.SPHINCSPlusKeyFactorySpi;
 import org.bouncycastle.pqc.jcajce.provider.xmss.XMSSKeyFactorySpi;
 import org.bouncycastle.pqc.jcajce.provider.xmss.XMSSMTKeyFactorySpi;
+import org.bouncycastle.util.Properties;
 import org.bouncycastle.util.Strings;
 
 /**
@@ -68,6 +73,11 @@ import org.bouncycastle.util.Strings;
  * most preferred).
  * <p>Note: JCE algorithm names should be upper-case only so the case insensitive
  * test for getInstance works.
+ * <p>
+ * If the property "org.bouncycastle.provider.lazy" is set to "true" (as a system or security property),
+ * the provider only registers the algorithms commonly used by TLS at construction time (see
+ * {@link #TLS_PROFILE}); the remaining algorithms are registered the first time a lookup via
+ * {@link #getService(String, String)}, {@link #getServices()}, or a key conversion fails to find them.
  */
 public final class BouncyCastleProvider extends Provider
     implements ConfigurableProvider
@@ -82,6 +92,35 @@ public final class BouncyCastleProvider extends Provider
 
     private static final Map keyInfoConverters = new HashMap();
 
+    /**
+     * Property to enable lazy registration of algorithms outside {@link #TLS_PROFILE}.
+     */
+    public static final String LAZY_LOADING = "org.bouncycastle.provider.lazy";
+
+    /**
+     * The algorithm groups registered at construction time when {@link #LAZY_LOADING} is set: those used by
+     * the TLS API's JCA crypto (digests, HMACs, TLS cipher suite ciphers, key exchange and signature
+     * algorithms, X.509, PKCS#12, and the default SecureRandom).
+     */
+    private static final Set<String> TLS_PROFILE = new HashSet<String>();
+
+    static
+    {
+        String[] names = new String[]{ "MD5", "SHA1", "SHA224", "SHA256", "SHA384", "SHA512", "SM3", "Poly1305",
+            "AES", "ARIA", "Camellia", "ChaCha", "DESede", "SEED", "SM4", "X509", "DSA", "DH", "EC", "RSA", "EdEC",
+            "PKCS12", "DRBG" };
+        for (int i = 0; i != names.length; i++)
+        {
+            TLS_PROFILE.add(names[i]);
+        }
+    }
+
+    /*
+     * Providers with lazily registered algorithms that haven't been loaded yet (needed by the static key
+     * conversion methods).
+     */
+    private static final List<BouncyCastleProvider> lazyProviders = new ArrayList<BouncyCastleProvider>();
+
     private static final Class revChkClass = ClassUtil.loadClass(BouncyCastleProvider.class, "java.security.cert.PKIXRevocationChecker");
 
     /*
@@ -160,6 +199,10 @@ public final class BouncyCastleProvider extends Provider
 
     private Map<String, Service> serviceMap = new ConcurrentHashMap<String, Service>();
 
+    // Entries are { packageName, serviceName }; guarded by 'this', and null once everything is loaded
+    private List<String[]> deferredServices = null;
+    private boolean deferredPQCKeys = false;
+
     /**
      * Construct a new provider.  This should only be required when
      * using runtime registration of the provider using the
@@ -181,6 +224,11 @@ public final class BouncyCastleProvider extends Provider
 
     private void setup()
     {
+        if (Properties.isOverrideSet(LAZY_LOADING))
+        {
+            this.deferredServices = new ArrayList<String[]>();
+        }
+
         loadAlgorithms(DIGEST_PACKAGE, DIGESTS);
 
         loadAlgorithms(SYMMETRIC_PACKAGE, SYMMETRIC_GENERIC);
@@ -197,7 +245,19 @@ public final class BouncyCastleProvider extends Provider
 
         loadAlgorithms(SECURE_RANDOM_PACKAGE, SECURE_RANDOMS);
 
-        loadPQCKeys();  // so we can handle certificates containing them.
+        if (null == deferredServices)
+        {
+            loadPQCKeys();  // so we can handle certificates containing them.
+        }
+        else
+        {
+            this.deferredPQCKeys = true;
+
+            synchronized (lazyProviders)
+            {
+                lazyProviders.add(this);
+            }
+        }
 
         //
         // X509Store
@@ -278,7 +338,20 @@ public final class BouncyCastleProvider extends Provider
                             Service service = BouncyCastleProvider.super.getService(type, algorithm);
                             if (service == null)
                             {
-                                return null;
+                                /*
+                                 * NOTE: Cipher lookups try the full transformation before the base
+                                 * algorithm, so a miss on a transformation isn't worth loading for.
+                                 */
+                                if (isCipherTransformation(type, algorithm) || !loadDeferred())
+                                {
+                                    return null;
+                                }
+
+                                service = BouncyCastleProvider.super.getService(type, algorithm);
+                                if (service == null)
+                                {
+                                    return null;
+                                }
                             }
                             serviceMap.put(key, service);
                             // remove legacy entry and swap to service entry
@@ -299,11 +372,83 @@ public final class BouncyCastleProvider extends Provider
         return service;
     }
 
+    private static boolean isCipherTransformation(String type, String algorithm)
+    {
+        return "Cipher".equals(type) && algorithm.indexOf('/') >= 0;
+    }
+
+    public Set<Service> getServices()
+    {
+        loadDeferred();
+
+        return super.getServices();
+    }
+
+    /**
+     * Register any algorithms whose registration was deferred by {@link #LAZY_LOADING}.
+     *
+     * @return true if anything was loaded, false otherwise.
+     */
+    private synchronized boolean loadDeferred()
+    {
+        if (null == deferredServices)
+        {
+            return false;
+        }
+
+        final List<String[]> services = deferredServices;
+        final boolean pqcKeys = deferredPQCKeys;
+
+        this.deferredServices = null;
+        this.deferredPQCKeys = false;
+
+        synchronized (lazyProviders)
+        {
+            lazyProviders.remove(this);
+        }
+
+        AccessController.doPrivileged(new PrivilegedAction()
+        {
+            public Object run()
+            {
+                for (int i = 0; i != services.size(); i++)
+                {
+                    String[] entry = services.get(i);
+                    loadServiceClass(entry[0], entry[1]);
+                }
+
+                if (pqcKeys)
+                {
+                    loadPQCKeys();
+                }
+                return null;
+            }
+        });
+
+        return true;
+    }
+
+    private static boolean loadDeferredProviders()
+    {
+        BouncyCastleProvider[] providers;
+        synchronized (lazyProviders)
+        {
+            providers = lazyProviders.toArray(new BouncyCastleProvider[lazyProviders.size()]);
+        }
+
+        boolean loaded = false;
+        for (int i = 0; i != providers.length; i++)
+        {
+            loaded |= providers[i].loadDeferred();
+        }
+        return loaded;
+    }
+
     private void loadAlgorithms(String packageName, String[] names)
     {
         for (int i = 0; i != names.length; i++)
         {
-            loadServiceClass(packageName, names[i]);
+            loadOrDeferServiceClass(packageName, names[i]);
         }
     }
 
@@ -316,7 +461,7 @@ public final class BouncyCastleProvider extends Provider
             {
                 CryptoServicesRegistrar.checkConstraints(service);
 
-                loadServiceClass(packageName, service.getServiceName());
+                loadOrDeferServiceClass(packageName, service.getServiceName());
             }
             catch (CryptoServiceConstraintsException e)
             {
@@ -328,6 +473,18 @@ public final class BouncyCastleProvider extends Provider
         }
     }
 
+    private void loadOrDeferServiceClass(String packageName, String serviceName)
+    {
+        if (null != deferredServices && !TLS_PROFILE.contains(serviceName))
+        {
+            deferredServices.add(new String[]{ packageName, serviceName });
+        }
+        else
+        {
+            loadServiceClass(packageName, serviceName);
+        }
+    }
+
     private void loadServiceClass(String packageName, String serviceName)
     {
         Class clazz = ClassUtil.loadClass(BouncyCastleProvider.class, packageName + serviceName + "$Mappings");
@@ -444,7 +601,30 @@ public final class BouncyCastleProvider extends Provider
 
     public boolean hasAlgorithm(String type, String name)
     {
-        return containsKey(type + "." + name) || containsKey("Alg.Alias." + type + "." + name);
+        return containsKey(type + "." + name) || containsKey("Alg.Alias." + type + "." + name)
+            || isDeferredDigest(type, name);
+    }
+
+    /*
+     * Some mappings (e.g. RSA) only register combined algorithms when the digest is available, so a
+     * deferred digest has to be reported as present without loading it.
+     */
+    private synchronized boolean isDeferredDigest(String type, String name)
+    {
+        if (null == deferredServices || !"MessageDigest".equals(type))
+        {
+            return false;
+        }
+
+        for (int i = 0; i != deferredServices.size(); i++)
+        {
+            String[] entry = deferredServices.get(i);
+            if (DIGEST_PACKAGE.equals(entry[0]) && entry[1].equalsIgnoreCase(name))
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void addAlgorithm(String key, String value)
@@ -486,7 +666,7 @@ public final class BouncyCastleProvider extends Provider
 
     public AsymmetricKeyInfoConverter getKeyInfoConverter(ASN1ObjectIdentifier oid)
     {
-        return (AsymmetricKeyInfoConverter)keyInfoConverters.get(oid);
+        return getAsymmetricKeyInfoConverter(oid);
     }
 
     public void addAttributes(String key, Map<String, String> attributeMap)
@@ -508,10 +688,21 @@ public final class BouncyCastleProvider extends Provider
 
     private static AsymmetricKeyInfoConverter getAsymmetricKeyInfoConverter(ASN1ObjectIdentifier algorithm)
     {
+        AsymmetricKeyInfoConverter converter;
         synchronized (keyInfoConverters)
         {
-            return (AsymmetricKeyInfoConverter)keyInfoConverters.get(algorithm);
+            converter = (AsymmetricKeyInfoConverter)keyInfoConverters.get(algorithm);
         }
+
+        if (converter == null && loadDeferredProviders())
+        {
+            synchronized (keyInfoConverters)
+            {
+                converter = (AsymmetricKeyInfoConverter)keyInfoConverters.get(algorithm);
+            }
+        }
+
+        return converter;
     }
 
     public static PublicKey getPublicKey(SubjectPublicKeyInfo publicKeyInfo)
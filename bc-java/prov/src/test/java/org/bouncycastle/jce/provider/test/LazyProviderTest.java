@@ -0,0 +1,70 @@
+package org.bouncycastle.jce.provider.test;
+
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.util.Properties;
+import org.bouncycastle.util.test.SimpleTest;
+
+/**
+ * Check that a provider created with lazy loading finds both the TLS algorithms registered up front
+ * and those whose registration was deferred.
+ */
+public class LazyProviderTest
+    extends SimpleTest
+{
+    public String getName()
+    {
+        return "LazyProvider";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        BouncyCastleProvider eager = new BouncyCastleProvider();
+        BouncyCastleProvider lazy;
+
+        Properties.setThreadOverride(BouncyCastleProvider.LAZY_LOADING, true);
+        try
+        {
+            lazy = new BouncyCastleProvider();
+        }
+        finally
+        {
+            Properties.removeThreadOverride(BouncyCastleProvider.LAZY_LOADING);
+        }
+
+        int initialSize = lazy.size();
+        isTrue("lazy provider registered everything up front", initialSize < eager.size());
+
+        MessageDigest.getInstance("SHA-256", lazy);
+        Cipher.getInstance("AES/GCM/NoPadding", lazy);
+        Cipher.getInstance("ChaCha20-Poly1305", lazy);
+        Mac.getInstance("HmacSHA384", lazy);
+        Signature.getInstance("SHA256withECDSA", lazy);
+        Signature.getInstance("Ed25519", lazy);
+
+        isEquals("TLS lookup loaded deferred algorithms", initialSize, lazy.size());
+
+        // Deferred, including RSA signatures with deferred digests
+        Cipher.getInstance("Twofish/CBC/NoPadding", lazy);
+        Signature.getInstance("RIPEMD160withRSA", lazy);
+        MessageDigest.getInstance("Whirlpool", lazy);
+
+        isEquals("deferred algorithms not all loaded", eager.size(), lazy.size());
+        isEquals(eager.getServices().size(), lazy.getServices().size());
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        Security.addProvider(new BouncyCastleProvider());
+
+        runTest(new LazyProviderTest());
+    }
+}
@@ -93,7 +93,8 @@ public class RegressionTest
         new SipHash128Test(),
         new XOFTest(),
         new XIESTest(),
-        new CertLocaleTest()
+        new CertLocaleTest(),
+        new LazyProviderTest()
     };
 
     public static void main(String[] args)
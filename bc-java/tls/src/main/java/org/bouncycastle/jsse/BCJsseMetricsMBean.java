@@ -0,0 +1,117 @@
+package org.bouncycastle.jsse;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface for the runtime statistics collected by the BCJSSE provider. The MBean is
+ * registered under the name {@value #OBJECT_NAME} when the system property
+ * "org.bouncycastle.jsse.enableMetrics" is set to "true".
+ * <p>
+ * Counters are cumulative since provider initialization (or the last {@link #reset()}). Counts broken down
+ * by protocol version, cipher suite, named group or alert description are returned as {@link TabularData}
+ * (so that generic JMX clients can read them), with one row of type {@link #COUNT_TYPE_NAME} per standard
+ * name, having the items "name" (a String, also the index) and "count" (a Long).
+ * </p>
+ */
+public interface BCJsseMetricsMBean
+{
+    String OBJECT_NAME = "org.bouncycastle.jsse:type=Metrics";
+
+    String COUNT_TYPE_NAME = "org.bouncycastle.jsse.Count";
+
+    long getClientHandshakesStarted();
+
+    long getClientHandshakesCompleted();
+
+    long getClientHandshakesFailed();
+
+    long getServerHandshakesStarted();
+
+    long getServerHandshakesCompleted();
+
+    long getServerHandshakesFailed();
+
+    /**
+     * @return The number of handshakes currently in progress (both roles).
+     */
+    long getHandshakesInProgress();
+
+    /**
+     * @return The upper bounds (inclusive, in milliseconds) of the latency histogram buckets. The
+     *         histograms have one additional, final bucket for all larger values.
+     */
+    long[] getHandshakeLatencyBucketsMillis();
+
+    long[] getClientHandshakeLatencyHistogram();
+
+    long[] getServerHandshakeLatencyHistogram();
+
+    /**
+     * @return The total handshake latency (in microseconds) of all completed client handshakes.
+     */
+    long getClientHandshakeLatencyTotalMicros();
+
+    /**
+     * @return The total handshake latency (in microseconds) of all completed server handshakes.
+     */
+    long getServerHandshakeLatencyTotalMicros();
+
+    TabularData getHandshakesByProtocol();
+
+    TabularData getHandshakesByCipherSuite();
+
+    TabularData getHandshakesByNamedGroup();
+
+    long getHelloRetryRequests();
+
+    long getResumedHandshakes();
+
+    long getSessionCacheHits();
+
+    long getSessionCacheMisses();
+
+    /**
+     * @return The fraction of session cache lookups that found a session, or 0 if there were none.
+     */
+    double getSessionCacheHitRate();
+
+    /**
+     * @return The total record-layer bytes sent by the local endpoint during completed handshakes.
+     */
+    long getHandshakeBytesSent();
+
+    /**
+     * @return The mean record-layer bytes sent by the local endpoint per completed handshake.
+     */
+    double getHandshakeBytesSentPerHandshake();
+
+    /**
+     * @return The fatal alerts (raised or received) that terminated a handshake, by alert description.
+     */
+    TabularData getHandshakeFailureReasons();
+
+    TabularData getAlertsRaised();
+
+    TabularData getAlertsReceived();
+
+    /**
+     * @return The tier currently in effect for load-adaptive server key share selection (0 is the most
+     *         expensive tier), or -1 if load-adaptive selection is not enabled.
+     */
+    int getServerKeyShareTier();
+
+    long getServerKeyShareTierTransitions();
+
+    /**
+     * @return The current server load signal used for load-adaptive key share selection (1.0 is nominal
+     *         capacity), or 0 if load-adaptive selection is not enabled.
+     */
+    double getServerLoad();
+
+    /**
+     * @return The completed server handshakes by the load-adaptive key share tier of the negotiated group.
+     */
+    TabularData getServerHandshakesByKeyShareTier();
+
+    void reset();
+}
@@ -152,6 +152,9 @@ public class BouncyCastleJsseProvider
 
     private boolean configure(final boolean fipsMode, final JcaTlsCryptoProvider cryptoProvider)
     {
+        // NOTE: Registers the metrics MBean (if enabled) as soon as the provider is created
+        ProvJsseMetrics.getInstance();
+
         // TODO[jsse]: should X.509 be an alias.
         addAlgorithmImplementation("KeyManagerFactory.X.509", "org.bouncycastle.jsse.provider.KeyManagerFactory", new EngineCreator()
         {
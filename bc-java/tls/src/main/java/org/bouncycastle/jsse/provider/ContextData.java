@@ -1,16 +1,28 @@
 package org.bouncycastle.jsse.provider;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.bouncycastle.jsse.BCX509ExtendedKeyManager;
 import org.bouncycastle.jsse.BCX509ExtendedTrustManager;
+import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.ProtocolVersion;
 import org.bouncycastle.tls.SignatureAndHashAlgorithm;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsDHConfig;
+import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsPQCConfig;
+import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCrypto;
 
 final class ContextData
 {
+    private static final Logger LOG = Logger.getLogger(ContextData.class.getName());
+
     private final ProvSSLContextSpi context;
     private final JcaTlsCrypto crypto;
     private final BCX509ExtendedKeyManager x509KeyManager;
@@ -93,4 +105,91 @@ final class ContextData
     {
         return x509TrustManager;
     }
+
+    /**
+     * Perform ahead of time the one-off work that would otherwise slow down the first handshakes: capability
+     * checks for the default cipher suites, a loopback key exchange for each configured named group (loading
+     * the engine classes and building any precomputed tables), and loading of the trust anchors.
+     */
+    void warmUp()
+    {
+        long startNanos = System.nanoTime();
+
+        warmUpCipherSuites(context.defaultCipherSuitesClient);
+        warmUpCipherSuites(context.defaultCipherSuitesServer);
+
+        // NOTE: Finite field groups have no precomputation, so one is enough to load the classes
+        boolean finiteFieldDone = false;
+        for (int namedGroup : NamedGroupInfo.getEnabledCandidates(namedGroups))
+        {
+            if (NamedGroup.refersToASpecificFiniteField(namedGroup))
+            {
+                if (finiteFieldDone)
+                {
+                    continue;
+                }
+                finiteFieldDone = true;
+            }
+
+            try
+            {
+                warmUpKeyExchange(namedGroup);
+            }
+            catch (Exception e)
+            {
+                LOG.log(Level.FINE, "Warm-up key exchange failed for " + NamedGroup.getText(namedGroup), e);
+            }
+        }
+
+        x509TrustManager.getAcceptedIssuers();
+
+        if (LOG.isLoggable(Level.FINE))
+        {
+            LOG.fine("SSLContext warm-up took " + ((System.nanoTime() - startNanos) / 1000000L) + "ms");
+        }
+    }
+
+    private void warmUpCipherSuites(String[] cipherSuiteNames)
+    {
+        for (String cipherSuiteName : cipherSuiteNames)
+        {
+            CipherSuiteInfo cipherSuiteInfo = context.supportedCipherSuites.get(cipherSuiteName);
+            if (null != cipherSuiteInfo)
+            {
+                TlsUtils.isSupportedCipherSuite(crypto, cipherSuiteInfo.getCipherSuite());
+            }
+        }
+    }
+
+    private void warmUpKeyExchange(int namedGroup) throws IOException
+    {
+        TlsAgreement client, server;
+        if (NamedGroup.refersToASpecificCurve(namedGroup))
+        {
+            TlsECConfig ecConfig = new TlsECConfig(namedGroup);
+            client = crypto.createECDomain(ecConfig).createECDH();
+            server = crypto.createECDomain(ecConfig).createECDH();
+        }
+        else if (NamedGroup.refersToASpecificFiniteField(namedGroup))
+        {
+            TlsDHConfig dhConfig = new TlsDHConfig(namedGroup, true);
+            client = crypto.createDHDomain(dhConfig).createDH();
+            server = crypto.createDHDomain(dhConfig).createDH();
+        }
+        else if (NamedGroup.refersToASpecificPQC(namedGroup))
+        {
+            client = crypto.createPQCDomain(new TlsPQCConfig(namedGroup, TlsPQCKemMode.PQC_KEM_CLIENT)).createPQC();
+            server = crypto.createPQCDomain(new TlsPQCConfig(namedGroup, TlsPQCKemMode.PQC_KEM_SERVER)).createPQC();
+        }
+        else
+        {
+            return;
+        }
+
+        server.receivePeerValue(client.generateEphemeral());
+        client.receivePeerValue(server.generateEphemeral());
+
+        client.calculateSecret();
+        server.calculateSecret();
+    }
 }
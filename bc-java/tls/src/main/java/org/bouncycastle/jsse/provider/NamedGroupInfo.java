@@ -248,6 +248,26 @@ class NamedGroupInfo
         return maxBits;
     }
 
+    static int[] getEnabledCandidates(PerContext perContext)
+    {
+        int[] candidates = perContext.candidates;
+        int[] result = new int[candidates.length];
+        int count = 0;
+        for (int candidate : candidates)
+        {
+            NamedGroupInfo namedGroupInfo = perContext.index.get(candidate);
+            if (null != namedGroupInfo && namedGroupInfo.isEnabled())
+            {
+                result[count++] = candidate;
+            }
+        }
+        if (count < result.length)
+        {
+            result = Arrays.copyOf(result, count);
+        }
+        return result;
+    }
+
     static NamedGroupInfo getNamedGroup(PerContext perContext, int namedGroup)
     {
         return perContext.index.get(namedGroup);
@@ -420,7 +440,7 @@ class NamedGroupInfo
         return perConnection.local.values();
     }
 
-    private static int getNamedGroupByName(String name)
+    static int getNamedGroupByName(String name)
     {
         for (All all : All.values())
         {
@@ -0,0 +1,521 @@
+package org.bouncycastle.jsse.provider;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.bouncycastle.jsse.BCJsseMetricsMBean;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.util.Integers;
+
+/**
+ * Collects handshake statistics for all BCJSSE connections in the process. Collection (and registration of
+ * the corresponding MBean) is only enabled when the "org.bouncycastle.jsse.enableMetrics" system property
+ * is "true"; otherwise {@link #getInstance()} returns null and callers skip recording entirely.
+ */
+class ProvJsseMetrics
+    implements BCJsseMetricsMBean
+{
+    private static final Logger LOG = Logger.getLogger(ProvJsseMetrics.class.getName());
+
+    private static final long[] LATENCY_BUCKETS_MILLIS = new long[]{ 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000,
+        5000 };
+
+    private static final String[] COUNT_ITEM_NAMES = new String[]{ "name", "count" };
+
+    private static final CompositeType COUNT_TYPE;
+    private static final TabularType COUNTS_TYPE;
+
+    static
+    {
+        try
+        {
+            COUNT_TYPE = new CompositeType(COUNT_TYPE_NAME, "A count by standard name", COUNT_ITEM_NAMES,
+                new String[]{ "Standard name", "Count" }, new OpenType[]{ SimpleType.STRING, SimpleType.LONG });
+            COUNTS_TYPE = new TabularType(COUNT_TYPE_NAME + "s", "Counts by standard name", COUNT_TYPE,
+                new String[]{ "name" });
+        }
+        catch (OpenDataException e)
+        {
+            throw new IllegalStateException("Failed to create metrics open types: " + e.getMessage());
+        }
+    }
+
+    private static final ProvJsseMetrics INSTANCE = createInstance();
+
+    private static ProvJsseMetrics createInstance()
+    {
+        if (!PropertyUtils.getBooleanSystemProperty("org.bouncycastle.jsse.enableMetrics", false))
+        {
+            return null;
+        }
+
+        final ProvJsseMetrics metrics = new ProvJsseMetrics();
+
+        AccessController.doPrivileged(new PrivilegedAction<Object>()
+        {
+            public Object run()
+            {
+                try
+                {
+                    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+                    ObjectName objectName = new ObjectName(OBJECT_NAME);
+                    if (!mbeanServer.isRegistered(objectName))
+                    {
+                        mbeanServer.registerMBean(new StandardMBean(metrics, BCJsseMetricsMBean.class), objectName);
+                    }
+                }
+                catch (Exception e)
+                {
+                    LOG.log(Level.WARNING, "Failed to register BCJSSE metrics MBean", e);
+                }
+                return null;
+            }
+        });
+
+        return metrics;
+    }
+
+    static ProvJsseMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private static long[] getHistogram(StripedCounter[] histogram)
+    {
+        long[] result = new long[histogram.length];
+        for (int i = 0; i < histogram.length; ++i)
+        {
+            result[i] = histogram[i].sum();
+        }
+        return result;
+    }
+
+    private static int getLatencyBucket(long latencyMillis)
+    {
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MILLIS.length && latencyMillis > LATENCY_BUCKETS_MILLIS[bucket])
+        {
+            ++bucket;
+        }
+        return bucket;
+    }
+
+    private static StripedCounter[] createHistogram()
+    {
+        StripedCounter[] histogram = new StripedCounter[LATENCY_BUCKETS_MILLIS.length + 1];
+        for (int i = 0; i < histogram.length; ++i)
+        {
+            histogram[i] = new StripedCounter();
+        }
+        return histogram;
+    }
+
+    private static <K> void increment(ConcurrentMap<K, StripedCounter> counters, K key)
+    {
+        StripedCounter counter = counters.get(key);
+        if (null == counter)
+        {
+            StripedCounter newCounter = new StripedCounter();
+            counter = counters.putIfAbsent(key, newCounter);
+            if (null == counter)
+            {
+                counter = newCounter;
+            }
+        }
+        counter.increment();
+    }
+
+    private static void reset(Map<?, StripedCounter> counters)
+    {
+        for (StripedCounter counter : counters.values())
+        {
+            counter.reset();
+        }
+    }
+
+    private static void reset(StripedCounter[] counters)
+    {
+        for (int i = 0; i < counters.length; ++i)
+        {
+            counters[i].reset();
+        }
+    }
+
+    private final StripedCounter clientStarted = new StripedCounter();
+    private final StripedCounter clientCompleted = new StripedCounter();
+    private final StripedCounter clientFailed = new StripedCounter();
+    private final StripedCounter serverStarted = new StripedCounter();
+    private final StripedCounter serverCompleted = new StripedCounter();
+    private final StripedCounter serverFailed = new StripedCounter();
+    private final StripedCounter inProgress = new StripedCounter();
+    private final StripedCounter clientLatencyMicros = new StripedCounter();
+    private final StripedCounter serverLatencyMicros = new StripedCounter();
+    private final StripedCounter[] clientLatencyHistogram = createHistogram();
+    private final StripedCounter[] serverLatencyHistogram = createHistogram();
+    private final StripedCounter helloRetryRequests = new StripedCounter();
+    private final StripedCounter resumed = new StripedCounter();
+    private final StripedCounter sessionCacheHits = new StripedCounter();
+    private final StripedCounter sessionCacheMisses = new StripedCounter();
+    private final StripedCounter handshakeBytesSent = new StripedCounter();
+
+    private final ConcurrentMap<ProtocolVersion, StripedCounter> byProtocol =
+        new ConcurrentHashMap<ProtocolVersion, StripedCounter>();
+    private final ConcurrentMap<Integer, StripedCounter> byCipherSuite =
+        new ConcurrentHashMap<Integer, StripedCounter>();
+    private final ConcurrentMap<Integer, StripedCounter> byNamedGroup =
+        new ConcurrentHashMap<Integer, StripedCounter>();
+    private final ConcurrentMap<Short, StripedCounter> failureReasons = new ConcurrentHashMap<Short, StripedCounter>();
+    private final ConcurrentMap<Short, StripedCounter> alertsRaised = new ConcurrentHashMap<Short, StripedCounter>();
+    private final ConcurrentMap<Short, StripedCounter> alertsReceived = new ConcurrentHashMap<Short, StripedCounter>();
+
+    ProvJsseMetrics()
+    {
+    }
+
+    /**
+     * @return the start time of the handshake (from {@link System#nanoTime()}), to be passed back to
+     *         {@link #handshakeComplete(boolean, long, SecurityParameters)}.
+     */
+    long handshakeBeginning(boolean isServer)
+    {
+        (isServer ? serverStarted : clientStarted).increment();
+        inProgress.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * @return the handshake latency in microseconds.
+     */
+    long handshakeComplete(boolean isServer, long startNanos, SecurityParameters securityParameters)
+    {
+        long latencyMicros = Math.max(0L, (System.nanoTime() - startNanos) / 1000L);
+
+        inProgress.add(-1L);
+
+        if (isServer)
+        {
+            serverCompleted.increment();
+            serverLatencyMicros.add(latencyMicros);
+            serverLatencyHistogram[getLatencyBucket(latencyMicros / 1000L)].increment();
+        }
+        else
+        {
+            clientCompleted.increment();
+            clientLatencyMicros.add(latencyMicros);
+            clientLatencyHistogram[getLatencyBucket(latencyMicros / 1000L)].increment();
+        }
+
+        ProtocolVersion negotiatedVersion = securityParameters.getNegotiatedVersion();
+        if (null != negotiatedVersion)
+        {
+            increment(byProtocol, negotiatedVersion);
+        }
+
+        increment(byCipherSuite, Integers.valueOf(securityParameters.getCipherSuite()));
+
+        int negotiatedGroup = securityParameters.getNegotiatedGroup();
+        if (negotiatedGroup >= 0)
+        {
+            increment(byNamedGroup, Integers.valueOf(negotiatedGroup));
+        }
+
+        if (securityParameters.isHelloRetryRequest())
+        {
+            helloRetryRequests.increment();
+        }
+        if (securityParameters.isResumedSession())
+        {
+            resumed.increment();
+        }
+
+        handshakeBytesSent.add(securityParameters.getHandshakeBytesSent());
+
+        return latencyMicros;
+    }
+
+    void handshakeFailed(boolean isServer, short alertDescription)
+    {
+        inProgress.add(-1L);
+
+        (isServer ? serverFailed : clientFailed).increment();
+
+        increment(failureReasons, Short.valueOf(alertDescription));
+    }
+
+    void alertRaised(short alertDescription)
+    {
+        increment(alertsRaised, Short.valueOf(alertDescription));
+    }
+
+    void alertReceived(short alertDescription)
+    {
+        increment(alertsReceived, Short.valueOf(alertDescription));
+    }
+
+    void sessionCacheLookup(boolean hit)
+    {
+        (hit ? sessionCacheHits : sessionCacheMisses).increment();
+    }
+
+    public long getClientHandshakesStarted()
+    {
+        return clientStarted.sum();
+    }
+
+    public long getClientHandshakesCompleted()
+    {
+        return clientCompleted.sum();
+    }
+
+    public long getClientHandshakesFailed()
+    {
+        return clientFailed.sum();
+    }
+
+    public long getServerHandshakesStarted()
+    {
+        return serverStarted.sum();
+    }
+
+    public long getServerHandshakesCompleted()
+    {
+        return serverCompleted.sum();
+    }
+
+    public long getServerHandshakesFailed()
+    {
+        return serverFailed.sum();
+    }
+
+    public long getHandshakesInProgress()
+    {
+        return Math.max(0L, inProgress.sum());
+    }
+
+    public long[] getHandshakeLatencyBucketsMillis()
+    {
+        return LATENCY_BUCKETS_MILLIS.clone();
+    }
+
+    public long[] getClientHandshakeLatencyHistogram()
+    {
+        return getHistogram(clientLatencyHistogram);
+    }
+
+    public long[] getServerHandshakeLatencyHistogram()
+    {
+        return getHistogram(serverLatencyHistogram);
+    }
+
+    public long getClientHandshakeLatencyTotalMicros()
+    {
+        return clientLatencyMicros.sum();
+    }
+
+    public long getServerHandshakeLatencyTotalMicros()
+    {
+        return serverLatencyMicros.sum();
+    }
+
+    public TabularData getHandshakesByProtocol()
+    {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<ProtocolVersion, StripedCounter> entry : byProtocol.entrySet())
+        {
+            result.put(ProvSSLContextSpi.getProtocolVersionName(entry.getKey()), Long.valueOf(entry.getValue().sum()));
+        }
+        return toTabularData(result);
+    }
+
+    public TabularData getHandshakesByCipherSuite()
+    {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Integer, StripedCounter> entry : byCipherSuite.entrySet())
+        {
+            String name = ProvSSLContextSpi.getCipherSuiteName(entry.getKey().intValue());
+            result.put(name, Long.valueOf(entry.getValue().sum()));
+        }
+        return toTabularData(result);
+    }
+
+    public TabularData getHandshakesByNamedGroup()
+    {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Integer, StripedCounter> entry : byNamedGroup.entrySet())
+        {
+            result.put(NamedGroup.getName(entry.getKey().intValue()), Long.valueOf(entry.getValue().sum()));
+        }
+        return toTabularData(result);
+    }
+
+    public long getHelloRetryRequests()
+    {
+        return helloRetryRequests.sum();
+    }
+
+    public long getResumedHandshakes()
+    {
+        return resumed.sum();
+    }
+
+    public long getSessionCacheHits()
+    {
+        return sessionCacheHits.sum();
+    }
+
+    public long getSessionCacheMisses()
+    {
+        return sessionCacheMisses.sum();
+    }
+
+    public double getSessionCacheHitRate()
+    {
+        long hits = sessionCacheHits.sum(), lookups = hits + sessionCacheMisses.sum();
+        return lookups <= 0L ? 0.0 : (double)hits / lookups;
+    }
+
+    public long getHandshakeBytesSent()
+    {
+        return handshakeBytesSent.sum();
+    }
+
+    public double getHandshakeBytesSentPerHandshake()
+    {
+        long completed = clientCompleted.sum() + serverCompleted.sum();
+        return completed <= 0L ? 0.0 : (double)handshakeBytesSent.sum() / completed;
+    }
+
+    public TabularData getHandshakeFailureReasons()
+    {
+        return getAlertCounts(failureReasons);
+    }
+
+    public TabularData getAlertsRaised()
+    {
+        return getAlertCounts(alertsRaised);
+    }
+
+    public TabularData getAlertsReceived()
+    {
+        return getAlertCounts(alertsReceived);
+    }
+
+    public int getServerKeyShareTier()
+    {
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        return null == loadPolicy ? -1 : loadPolicy.getCurrentTier();
+    }
+
+    public long getServerKeyShareTierTransitions()
+    {
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        return null == loadPolicy ? 0L : loadPolicy.getTierTransitions();
+    }
+
+    public double getServerLoad()
+    {
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        return null == loadPolicy ? 0.0 : loadPolicy.getLoad();
+    }
+
+    public TabularData getServerHandshakesByKeyShareTier()
+    {
+        Map<String, Long> result = new TreeMap<String, Long>();
+
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        if (null != loadPolicy)
+        {
+            long[] counts = loadPolicy.getNegotiatedByTier();
+            for (int i = 0; i < counts.length - 1; ++i)
+            {
+                result.put(loadPolicy.getTierDescription(i), Long.valueOf(counts[i]));
+            }
+            result.put("other", Long.valueOf(counts[counts.length - 1]));
+        }
+
+        return toTabularData(result);
+    }
+
+    public void reset()
+    {
+        clientStarted.reset();
+        clientCompleted.reset();
+        clientFailed.reset();
+        serverStarted.reset();
+        serverCompleted.reset();
+        serverFailed.reset();
+        clientLatencyMicros.reset();
+        serverLatencyMicros.reset();
+        reset(clientLatencyHistogram);
+        reset(serverLatencyHistogram);
+        helloRetryRequests.reset();
+        resumed.reset();
+        sessionCacheHits.reset();
+        sessionCacheMisses.reset();
+        handshakeBytesSent.reset();
+        reset(byProtocol);
+        reset(byCipherSuite);
+        reset(byNamedGroup);
+        reset(failureReasons);
+        reset(alertsRaised);
+        reset(alertsReceived);
+
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        if (null != loadPolicy)
+        {
+            loadPolicy.resetMetrics();
+        }
+
+        // NOTE: 'inProgress' is a gauge, not a cumulative counter, so it is not reset
+    }
+
+    private static TabularData getAlertCounts(Map<Short, StripedCounter> counters)
+    {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Short, StripedCounter> entry : counters.entrySet())
+        {
+            result.put(AlertDescription.getName(entry.getKey().shortValue()), Long.valueOf(entry.getValue().sum()));
+        }
+        return toTabularData(result);
+    }
+
+    private static TabularData toTabularData(Map<String, Long> counts)
+    {
+        TabularDataSupport result = new TabularDataSupport(COUNTS_TYPE);
+        try
+        {
+            for (Map.Entry<String, Long> entry : counts.entrySet())
+            {
+                result.put(new CompositeDataSupport(COUNT_TYPE, COUNT_ITEM_NAMES,
+                    new Object[]{ entry.getKey(), entry.getValue() }));
+            }
+        }
+        catch (OpenDataException e)
+        {
+            throw new IllegalStateException("Failed to create metrics data: " + e.getMessage());
+        }
+        return result;
+    }
+}
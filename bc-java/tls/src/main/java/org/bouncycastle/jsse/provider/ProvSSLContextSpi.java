@@ -53,6 +53,8 @@ class ProvSSLContextSpi
     private static final String PROPERTY_CLIENT_PROTOCOLS = "jdk.tls.client.protocols";
     private static final String PROPERTY_SERVER_PROTOCOLS = "jdk.tls.server.protocols";
 
+    private static final String PROPERTY_WARM_UP = "org.bouncycastle.jsse.warmUp";
+
     private static final Set<BCCryptoPrimitive> TLS_CRYPTO_PRIMITIVES_BC = JsseUtils.KEY_AGREEMENT_CRYPTO_PRIMITIVES_BC;
 
     /*
@@ -907,6 +909,11 @@ class ProvSSLContextSpi
         crypto.getSecureRandom().nextInt();
 
         this.contextData = new ContextData(this, crypto, x509KeyManager, x509TrustManager);
+
+        if (PropertyUtils.getBooleanSystemProperty(PROPERTY_WARM_UP, false))
+        {
+            contextData.warmUp();
+        }
     }
 
     protected synchronized ContextData getContextData()
@@ -69,7 +69,9 @@ class ProvSSLSessionContext
     {
         processQueue();
 
-        return accessSession(mapGet(sessionsByID, makeSessionID(sessionID)));
+        ProvSSLSession session = accessSession(mapGet(sessionsByID, makeSessionID(sessionID)));
+        reportLookup(session);
+        return session;
     }
 
     synchronized ProvSSLSession getSessionImpl(String hostName, int port)
@@ -83,6 +85,7 @@ class ProvSSLSessionContext
             // NOTE: For the current simple cache implementation, need to 'access' the sessionByIDs entry
             sessionsByID.get(sessionEntry.getSessionID());
         }
+        reportLookup(session);
         return session;
     }
 
@@ -324,6 +327,15 @@ class ProvSSLSessionContext
         }
     }
 
+    private static void reportLookup(ProvSSLSession session)
+    {
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            metrics.sessionCacheLookup(null != session);
+        }
+    }
+
     private static <K, V> V mapGet(Map<K, V> map, K key)
     {
         if (map == null)
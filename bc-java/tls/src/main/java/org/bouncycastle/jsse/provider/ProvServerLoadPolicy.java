@@ -0,0 +1,245 @@
+package org.bouncycastle.jsse.provider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.bouncycastle.tls.HandshakeLoadMonitor;
+import org.bouncycastle.tls.LoadAdaptiveNamedGroupSelector;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.TlsLoadMonitor;
+import org.bouncycastle.tls.TlsNamedGroupSelector;
+
+/**
+ * Process-wide load-adaptive key share policy for BCJSSE servers. Only enabled when the
+ * "org.bouncycastle.jsse.server.keyShareTiers" system property is set, to a list of tiers separated by
+ * ';', each a list of named groups separated by ',' (most expensive tier first, e.g.
+ * "secp521Kyber1024,secp384Kyber768;x25519Kyber768;x25519Kyber512"). Otherwise {@link #getInstance()}
+ * returns null and servers use the default key share selection.
+ */
+class ProvServerLoadPolicy
+{
+    private static final Logger LOG = Logger.getLogger(ProvServerLoadPolicy.class.getName());
+
+    private static final String PROPERTY_KEY_SHARE_TIERS = "org.bouncycastle.jsse.server.keyShareTiers";
+
+    private static final ProvServerLoadPolicy INSTANCE = createInstance();
+
+    private static ProvServerLoadPolicy createInstance()
+    {
+        String tiersValue = PropertyUtils.getStringSystemProperty(PROPERTY_KEY_SHARE_TIERS);
+        if (null == tiersValue)
+        {
+            return null;
+        }
+
+        int[][] tiers = parseTiers(tiersValue);
+        if (null == tiers)
+        {
+            LOG.warning("'" + PROPERTY_KEY_SHARE_TIERS + "' contains no usable tiers; load-adaptive key share "
+                + "selection disabled");
+            return null;
+        }
+
+        int maxConcurrentHandshakes = PropertyUtils.getIntegerSystemProperty(
+            "org.bouncycastle.jsse.server.maxConcurrentHandshakes", 64, 1, Integer.MAX_VALUE);
+        int targetLatencyMillis = PropertyUtils.getIntegerSystemProperty(
+            "org.bouncycastle.jsse.server.targetHandshakeLatencyMillis", 50, 1, Integer.MAX_VALUE);
+        int minDwellMillis = PropertyUtils.getIntegerSystemProperty(
+            "org.bouncycastle.jsse.server.keyShareTierDwellMillis",
+            (int)LoadAdaptiveNamedGroupSelector.DEFAULT_MIN_DWELL_MILLIS, 0, Integer.MAX_VALUE);
+
+        HandshakeLoadMonitor loadMonitor = new HandshakeLoadMonitor(maxConcurrentHandshakes, targetLatencyMillis,
+            createSystemLoadMonitor());
+
+        LoadAdaptiveNamedGroupSelector selector = new LoadAdaptiveNamedGroupSelector(tiers, loadMonitor,
+            LoadAdaptiveNamedGroupSelector.DEFAULT_DEGRADE_THRESHOLD,
+            LoadAdaptiveNamedGroupSelector.DEFAULT_RESTORE_THRESHOLD, minDwellMillis);
+
+        return new ProvServerLoadPolicy(loadMonitor, selector);
+    }
+
+    /*
+     * NOTE: OperatingSystemMXBean.getSystemLoadAverage() is only available from JDK 1.6, so we look it up
+     * reflectively. The load average is normalized by the number of processors.
+     */
+    private static TlsLoadMonitor createSystemLoadMonitor()
+    {
+        final Method getSystemLoadAverage = ReflectionUtil.getMethod("java.lang.management.OperatingSystemMXBean",
+            "getSystemLoadAverage");
+        if (null == getSystemLoadAverage)
+        {
+            return null;
+        }
+
+        final Object osMXBean = ManagementFactory.getOperatingSystemMXBean();
+        final int processors = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+        return new TlsLoadMonitor()
+        {
+            public double getLoad()
+            {
+                Object loadAverage = ReflectionUtil.invokeGetter(osMXBean, getSystemLoadAverage);
+                if (loadAverage instanceof Double)
+                {
+                    double value = ((Double)loadAverage).doubleValue();
+                    if (value >= 0.0)
+                    {
+                        return value / processors;
+                    }
+                }
+                return 0.0;
+            }
+        };
+    }
+
+    private static int[][] parseTiers(String tiersValue)
+    {
+        List<int[]> tiers = new ArrayList<int[]>();
+
+        String[] tierValues = tiersValue.split(";");
+        for (String tierValue : tierValues)
+        {
+            String[] names = tierValue.split(",");
+            int[] tier = new int[names.length];
+            int count = 0;
+
+            for (String name : names)
+            {
+                name = name.trim();
+                if (name.length() < 1)
+                {
+                    continue;
+                }
+
+                int namedGroup = NamedGroupInfo.getNamedGroupByName(name);
+                if (namedGroup < 0)
+                {
+                    LOG.warning("'" + PROPERTY_KEY_SHARE_TIERS + "' contains unrecognised NamedGroup: " + name);
+                    continue;
+                }
+
+                tier[count++] = namedGroup;
+            }
+
+            if (count > 0)
+            {
+                int[] t = new int[count];
+                System.arraycopy(tier, 0, t, 0, count);
+                tiers.add(t);
+            }
+        }
+
+        return tiers.isEmpty() ? null : tiers.toArray(new int[tiers.size()][]);
+    }
+
+    static ProvServerLoadPolicy getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private final HandshakeLoadMonitor loadMonitor;
+    private final LoadAdaptiveNamedGroupSelector selector;
+    private final StripedCounter[] negotiatedByTier;
+    private final StripedCounter negotiatedOutsideTiers = new StripedCounter();
+
+    private ProvServerLoadPolicy(HandshakeLoadMonitor loadMonitor, LoadAdaptiveNamedGroupSelector selector)
+    {
+        this.loadMonitor = loadMonitor;
+        this.selector = selector;
+        this.negotiatedByTier = new StripedCounter[selector.getTierCount()];
+        for (int i = 0; i < negotiatedByTier.length; ++i)
+        {
+            negotiatedByTier[i] = new StripedCounter();
+        }
+    }
+
+    TlsNamedGroupSelector getNamedGroupSelector()
+    {
+        return selector;
+    }
+
+    /**
+     * @return the start time of the handshake (from {@link System#nanoTime()}), to be passed back to
+     *         {@link #handshakeCompleted(long, SecurityParameters)}.
+     */
+    long handshakeStarted()
+    {
+        loadMonitor.handshakeStarted();
+        return System.nanoTime();
+    }
+
+    void handshakeCompleted(long startNanos, SecurityParameters securityParameters)
+    {
+        loadMonitor.handshakeCompleted(System.nanoTime() - startNanos);
+
+        int negotiatedGroup = securityParameters.getNegotiatedGroup();
+        if (negotiatedGroup >= 0)
+        {
+            int tier = selector.getTier(negotiatedGroup);
+            (tier < 0 ? negotiatedOutsideTiers : negotiatedByTier[tier]).increment();
+        }
+    }
+
+    void handshakeFailed()
+    {
+        loadMonitor.handshakeFailed();
+    }
+
+    int getCurrentTier()
+    {
+        return selector.getCurrentTier();
+    }
+
+    long getTierTransitions()
+    {
+        return selector.getTierTransitions();
+    }
+
+    double getLoad()
+    {
+        return loadMonitor.getLoad();
+    }
+
+    /**
+     * @return the number of completed handshakes whose negotiated group was in each tier, plus a final
+     *         entry for groups outside all tiers.
+     */
+    long[] getNegotiatedByTier()
+    {
+        long[] result = new long[negotiatedByTier.length + 1];
+        for (int i = 0; i < negotiatedByTier.length; ++i)
+        {
+            result[i] = negotiatedByTier[i].sum();
+        }
+        result[negotiatedByTier.length] = negotiatedOutsideTiers.sum();
+        return result;
+    }
+
+    String getTierDescription(int tier)
+    {
+        StringBuilder sb = new StringBuilder("tier").append(tier).append(" [");
+        int[] groups = selector.getTierGroups(tier);
+        for (int i = 0; i < groups.length; ++i)
+        {
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append(NamedGroup.getName(groups[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    void resetMetrics()
+    {
+        for (int i = 0; i < negotiatedByTier.length; ++i)
+        {
+            negotiatedByTier[i].reset();
+        }
+        negotiatedOutsideTiers.reset();
+    }
+}
@@ -79,6 +79,8 @@ class ProvTlsClient
 
     protected ProvSSLSession sslSession = null;
     protected boolean handshakeComplete = false;
+    protected boolean handshakeMetricsPending = false;
+    protected long handshakeStartNanos = 0L;
 
     ProvTlsClient(ProvTlsManager manager, ProvSSLParameters sslParameters)
     {
@@ -455,6 +457,17 @@ class ProvTlsClient
 
             LOG.log(level, msg, cause);
         }
+
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            metrics.alertRaised(alertDescription);
+        }
+
+        if (alertLevel == AlertLevel.fatal)
+        {
+            notifyHandshakeFailed(alertDescription);
+        }
     }
 
     @Override
@@ -471,6 +484,17 @@ class ProvTlsClient
 
             LOG.log(level, msg);
         }
+
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            metrics.alertReceived(alertDescription);
+        }
+
+        if (alertLevel == AlertLevel.fatal)
+        {
+            notifyHandshakeFailed(alertDescription);
+        }
     }
 
     @Override
@@ -482,6 +506,8 @@ class ProvTlsClient
         {
             LOG.info(clientID + " disconnected from " + JsseUtils.getPeerReport(manager));
         }
+
+        notifyHandshakeFailed(AlertDescription.close_notify);
     }
 
     @Override
@@ -489,6 +515,19 @@ class ProvTlsClient
     {
         super.notifyHandshakeBeginning();
 
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            long startNanos = metrics.handshakeBeginning(false);
+
+            // NOTE: Read (under this lock) by notifyHandshakeComplete/notifyHandshakeFailed, possibly on another thread
+            synchronized (this)
+            {
+                this.handshakeStartNanos = startNanos;
+                this.handshakeMetricsPending = true;
+            }
+        }
+
         if (LOG.isLoggable(Level.INFO))
         {
             LOG.info(clientID + " opening connection to " + JsseUtils.getPeerReport(manager));
@@ -510,6 +549,13 @@ class ProvTlsClient
 
         this.handshakeComplete = true;
 
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics && handshakeMetricsPending)
+        {
+            this.handshakeMetricsPending = false;
+            metrics.handshakeComplete(false, handshakeStartNanos, context.getSecurityParametersConnection());
+        }
+
         if (LOG.isLoggable(Level.INFO))
         {
             LOG.info(clientID + " established connection with " + JsseUtils.getPeerReport(manager));
@@ -668,6 +714,15 @@ class ProvTlsClient
         return JsseUtils.useExtendedMasterSecret();
     }
 
+    protected synchronized void notifyHandshakeFailed(short alertDescription)
+    {
+        if (handshakeMetricsPending)
+        {
+            this.handshakeMetricsPending = false;
+            ProvJsseMetrics.getInstance().handshakeFailed(false, alertDescription);
+        }
+    }
+
     protected String[] getKeyTypesLegacy(short[] certificateTypes) throws IOException
     {
         String[] keyTypes = new String[certificateTypes.length];
@@ -2,6 +2,8 @@ package org.bouncycastle.jsse.provider;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.security.Principal;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -28,9 +30,13 @@ import org.bouncycastle.tls.AlertLevel;
 import org.bouncycastle.tls.Certificate;
 import org.bouncycastle.tls.CertificateRequest;
 import org.bouncycastle.tls.CertificateStatus;
+import org.bouncycastle.tls.CertificateStatusType;
 import org.bouncycastle.tls.ClientCertificateType;
 import org.bouncycastle.tls.DefaultTlsServer;
+import org.bouncycastle.tls.HttpOCSPResponseSource;
 import org.bouncycastle.tls.KeyExchangeAlgorithm;
+import org.bouncycastle.tls.KeyShareSelectionMode;
+import org.bouncycastle.tls.OCSPStaplingManager;
 import org.bouncycastle.tls.ProtocolName;
 import org.bouncycastle.tls.ProtocolVersion;
 import org.bouncycastle.tls.SecurityParameters;
@@ -42,6 +48,8 @@ import org.bouncycastle.tls.TlsCredentials;
 import org.bouncycastle.tls.TlsDHUtils;
 import org.bouncycastle.tls.TlsExtensionsUtils;
 import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.TlsNamedGroupSelector;
+import org.bouncycastle.tls.TlsOCSPResponseSource;
 import org.bouncycastle.tls.TlsSession;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.TrustedAuthority;
@@ -74,10 +82,13 @@ class ProvTlsServer
     private static final boolean provServerEnableSessionResumption = PropertyUtils
         .getBooleanSystemProperty("org.bouncycastle.jsse.server.enableSessionResumption", true);
 
-    // TODO[jsse] Support status_request and status_request_v2 extensions
-//    private static final boolean provServerEnableStatusRequest = PropertyUtils.getBooleanSystemProperty(
-//        "jdk.tls.server.enableStatusRequestExtension", false);
-    private static final boolean provServerEnableStatusRequest = false;
+    // TODO[jsse] Support status_request_v2 extension
+    private static final boolean provServerEnableStatusRequest = PropertyUtils.getBooleanSystemProperty(
+        "jdk.tls.server.enableStatusRequestExtension", false);
+
+    private static final OCSPStaplingManager provServerStaplingManager = provServerEnableStatusRequest
+        ? createStaplingManager()
+        : null;
 
     private static final boolean provServerEnableTrustedCAKeys = PropertyUtils
         .getBooleanSystemProperty("org.bouncycastle.jsse.server.enableTrustedCAKeysExtension", false);
@@ -85,6 +96,80 @@ class ProvTlsServer
     private static final boolean provServerOmitSigAlgsCert = PropertyUtils
         .getBooleanSystemProperty("org.bouncycastle.jsse.server.omitSigAlgsCertExtension", true);
 
+    private static final int provServerKeyShareSelectionMode = getKeyShareSelectionModeProperty();
+
+    private static int getKeyShareSelectionModeProperty()
+    {
+        String propertyName = "org.bouncycastle.jsse.server.keyShareSelectionMode";
+        String propertyValue = PropertyUtils.getStringSystemProperty(propertyName);
+        if (null == propertyValue)
+        {
+            return -1;
+        }
+
+        if ("client".equalsIgnoreCase(propertyValue))
+        {
+            return KeyShareSelectionMode.CLIENT_ORDER;
+        }
+        if ("offered".equalsIgnoreCase(propertyValue))
+        {
+            return KeyShareSelectionMode.OFFERED_SERVER_ORDER;
+        }
+        if ("server".equalsIgnoreCase(propertyValue))
+        {
+            return KeyShareSelectionMode.SERVER_ORDER;
+        }
+
+        LOG.warning("Unrecognized value for '" + propertyName + "' (expected 'client', 'offered' or 'server'): "
+            + propertyValue);
+        return -1;
+    }
+
+    private static OCSPStaplingManager createStaplingManager()
+    {
+        int responseTimeout = PropertyUtils.getIntegerSystemProperty("jdk.tls.stapling.responseTimeout", 5000, 0,
+            Integer.MAX_VALUE);
+        boolean responderOverride = PropertyUtils.getBooleanSystemProperty("jdk.tls.stapling.responderOverride",
+            false);
+
+        final URL responderURI;
+        String propertyName = "jdk.tls.stapling.responderURI";
+        String propertyValue = PropertyUtils.getStringSystemProperty(propertyName);
+        if (null == propertyValue)
+        {
+            responderURI = null;
+        }
+        else
+        {
+            URL url = null;
+            try
+            {
+                url = new URL(propertyValue);
+            }
+            catch (MalformedURLException e)
+            {
+                LOG.warning("Invalid value for '" + propertyName + "': " + propertyValue);
+            }
+            responderURI = url;
+        }
+
+        /*
+         * NOTE: As for SunJSSE, the responder URI is only a fallback for certificates without an AIA
+         * responder, unless 'jdk.tls.stapling.responderOverride' is set.
+         */
+        TlsOCSPResponseSource source = new HttpOCSPResponseSource(responderOverride ? responderURI : null,
+            responseTimeout)
+        {
+            protected URL getResponderURL(org.bouncycastle.asn1.x509.Certificate subject) throws IOException
+            {
+                URL url = super.getResponderURL(subject);
+                return null != url ? url : responderURI;
+            }
+        };
+
+        return new OCSPStaplingManager(source);
+    }
+
     private static DHGroup[] getDefaultDHEParameters()
     {
         String propertyValue = PropertyUtils.getStringSecurityProperty(PROPERTY_DEFAULT_DHE_PARAMETERS);
@@ -179,6 +264,10 @@ class ProvTlsServer
     protected Set<String> keyManagerMissCache = null;
     protected TlsCredentials credentials = null;
     protected boolean handshakeComplete = false;
+    protected boolean handshakeMetricsPending = false;
+    protected boolean handshakeLoadPending = false;
+    protected long handshakeStartNanos = 0L;
+    protected long handshakeLoadStartNanos = 0L;
 
     ProvTlsServer(ProvTlsManager manager, ProvSSLParameters sslParameters)
     {
@@ -213,7 +302,7 @@ class ProvTlsServer
     @Override
     protected boolean allowMultiCertStatus()
     {
-        return provServerEnableStatusRequest;
+        return false;
     }
 
     @Override
@@ -263,6 +352,25 @@ class ProvTlsServer
         return NamedGroupInfo.getMaximumBitsServerECDH(jsseSecurityParameters.namedGroups);
     }
 
+    @Override
+    public int getKeyShareSelectionMode() throws IOException
+    {
+        if (provServerKeyShareSelectionMode >= 0)
+        {
+            return provServerKeyShareSelectionMode;
+        }
+
+        return super.getKeyShareSelectionMode();
+    }
+
+    @Override
+    protected TlsNamedGroupSelector getNamedGroupSelector()
+    {
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+
+        return null == loadPolicy ? null : loadPolicy.getNamedGroupSelector();
+    }
+
     @Override
     protected int getMaximumNegotiableFiniteFieldBits()
     {
@@ -477,55 +585,26 @@ class ProvTlsServer
     @Override
     public CertificateStatus getCertificateStatus() throws IOException
     {
-        // TODO[jsse] Support status_request and status_request_v2 extensions
-//        SecurityParameters securityParameters = context.getSecurityParametersHandshake();
-//        int statusRequestVersion = securityParameters.getStatusRequestVersion();
-//
-//        if (statusRequestVersion == 2)
-//        {
-//            int count = statusRequestV2.size();
-//            for (int i = 0; i < count; ++i)
-//            {
-//                CertificateStatusRequestItemV2 item = (CertificateStatusRequestItemV2)statusRequestV2.get(i);
-//                short statusType = item.getStatusType();
-//                if (CertificateStatusType.ocsp_multi == statusType)
-//                {
-//                    int chainLength = credentials.getCertificate().getLength();
-//                    Vector ocspResponseList = new Vector(chainLength);
-//                    for (int j = 0; j < chainLength; ++j)
-//                    {
-//                        // TODO Actual OCSP response
-//                        ocspResponseList.add(null);
-//                    }
-//
-//                    return new CertificateStatus(CertificateStatusType.ocsp_multi, ocspResponseList);
-//                }
-//                else if (CertificateStatusType.ocsp == statusType)
-//                {
-//                    // TODO Actual OCSP response
-//                    OCSPResponse ocspResponse;
-//
-//                    return new CertificateStatus(CertificateStatusType.ocsp, ocspResponse);
-//                }
-//            }
-//        }
-//        else if (statusRequestVersion == 1)
-//        {
-//            if (CertificateStatusType.ocsp == certificateStatusRequest.getStatusType())
-//            {
-//                OCSPStatusRequest ocspStatusRequest = certificateStatusRequest.getOCSPStatusRequest();
-//
-//                @SuppressWarnings("unchecked")
-//                Vector<ResponderID> responderIDList = ocspStatusRequest.getResponderIDList();
-//                Extensions requestExtensions = ocspStatusRequest.getRequestExtensions();
-//
-//                X509Certificate eeCert = JsseUtils.getEndEntity(getCrypto(), credentials.getCertificate());
-//
-//                // ...
-//            }
-//        }
+        if (null == provServerStaplingManager || null == credentials)
+        {
+            return null;
+        }
 
-        return null;
+        if (null == certificateStatusRequest || CertificateStatusType.ocsp != certificateStatusRequest.getStatusType())
+        {
+            return null;
+        }
+
+        // NOTE: Served from a cache that is refreshed in the background, so this never waits for a responder
+        try
+        {
+            return provServerStaplingManager.getCertificateStatus(credentials.getCertificate());
+        }
+        catch (IOException e)
+        {
+            LOG.log(Level.FINE, serverID + " unable to staple OCSP response", e);
+            return null;
+        }
     }
 
     @Override
@@ -743,6 +822,17 @@ class ProvTlsServer
 
             LOG.log(level, msg, cause);
         }
+
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            metrics.alertRaised(alertDescription);
+        }
+
+        if (alertLevel == AlertLevel.fatal)
+        {
+            notifyHandshakeFailed(alertDescription);
+        }
     }
 
     @Override
@@ -759,6 +849,17 @@ class ProvTlsServer
 
             LOG.log(level, msg);
         }
+
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            metrics.alertReceived(alertDescription);
+        }
+
+        if (alertLevel == AlertLevel.fatal)
+        {
+            notifyHandshakeFailed(alertDescription);
+        }
     }
 
     @Override
@@ -820,6 +921,8 @@ class ProvTlsServer
         {
             LOG.info(serverID + " disconnected from " + JsseUtils.getPeerReport(manager));
         }
+
+        notifyHandshakeFailed(AlertDescription.close_notify);
     }
 
     @Override
@@ -827,6 +930,31 @@ class ProvTlsServer
     {
         super.notifyHandshakeBeginning();
 
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics)
+        {
+            long startNanos = metrics.handshakeBeginning(true);
+
+            // NOTE: Read (under this lock) by notifyHandshakeComplete/notifyHandshakeFailed, possibly on another thread
+            synchronized (this)
+            {
+                this.handshakeStartNanos = startNanos;
+                this.handshakeMetricsPending = true;
+            }
+        }
+
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        if (null != loadPolicy)
+        {
+            long loadStartNanos = loadPolicy.handshakeStarted();
+
+            synchronized (this)
+            {
+                this.handshakeLoadStartNanos = loadStartNanos;
+                this.handshakeLoadPending = true;
+            }
+        }
+
         if (LOG.isLoggable(Level.INFO))
         {
             LOG.info(serverID + " accepting connection from " + JsseUtils.getPeerReport(manager));
@@ -840,6 +968,20 @@ class ProvTlsServer
 
         this.handshakeComplete = true;
 
+        ProvJsseMetrics metrics = ProvJsseMetrics.getInstance();
+        if (null != metrics && handshakeMetricsPending)
+        {
+            this.handshakeMetricsPending = false;
+            metrics.handshakeComplete(true, handshakeStartNanos, context.getSecurityParametersConnection());
+        }
+
+        ProvServerLoadPolicy loadPolicy = ProvServerLoadPolicy.getInstance();
+        if (null != loadPolicy && handshakeLoadPending)
+        {
+            this.handshakeLoadPending = false;
+            loadPolicy.handshakeCompleted(handshakeLoadStartNanos, context.getSecurityParametersConnection());
+        }
+
         if (LOG.isLoggable(Level.INFO))
         {
             LOG.info(serverID + " established connection with " + JsseUtils.getPeerReport(manager));
@@ -954,6 +1096,20 @@ class ProvTlsServer
         return JsseUtils.useExtendedMasterSecret();
     }
 
+    protected synchronized void notifyHandshakeFailed(short alertDescription)
+    {
+        if (handshakeMetricsPending)
+        {
+            this.handshakeMetricsPending = false;
+            ProvJsseMetrics.getInstance().handshakeFailed(true, alertDescription);
+        }
+        if (handshakeLoadPending)
+        {
+            this.handshakeLoadPending = false;
+            ProvServerLoadPolicy.getInstance().handshakeFailed();
+        }
+    }
+
     protected boolean isClientAuthEnabled()
     {
         return sslParameters.getNeedClientAuth() || sslParameters.getWantClientAuth();
@@ -0,0 +1,67 @@
+package org.bouncycastle.jsse.provider;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free counter that spreads concurrent increments over several cells, so that threads completing
+ * handshakes in parallel rarely contend on the same cache line. Reads sum all cells and are therefore only
+ * weakly consistent with concurrent updates.
+ */
+class StripedCounter
+{
+    // NOTE: Cells are padded out to a (typical) 64-byte cache line
+    private static final int PAD = 8;
+    private static final int STRIPES = getStripeCount();
+
+    private static int getStripeCount()
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        int stripes = 1;
+        while (stripes < processors && stripes < 64)
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    static int getStripeIndex()
+    {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & (STRIPES - 1);
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+    void add(long delta)
+    {
+        cells.getAndAdd(getStripeIndex() * PAD, delta);
+    }
+
+    void increment()
+    {
+        add(1L);
+    }
+
+    long sum()
+    {
+        long total = 0L;
+        for (int i = 0; i < STRIPES; ++i)
+        {
+            total += cells.get(i * PAD);
+        }
+        return total;
+    }
+
+    void reset()
+    {
+        for (int i = 0; i < STRIPES; ++i)
+        {
+            cells.set(i * PAD, 0L);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.bouncycastle.jsse.util;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLSession;
+
+import org.bouncycastle.jsse.BCSSLEngine;
+import org.bouncycastle.jsse.BCSSLParameters;
+
+/**
+ * Runs loopback handshakes (via a pair of {@link SSLEngine}s) so that the class loading, precomputation and
+ * JIT compilation costs of the first handshakes are paid before a process takes real traffic.
+ * <p>
+ * The server engine needs credentials from the server context's key manager. A handshake that fails at
+ * the client (e.g. because the client context doesn't trust the server's certificate) still exercises the
+ * key exchange and signing. See also the "org.bouncycastle.jsse.warmUp" system property, which makes the
+ * BCJSSE {@link SSLContext} perform a (cheaper) handshake-free warm-up during initialization.
+ * </p>
+ */
+public class SSLContextWarmUp
+{
+    private static final Logger LOG = Logger.getLogger(SSLContextWarmUp.class.getName());
+
+    // NOTE: Guards against a handshake that stops making progress
+    private static final int MAX_ROUNDS = 100;
+
+    /**
+     * Run loopback handshakes on the calling thread.
+     *
+     * @param serverContext
+     *            the context to create the server engines from.
+     * @param clientContext
+     *            the context to create the client engines from (may be the same as serverContext).
+     * @param namedGroups
+     *            the names of the groups to handshake with (one group per handshake, BCJSSE engines
+     *            only), or null to handshake once per round with the default configuration.
+     * @param rounds
+     *            the number of handshakes to run for each named group.
+     * @return the number of handshakes that completed successfully.
+     */
+    public static int runLoopbackHandshakes(SSLContext serverContext, SSLContext clientContext, String[] namedGroups,
+        int rounds)
+    {
+        if (null == serverContext)
+        {
+            throw new NullPointerException("'serverContext' cannot be null");
+        }
+        if (null == clientContext)
+        {
+            throw new NullPointerException("'clientContext' cannot be null");
+        }
+
+        String[][] groupsPerHandshake;
+        if (null == namedGroups)
+        {
+            groupsPerHandshake = new String[][]{ null };
+        }
+        else
+        {
+            groupsPerHandshake = new String[namedGroups.length][];
+            for (int i = 0; i < namedGroups.length; ++i)
+            {
+                groupsPerHandshake[i] = new String[]{ namedGroups[i] };
+            }
+        }
+
+        int completed = 0;
+        for (int round = 0; round < rounds; ++round)
+        {
+            for (int i = 0; i < groupsPerHandshake.length; ++i)
+            {
+                try
+                {
+                    if (runLoopbackHandshake(serverContext, clientContext, groupsPerHandshake[i]))
+                    {
+                        ++completed;
+                    }
+                }
+                catch (Exception e)
+                {
+                    LOG.log(Level.FINE, "Warm-up handshake failed", e);
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Run loopback handshakes (see
+     * {@link #runLoopbackHandshakes(SSLContext, SSLContext, String[], int)}) on a new daemon thread.
+     *
+     * @return the (started) thread.
+     */
+    public static Thread startLoopbackHandshakes(final SSLContext serverContext, final SSLContext clientContext,
+        final String[] namedGroups, final int rounds)
+    {
+        Thread thread = new Thread("BCJSSE SSLContext warm-up")
+        {
+            public void run()
+            {
+                long startNanos = System.nanoTime();
+
+                int completed = runLoopbackHandshakes(serverContext, clientContext, namedGroups, rounds);
+
+                if (LOG.isLoggable(Level.FINE))
+                {
+                    LOG.fine("SSLContext warm-up completed " + completed + " handshakes in "
+                        + ((System.nanoTime() - startNanos) / 1000000L) + "ms");
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static boolean runLoopbackHandshake(SSLContext serverContext, SSLContext clientContext,
+        String[] namedGroups) throws Exception
+    {
+        // NOTE: Engines without a peer host/port, so that sessions aren't resumed
+        SSLEngine clientEngine = clientContext.createSSLEngine();
+        clientEngine.setUseClientMode(true);
+
+        SSLEngine serverEngine = serverContext.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+
+        if (null != namedGroups)
+        {
+            setNamedGroups(clientEngine, namedGroups);
+            setNamedGroups(serverEngine, namedGroups);
+        }
+
+        SSLSession clientSession = clientEngine.getSession();
+        SSLSession serverSession = serverEngine.getSession();
+
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer clientIn = ByteBuffer.allocate(clientSession.getApplicationBufferSize());
+        ByteBuffer serverIn = ByteBuffer.allocate(serverSession.getApplicationBufferSize());
+        ByteBuffer clientToServer = ByteBuffer.allocate(clientSession.getPacketBufferSize());
+        ByteBuffer serverToClient = ByteBuffer.allocate(serverSession.getPacketBufferSize());
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+
+        try
+        {
+            for (int i = 0; i < MAX_ROUNDS; ++i)
+            {
+                runDelegatedTasks(clientEngine, clientEngine.wrap(empty, clientToServer));
+                runDelegatedTasks(serverEngine, serverEngine.wrap(empty, serverToClient));
+
+                clientToServer.flip();
+                serverToClient.flip();
+
+                runDelegatedTasks(clientEngine, clientEngine.unwrap(serverToClient, clientIn));
+                runDelegatedTasks(serverEngine, serverEngine.unwrap(clientToServer, serverIn));
+
+                clientToServer.compact();
+                serverToClient.compact();
+
+                if (isHandshakeDone(clientEngine) && isHandshakeDone(serverEngine))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally
+        {
+            clientEngine.closeOutbound();
+            serverEngine.closeOutbound();
+        }
+    }
+
+    private static boolean isHandshakeDone(SSLEngine engine)
+    {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return HandshakeStatus.NOT_HANDSHAKING == status || HandshakeStatus.FINISHED == status;
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine, SSLEngineResult result)
+    {
+        if (HandshakeStatus.NEED_TASK == result.getHandshakeStatus())
+        {
+            Runnable task;
+            while (null != (task = engine.getDelegatedTask()))
+            {
+                task.run();
+            }
+        }
+    }
+
+    private static void setNamedGroups(SSLEngine engine, String[] namedGroups)
+    {
+        if (engine instanceof BCSSLEngine)
+        {
+            BCSSLEngine bcEngine = (BCSSLEngine)engine;
+            BCSSLParameters parameters = bcEngine.getParameters();
+            parameters.setNamedGroups(namedGroups);
+            bcEngine.setParameters(parameters);
+        }
+    }
+}
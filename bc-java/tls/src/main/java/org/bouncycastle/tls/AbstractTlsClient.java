@@ -406,6 +406,11 @@ public abstract class AbstractTlsClient
         return clientExtensions;
     }
 
+    public byte[] getEarlyData() throws IOException
+    {
+        return null;
+    }
+
     public Vector getEarlyKeyShareGroups()
     {
         /*
@@ -67,6 +67,11 @@ public abstract class AbstractTlsPeer
         return 1000;
     }
 
+    public int getReplayWindowSize()
+    {
+        return 64;
+    }
+
     public boolean allowLegacyResumption()
     {
         return false;
@@ -99,6 +99,15 @@ public abstract class AbstractTlsServer
         return maxBits;
     }
 
+    /**
+     * @return the {@link TlsNamedGroupSelector} to order key share preferences with (TLS 1.3), or
+     *         null (the default) to use the order of {@link #getSupportedGroups()}.
+     */
+    protected TlsNamedGroupSelector getNamedGroupSelector()
+    {
+        return null;
+    }
+
     protected int getMaximumNegotiableFiniteFieldBits()
     {
         int[] clientSupportedGroups = context.getSecurityParametersHandshake().getClientSupportedGroups();
@@ -420,6 +429,58 @@ public abstract class AbstractTlsServer
             NamedGroup.ffdhe2048, NamedGroup.ffdhe3072, NamedGroup.ffdhe4096 };
     }
 
+    /**
+     * (TLS 1.3) Return the groups acceptable for the key share in the current handshake, in server
+     * preference order. The result should be a subset of {@link #getSupportedGroups()}. The default
+     * consults the {@link TlsNamedGroupSelector} from {@link #getNamedGroupSelector()}, if any.
+     * <p>
+     * NOTE: This is deliberately not part of the {@link TlsServer} interface, so as not to break
+     * existing implementations of it; {@link TlsServerProtocol} only consults it for subclasses of
+     * this class.
+     * </p>
+     * 
+     * @return an array of {@link NamedGroup} values, or null to use the order of
+     *         {@link #getSupportedGroups()}.
+     */
+    public int[] getKeyShareGroupPreferences() throws IOException
+    {
+        TlsNamedGroupSelector namedGroupSelector = getNamedGroupSelector();
+        if (null == namedGroupSelector)
+        {
+            return null;
+        }
+
+        int[] supportedGroups = context.getSecurityParametersHandshake().getServerSupportedGroups();
+        if (TlsUtils.isNullOrEmpty(supportedGroups))
+        {
+            return null;
+        }
+
+        return namedGroupSelector.getKeyShareGroupPreferences(context, supportedGroups);
+    }
+
+    /**
+     * The default is {@link KeyShareSelectionMode#CLIENT_ORDER}, unless a
+     * {@link #getNamedGroupSelector() TlsNamedGroupSelector} is configured, in which case
+     * {@link KeyShareSelectionMode#OFFERED_SERVER_ORDER}.
+     */
+    public int getKeyShareSelectionMode() throws IOException
+    {
+        return null == getNamedGroupSelector()
+            ?   KeyShareSelectionMode.CLIENT_ORDER
+            :   KeyShareSelectionMode.OFFERED_SERVER_ORDER;
+    }
+
+    public int getMaxEarlyDataSize() throws IOException
+    {
+        return 0;
+    }
+
+    public TlsEarlyDataAntiReplay getEarlyDataAntiReplay() throws IOException
+    {
+        return null;
+    }
+
     public int getSelectedCipherSuite()
         throws IOException
     {
@@ -685,6 +746,12 @@ public abstract class AbstractTlsServer
         return null;
     }
 
+    public TlsCredentialedDecryptor getKEMAuthenticationCredentials(int[] kemGroups)
+        throws IOException
+    {
+        return null;
+    }
+
     public CertificateRequest getCertificateRequest()
         throws IOException
     {
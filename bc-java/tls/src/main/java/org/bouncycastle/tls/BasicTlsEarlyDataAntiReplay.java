@@ -0,0 +1,96 @@
+package org.bouncycastle.tls;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * A {@link TlsEarlyDataAntiReplay} that records ClientHellos (RFC 8446 8.2) for a fixed time window.
+ * <p>
+ * External PSKs carry no ticket age, so a recorded ClientHello can only be refused while it is still
+ * in the window; the window should therefore be at least as long as the period for which a captured
+ * ClientHello must not be replayable (e.g. the lifetime of the PSK). When the store is full, early
+ * data is refused until entries expire. Note that the store is local to this object, so servers in a
+ * cluster sharing PSKs need a shared implementation instead.
+ * </p>
+ */
+public class BasicTlsEarlyDataAntiReplay
+    implements TlsEarlyDataAntiReplay
+{
+    protected final long windowNanos;
+    protected final int maxEntries;
+
+    // NOTE: Insertion order is also expiry order
+    private final LinkedHashMap recorded = new LinkedHashMap();
+
+    /**
+     * @param windowMillis
+     *            how long (in milliseconds) each ClientHello is remembered for.
+     * @param maxEntries
+     *            the maximum number of ClientHellos remembered at once.
+     */
+    public BasicTlsEarlyDataAntiReplay(long windowMillis, int maxEntries)
+    {
+        if (windowMillis < 1L)
+        {
+            throw new IllegalArgumentException("'windowMillis' must be >= 1");
+        }
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("'maxEntries' must be >= 1");
+        }
+
+        this.windowNanos = windowMillis * 1000000L;
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean checkAndRecord(TlsServerContext context, byte[] pskIdentity, byte[] binder)
+    {
+        if (null == pskIdentity || Arrays.isNullOrEmpty(binder))
+        {
+            return false;
+        }
+
+        String key = Hex.toHexString(pskIdentity) + ":" + Hex.toHexString(binder);
+        long now = System.nanoTime();
+
+        synchronized (recorded)
+        {
+            expire(now);
+
+            if (recorded.containsKey(key) || recorded.size() >= maxEntries)
+            {
+                return false;
+            }
+
+            recorded.put(key, Long.valueOf(now));
+            return true;
+        }
+    }
+
+    public int size()
+    {
+        synchronized (recorded)
+        {
+            expire(System.nanoTime());
+            return recorded.size();
+        }
+    }
+
+    private void expire(long now)
+    {
+        Iterator it = recorded.entrySet().iterator();
+        while (it.hasNext())
+        {
+            long recordedAt = ((Long)((Map.Entry)it.next()).getValue()).longValue();
+            if (now - recordedAt < windowNanos)
+            {
+                break;
+            }
+            it.remove();
+        }
+    }
+}
@@ -43,6 +43,12 @@ public class ByteQueue
 
     private boolean readOnlyBuf = false;
 
+    /**
+     * The pool (if any) new buffers are borrowed from, and the pool (if any) the current buffer was borrowed from.
+     */
+    private TlsBufferPool pool = null;
+    private TlsBufferPool databufPool = null;
+
     public ByteQueue()
     {
         this(0);
@@ -80,7 +86,7 @@ public class ByteQueue
             if (len > databuf.length)
             {
                 int desiredSize = nextTwoPow(len | 256);
-                databuf = new byte[desiredSize];
+                replaceBuffer(allocate(desiredSize), pool);
             }
             skipped = 0;
         }
@@ -89,9 +95,9 @@ public class ByteQueue
             int desiredSize = nextTwoPow(available + len);
             if (desiredSize > databuf.length)
             {
-                byte[] tmp = new byte[desiredSize];
+                byte[] tmp = allocate(desiredSize);
                 System.arraycopy(databuf, skipped, tmp, 0, available);
-                databuf = tmp;
+                replaceBuffer(tmp, pool);
             }
             else
             {
@@ -112,6 +118,15 @@ public class ByteQueue
         return available;
     }
 
+    /**
+     * @return The size of the buffer currently retained by this queue (zero for a read-only queue,
+     *         which doesn't own its buffer).
+     */
+    public int capacity()
+    {
+        return readOnlyBuf ? 0 : databuf.length;
+    }
+
     /**
      * Copy some bytes from the beginning of the data to the provided {@link OutputStream}.
      *
@@ -275,23 +290,71 @@ public class ByteQueue
         return buf;
     }
 
+    /**
+     * Release any buffer space beyond what the queued data needs. An empty queue releases its buffer
+     * entirely; the next {@link #addData(byte[], int, int)} will allocate a new one.
+     */
     public void shrink()
     {
         if (available == 0)
         {
-            databuf = TlsUtils.EMPTY_BYTES;
+            replaceBuffer(TlsUtils.EMPTY_BYTES, null);
             skipped = 0;
         }
         else
         {
             int desiredSize = nextTwoPow(available);
+            if (null != pool)
+            {
+                desiredSize = pool.getBufferSize(desiredSize);
+            }
             if (desiredSize < databuf.length)
             {
-                byte[] tmp = new byte[desiredSize];
+                byte[] tmp = allocate(desiredSize);
                 System.arraycopy(databuf, skipped, tmp, 0, available);
-                databuf = tmp;
+                replaceBuffer(tmp, pool);
                 skipped = 0;
             }
         }
     }
+
+    /**
+     * Discard any queued data and release the buffer.
+     */
+    void clear()
+    {
+        available = 0;
+        skipped = 0;
+        replaceBuffer(TlsUtils.EMPTY_BYTES, null);
+    }
+
+    /**
+     * Set a pool to borrow buffers from (and return them to). Only buffers allocated after this call are
+     * taken from the pool.
+     */
+    void setBufferPool(TlsBufferPool pool)
+    {
+        if (readOnlyBuf)
+        {
+            throw new IllegalStateException("Cannot set a buffer pool for a read-only buffer");
+        }
+
+        this.pool = pool;
+    }
+
+    private byte[] allocate(int size)
+    {
+        return null == pool ? new byte[size] : pool.borrow(size);
+    }
+
+    private void replaceBuffer(byte[] buf, TlsBufferPool bufPool)
+    {
+        if (null != databufPool && databuf != buf)
+        {
+            databufPool.release(databuf);
+        }
+
+        this.databuf = buf;
+        this.databufPool = bufPool;
+    }
 }
@@ -15,6 +15,11 @@ public class ByteQueueInputStream
         buffer = new ByteQueue();
     }
 
+    public ByteQueue getBuffer()
+    {
+        return buffer;
+    }
+
     public void addBytes(byte[] buf)
     {
         buffer.addData(buf, 0, buf.length);
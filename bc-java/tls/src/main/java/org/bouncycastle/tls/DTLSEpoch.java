@@ -6,7 +6,7 @@ import org.bouncycastle.tls.crypto.TlsCipher;
 
 class DTLSEpoch
 {
-    private final DTLSReplayWindow replayWindow = new DTLSReplayWindow();
+    private final DTLSReplayWindow replayWindow;
 
     private final int epoch;
     private final TlsCipher cipher;
@@ -14,7 +14,8 @@ class DTLSEpoch
 
     private long sequenceNumber = 0;
 
-    DTLSEpoch(int epoch, TlsCipher cipher, int recordHeaderLengthRead, int recordHeaderLengthWrite)    
+    DTLSEpoch(int epoch, TlsCipher cipher, int recordHeaderLengthRead, int recordHeaderLengthWrite,
+        int replayWindowSize)
     {
         if (epoch < 0)
         {
@@ -25,6 +26,7 @@ class DTLSEpoch
             throw new IllegalArgumentException("'cipher' cannot be null");
         }
 
+        this.replayWindow = new DTLSReplayWindow(replayWindowSize);
         this.epoch = epoch;
         this.cipher = cipher;
         this.recordHeaderLengthRead = recordHeaderLengthRead;
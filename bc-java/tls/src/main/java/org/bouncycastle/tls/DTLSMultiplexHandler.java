@@ -0,0 +1,59 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * Callbacks from a {@link DTLSMultiplexServer} for the associations it accepts. Methods are called from the
+ * server's {@link java.util.concurrent.Executor}, but never concurrently for the same association.
+ */
+public interface DTLSMultiplexHandler
+{
+    /**
+     * Create the {@link TlsServer} for a new association, once the peer has returned a valid cookie.
+     *
+     * @param peerAddress
+     *            the address the peer's ClientHello was received from.
+     * @return a new {@link TlsServer} for this association.
+     * @throws IOException
+     *             to refuse the association.
+     */
+    TlsServer createServer(SocketAddress peerAddress) throws IOException;
+
+    /**
+     * Notify that the handshake for an association has completed.
+     *
+     * @param transport
+     *            the {@link DTLSTransport} for the association, which may be used to send data (from any
+     *            thread), or closed.
+     * @param peerAddress
+     *            the peer's current address.
+     */
+    void notifyAccepted(DTLSTransport transport, SocketAddress peerAddress) throws IOException;
+
+    /**
+     * Notify that application data has been received on an association.
+     *
+     * @param transport
+     *            the {@link DTLSTransport} for the association.
+     * @param buf
+     *            the buffer holding the data, which is only valid until this method returns.
+     * @param off
+     *            the offset of the data in buf.
+     * @param len
+     *            the length of the data.
+     */
+    void notifyDataReceived(DTLSTransport transport, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Notify that an association has been closed, whether by either peer, by a failure, or because it was
+     * idle for too long. This is called exactly once for each association for which
+     * {@link #createServer(SocketAddress)} returned a server.
+     *
+     * @param transport
+     *            the {@link DTLSTransport} for the association, or null if the handshake did not complete.
+     * @param peerAddress
+     *            the peer's last known address.
+     */
+    void notifyClosed(DTLSTransport transport, SocketAddress peerAddress);
+}
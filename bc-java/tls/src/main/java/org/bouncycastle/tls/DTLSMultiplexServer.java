@@ -0,0 +1,792 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
+
+/**
+ * A DTLS server accepting any number of associations over a single (unconnected) {@link DatagramChannel}.
+ * <p>
+ * A single thread (the caller of {@link #run()}) receives every datagram, and routes it to an association by
+ * the connection ID in the record header (RFC 9146), if any, or else by the peer's address. A datagram from an
+ * unknown peer is passed to a {@link DTLSVerifier}, which answers with a HelloVerifyRequest without keeping any
+ * state; only a ClientHello returning a valid cookie creates an association.
+ * </p>
+ * <p>
+ * Each association queues its datagrams, and is driven by tasks on the given {@link Executor}: the handshake
+ * runs as a single (blocking) task, and afterwards a task is scheduled only when datagrams are waiting, so
+ * established associations hold no thread while idle. Received application data, and the lifecycle of each
+ * association, are reported to a {@link DTLSMultiplexHandler}.
+ * </p>
+ * <p>
+ * NOTE: A handshake holds an executor thread until it completes, and timers in the record layer (e.g. for
+ * heartbeats) only advance when a datagram arrives for the association. Associations are therefore closed if
+ * the handshake doesn't complete within a handshake timeout (see {@link #setHandshakeTimeoutMillis(int)}), or
+ * if nothing is received for an idle timeout (see {@link #setIdleTimeoutMillis(int)}), so that peers that go
+ * silent can't exhaust the executor.
+ * </p>
+ */
+public class DTLSMultiplexServer
+{
+    public static final int DEFAULT_HANDSHAKE_TIMEOUT_MILLIS = 30 * 1000;
+    public static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    public static final int DEFAULT_MAX_QUEUED_DATAGRAMS = 32;
+
+    private static final int MIN_IP_OVERHEAD = 20;
+    private static final int MAX_IP_OVERHEAD = MIN_IP_OVERHEAD + 64;
+    private static final int UDP_OVERHEAD = 8;
+
+    private static final int CONNECTION_ID_OFFSET = 11;
+    private static final int SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final DatagramChannel channel;
+    private final Executor executor;
+    private final DTLSMultiplexHandler handler;
+    private final DTLSVerifier verifier;
+    private final DTLSServerProtocol serverProtocol = new DTLSServerProtocol();
+    private final int receiveLimit, sendLimit;
+
+    private final ConcurrentHashMap associationsByAddress = new ConcurrentHashMap();
+    private final ConcurrentHashMap associationsByConnectionID = new ConcurrentHashMap();
+    private final int[] connectionIDLengthCounts = new int[256];
+
+    // The distinct connection ID lengths in use (copy-on-write, guarded by connectionIDLengthCounts)
+    private volatile int[] connectionIDLengths = new int[0];
+
+    private volatile int handshakeTimeoutMillis = DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
+    private volatile int idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private volatile int maxAssociations = Integer.MAX_VALUE;
+    private volatile int maxQueuedDatagrams = DEFAULT_MAX_QUEUED_DATAGRAMS;
+
+    private volatile boolean closed = false;
+    private volatile Selector selector = null;
+
+    /**
+     * @param crypto
+     *            the {@link TlsCrypto} used for cookie verification.
+     * @param channel
+     *            a bound, unconnected {@link DatagramChannel}. It is switched to non-blocking mode by
+     *            {@link #run()}, and is not closed by this class.
+     * @param mtu
+     *            the MTU used to determine the receive and send limits of each association.
+     * @param executor
+     *            the {@link Executor} that runs handshakes and processes received datagrams.
+     * @param handler
+     *            the {@link DTLSMultiplexHandler} that creates servers and receives application data.
+     */
+    public DTLSMultiplexServer(TlsCrypto crypto, DatagramChannel channel, int mtu, Executor executor,
+        DTLSMultiplexHandler handler)
+    {
+        if (null == crypto)
+        {
+            throw new NullPointerException("'crypto' cannot be null");
+        }
+        if (null == channel)
+        {
+            throw new NullPointerException("'channel' cannot be null");
+        }
+        if (null == executor)
+        {
+            throw new NullPointerException("'executor' cannot be null");
+        }
+        if (null == handler)
+        {
+            throw new NullPointerException("'handler' cannot be null");
+        }
+
+        this.channel = channel;
+        this.executor = executor;
+        this.handler = handler;
+        this.verifier = new DTLSVerifier(crypto);
+
+        this.receiveLimit = mtu - MIN_IP_OVERHEAD - UDP_OVERHEAD;
+        this.sendLimit = mtu - MAX_IP_OVERHEAD - UDP_OVERHEAD;
+    }
+
+    public int getAssociationCount()
+    {
+        return associationsByAddress.size();
+    }
+
+    public int getHandshakeTimeoutMillis()
+    {
+        return handshakeTimeoutMillis;
+    }
+
+    /**
+     * Close associations whose handshake hasn't completed within the given time (checked about once a
+     * second). This applies in addition to any handshake timeout of the {@link TlsServer} itself.
+     *
+     * @param handshakeTimeoutMillis
+     *            the handshake timeout in milliseconds (default {@link #DEFAULT_HANDSHAKE_TIMEOUT_MILLIS}),
+     *            or 0 for no timeout.
+     */
+    public void setHandshakeTimeoutMillis(int handshakeTimeoutMillis)
+    {
+        if (handshakeTimeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("'handshakeTimeoutMillis' cannot be negative");
+        }
+
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+
+    public int getIdleTimeoutMillis()
+    {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Close associations that have received nothing for the given time (checked about once a second).
+     *
+     * @param idleTimeoutMillis
+     *            the idle timeout in milliseconds (default {@link #DEFAULT_IDLE_TIMEOUT_MILLIS}), or 0 for no
+     *            timeout.
+     */
+    public void setIdleTimeoutMillis(int idleTimeoutMillis)
+    {
+        if (idleTimeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("'idleTimeoutMillis' cannot be negative");
+        }
+
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public int getMaxAssociations()
+    {
+        return maxAssociations;
+    }
+
+    /**
+     * @param maxAssociations
+     *            the maximum number of associations; further verified ClientHellos are ignored until some
+     *            associations have closed.
+     */
+    public void setMaxAssociations(int maxAssociations)
+    {
+        if (maxAssociations < 1)
+        {
+            throw new IllegalArgumentException("'maxAssociations' must be positive");
+        }
+
+        this.maxAssociations = maxAssociations;
+    }
+
+    public int getMaxQueuedDatagrams()
+    {
+        return maxQueuedDatagrams;
+    }
+
+    /**
+     * @param maxQueuedDatagrams
+     *            the maximum number of received datagrams queued for each association; further datagrams are
+     *            dropped until the association catches up.
+     */
+    public void setMaxQueuedDatagrams(int maxQueuedDatagrams)
+    {
+        if (maxQueuedDatagrams < 1)
+        {
+            throw new IllegalArgumentException("'maxQueuedDatagrams' must be positive");
+        }
+
+        this.maxQueuedDatagrams = maxQueuedDatagrams;
+    }
+
+    /**
+     * Receive and dispatch datagrams until {@link #close()} is called (or the channel is closed). On return,
+     * all remaining associations are closed by tasks on the executor.
+     */
+    public void run() throws IOException
+    {
+        Selector selector = Selector.open();
+        this.selector = selector;
+
+        try
+        {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(receiveLimit);
+            byte[] buf = new byte[receiveLimit];
+            ChannelSender sender = new ChannelSender();
+
+            long nextSweepMillis = System.currentTimeMillis() + SWEEP_INTERVAL_MILLIS;
+
+            while (!closed)
+            {
+                selector.select(SWEEP_INTERVAL_MILLIS);
+                selector.selectedKeys().clear();
+
+                SocketAddress source;
+                while (!closed && null != (source = channel.receive(buffer)))
+                {
+                    buffer.flip();
+                    int length = buffer.remaining();
+                    buffer.get(buf, 0, length);
+                    buffer.clear();
+
+                    receiveDatagram(source, buf, length, sender);
+                }
+
+                long currentTimeMillis = System.currentTimeMillis();
+                if (currentTimeMillis >= nextSweepMillis)
+                {
+                    expireAssociations(currentTimeMillis);
+                    nextSweepMillis = currentTimeMillis + SWEEP_INTERVAL_MILLIS;
+                }
+            }
+        }
+        catch (ClosedChannelException e)
+        {
+            if (!closed)
+            {
+                throw e;
+            }
+        }
+        finally
+        {
+            this.selector = null;
+            selector.close();
+
+            Iterator it = associationsByAddress.values().iterator();
+            while (it.hasNext())
+            {
+                ((Association)it.next()).expire();
+            }
+        }
+    }
+
+    /**
+     * Stop {@link #run()}, which then closes all associations.
+     */
+    public void close()
+    {
+        this.closed = true;
+
+        Selector selector = this.selector;
+        if (null != selector)
+        {
+            selector.wakeup();
+        }
+    }
+
+    private void receiveDatagram(SocketAddress source, byte[] buf, int len, ChannelSender sender)
+    {
+        Association association = null;
+        if (len > DTLSRecordLayer.RECORD_HEADER_LENGTH && ContentType.tls12_cid == (buf[0] & 0xFF))
+        {
+            association = getAssociationByConnectionID(buf, len);
+        }
+        if (null == association)
+        {
+            association = (Association)associationsByAddress.get(source);
+        }
+
+        boolean isClientHello = isClientHelloRecord(buf, len);
+
+        /*
+         * A ClientHello for an established association means the peer has lost its state (RFC 6347
+         * 4.2.8); it can start a new association once it proves it owns the address.
+         */
+        if (null != association && !(isClientHello && association.isEstablished()))
+        {
+            association.enqueue(TlsUtils.copyOfRangeExact(buf, 0, len), source);
+            return;
+        }
+
+        if (!isClientHello)
+        {
+            return;
+        }
+
+        sender.target = source;
+        DTLSRequest request = verifier.verifyRequest(getClientID(source), buf, 0, len, sender);
+        sender.target = null;
+
+        if (null == request)
+        {
+            return;
+        }
+
+        if (null != association)
+        {
+            association.expire();
+        }
+        else if (associationsByAddress.size() >= maxAssociations)
+        {
+            return;
+        }
+
+        Association newAssociation = new Association(source, request);
+        associationsByAddress.put(source, newAssociation);
+        newAssociation.schedule();
+    }
+
+    private Association getAssociationByConnectionID(byte[] buf, int len)
+    {
+        // NOTE: The record header doesn't give the connection ID length, so try each length in use
+        int[] cidLengths = this.connectionIDLengths;
+        for (int i = 0; i < cidLengths.length; ++i)
+        {
+            int cidLength = cidLengths[i];
+            if (len >= DTLSRecordLayer.RECORD_HEADER_LENGTH + cidLength)
+            {
+                Object association = associationsByConnectionID.get(
+                    new ConnectionIDKey(buf, CONNECTION_ID_OFFSET, cidLength));
+                if (null != association)
+                {
+                    return (Association)association;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean addConnectionID(ConnectionIDKey key, Association association)
+    {
+        synchronized (connectionIDLengthCounts)
+        {
+            if (null != associationsByConnectionID.putIfAbsent(key, association))
+            {
+                return false;
+            }
+
+            if (connectionIDLengthCounts[key.len]++ == 0)
+            {
+                connectionIDLengths = Arrays.append(connectionIDLengths, key.len);
+            }
+            return true;
+        }
+    }
+
+    private void removeConnectionID(ConnectionIDKey key, Association association)
+    {
+        synchronized (connectionIDLengthCounts)
+        {
+            associationsByConnectionID.remove(key, association);
+
+            if (--connectionIDLengthCounts[key.len] == 0)
+            {
+                int[] cidLengths = connectionIDLengths;
+                int[] newLengths = new int[cidLengths.length - 1];
+                for (int i = 0, j = 0; i < cidLengths.length; ++i)
+                {
+                    if (cidLengths[i] != key.len)
+                    {
+                        newLengths[j++] = cidLengths[i];
+                    }
+                }
+                connectionIDLengths = newLengths;
+            }
+        }
+    }
+
+    private void expireAssociations(long currentTimeMillis)
+    {
+        int handshakeTimeoutMillis = this.handshakeTimeoutMillis;
+        int idleTimeoutMillis = this.idleTimeoutMillis;
+        if (handshakeTimeoutMillis < 1 && idleTimeoutMillis < 1)
+        {
+            return;
+        }
+
+        Iterator it = associationsByAddress.values().iterator();
+        while (it.hasNext())
+        {
+            Association association = (Association)it.next();
+            if (association.isHandshakeExpired(currentTimeMillis, handshakeTimeoutMillis)
+                || association.isIdleExpired(currentTimeMillis, idleTimeoutMillis))
+            {
+                association.expire();
+            }
+        }
+    }
+
+    private static boolean isClientHelloRecord(byte[] buf, int len)
+    {
+        try
+        {
+            return DTLSRecordLayer.receiveClientHelloRecord(buf, 0, len) >= 0;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    private static byte[] getClientID(SocketAddress address)
+    {
+        if (address instanceof InetSocketAddress)
+        {
+            InetSocketAddress inetAddress = (InetSocketAddress)address;
+            byte[] ip = inetAddress.getAddress().getAddress();
+            byte[] clientID = new byte[ip.length + 2];
+            System.arraycopy(ip, 0, clientID, 0, ip.length);
+            TlsUtils.writeUint16(inetAddress.getPort(), clientID, ip.length);
+            return clientID;
+        }
+        return Strings.toUTF8ByteArray(address.toString());
+    }
+
+    private class ChannelSender
+        implements DatagramSender
+    {
+        SocketAddress target = null;
+
+        public int getSendLimit()
+        {
+            return sendLimit;
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            channel.send(ByteBuffer.wrap(buf, off, len), target);
+        }
+    }
+
+    private static final class ConnectionIDKey
+    {
+        private final byte[] buf;
+        private final int off, len;
+
+        ConnectionIDKey(byte[] buf, int off, int len)
+        {
+            this.buf = buf;
+            this.off = off;
+            this.len = len;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ConnectionIDKey))
+            {
+                return false;
+            }
+            ConnectionIDKey other = (ConnectionIDKey)obj;
+            return Arrays.areEqual(buf, off, off + len, other.buf, other.off, other.off + other.len);
+        }
+
+        public int hashCode()
+        {
+            return Arrays.hashCode(buf, off, len);
+        }
+    }
+
+    private static final class Datagram
+    {
+        final byte[] data;
+        final SocketAddress source;
+
+        Datagram(byte[] data, SocketAddress source)
+        {
+            this.data = data;
+            this.source = source;
+        }
+    }
+
+    private final class Association
+        implements DatagramTransport, Runnable
+    {
+        private final LinkedBlockingQueue queue = new LinkedBlockingQueue(maxQueuedDatagrams);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private DTLSRequest request;
+        private TlsServer server = null;
+        private ConnectionIDKey connectionIDKey = null;
+        private SocketAddress lastSource = null;
+
+        private volatile SocketAddress peerAddress;
+        private volatile DTLSTransport transport = null;
+        private volatile boolean expired = false;
+        private volatile long lastActivityMillis = System.currentTimeMillis();
+        private volatile long handshakeStartMillis = 0L;
+
+        Association(SocketAddress peerAddress, DTLSRequest request)
+        {
+            this.peerAddress = peerAddress;
+            this.request = request;
+        }
+
+        boolean isEstablished()
+        {
+            return null != transport;
+        }
+
+        /*
+         * NOTE: Timed from when the handshake task starts, since a queued task doesn't hold a thread.
+         */
+        boolean isHandshakeExpired(long currentTimeMillis, int handshakeTimeoutMillis)
+        {
+            long handshakeStartMillis = this.handshakeStartMillis;
+            return handshakeTimeoutMillis > 0 && handshakeStartMillis != 0L && !isEstablished()
+                && currentTimeMillis - handshakeStartMillis >= handshakeTimeoutMillis;
+        }
+
+        boolean isIdleExpired(long currentTimeMillis, int idleTimeoutMillis)
+        {
+            return idleTimeoutMillis > 0 && currentTimeMillis - lastActivityMillis >= idleTimeoutMillis;
+        }
+
+        void enqueue(byte[] data, SocketAddress source)
+        {
+            this.lastActivityMillis = System.currentTimeMillis();
+
+            if (queue.offer(new Datagram(data, source)) && isEstablished())
+            {
+                schedule();
+            }
+        }
+
+        void expire()
+        {
+            this.expired = true;
+
+            // NOTE: A handshake in progress notices from receive(); otherwise close from a task
+            if (isEstablished())
+            {
+                schedule();
+            }
+        }
+
+        void schedule()
+        {
+            if (!closed.get() && scheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    executor.execute(this);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    scheduled.set(false);
+                    close();
+                }
+            }
+        }
+
+        public void run()
+        {
+            if (!isEstablished() && !handshake())
+            {
+                return;
+            }
+
+            for (;;)
+            {
+                drain();
+
+                scheduled.set(false);
+
+                if (closed.get() || (queue.isEmpty() && !expired) || !scheduled.compareAndSet(false, true))
+                {
+                    return;
+                }
+            }
+        }
+
+        private boolean handshake()
+        {
+            this.handshakeStartMillis = System.currentTimeMillis();
+
+            try
+            {
+                this.server = handler.createServer(peerAddress);
+
+                DTLSRequest request = this.request;
+                this.request = null;
+
+                DTLSTransport transport = serverProtocol.accept(server, this, request);
+
+                byte[] connectionID = transport.getContext().getSecurityParametersConnection()
+                    .getConnectionIDPeer();
+                if (null != connectionID && connectionID.length > 0)
+                {
+                    ConnectionIDKey key = new ConnectionIDKey(connectionID, 0, connectionID.length);
+                    if (addConnectionID(key, this))
+                    {
+                        this.connectionIDKey = key;
+                    }
+                }
+
+                this.transport = transport;
+
+                handler.notifyAccepted(transport, peerAddress);
+                return true;
+            }
+            catch (Exception e)
+            {
+                closeQuietly();
+                close();
+                return false;
+            }
+        }
+
+        private void drain()
+        {
+            DTLSTransport transport = this.transport;
+
+            if (expired)
+            {
+                closeQuietly();
+                close();
+                return;
+            }
+
+            try
+            {
+                byte[] buf = new byte[transport.getReceiveLimit()];
+
+                while (!closed.get())
+                {
+                    int length = transport.receivePending(buf, 0, buf.length);
+                    if (length < 0)
+                    {
+                        if (queue.isEmpty())
+                        {
+                            break;
+                        }
+
+                        length = transport.receive(buf, 0, buf.length, 1);
+                    }
+
+                    if (length >= 0 && !closed.get())
+                    {
+                        updatePeerAddress(lastSource);
+
+                        handler.notifyDataReceived(transport, buf, 0, length);
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                closeQuietly();
+                close();
+            }
+        }
+
+        /*
+         * RFC 9146 6. The peer address is only updated for a record that was successfully authenticated.
+         */
+        private void updatePeerAddress(SocketAddress source)
+        {
+            if (null != source && !source.equals(peerAddress))
+            {
+                associationsByAddress.remove(peerAddress, this);
+                associationsByAddress.put(source, this);
+                this.peerAddress = source;
+            }
+        }
+
+        private void closeQuietly()
+        {
+            DTLSTransport transport = this.transport;
+            if (null != transport)
+            {
+                try
+                {
+                    transport.close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore
+                }
+            }
+        }
+
+        public int getReceiveLimit()
+        {
+            return receiveLimit;
+        }
+
+        public int getSendLimit()
+        {
+            return sendLimit;
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            Datagram datagram;
+            try
+            {
+                do
+                {
+                    if (expired || closed.get())
+                    {
+                        throw new TlsTimeoutException("Association closed or idle");
+                    }
+
+                    datagram = (Datagram)queue.poll(waitMillis > 0 ? waitMillis : SWEEP_INTERVAL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                }
+                while (null == datagram && waitMillis < 1);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for datagram");
+            }
+
+            if (null == datagram)
+            {
+                return -1;
+            }
+
+            this.lastSource = datagram.source;
+
+            int length = Math.min(len, datagram.data.length);
+            System.arraycopy(datagram.data, 0, buf, off, length);
+            return length;
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            if (len > sendLimit)
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+            if (!closed.get())
+            {
+                channel.send(ByteBuffer.wrap(buf, off, len), peerAddress);
+            }
+        }
+
+        public void close()
+        {
+            if (closed.compareAndSet(false, true))
+            {
+                associationsByAddress.remove(peerAddress, this);
+
+                if (null != connectionIDKey)
+                {
+                    removeConnectionID(connectionIDKey, this);
+                }
+
+                queue.clear();
+
+                if (null != server)
+                {
+                    handler.notifyClosed(transport, peerAddress);
+                }
+            }
+        }
+    }
+}
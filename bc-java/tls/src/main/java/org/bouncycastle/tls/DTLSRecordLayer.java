@@ -5,6 +5,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsDecodeResult;
@@ -90,7 +92,14 @@ class DTLSRecordLayer
     {
         try
         {
-            sender.send(buf, off, len);
+            if (sender instanceof DatagramBufferTransport)
+            {
+                ((DatagramBufferTransport)sender).send(ByteBuffer.wrap(buf, off, len));
+            }
+            else
+            {
+                sender.send(buf, off, len);
+            }
         }
         catch (InterruptedIOException e)
         {
@@ -105,6 +114,13 @@ class DTLSRecordLayer
 
     private final ByteQueue recordQueue = new ByteQueue();
     private final Object writeLock = new Object();
+    private final AtomicReference receiveRecordBuffer = new AtomicReference();
+
+    // Records held back to be sent together (guarded by writeLock)
+    private boolean packing = false;
+    private byte[] packedDatagram = null;
+    private int packedLength = 0;
+    private byte[] sendPlaintextBuffer = null;
 
     private volatile boolean closed = false;
     private volatile boolean failed = false;
@@ -137,7 +153,8 @@ class DTLSRecordLayer
 
         this.inHandshake = true;
 
-        this.currentEpoch = new DTLSEpoch(0, TlsNullNullCipher.INSTANCE, RECORD_HEADER_LENGTH, RECORD_HEADER_LENGTH);        
+        this.currentEpoch = new DTLSEpoch(0, TlsNullNullCipher.INSTANCE, RECORD_HEADER_LENGTH, RECORD_HEADER_LENGTH,
+            peer.getReplayWindowSize());
         this.pendingEpoch = null;
         this.readEpoch = currentEpoch;
         this.writeEpoch = currentEpoch;
@@ -145,6 +162,11 @@ class DTLSRecordLayer
         setPlaintextLimit(MAX_FRAGMENT_LENGTH);
     }
 
+    TlsContext getContext()
+    {
+        return context;
+    }
+
     boolean isClosed()
     {
         return closed;
@@ -204,7 +226,7 @@ class DTLSRecordLayer
 
         // TODO Check for overflow
         this.pendingEpoch = new DTLSEpoch(writeEpoch.getEpoch() + 1, pendingCipher, recordHeaderLengthRead,
-            recordHeaderLengthWrite);
+            recordHeaderLengthWrite, peer.getReplayWindowSize());
     }
 
     void handshakeSuccessful(DTLSHandshakeRetransmit retransmit)
@@ -277,6 +299,75 @@ class DTLSRecordLayer
         return Math.min(plaintextLimit, plaintextEncodeLimit);        
     }
 
+    /**
+     * Get the largest plaintext that can be sent in a single record, if possible in the space remaining in
+     * the datagram currently being packed.
+     *
+     * @param handshakeType
+     *            the type of the handshake message the record is for; a finished message is sent in the next
+     *            epoch, after an implicit change_cipher_spec record (see {@link #send(byte[], int, int)}).
+     * @param minLength
+     *            the least plaintext worth adding to a partially packed datagram; if less space remains, the
+     *            datagram is sent first.
+     * @return the plaintext limit for the next record.
+     */
+    int getPackedSendLimit(short handshakeType, int minLength)
+        throws IOException
+    {
+        synchronized (writeLock)
+        {
+            DTLSEpoch epoch = writeEpoch;
+            int reservedLength = 0;
+
+            DTLSEpoch finishedEpoch = HandshakeType.finished == handshakeType ? getFinishedEpoch() : null;
+            if (null != finishedEpoch)
+            {
+                reservedLength = epoch.getRecordHeaderLengthWrite() + epoch.getCipher().getCiphertextEncodeLimit(1);
+                epoch = finishedEpoch;
+            }
+
+            if (packedLength > 0)
+            {
+                int packedLimit = getPlaintextSendLimit(epoch,
+                    transport.getSendLimit() - packedLength - reservedLength);
+                if (packedLimit >= minLength)
+                {
+                    return packedLimit;
+                }
+
+                sendPackedDatagram();
+            }
+
+            // NOTE: When packing, the change_cipher_spec record will share the datagram
+            return getPlaintextSendLimit(epoch, transport.getSendLimit() - (packing ? reservedLength : 0));
+        }
+    }
+
+    /**
+     * Hold back subsequent handshake (and change_cipher_spec) records so that as many as fit are sent in
+     * each datagram (RFC 6347 4.1.1), until {@link #flushPacked()} is called.
+     */
+    void startPacking()
+    {
+        synchronized (writeLock)
+        {
+            packing = true;
+        }
+    }
+
+    /**
+     * Send any records held back since {@link #startPacking()}, and stop packing.
+     */
+    void flushPacked()
+        throws IOException
+    {
+        synchronized (writeLock)
+        {
+            packing = false;
+            sendPackedDatagram();
+        }
+    }
+
     public int receive(byte[] buf, int off, int len, int waitMillis)
         throws IOException
     {
@@ -285,11 +376,41 @@ class DTLSRecordLayer
 
     int receive(byte[] buf, int off, int len, int waitMillis, DTLSRecordCallback recordCallback)
         throws IOException
+    {
+        return receive(ByteBuffer.wrap(buf, off, len), waitMillis, recordCallback);
+    }
+
+    int receive(ByteBuffer buf, int waitMillis, DTLSRecordCallback recordCallback)
+        throws IOException
+    {
+        /*
+         * NOTE: Records are received into, and decrypted in place in, a buffer that is re-used across calls.
+         * A DatagramBufferTransport receives each datagram straight into it, and only the decrypted application
+         * data is then copied, directly into the caller's buffer.
+         */
+        byte[] record = (byte[])receiveRecordBuffer.getAndSet(null);
+        int receiveLimit = transport.getReceiveLimit();
+        if (null == record || record.length < receiveLimit)
+        {
+            record = new byte[receiveLimit];
+        }
+
+        try
+        {
+            return implReceive(buf, waitMillis, recordCallback, record);
+        }
+        finally
+        {
+            receiveRecordBuffer.set(record);
+        }
+    }
+
+    private int implReceive(ByteBuffer buf, int waitMillis, DTLSRecordCallback recordCallback, byte[] record)
+        throws IOException
     {
         long currentTimeMillis = System.currentTimeMillis();
 
         Timeout timeout = Timeout.forWaitMillis(waitMillis, currentTimeMillis);
-        byte[] record = null;
 
         while (waitMillis >= 0)
         {
@@ -333,14 +454,8 @@ class DTLSRecordLayer
                 waitMillis = 1;
             }
 
-            int receiveLimit = transport.getReceiveLimit();            
-            if (null == record || record.length < receiveLimit)
-            {
-                record = new byte[receiveLimit];
-            }
-
-            int received = receiveRecord(record, 0, receiveLimit, waitMillis);
-            int processed = processRecord(received, record, buf, off, len, recordCallback);            
+            int received = receiveRecord(record, 0, record.length, waitMillis);
+            int processed = processRecord(received, record, buf, recordCallback);
             if (processed >= 0)
             {
                 return processed;
@@ -355,6 +470,12 @@ class DTLSRecordLayer
 
     int receivePending(byte[] buf, int off, int len, DTLSRecordCallback recordCallback)
         throws IOException
+    {
+        return receivePending(ByteBuffer.wrap(buf, off, len), recordCallback);
+    }
+
+    int receivePending(ByteBuffer buf, DTLSRecordCallback recordCallback)
+        throws IOException
     {
         if (recordQueue.available() > 0)
         {
@@ -364,7 +485,7 @@ class DTLSRecordLayer
             do
             {
                 int received = receivePendingRecord(record, 0, receiveLimit);
-                int processed = processRecord(received, record, buf, off, len, recordCallback);
+                int processed = processRecord(received, record, buf, recordCallback);
                 if (processed >= 0)
                 {
                     return processed;
@@ -376,6 +497,33 @@ class DTLSRecordLayer
         return -1;
     }
 
+    void send(ByteBuffer buf)
+        throws IOException
+    {
+        int len = buf.remaining();
+
+        if (buf.hasArray())
+        {
+            send(buf.array(), buf.arrayOffset() + buf.position(), len);
+        }
+        else
+        {
+            // NOTE: The cipher works on arrays, so a direct buffer needs copying (once) before encryption
+            synchronized (writeLock)
+            {
+                if (null == sendPlaintextBuffer || sendPlaintextBuffer.length < len)
+                {
+                    sendPlaintextBuffer = new byte[Math.max(len, getSendLimit())];
+                }
+
+                buf.duplicate().get(sendPlaintextBuffer, 0, len);
+                send(sendPlaintextBuffer, 0, len);
+            }
+        }
+
+        buf.position(buf.limit());
+    }
+
     public void send(byte[] buf, int off, int len)
         throws IOException
     {
@@ -388,16 +536,7 @@ class DTLSRecordLayer
             short handshakeType = TlsUtils.readUint8(buf, off);
             if (handshakeType == HandshakeType.finished)
             {
-                DTLSEpoch nextEpoch = null;
-                if (this.inHandshake)
-                {
-                    nextEpoch = pendingEpoch;
-                }
-                else if (this.writeEpoch == this.retransmitEpoch)
-                {
-                    nextEpoch = currentEpoch;
-                }
-
+                DTLSEpoch nextEpoch = getFinishedEpoch();
                 if (nextEpoch == null)
                 {
                     // TODO
@@ -406,7 +545,7 @@ class DTLSRecordLayer
 
                 // Implicitly send change_cipher_spec and change to pending cipher state
 
-                // TODO Send change_cipher_spec and finished records in single datagram?
+                // NOTE: When packing, change_cipher_spec and finished are sent in a single datagram
                 byte[] data = new byte[]{ 1 };
                 sendRecord(ContentType.change_cipher_spec, data, 0, data.length);
 
@@ -513,6 +652,11 @@ class DTLSRecordLayer
     {
         try
         {
+            if (transport instanceof DatagramBufferTransport)
+            {
+                return ((DatagramBufferTransport)transport).receive(ByteBuffer.wrap(buf, off, len), waitMillis);
+            }
+
             return transport.receive(buf, off, len, waitMillis);
         }
         catch (SocketTimeoutException e)
@@ -527,8 +671,7 @@ class DTLSRecordLayer
     }
 
     // TODO Include 'currentTimeMillis' as an argument, use with Timeout, resetHeartbeat
-    private int processRecord(int received, byte[] record, byte[] buf, int off, int len,
-        DTLSRecordCallback recordCallback)    
+    private int processRecord(int received, byte[] record, ByteBuffer buf, DTLSRecordCallback recordCallback)
         throws IOException
     {
         // NOTE: received < 0 (timeout) is covered by this first case
@@ -849,12 +992,12 @@ class DTLSRecordLayer
         }
 
         // NOTE: Internal error implies getReceiveLimit() was not used to allocate result space
-        if (decoded.len > len)
+        if (decoded.len > buf.remaining())
         {
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
-        System.arraycopy(decoded.buf, decoded.off, buf, off, decoded.len);
+        buf.put(decoded.buf, decoded.off, decoded.len);
         return decoded.len;
     }
 
@@ -1021,7 +1164,79 @@ class DTLSRecordLayer
 
             TlsUtils.writeUint16(ciphertextLength, encoded.buf, encoded.off + (recordHeaderLength - 2));
 
-            sendDatagram(transport, encoded.buf, encoded.off, encoded.len);
+            if (packing && (ContentType.handshake == contentType || ContentType.change_cipher_spec == contentType))
+            {
+                packRecord(encoded.buf, encoded.off, encoded.len);
+            }
+            else
+            {
+                sendPackedDatagram();
+                sendDatagram(transport, encoded.buf, encoded.off, encoded.len);
+            }
+        }
+    }
+
+    /*
+     * The epoch a finished message will be sent in, after an implicit change_cipher_spec.
+     */
+    private DTLSEpoch getFinishedEpoch()
+    {
+        if (this.inHandshake)
+        {
+            return pendingEpoch;
+        }
+        if (this.writeEpoch == this.retransmitEpoch)
+        {
+            return currentEpoch;
+        }
+        return null;
+    }
+
+    private int getPlaintextSendLimit(DTLSEpoch epoch, int datagramLimit)
+    {
+        int ciphertextLimit = datagramLimit - epoch.getRecordHeaderLengthWrite();
+        if (ciphertextLimit < 1)
+        {
+            return 0;
+        }
+
+        int plaintextEncodeLimit = epoch.getCipher().getPlaintextEncodeLimit(ciphertextLimit);
+
+        return Math.min(plaintextLimit, plaintextEncodeLimit);
+    }
+
+    private void packRecord(byte[] buf, int off, int len)
+        throws IOException
+    {
+        int sendLimit = transport.getSendLimit();
+        if (packedLength > 0 && packedLength + len > sendLimit)
+        {
+            sendPackedDatagram();
+        }
+
+        if (len > sendLimit)
+        {
+            sendDatagram(transport, buf, off, len);
+            return;
+        }
+
+        if (null == packedDatagram || packedDatagram.length < sendLimit)
+        {
+            packedDatagram = new byte[sendLimit];
+        }
+
+        System.arraycopy(buf, off, packedDatagram, packedLength, len);
+        packedLength += len;
+    }
+
+    private void sendPackedDatagram()
+        throws IOException
+    {
+        if (packedLength > 0)
+        {
+            int len = packedLength;
+            packedLength = 0;
+            sendDatagram(transport, packedDatagram, 0, len);
         }
     }
 
@@ -14,6 +14,7 @@ class DTLSReliableHandshake
     static final int MESSAGE_HEADER_LENGTH = 12;
 
     private static final int MAX_RECEIVE_AHEAD = 16;
+    private static final int MIN_PACKED_FRAGMENT_LENGTH = 64;
     private static final int MAX_RESEND_MILLIS = 60000;
 
     static ByteArrayInputStream receiveClientHelloMessage(byte[] msg, int msgOff, int msgLen) throws IOException
@@ -172,6 +173,8 @@ class DTLSReliableHandshake
 
         outboundFlight.addElement(message);
 
+        // NOTE: The flight is sent (packed) once we wait for the peer's next flight, or finish
+        recordLayer.startPacking();
         writeMessage(message);
         updateHandshakeMessagesDigest(message);
     }
@@ -238,7 +241,10 @@ class DTLSReliableHandshake
     }
 
     void finish()
+        throws IOException
     {
+        recordLayer.flushPacked();
+
         DTLSHandshakeRetransmit retransmit = null;
         if (null != resendTimeout)
         {
@@ -313,6 +319,8 @@ class DTLSReliableHandshake
     private Message implReceiveMessage()
         throws IOException
     {
+        recordLayer.flushPacked();
+
         long currentTimeMillis = System.currentTimeMillis();
 
         if (null == resendTimeout)
@@ -460,10 +468,12 @@ class DTLSReliableHandshake
         throws IOException
     {
         recordLayer.resetWriteEpoch();
+        recordLayer.startPacking();
         for (int i = 0; i < outboundFlight.size(); ++i)
         {
             writeMessage((Message)outboundFlight.elementAt(i));
         }
+        recordLayer.flushPacked();
 
         resendMillis = backOff(resendMillis);
         resendTimeout = new Timeout(resendMillis);
@@ -472,22 +482,27 @@ class DTLSReliableHandshake
     private void writeMessage(Message message)
         throws IOException
     {
-        int sendLimit = recordLayer.getSendLimit();
-        int fragmentLimit = sendLimit - MESSAGE_HEADER_LENGTH;
-
-        // TODO Support a higher minimum fragment size?
-        if (fragmentLimit < 1)
-        {
-            // TODO Should we be throwing an exception here?
-            throw new TlsFatalAlert(AlertDescription.internal_error);
-        }
-
         int length = message.getBody().length;
 
         // NOTE: Must still send a fragment if body is empty
         int fragment_offset = 0;
         do
         {
+            /*
+             * Fill any space left in the datagram being packed, unless only a small fragment would fit, since
+             * each fragment costs a record header and a message header.
+             */
+            int minFragmentLength = Math.max(1, Math.min(length - fragment_offset, MIN_PACKED_FRAGMENT_LENGTH));
+            int fragmentLimit = recordLayer.getPackedSendLimit(message.getType(),
+                MESSAGE_HEADER_LENGTH + minFragmentLength) - MESSAGE_HEADER_LENGTH;
+
+            // TODO Support a higher minimum fragment size?
+            if (fragmentLimit < 1)
+            {
+                // TODO Should we be throwing an exception here?
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+
             int fragment_length = Math.min(length - fragment_offset, fragmentLimit);
             writeHandshakeFragment(message, fragment_offset, fragment_length);
             fragment_offset += fragment_length;
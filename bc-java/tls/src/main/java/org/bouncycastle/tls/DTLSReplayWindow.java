@@ -1,19 +1,63 @@
 package org.bouncycastle.tls;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * RFC 4347 4.1.2.5 Anti-replay
  * <p>
  * Support fast rejection of duplicate records by maintaining a sliding receive window
  * </p>
+ * <p>
+ * The window is a ring of slots, each holding a 16-bit bitmap for a block of 16 consecutive sequence numbers
+ * tagged with the (44-bit) index of that block. A slot is simply overwritten when a newer block needs it, so
+ * the window slides without clearing anything, and checks and updates are O(1) in the window size. Each slot
+ * is updated with a single compare-and-set, so the window may be used concurrently (e.g. by a receive thread
+ * and a pool of threads decrypting records).
+ * </p>
  */
 class DTLSReplayWindow
 {
+    static final int MAX_WINDOW_SIZE = 1 << 20;
+
     private static final long VALID_SEQ_MASK = 0x0000FFFFFFFFFFFFL;
 
-    private static final long WINDOW_SIZE = 64L;
+    private static final int BLOCK_BITS = 4;
+    private static final long BLOCK_MASK = (1L << BLOCK_BITS) - 1L;
+    private static final int TAG_SHIFT = 1 << BLOCK_BITS;
 
-    private long latestConfirmedSeq = -1;
-    private long bitmap = 0;
+    private final long windowSize;
+    private final int slotMask;
+    private final AtomicLongArray slots;
+    private final AtomicLong latestConfirmedSeq = new AtomicLong(-1L);
+
+    /**
+     * @param windowSize
+     *            the number of sequence numbers (ending at the latest confirmed one) for which duplicates are
+     *            detected; older records are always discarded.
+     */
+    DTLSReplayWindow(int windowSize)
+    {
+        if (windowSize < 1 || windowSize > MAX_WINDOW_SIZE)
+        {
+            throw new IllegalArgumentException("'windowSize' must be in the range [1, " + MAX_WINDOW_SIZE + "]");
+        }
+
+        /*
+         * NOTE: Blocks spanned by the window, plus one for the newest (partial) block, must map to distinct
+         * slots, so that a slot is only ever taken by a newer block once its old block is out of the window.
+         */
+        int blocks = ((windowSize + (int)BLOCK_MASK) >>> BLOCK_BITS) + 1;
+        int slotCount = 1;
+        while (slotCount < blocks)
+        {
+            slotCount <<= 1;
+        }
+
+        this.windowSize = windowSize;
+        this.slotMask = slotCount - 1;
+        this.slots = new AtomicLongArray(slotCount);
+    }
 
     /**
      * Check whether a received record with the given sequence number should be rejected as a duplicate.
@@ -28,26 +72,30 @@ class DTLSReplayWindow
             return true;
         }
 
-        if (seq <= latestConfirmedSeq)
+        long latest = latestConfirmedSeq.get();
+        if (seq <= latest && latest - seq >= windowSize)
         {
-            long diff = latestConfirmedSeq - seq;
-            if (diff >= WINDOW_SIZE)
-            {
-                return true;
-            }
-            if ((bitmap & (1L << diff)) != 0)
-            {
-                return true;
-            }
+            return true;
         }
 
-        return false;
+        long block = seq >>> BLOCK_BITS;
+        long slot = slots.get(getSlotIndex(block));
+        long slotBlock = slot >>> TAG_SHIFT;
+
+        if (slotBlock != block)
+        {
+            // A newer block in the slot means this record has (just) fallen out of the window
+            return slotBlock > block;
+        }
+
+        return (slot & getBit(seq)) != 0;
     }
 
     /**
      * Report that a received record with the given sequence number passed authentication checks.
      *
      * @param seq the 48-bit DTLSPlainText.sequence_number field of an authenticated record.
+     * @return true if the record is (now) the latest confirmed.
      */
     boolean reportAuthenticated(long seq)
     {
@@ -56,29 +104,56 @@ class DTLSReplayWindow
             throw new IllegalArgumentException("'seq' out of range");
         }
 
-        if (seq <= latestConfirmedSeq)
+        long latest = latestConfirmedSeq.get();
+        if (seq <= latest && latest - seq >= windowSize)
         {
-            long diff = latestConfirmedSeq - seq;
-            if (diff < WINDOW_SIZE)
-            {
-                bitmap |= (1L << diff);
-            }
             return false;
         }
-        else
+
+        long block = seq >>> BLOCK_BITS;
+        int index = getSlotIndex(block);
+        long bit = getBit(seq);
+
+        for (;;)
         {
-            long diff = seq - latestConfirmedSeq;
-            if (diff >= WINDOW_SIZE)
+            long slot = slots.get(index);
+            long slotBlock = slot >>> TAG_SHIFT;
+
+            long update;
+            if (slotBlock == block)
+            {
+                if ((slot & bit) != 0)
+                {
+                    break;
+                }
+                update = slot | bit;
+            }
+            else if (slotBlock < block)
             {
-                bitmap = 1;
+                update = (block << TAG_SHIFT) | bit;
             }
             else
             {
-                bitmap <<= (int)diff;        // for earlier JDKs
-                bitmap |= 1;
+                break;
+            }
+
+            if (slots.compareAndSet(index, slot, update))
+            {
+                break;
+            }
+        }
+
+        for (;;)
+        {
+            latest = latestConfirmedSeq.get();
+            if (seq <= latest)
+            {
+                return false;
+            }
+            if (latestConfirmedSeq.compareAndSet(latest, seq))
+            {
+                return true;
             }
-            latestConfirmedSeq = seq;
-            return true;
         }
     }
 
@@ -89,8 +164,32 @@ class DTLSReplayWindow
             throw new IllegalArgumentException("'seq' out of range");
         }
 
+        for (int i = 0; i <= slotMask; ++i)
+        {
+            slots.set(i, 0L);
+        }
+
         // Discard future records unless sequence number > 'seq'
-        latestConfirmedSeq = seq;
-        bitmap = -1L >>> Math.max(0, 63 - seq);
+        long low = Math.max(0L, seq - windowSize + 1);
+        for (long block = low >>> BLOCK_BITS; block <= (seq >>> BLOCK_BITS); ++block)
+        {
+            long first = Math.max(low, block << BLOCK_BITS);
+            long last = Math.min(seq, (block << BLOCK_BITS) | BLOCK_MASK);
+            long bits = ((1L << (int)(last - first + 1)) - 1L) << (int)(first & BLOCK_MASK);
+
+            slots.set(getSlotIndex(block), (block << TAG_SHIFT) | bits);
+        }
+
+        latestConfirmedSeq.set(seq);
+    }
+
+    private int getSlotIndex(long block)
+    {
+        return (int)block & slotMask;
+    }
+
+    private static long getBit(long seq)
+    {
+        return 1L << (int)(seq & BLOCK_MASK);
     }
 }
@@ -2,9 +2,10 @@ package org.bouncycastle.tls;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 
 public class DTLSTransport
-    implements DatagramTransport
+    implements DatagramBufferTransport
 {
     private final DTLSRecordLayer recordLayer;
 
@@ -13,6 +14,11 @@ public class DTLSTransport
         this.recordLayer = recordLayer;
     }
 
+    TlsContext getContext()
+    {
+        return recordLayer.getContext();
+    }
+
     public int getReceiveLimit()
         throws IOException
     {
@@ -81,6 +87,67 @@ public class DTLSTransport
         }
     }
 
+    public int receive(ByteBuffer buf, int waitMillis)
+        throws IOException
+    {
+        return receive(buf, waitMillis, null);
+    }
+
+    /**
+     * Receive application data directly into a {@link ByteBuffer}, which may be a direct buffer.
+     *
+     * @param buf
+     *            the buffer to receive into, starting at its current position. It should have at least
+     *            {@link #getReceiveLimit()} bytes remaining. On return, the position will have been advanced by
+     *            the number of bytes received.
+     * @return the number of bytes received, or -1 if no application data was received before the timeout.
+     */
+    public int receive(ByteBuffer buf, int waitMillis, DTLSRecordCallback recordCallback)
+        throws IOException
+    {
+        if (null == buf)
+        {
+            throw new NullPointerException("'buf' cannot be null");
+        }
+        if (buf.isReadOnly())
+        {
+            throw new IllegalArgumentException("'buf' cannot be read-only");
+        }
+        if (waitMillis < 0)
+        {
+            throw new IllegalArgumentException("'waitMillis' cannot be negative");
+        }
+
+        try
+        {
+            return recordLayer.receive(buf, waitMillis, recordCallback);
+        }
+        catch (TlsFatalAlert fatalAlert)
+        {
+            if (AlertDescription.bad_record_mac == fatalAlert.getAlertDescription())
+            {
+                return -1;
+            }
+
+            recordLayer.fail(fatalAlert.getAlertDescription());
+            throw fatalAlert;
+        }
+        catch (InterruptedIOException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw new TlsFatalAlert(AlertDescription.internal_error, e);
+        }
+    }
+
     public int receivePending(byte[] buf, int off, int len)
         throws IOException
     {
@@ -174,6 +241,42 @@ public class DTLSTransport
         }
     }
 
+    /**
+     * Send the remaining bytes of a {@link ByteBuffer} (which may be a direct buffer) as application data.
+     */
+    public void send(ByteBuffer buf)
+        throws IOException
+    {
+        if (null == buf)
+        {
+            throw new NullPointerException("'buf' cannot be null");
+        }
+
+        try
+        {
+            recordLayer.send(buf);
+        }
+        catch (TlsFatalAlert fatalAlert)
+        {
+            recordLayer.fail(fatalAlert.getAlertDescription());
+            throw fatalAlert;
+        }
+        catch (InterruptedIOException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw new TlsFatalAlert(AlertDescription.internal_error, e);
+        }
+    }
+
     public void close()
         throws IOException
     {
@@ -0,0 +1,35 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DatagramTransport} that can also send and receive datagrams directly from/to {@link ByteBuffer}s
+ * (which may be direct buffers), avoiding copies through intermediate byte arrays.
+ */
+public interface DatagramBufferTransport
+    extends DatagramTransport
+{
+    /**
+     * Receive a single datagram into the remaining space of a buffer.
+     *
+     * @param buf
+     *            the buffer to receive into, starting at its current position. On return, the position will
+     *            have been advanced by the number of bytes received.
+     * @param waitMillis
+     *            the maximum time to wait for a datagram, or 0 to wait indefinitely.
+     * @return the number of bytes received, or -1 if no datagram was received before the timeout.
+     * @throws IOException
+     */
+    int receive(ByteBuffer buf, int waitMillis) throws IOException;
+
+    /**
+     * Send the remaining bytes of a buffer as a single datagram.
+     *
+     * @param buf
+     *            the buffer to send from, starting at its current position. On return, the position will be
+     *            equal to the limit.
+     * @throws IOException
+     */
+    void send(ByteBuffer buf) throws IOException;
+}
@@ -0,0 +1,131 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * A {@link DatagramBufferTransport} over a connected {@link DatagramChannel}. The channel is switched to
+ * non-blocking mode, with selectors used to wait for incoming datagrams (and for space to send). When given direct
+ * buffers, datagrams are read and written by the channel without any intermediate copies.
+ */
+public class DatagramChannelTransport
+    implements DatagramBufferTransport
+{
+    protected final static int MIN_IP_OVERHEAD = 20;
+    protected final static int MAX_IP_OVERHEAD = MIN_IP_OVERHEAD + 64;
+    protected final static int UDP_OVERHEAD = 8;
+
+    protected final DatagramChannel channel;
+    protected final int receiveLimit, sendLimit;
+
+    private final Selector readSelector, writeSelector;
+
+    public DatagramChannelTransport(DatagramChannel channel, int mtu)
+        throws IOException
+    {
+        if (!channel.socket().isBound() || !channel.isConnected())
+        {
+            throw new IllegalArgumentException("'channel' must be bound and connected");
+        }
+
+        this.channel = channel;
+
+        this.receiveLimit = mtu - MIN_IP_OVERHEAD - UDP_OVERHEAD;
+        this.sendLimit = mtu - MAX_IP_OVERHEAD - UDP_OVERHEAD;
+
+        channel.configureBlocking(false);
+
+        // NOTE: Separate selectors, so that one thread can send while another is waiting to receive
+        this.readSelector = Selector.open();
+        this.writeSelector = Selector.open();
+
+        channel.register(readSelector, SelectionKey.OP_READ);
+        channel.register(writeSelector, SelectionKey.OP_WRITE);
+    }
+
+    public int getReceiveLimit()
+    {
+        return receiveLimit;
+    }
+
+    public int getSendLimit()
+    {
+        return sendLimit;
+    }
+
+    public int receive(byte[] buf, int off, int len, int waitMillis)
+        throws IOException
+    {
+        return receive(ByteBuffer.wrap(buf, off, len), waitMillis);
+    }
+
+    public int receive(ByteBuffer buf, int waitMillis)
+        throws IOException
+    {
+        long deadline = waitMillis > 0 ? System.currentTimeMillis() + waitMillis : 0L;
+
+        int position = buf.position();
+        while (null == channel.receive(buf))
+        {
+            long remainingMillis = 0L;
+            if (deadline > 0L)
+            {
+                remainingMillis = deadline - System.currentTimeMillis();
+                if (remainingMillis < 1L)
+                {
+                    return -1;
+                }
+            }
+
+            readSelector.select(remainingMillis);
+            readSelector.selectedKeys().clear();
+        }
+
+        return buf.position() - position;
+    }
+
+    public void send(byte[] buf, int off, int len)
+        throws IOException
+    {
+        send(ByteBuffer.wrap(buf, off, len));
+    }
+
+    public void send(ByteBuffer buf)
+        throws IOException
+    {
+        int len = buf.remaining();
+        if (len > getSendLimit())
+        {
+            /*
+             * RFC 4347 4.1.1. "If the application attempts to send a record larger than the MTU,
+             * the DTLS implementation SHOULD generate an error, thus avoiding sending a packet
+             * which will be fragmented."
+             */
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        // NOTE: A datagram is either sent whole or (when there is no space for it) not at all
+        while (channel.write(buf) < 1 && len > 0)
+        {
+            writeSelector.select();
+            writeSelector.selectedKeys().clear();
+        }
+    }
+
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            readSelector.close();
+            writeSelector.close();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.CryptoHashAlgorithm;
 import org.bouncycastle.tls.crypto.TlsHash;
@@ -11,26 +12,36 @@ import org.bouncycastle.util.Integers;
 
 /**
  * Buffers input until the hash algorithm is determined.
+ * <p>
+ * Every tracked hash is kept up to date with the transcript as it arrives (a hash tracked after some input
+ * has been buffered is first brought up to date from the buffer), so the buffer only serves hashes that
+ * may still be tracked, and is dropped once the hash algorithms are sealed (unless buffering is forced), or
+ * earlier via {@link #stopBuffering()}. Candidate hashes (e.g. the PRF hashes of the offered TLS 1.3 cipher
+ * suites) let input be hashed incrementally before the PRF is determined; those not subsequently needed are
+ * then dropped.
+ * </p>
  */
 class DeferredHash
     implements TlsHandshakeHash
 {
-    protected static final int BUFFERING_HASH_LIMIT = 4;
-
     protected TlsContext context;
 
     private DigestInputBuffer buf;
     private Hashtable hashes;
+    private Vector candidates;
     private boolean forceBuffering;
     private boolean sealed;
+    private boolean updated;
 
     DeferredHash(TlsContext context)
     {
         this.context = context;
         this.buf = new DigestInputBuffer();
         this.hashes = new Hashtable();
+        this.candidates = new Vector();
         this.forceBuffering = false;
         this.sealed = false;
+        this.updated = false;
     }
 
     public void copyBufferTo(OutputStream output)
@@ -47,7 +58,7 @@ class DeferredHash
 
     public void forceBuffering()
     {
-        if (sealed)
+        if (sealed || buf == null)
         {
             throw new IllegalStateException("Too late to force buffering");
         }
@@ -74,6 +85,28 @@ class DeferredHash
             break;
         }
         }
+
+        // Any candidates that weren't needed after all
+        for (int i = 0; i < candidates.size(); ++i)
+        {
+            hashes.remove(candidates.elementAt(i));
+        }
+        candidates.removeAllElements();
+    }
+
+    public void trackCandidateHashAlgorithm(int cryptoHashAlgorithm)
+    {
+        if (sealed)
+        {
+            throw new IllegalStateException("Too late to track more hash algorithms");
+        }
+
+        Integer key = box(cryptoHashAlgorithm);
+        if (!hashes.containsKey(key))
+        {
+            checkTrackingHash(key);
+            candidates.addElement(key);
+        }
     }
 
     public void trackHashAlgorithm(int cryptoHashAlgorithm)
@@ -86,6 +119,16 @@ class DeferredHash
         checkTrackingHash(cryptoHashAlgorithm);
     }
 
+    public void stopBuffering()
+    {
+        if (forceBuffering)
+        {
+            throw new IllegalStateException("Buffering was forced");
+        }
+
+        this.buf = null;
+    }
+
     public void sealHashAlgorithms()
     {
         if (sealed)
@@ -120,6 +163,7 @@ class DeferredHash
 
         this.buf = null;
         this.hashes = newHashes;
+        this.candidates.removeAllElements();
         this.forceBuffering = false;
         this.sealed = true;
     }
@@ -148,11 +192,6 @@ class DeferredHash
         }
         }
 
-        if (buf != null)
-        {
-            buf.updateDigest(prfHash);
-        }
-
         return prfHash;
     }
 
@@ -161,26 +200,29 @@ class DeferredHash
         TlsHash hash = (TlsHash)hashes.get(box(cryptoHashAlgorithm));
         if (hash == null)
         {
-            throw new IllegalStateException("CryptoHashAlgorithm." + cryptoHashAlgorithm + " is not being tracked");
-        }
-
-        checkStopBuffering();
+            if (buf == null)
+            {
+                throw new IllegalStateException("CryptoHashAlgorithm." + cryptoHashAlgorithm + " is not being tracked");
+            }
 
-        hash = hash.cloneHash();
-        if (buf != null)
-        {
+            // NOTE: Hash the buffered transcript, without tracking this algorithm
+            hash = context.getCrypto().createHash(cryptoHashAlgorithm);
             buf.updateDigest(hash);
+            return hash.calculateHash();
         }
 
-        return hash.calculateHash();
+        checkStopBuffering();
+
+        return hash.cloneHash().calculateHash();
     }
 
     public void update(byte[] input, int inOff, int len)
     {
+        this.updated = true;
+
         if (buf != null)
         {
             buf.write(input, inOff, len);
-            return;
         }
 
         Enumeration e = hashes.elements();
@@ -203,10 +245,11 @@ class DeferredHash
 
     public void reset()
     {
+        this.updated = false;
+
         if (buf != null)
         {
             buf.reset();
-            return;
         }
 
         Enumeration e = hashes.elements();
@@ -224,15 +267,9 @@ class DeferredHash
 
     protected void checkStopBuffering()
     {
-        if (!forceBuffering && sealed && buf != null && hashes.size() <= BUFFERING_HASH_LIMIT)
+        if (!forceBuffering && sealed && buf != null)
         {
-            Enumeration e = hashes.elements();
-            while (e.hasMoreElements())
-            {
-                TlsHash hash = (TlsHash)e.nextElement();
-                buf.updateDigest(hash);
-            }
-
+            // NOTE: The tracked hashes are already up to date
             this.buf = null;
         }
     }
@@ -247,8 +284,21 @@ class DeferredHash
         if (!hashes.containsKey(cryptoHashAlgorithm))
         {
             TlsHash hash = context.getCrypto().createHash(cryptoHashAlgorithm.intValue());
+            if (buf != null)
+            {
+                buf.updateDigest(hash);
+            }
+            else if (updated)
+            {
+                throw new IllegalStateException("Too late to track CryptoHashAlgorithm." + cryptoHashAlgorithm);
+            }
             hashes.put(cryptoHashAlgorithm, hash);
         }
+        else
+        {
+            // An explicitly tracked hash is no longer just a candidate
+            candidates.removeElement(cryptoHashAlgorithm);
+        }
     }
 
     protected TlsHash cloneHash(int cryptoHashAlgorithm)
@@ -268,11 +318,6 @@ class DeferredHash
 
     protected void cloneHash(Hashtable newHashes, Integer cryptoHashAlgorithm)
     {
-        TlsHash hash = cloneHash(cryptoHashAlgorithm);
-        if (buf != null)
-        {
-            buf.updateDigest(hash);
-        }
-        newHashes.put(cryptoHashAlgorithm, hash);
+        newHashes.put(cryptoHashAlgorithm, cloneHash(cryptoHashAlgorithm));
     }
 }
@@ -0,0 +1,40 @@
+package org.bouncycastle.tls;
+
+import org.bouncycastle.tls.crypto.TlsCryptoParameters;
+
+/**
+ * (TLS 1.3) Crypto parameters for the 0-RTT early data cipher, which is created from its own security
+ * parameters rather than from those of the handshake.
+ */
+class EarlyDataCryptoParameters
+    extends TlsCryptoParameters
+{
+    private final SecurityParameters securityParameters;
+
+    EarlyDataCryptoParameters(TlsContext context, SecurityParameters securityParameters)
+    {
+        super(context);
+
+        this.securityParameters = securityParameters;
+    }
+
+    public SecurityParameters getSecurityParametersConnection()
+    {
+        return securityParameters;
+    }
+
+    public SecurityParameters getSecurityParametersHandshake()
+    {
+        return securityParameters;
+    }
+
+    public ProtocolVersion getServerVersion()
+    {
+        return securityParameters.getNegotiatedVersion();
+    }
+
+    public boolean isEarlyData()
+    {
+        return true;
+    }
+}
@@ -143,6 +143,12 @@ public class ExtensionType
      */
     public static final int renegotiation_info = 0xff01;
 
+    /*
+     * (Experimental) KEM-based server authentication, after draft-celi-wiggers-tls-authkem. Uses a
+     * private-use codepoint, so it is NOT interoperable with other implementations.
+     */
+    public static final int kem_authentication = 0xff4b;
+
     public static String getName(int extensionType)
     {
         switch (extensionType)
@@ -229,6 +235,8 @@ public class ExtensionType
             return "connection_id";
         case renegotiation_info:
             return "renegotiation_info";
+        case kem_authentication:
+            return "kem_authentication";
         default:
             return "UNKNOWN";
         }
@@ -284,6 +292,7 @@ public class ExtensionType
         case key_share:
         case connection_id:
         case renegotiation_info:
+        case kem_authentication:
             return true;
         default:
             return false;
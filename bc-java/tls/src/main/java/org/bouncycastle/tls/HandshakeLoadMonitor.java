@@ -0,0 +1,107 @@
+package org.bouncycastle.tls;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TlsLoadMonitor} derived from handshake activity: the number of handshakes in progress
+ * (relative to a nominal maximum), and an exponentially-weighted moving average of recent handshake
+ * latency (relative to a target latency). An optional additional monitor (e.g. of CPU usage) can be
+ * supplied; the reported load is the maximum of all the signals.
+ * <p>
+ * The owner is responsible for calling {@link #handshakeStarted()} and then exactly one of
+ * {@link #handshakeCompleted(long)} or {@link #handshakeFailed()} for each handshake.
+ * </p>
+ */
+public class HandshakeLoadMonitor
+    implements TlsLoadMonitor
+{
+    // NOTE: Weight of each new latency sample in the moving average, as a power of 2 (i.e. 1/8)
+    private static final int EWMA_SHIFT = 3;
+
+    protected final int maxConcurrentHandshakes;
+    protected final long targetLatencyNanos;
+    protected final TlsLoadMonitor additionalMonitor;
+
+    private final AtomicInteger inProgress = new AtomicInteger(0);
+    private final AtomicLong averageLatencyNanos = new AtomicLong(0L);
+
+    /**
+     * @param maxConcurrentHandshakes
+     *            the number of concurrent handshakes that represents full load.
+     * @param targetLatencyMillis
+     *            the average handshake latency (in milliseconds) that represents full load.
+     * @param additionalMonitor
+     *            an optional further load signal (e.g. CPU), or null.
+     */
+    public HandshakeLoadMonitor(int maxConcurrentHandshakes, long targetLatencyMillis,
+        TlsLoadMonitor additionalMonitor)
+    {
+        if (maxConcurrentHandshakes < 1)
+        {
+            throw new IllegalArgumentException("'maxConcurrentHandshakes' must be >= 1");
+        }
+        if (targetLatencyMillis < 1)
+        {
+            throw new IllegalArgumentException("'targetLatencyMillis' must be >= 1");
+        }
+
+        this.maxConcurrentHandshakes = maxConcurrentHandshakes;
+        this.targetLatencyNanos = targetLatencyMillis * 1000000L;
+        this.additionalMonitor = additionalMonitor;
+    }
+
+    public void handshakeStarted()
+    {
+        inProgress.incrementAndGet();
+    }
+
+    /**
+     * @param latencyNanos
+     *            the elapsed time (in nanoseconds) of the completed handshake.
+     */
+    public void handshakeCompleted(long latencyNanos)
+    {
+        inProgress.decrementAndGet();
+
+        long sample = Math.max(0L, latencyNanos);
+        for (;;)
+        {
+            long current = averageLatencyNanos.get();
+            long next = current == 0L ? sample : current + ((sample - current) >> EWMA_SHIFT);
+            if (averageLatencyNanos.compareAndSet(current, next))
+            {
+                break;
+            }
+        }
+    }
+
+    public void handshakeFailed()
+    {
+        inProgress.decrementAndGet();
+    }
+
+    public int getHandshakesInProgress()
+    {
+        return Math.max(0, inProgress.get());
+    }
+
+    public long getAverageLatencyNanos()
+    {
+        return averageLatencyNanos.get();
+    }
+
+    public double getLoad()
+    {
+        double load = (double)getHandshakesInProgress() / maxConcurrentHandshakes;
+
+        load = Math.max(load, (double)getAverageLatencyNanos() / targetLatencyNanos);
+
+        if (null != additionalMonitor)
+        {
+            load = Math.max(load, additionalMonitor.getLoad());
+        }
+
+        return load;
+    }
+}
@@ -47,6 +47,12 @@ public class HandshakeType
      */
     public static final short compressed_certificate = 25;
 
+    /*
+     * (Experimental) KEM-based server authentication, after draft-celi-wiggers-tls-authkem. Uses a
+     * private-use codepoint, so it is NOT interoperable with other implementations.
+     */
+    public static final short kem_encapsulation = 0xf0;
+
     public static String getName(short handshakeType)
     {
         switch (handshakeType)
@@ -93,6 +99,8 @@ public class HandshakeType
             return "message_hash";
         case compressed_certificate:
             return "compressed_certificate";
+        case kem_encapsulation:
+            return "kem_encapsulation";
         default:
             return "UNKNOWN";
         }
@@ -128,6 +136,7 @@ public class HandshakeType
         case key_update:
         case message_hash:
         case compressed_certificate:
+        case kem_encapsulation:
             return true;
         default:
             return false;
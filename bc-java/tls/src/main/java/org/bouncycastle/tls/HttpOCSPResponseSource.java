@@ -0,0 +1,153 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPRequest;
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.Request;
+import org.bouncycastle.asn1.ocsp.TBSRequest;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.util.io.Streams;
+
+/**
+ * A {@link TlsOCSPResponseSource} that sends an OCSP request (RFC 6960) by HTTP POST, either to a fixed
+ * responder or to the one named in the certificate's Authority Information Access extension.
+ * <p>
+ * No nonce is included in the request, so that responders may serve pre-produced responses.
+ * </p>
+ */
+public class HttpOCSPResponseSource
+    implements TlsOCSPResponseSource
+{
+    private static final int MAX_RESPONSE_LENGTH = 64 * 1024;
+
+    protected final URL responderURL;
+    protected final int timeoutMillis;
+
+    /**
+     * Use the responder named in each certificate's Authority Information Access extension.
+     */
+    public HttpOCSPResponseSource()
+    {
+        this(null, 10000);
+    }
+
+    /**
+     * @param responderURL
+     *            the responder to query, or null to use the one named in each certificate.
+     * @param timeoutMillis
+     *            the connect and read timeout (in milliseconds).
+     */
+    public HttpOCSPResponseSource(URL responderURL, int timeoutMillis)
+    {
+        this.responderURL = responderURL;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public OCSPResponse getOCSPResponse(Certificate subject, Certificate issuer) throws IOException
+    {
+        URL url = null != responderURL ? responderURL : getResponderURL(subject);
+        if (null == url)
+        {
+            return null;
+        }
+
+        byte[] request = createRequest(subject, issuer).getEncoded(ASN1Encoding.DER);
+
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        try
+        {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/ocsp-request");
+            connection.setRequestProperty("Accept", "application/ocsp-response");
+            connection.setFixedLengthStreamingMode(request.length);
+
+            OutputStream output = connection.getOutputStream();
+            try
+            {
+                output.write(request);
+            }
+            finally
+            {
+                output.close();
+            }
+
+            if (HttpURLConnection.HTTP_OK != connection.getResponseCode())
+            {
+                throw new IOException("OCSP responder returned HTTP status " + connection.getResponseCode());
+            }
+
+            InputStream input = connection.getInputStream();
+            try
+            {
+                byte[] encoding = Streams.readAllLimited(input, MAX_RESPONSE_LENGTH);
+                return OCSPResponse.getInstance(encoding);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("OCSP responder returned malformed response: " + e.getMessage());
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    protected OCSPRequest createRequest(Certificate subject, Certificate issuer) throws IOException
+    {
+        CertID certID = OCSPUtils.createCertID(OCSPUtils.HASH_SHA1, issuer, subject.getSerialNumber());
+
+        TBSRequest tbsRequest = new TBSRequest(null, new DERSequence(new Request(certID, null)), (Extensions)null);
+
+        return new OCSPRequest(tbsRequest, null);
+    }
+
+    protected URL getResponderURL(Certificate subject) throws IOException
+    {
+        Extensions extensions = subject.getTBSCertificate().getExtensions();
+        AuthorityInformationAccess aia = null == extensions ? null
+            : AuthorityInformationAccess.fromExtensions(extensions);
+        if (null == aia)
+        {
+            return null;
+        }
+
+        AccessDescription[] descriptions = aia.getAccessDescriptions();
+        for (int i = 0; i < descriptions.length; ++i)
+        {
+            AccessDescription description = descriptions[i];
+            GeneralName location = description.getAccessLocation();
+
+            if (AccessDescription.id_ad_ocsp.equals(description.getAccessMethod())
+                && GeneralName.uniformResourceIdentifier == location.getTagNo())
+            {
+                String uri = location.getName().toString();
+                if (uri.startsWith("http://") || uri.startsWith("https://"))
+                {
+                    return new URL(uri);
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package org.bouncycastle.tls;
+
+/**
+ * (TLS 1.3) Modes for the server's choice of key share group. Note that the values here are
+ * implementation-specific and arbitrary. It is recommended not to depend on the particular values
+ * (e.g. serialization).
+ */
+public class KeyShareSelectionMode
+{
+    /**
+     * Use the first acceptable key share offered by the client, in client order. If none is
+     * acceptable, send a HelloRetryRequest for the client's most preferred acceptable group.
+     */
+    public static final int CLIENT_ORDER = 0;
+
+    /**
+     * Use the acceptable key share offered by the client that the server most prefers, even if a
+     * more preferred group was only listed in "supported_groups". A HelloRetryRequest (for the
+     * server's most preferred acceptable group) is only sent when no offered key share is acceptable.
+     */
+    public static final int OFFERED_SERVER_ORDER = 1;
+
+    /**
+     * Always use the server's most preferred acceptable group, sending a HelloRetryRequest if the
+     * client didn't offer a key share for it.
+     */
+    public static final int SERVER_ORDER = 2;
+
+    public static boolean isValid(int keyShareSelectionMode)
+    {
+        return keyShareSelectionMode >= CLIENT_ORDER && keyShareSelectionMode <= SERVER_ORDER;
+    }
+}
@@ -0,0 +1,247 @@
+package org.bouncycastle.tls;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A {@link TlsNamedGroupSelector} that shifts key share preference towards cheaper groups as load
+ * rises.
+ * <p>
+ * Groups are arranged in tiers, from most to least expensive (e.g. {secp521Kyber1024,
+ * secp384Kyber768}, {x25519Kyber768}, {x25519Kyber512}); the last tier is the security floor, and
+ * groups not in any tier are never selected. The selector moves to the next cheaper tier when the
+ * load reaches the degrade threshold, and back towards the first tier when it falls to the restore
+ * threshold, with a minimum dwell time between moves so that it doesn't oscillate around a single
+ * threshold.
+ * </p>
+ * <p>
+ * In the current tier, groups are preferred in the order: the current tier, then any cheaper tiers
+ * (down to the floor), then any more expensive tiers.
+ * </p>
+ */
+public class LoadAdaptiveNamedGroupSelector
+    implements TlsNamedGroupSelector
+{
+    public static final double DEFAULT_DEGRADE_THRESHOLD = 0.8;
+    public static final double DEFAULT_RESTORE_THRESHOLD = 0.5;
+    public static final long DEFAULT_MIN_DWELL_MILLIS = 1000L;
+
+    protected final int[][] tiers;
+    protected final TlsLoadMonitor loadMonitor;
+    protected final double degradeThreshold;
+    protected final double restoreThreshold;
+    protected final long minDwellNanos;
+
+    private final AtomicInteger currentTier = new AtomicInteger(0);
+    private final AtomicLong lastTransitionNanos;
+    private final AtomicLong tierTransitions = new AtomicLong(0L);
+    private final AtomicLongArray tierSelections;
+
+    public LoadAdaptiveNamedGroupSelector(int[][] tiers, TlsLoadMonitor loadMonitor)
+    {
+        this(tiers, loadMonitor, DEFAULT_DEGRADE_THRESHOLD, DEFAULT_RESTORE_THRESHOLD, DEFAULT_MIN_DWELL_MILLIS);
+    }
+
+    /**
+     * @param tiers
+     *            the tiers of {@link NamedGroup} values, most expensive first. The last tier is the
+     *            security floor.
+     * @param loadMonitor
+     *            the source of the load signal.
+     * @param degradeThreshold
+     *            the load at (or above) which to move to the next cheaper tier.
+     * @param restoreThreshold
+     *            the load at (or below) which to move back towards the first tier. Must be less
+     *            than degradeThreshold.
+     * @param minDwellMillis
+     *            the minimum time (in milliseconds) between tier changes.
+     */
+    public LoadAdaptiveNamedGroupSelector(int[][] tiers, TlsLoadMonitor loadMonitor, double degradeThreshold,
+        double restoreThreshold, long minDwellMillis)
+    {
+        if (null == tiers || tiers.length < 1)
+        {
+            throw new IllegalArgumentException("'tiers' cannot be null or empty");
+        }
+        for (int i = 0; i < tiers.length; ++i)
+        {
+            if (TlsUtils.isNullOrEmpty(tiers[i]))
+            {
+                throw new IllegalArgumentException("'tiers' cannot contain null or empty entries");
+            }
+        }
+        if (null == loadMonitor)
+        {
+            throw new NullPointerException("'loadMonitor' cannot be null");
+        }
+        if (!(restoreThreshold < degradeThreshold))
+        {
+            throw new IllegalArgumentException("'restoreThreshold' must be less than 'degradeThreshold'");
+        }
+        if (minDwellMillis < 0L)
+        {
+            throw new IllegalArgumentException("'minDwellMillis' cannot be negative");
+        }
+
+        this.tiers = new int[tiers.length][];
+        for (int i = 0; i < tiers.length; ++i)
+        {
+            this.tiers[i] = Arrays.clone(tiers[i]);
+        }
+        this.loadMonitor = loadMonitor;
+        this.degradeThreshold = degradeThreshold;
+        this.restoreThreshold = restoreThreshold;
+        this.minDwellNanos = minDwellMillis * 1000000L;
+        this.lastTransitionNanos = new AtomicLong(System.nanoTime() - minDwellNanos);
+        this.tierSelections = new AtomicLongArray(tiers.length);
+    }
+
+    public int[] getKeyShareGroupPreferences(TlsServerContext context, int[] supportedGroups)
+    {
+        int tier = updateTier();
+
+        tierSelections.incrementAndGet(tier);
+
+        int[] result = new int[supportedGroups.length];
+        int count = 0;
+
+        for (int i = tier; i < tiers.length; ++i)
+        {
+            count = addTierGroups(tiers[i], supportedGroups, result, count);
+        }
+        for (int i = tier - 1; i >= 0; --i)
+        {
+            count = addTierGroups(tiers[i], supportedGroups, result, count);
+        }
+
+        return truncate(result, count);
+    }
+
+    /**
+     * @return the index of the tier currently in effect (0 is the most expensive tier).
+     */
+    public int getCurrentTier()
+    {
+        return currentTier.get();
+    }
+
+    /**
+     * @return the index of the tier containing the given {@link NamedGroup}, or -1 if it isn't in any tier.
+     */
+    public int getTier(int namedGroup)
+    {
+        for (int i = 0; i < tiers.length; ++i)
+        {
+            if (Arrays.contains(tiers[i], namedGroup))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getTierCount()
+    {
+        return tiers.length;
+    }
+
+    /**
+     * @return the {@link NamedGroup} values in the given tier.
+     */
+    public int[] getTierGroups(int tier)
+    {
+        return Arrays.clone(tiers[tier]);
+    }
+
+    /**
+     * @return for each tier, the number of handshakes for which it was the tier in effect.
+     */
+    public long[] getTierSelections()
+    {
+        long[] result = new long[tiers.length];
+        for (int i = 0; i < result.length; ++i)
+        {
+            result[i] = tierSelections.get(i);
+        }
+        return result;
+    }
+
+    public long getTierTransitions()
+    {
+        return tierTransitions.get();
+    }
+
+    protected int updateTier()
+    {
+        int tier = currentTier.get();
+
+        long now = System.nanoTime();
+        long last = lastTransitionNanos.get();
+        if (now - last < minDwellNanos)
+        {
+            return tier;
+        }
+
+        double load = loadMonitor.getLoad();
+
+        int next = tier;
+        if (load >= degradeThreshold && tier < tiers.length - 1)
+        {
+            next = tier + 1;
+        }
+        else if (load <= restoreThreshold && tier > 0)
+        {
+            next = tier - 1;
+        }
+
+        // NOTE: Only one thread wins the right to make a given transition
+        if (next != tier && lastTransitionNanos.compareAndSet(last, now))
+        {
+            currentTier.set(next);
+            tierTransitions.incrementAndGet();
+            return next;
+        }
+
+        return currentTier.get();
+    }
+
+    private static int addTierGroups(int[] tier, int[] supportedGroups, int[] result, int count)
+    {
+        for (int i = 0; i < tier.length; ++i)
+        {
+            int group = tier[i];
+            if (Arrays.contains(supportedGroups, group) && !contains(result, count, group))
+            {
+                result[count++] = group;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] buf, int len, int value)
+    {
+        for (int i = 0; i < len; ++i)
+        {
+            if (buf[i] == value)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] truncate(int[] a, int n)
+    {
+        if (n >= a.length)
+        {
+            return a;
+        }
+
+        int[] t = new int[n];
+        System.arraycopy(a, 0, t, 0, n);
+        return t;
+    }
+}
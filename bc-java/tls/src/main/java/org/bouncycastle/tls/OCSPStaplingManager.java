@@ -0,0 +1,512 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ocsp.BasicOCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
+import org.bouncycastle.asn1.ocsp.ResponseBytes;
+import org.bouncycastle.asn1.ocsp.SingleResponse;
+import org.bouncycastle.tls.crypto.TlsCertificate;
+import org.bouncycastle.util.Exceptions;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Caches OCSP responses for a server's own certificates, for stapling via
+ * {@link TlsServer#getCertificateStatus()} (a CertificateStatus message before TLS 1.3, or a
+ * "status_request" extension of the end-entity CertificateEntry in TLS 1.3).
+ * <p>
+ * Responses are obtained from a {@link TlsOCSPResponseSource} on a background thread, so a handshake
+ * never waits for an OCSP responder. Each response is refreshed half-way through its remaining
+ * validity (per its nextUpdate), and the cached response continues to be served while a refresh is
+ * outstanding or failing, but never once it has expired. The first request for a certificate starts
+ * a fetch and is served without a staple; use {@link #register(Certificate)} or
+ * {@link #refresh(Certificate)} at startup to avoid that.
+ * </p>
+ * <p>
+ * A certificate that is no longer used (e.g. after the server's credentials are replaced) can be
+ * dropped with {@link #unregister(Certificate)}; otherwise it is dropped, instead of being refreshed,
+ * once it hasn't been requested for the idle timeout (see {@link #setIdleTimeout(long)}).
+ * </p>
+ * <p>
+ * Responses are checked to be successful, and to contain a status for the certificate, but their
+ * signatures are left for the client to verify.
+ * </p>
+ */
+public class OCSPStaplingManager
+    implements TlsCloseable
+{
+    protected final TlsOCSPResponseSource source;
+    protected final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    protected long retryIntervalMillis = 60L * 1000L;
+    protected long minRefreshIntervalMillis = 10L * 1000L;
+    protected long defaultValidityMillis = 60L * 60L * 1000L;
+    protected long idleTimeoutMillis = 24L * 60L * 60L * 1000L;
+
+    private final Hashtable entries = new Hashtable();
+    private volatile boolean closed = false;
+
+    /**
+     * Fetch responses on a private daemon thread, which is stopped by {@link #close()}.
+     *
+     * @param source
+     *            the {@link TlsOCSPResponseSource} to fetch responses from.
+     */
+    public OCSPStaplingManager(TlsOCSPResponseSource source)
+    {
+        this(source, Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "OCSPStaplingManager");
+                t.setDaemon(true);
+                return t;
+            }
+        }), true);
+    }
+
+    /**
+     * @param source
+     *            the {@link TlsOCSPResponseSource} to fetch responses from.
+     * @param executor
+     *            the {@link ScheduledExecutorService} to fetch responses on; it is not shut down by
+     *            {@link #close()}.
+     */
+    public OCSPStaplingManager(TlsOCSPResponseSource source, ScheduledExecutorService executor)
+    {
+        this(source, executor, false);
+    }
+
+    private OCSPStaplingManager(TlsOCSPResponseSource source, ScheduledExecutorService executor,
+        boolean ownsExecutor)
+    {
+        if (null == source)
+        {
+            throw new NullPointerException("'source' cannot be null");
+        }
+        if (null == executor)
+        {
+            throw new NullPointerException("'executor' cannot be null");
+        }
+
+        this.source = source;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * @param retryIntervalMillis
+     *            the delay (in milliseconds) before retrying a failed fetch.
+     */
+    public void setRetryInterval(long retryIntervalMillis)
+    {
+        this.retryIntervalMillis = checkInterval(retryIntervalMillis, "retryIntervalMillis");
+    }
+
+    /**
+     * @param minRefreshIntervalMillis
+     *            the minimum delay (in milliseconds) between successful fetches for a certificate.
+     */
+    public void setMinRefreshInterval(long minRefreshIntervalMillis)
+    {
+        this.minRefreshIntervalMillis = checkInterval(minRefreshIntervalMillis, "minRefreshIntervalMillis");
+    }
+
+    /**
+     * @param defaultValidityMillis
+     *            how long (in milliseconds) a response without a nextUpdate is served for.
+     */
+    public void setDefaultValidity(long defaultValidityMillis)
+    {
+        this.defaultValidityMillis = checkInterval(defaultValidityMillis, "defaultValidityMillis");
+    }
+
+    /**
+     * @param idleTimeoutMillis
+     *            how long (in milliseconds) after it was last requested (or registered) a certificate is
+     *            dropped, at its next refresh.
+     */
+    public void setIdleTimeout(long idleTimeoutMillis)
+    {
+        this.idleTimeoutMillis = checkInterval(idleTimeoutMillis, "idleTimeoutMillis");
+    }
+
+    /**
+     * Get the cached OCSP status for the end-entity certificate of a chain, starting a fetch if the
+     * certificate hasn't been seen before. This never blocks on the {@link TlsOCSPResponseSource}.
+     *
+     * @param serverCertificate
+     *            the server's certificate chain, with the issuer of the end-entity certificate second.
+     * @return a {@link CertificateStatus} of type {@link CertificateStatusType#ocsp}, or null if no
+     *         unexpired response is cached.
+     */
+    public CertificateStatus getCertificateStatus(Certificate serverCertificate) throws IOException
+    {
+        Entry entry = getEntry(serverCertificate, true);
+        return null == entry ? null : entry.getStatus(currentTimeMillis());
+    }
+
+    /**
+     * Start fetching (and then refreshing) the OCSP status for the end-entity certificate of a chain.
+     *
+     * @param serverCertificate
+     *            the server's certificate chain, with the issuer of the end-entity certificate second.
+     */
+    public void register(Certificate serverCertificate) throws IOException
+    {
+        getEntry(serverCertificate, true);
+    }
+
+    /**
+     * Fetch the OCSP status for the end-entity certificate of a chain now, on the calling thread.
+     *
+     * @param serverCertificate
+     *            the server's certificate chain, with the issuer of the end-entity certificate second.
+     * @return true if an unexpired response is cached afterwards.
+     * @throws IOException
+     *             if the chain is unsuitable, or the fetch fails.
+     */
+    public boolean refresh(Certificate serverCertificate) throws IOException
+    {
+        Entry entry = getEntry(serverCertificate, false);
+        if (null == entry)
+        {
+            throw new IllegalArgumentException("'serverCertificate' must have at least 2 X.509 certificates");
+        }
+
+        entry.refreshNow();
+
+        return null != entry.getStatus(currentTimeMillis());
+    }
+
+    /**
+     * Stop refreshing, and drop any cached OCSP status for, the end-entity certificate of a chain.
+     *
+     * @param serverCertificate
+     *            the server's certificate chain.
+     */
+    public void unregister(Certificate serverCertificate) throws IOException
+    {
+        if (null == serverCertificate || serverCertificate.isEmpty()
+            || CertificateType.X509 != serverCertificate.getCertificateType())
+        {
+            return;
+        }
+
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = (Entry)entries.remove(getKey(serverCertificate.getCertificateAt(0)));
+        }
+
+        if (null != entry)
+        {
+            entry.cancel();
+        }
+    }
+
+    public void close() throws IOException
+    {
+        this.closed = true;
+
+        synchronized (entries)
+        {
+            Enumeration e = entries.elements();
+            while (e.hasMoreElements())
+            {
+                ((Entry)e.nextElement()).cancel();
+            }
+            entries.clear();
+        }
+
+        if (ownsExecutor)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private Entry getEntry(Certificate serverCertificate, boolean schedule) throws IOException
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("OCSPStaplingManager is closed");
+        }
+        if (null == serverCertificate || serverCertificate.getLength() < 2
+            || CertificateType.X509 != serverCertificate.getCertificateType())
+        {
+            return null;
+        }
+
+        TlsCertificate subject = serverCertificate.getCertificateAt(0);
+        String key = getKey(subject);
+
+        Entry entry;
+        boolean added = false;
+        synchronized (entries)
+        {
+            entry = (Entry)entries.get(key);
+            if (null == entry)
+            {
+                entry = new Entry(key, toASN1(subject), toASN1(serverCertificate.getCertificateAt(1)));
+                entries.put(key, entry);
+                added = true;
+            }
+        }
+
+        entry.touch(currentTimeMillis());
+
+        if (added && schedule)
+        {
+            entry.schedule(0L);
+        }
+
+        return entry;
+    }
+
+    private void evict(Entry entry)
+    {
+        synchronized (entries)
+        {
+            if (entries.get(entry.key) == entry)
+            {
+                entries.remove(entry.key);
+            }
+        }
+    }
+
+    private static String getKey(TlsCertificate subject) throws IOException
+    {
+        return Hex.toHexString(subject.getEncoded());
+    }
+
+    private static long checkInterval(long millis, String name)
+    {
+        if (millis < 1L)
+        {
+            throw new IllegalArgumentException("'" + name + "' must be >= 1");
+        }
+        return millis;
+    }
+
+    private static org.bouncycastle.asn1.x509.Certificate toASN1(TlsCertificate certificate) throws IOException
+    {
+        try
+        {
+            return org.bouncycastle.asn1.x509.Certificate.getInstance(certificate.getEncoded());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw Exceptions.ioException("unable to parse certificate: " + e.getMessage(), e);
+        }
+    }
+
+    private final class Entry
+        implements Runnable
+    {
+        private final String key;
+        private final org.bouncycastle.asn1.x509.Certificate subject, issuer;
+
+        private CertificateStatus status = null;
+        private long expiresAt = 0L;
+        private long lastUsed = 0L;
+        private ScheduledFuture future = null;
+
+        Entry(String key, org.bouncycastle.asn1.x509.Certificate subject,
+            org.bouncycastle.asn1.x509.Certificate issuer)
+        {
+            this.key = key;
+            this.subject = subject;
+            this.issuer = issuer;
+        }
+
+        synchronized void touch(long now)
+        {
+            this.lastUsed = now;
+        }
+
+        synchronized CertificateStatus getStatus(long now)
+        {
+            if (null != status && now >= expiresAt)
+            {
+                this.status = null;
+            }
+            return status;
+        }
+
+        public void run()
+        {
+            synchronized (this)
+            {
+                if (currentTimeMillis() - lastUsed >= idleTimeoutMillis)
+                {
+                    this.future = null;
+                    this.status = null;
+                    evict(this);
+                    return;
+                }
+            }
+
+            long delay;
+            try
+            {
+                delay = fetch();
+            }
+            catch (Exception e)
+            {
+                delay = retryIntervalMillis;
+            }
+
+            synchronized (this)
+            {
+                this.future = null;
+            }
+
+            schedule(delay);
+        }
+
+        void refreshNow() throws IOException
+        {
+            long delay;
+            try
+            {
+                delay = fetch();
+            }
+            catch (IOException e)
+            {
+                schedule(retryIntervalMillis);
+                throw e;
+            }
+
+            synchronized (this)
+            {
+                // If the scheduled task is already running, it will reschedule itself
+                if (null == future || future.cancel(false))
+                {
+                    this.future = null;
+                    schedule(delay);
+                }
+            }
+        }
+
+        synchronized void schedule(long delayMillis)
+        {
+            if (closed || null != future)
+            {
+                return;
+            }
+
+            try
+            {
+                this.future = executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Executor is shut down; the cached response will expire in due course
+            }
+        }
+
+        synchronized void cancel()
+        {
+            if (null != future)
+            {
+                future.cancel(false);
+                this.future = null;
+            }
+        }
+
+        /*
+         * Returns the delay (in milliseconds) until the next fetch.
+         */
+        private long fetch() throws IOException
+        {
+            OCSPResponse response = source.getOCSPResponse(subject, issuer);
+            if (null == response)
+            {
+                throw new IOException("no OCSP response available");
+            }
+
+            long now = currentTimeMillis();
+            long responseExpiresAt = getExpiry(response, now);
+            if (responseExpiresAt <= now)
+            {
+                throw new IOException("OCSP response has expired");
+            }
+
+            synchronized (this)
+            {
+                // Don't replace a cached response with an older one (e.g. from a responder's cache)
+                if (null == status || responseExpiresAt >= expiresAt)
+                {
+                    this.status = new CertificateStatus(CertificateStatusType.ocsp, response);
+                    this.expiresAt = responseExpiresAt;
+                }
+
+                return Math.max(minRefreshIntervalMillis, (expiresAt - now) / 2);
+            }
+        }
+
+        private long getExpiry(OCSPResponse response, long now) throws IOException
+        {
+            int responseStatus = response.getResponseStatus().getIntValue();
+            if (OCSPResponseStatus.SUCCESSFUL != responseStatus)
+            {
+                throw new IOException("OCSP responder returned status " + responseStatus);
+            }
+
+            ResponseBytes responseBytes = response.getResponseBytes();
+            if (null == responseBytes
+                || !OCSPObjectIdentifiers.id_pkix_ocsp_basic.equals(responseBytes.getResponseType()))
+            {
+                throw new IOException("unsupported OCSP response type");
+            }
+
+            try
+            {
+                BasicOCSPResponse basicResponse = BasicOCSPResponse.getInstance(
+                    responseBytes.getResponse().getOctets());
+
+                ASN1Sequence singleResponses = basicResponse.getTbsResponseData().getResponses();
+                for (int i = 0; i < singleResponses.size(); ++i)
+                {
+                    SingleResponse singleResponse = SingleResponse.getInstance(singleResponses.getObjectAt(i));
+
+                    // NOTE: The responder may have used a different hash algorithm for the CertID
+                    if (OCSPUtils.matchesCertID(singleResponse.getCertID(), issuer, subject.getSerialNumber()))
+                    {
+                        ASN1GeneralizedTime nextUpdate = singleResponse.getNextUpdate();
+                        return null == nextUpdate ? now + defaultValidityMillis : nextUpdate.getDate().getTime();
+                    }
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw Exceptions.ioException("invalid OCSP response: " + e.getMessage(), e);
+            }
+            catch (ParseException e)
+            {
+                throw Exceptions.ioException("invalid OCSP response: " + e.getMessage(), e);
+            }
+
+            throw new IOException("OCSP response has no status for certificate");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.util.DigestFactory;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * OCSP (RFC 6960) CertID support for {@link OCSPStaplingManager} and {@link HttpOCSPResponseSource},
+ * using only the ASN.1 classes and light-weight digests.
+ */
+class OCSPUtils
+{
+    static final AlgorithmIdentifier HASH_SHA1 = new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1,
+        DERNull.INSTANCE);
+
+    static CertID createCertID(AlgorithmIdentifier hashAlgorithm, Certificate issuer, ASN1Integer serialNumber)
+        throws IOException
+    {
+        Digest digest = createDigest(hashAlgorithm.getAlgorithm());
+        if (null == digest)
+        {
+            throw new IOException("unsupported OCSP CertID hash algorithm: " + hashAlgorithm.getAlgorithm());
+        }
+
+        byte[] issuerNameHash = calculateIssuerNameHash(digest, issuer);
+        byte[] issuerKeyHash = calculateIssuerKeyHash(digest, issuer);
+
+        return new CertID(hashAlgorithm, new DEROctetString(issuerNameHash), new DEROctetString(issuerKeyHash),
+            serialNumber);
+    }
+
+    /**
+     * Check whether a CertID (possibly using any supported hash algorithm) identifies the given
+     * certificate.
+     */
+    static boolean matchesCertID(CertID certID, Certificate issuer, ASN1Integer serialNumber) throws IOException
+    {
+        if (!serialNumber.equals(certID.getSerialNumber()))
+        {
+            return false;
+        }
+
+        Digest digest = createDigest(certID.getHashAlgorithm().getAlgorithm());
+        if (null == digest)
+        {
+            return false;
+        }
+
+        return Arrays.areEqual(certID.getIssuerNameHash().getOctets(),
+            calculateIssuerNameHash(digest, issuer))
+            && Arrays.areEqual(certID.getIssuerKeyHash().getOctets(),
+                calculateIssuerKeyHash(digest, issuer));
+    }
+
+    private static byte[] calculateIssuerKeyHash(Digest digest, Certificate issuer)
+    {
+        return calculateHash(digest, issuer.getSubjectPublicKeyInfo().getPublicKeyData().getBytes());
+    }
+
+    private static byte[] calculateIssuerNameHash(Digest digest, Certificate issuer) throws IOException
+    {
+        return calculateHash(digest, issuer.getSubject().getEncoded(ASN1Encoding.DER));
+    }
+
+    private static byte[] calculateHash(Digest digest, byte[] data)
+    {
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.update(data, 0, data.length);
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    private static Digest createDigest(ASN1ObjectIdentifier algorithm)
+    {
+        if (OIWObjectIdentifiers.idSHA1.equals(algorithm))
+        {
+            return DigestFactory.createSHA1();
+        }
+        if (NISTObjectIdentifiers.id_sha256.equals(algorithm))
+        {
+            return DigestFactory.createSHA256();
+        }
+        if (NISTObjectIdentifiers.id_sha384.equals(algorithm))
+        {
+            return DigestFactory.createSHA384();
+        }
+        if (NISTObjectIdentifiers.id_sha512.equals(algorithm))
+        {
+            return DigestFactory.createSHA512();
+        }
+        return null;
+    }
+}
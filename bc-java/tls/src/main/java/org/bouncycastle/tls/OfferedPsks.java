@@ -8,8 +8,6 @@ import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsCrypto;
 import org.bouncycastle.tls.crypto.TlsCryptoUtils;
-import org.bouncycastle.tls.crypto.TlsHash;
-import org.bouncycastle.tls.crypto.TlsHashOutputStream;
 import org.bouncycastle.tls.crypto.TlsSecret;
 
 public class OfferedPsks
@@ -164,10 +162,8 @@ public class OfferedPsks
             boolean isExternalPSK = true;
             int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
 
-            // TODO[tls13-psk] Cache the transcript hashes per algorithm to avoid duplicates for multiple PSKs
-            TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
-            handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
-            byte[] transcriptHash = hash.calculateHash();
+            // NOTE: The client tracks the PSK hash algorithms as candidates, so this needn't rehash the transcript
+            byte[] transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
 
             byte[] binder = TlsUtils.calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm, earlySecret,
                 transcriptHash);
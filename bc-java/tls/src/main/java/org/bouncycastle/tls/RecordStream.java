@@ -34,6 +34,12 @@ class RecordStream
     private int plaintextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private int ciphertextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private boolean ignoreChangeCipherSpec = false;
+    private long bytesWritten = 0L;
+
+    // NOTE: (TLS 1.3) Server is reading accepted 0-RTT early data; defers the handshake read cipher
+    private boolean earlyDataRead = false;
+    // NOTE: (TLS 1.3) Server is skipping rejected 0-RTT early data, up to this many bytes
+    private int earlyDataSkipLimit = 0;
 
     RecordStream(TlsProtocol handler, InputStream input, OutputStream output)
     {
@@ -53,6 +59,23 @@ class RecordStream
         this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
     }
 
+    long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    void setBufferPool(TlsBufferPool bufferPool)
+    {
+        inputRecord.pool = bufferPool;
+    }
+
+    int getRetainedBufferSize()
+    {
+        // NOTE: The input record only holds a fragment buffer while a (blocking) read is in progress
+        byte[] buf = inputRecord.buf;
+        return buf == inputRecord.header ? 0 : buf.length;
+    }
+
     void setWriteVersion(ProtocolVersion writeVersion)
     {
         this.writeVersion = writeVersion;
@@ -113,6 +136,63 @@ class RecordStream
         writeSeqNo.reset();
     }
 
+    /**
+     * (TLS 1.3) Server: read accepted early data with the given cipher. The (deferred) handshake read
+     * cipher is only enabled by {@link #notifyEndOfEarlyDataReceived()}.
+     */
+    void enableEarlyDataRead(TlsCipher earlyDataCipher)
+    {
+        this.readCipher = earlyDataCipher;
+        this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
+        this.earlyDataRead = true;
+        readSeqNo.reset();
+    }
+
+    void notifyEndOfEarlyDataReceived()
+        throws IOException
+    {
+        if (!earlyDataRead || readCipherDeferred == null)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        this.earlyDataRead = false;
+        this.readCipher = readCipherDeferred;
+        this.readCipherDeferred = null;
+        this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
+        readSeqNo.reset();
+    }
+
+    /**
+     * (TLS 1.3) Server: discard (rather than fail on) up to 'limit' bytes of rejected early data, i.e.
+     * application_data records that arrive before the client has any other keys, or that fail
+     * deprotection under the handshake keys (see RFC 8446 4.2.10).
+     */
+    void setEarlyDataSkipLimit(int limit)
+    {
+        this.earlyDataSkipLimit = Math.max(0, limit);
+    }
+
+    /**
+     * (TLS 1.3) Client: write early data with the given cipher. The pending (handshake) write cipher
+     * is enabled as usual via {@link #enablePendingCipherWrite()}.
+     */
+    void enableEarlyDataWrite(TlsCipher earlyDataCipher)
+    {
+        this.writeCipher = earlyDataCipher;
+        writeSeqNo.reset();
+    }
+
+    /**
+     * (TLS 1.3) Client: stop writing early data after a HelloRetryRequest; the second ClientHello is
+     * sent unprotected.
+     */
+    void disableEarlyDataWrite()
+    {
+        this.writeCipher = TlsNullNullCipher.INSTANCE;
+        writeSeqNo.reset();
+    }
+
     void finaliseHandshake()
         throws IOException
     {
@@ -203,8 +283,12 @@ class RecordStream
             return true;
         }
 
-        TlsDecodeResult decoded = decodeAndVerify(recordType, recordVersion, input,
+        TlsDecodeResult decoded = decodeOrSkipEarlyData(recordType, recordVersion, input,
             inputOff + RecordFormat.FRAGMENT_OFFSET, length);
+        if (null == decoded)
+        {
+            return true;
+        }
 
         handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
         return true;
@@ -228,24 +312,43 @@ class RecordStream
 
         inputRecord.readFragment(input, length);
 
-        TlsDecodeResult decoded;
+        /*
+         * NOTE: The record is reset before it is processed, but the (possibly pooled) buffer may hold the
+         * decoded fragment, so it is only released afterwards.
+         */
+        byte[] recordBuf = inputRecord.buf;
+        TlsBufferPool recordBufPool = inputRecord.bufPool;
         try
         {
-            if (ignoreChangeCipherSpec && ContentType.change_cipher_spec == recordType)
+            TlsDecodeResult decoded;
+            try
+            {
+                if (ignoreChangeCipherSpec && ContentType.change_cipher_spec == recordType)
+                {
+                    checkChangeCipherSpec(recordBuf, RecordFormat.FRAGMENT_OFFSET, length);
+                    return true;
+                }
+
+                decoded = decodeOrSkipEarlyData(recordType, recordVersion, recordBuf, RecordFormat.FRAGMENT_OFFSET,
+                    length);
+            }
+            finally
+            {
+                inputRecord.reset();
+            }
+
+            if (null == decoded)
             {
-                checkChangeCipherSpec(inputRecord.buf, RecordFormat.FRAGMENT_OFFSET, length);
                 return true;
             }
 
-            decoded = decodeAndVerify(recordType, recordVersion, inputRecord.buf, RecordFormat.FRAGMENT_OFFSET, length);
+            handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+            return true;
         }
         finally
         {
-            inputRecord.reset();
+            inputRecord.release(recordBuf, recordBufPool);
         }
-
-        handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
-        return true;
     }
 
     TlsDecodeResult decodeAndVerify(short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int off, int len)
@@ -268,6 +371,54 @@ class RecordStream
         return decoded;
     }
 
+    private TlsDecodeResult decodeOrSkipEarlyData(short recordType, ProtocolVersion recordVersion, byte[] ciphertext,
+        int off, int len) throws IOException
+    {
+        if (earlyDataSkipLimit < 1 || ContentType.application_data != recordType)
+        {
+            return decodeAndVerify(recordType, recordVersion, ciphertext, off, len);
+        }
+
+        if (!readCipher.usesOpaqueRecordTypeDecode())
+        {
+            // NOTE: After a HelloRetryRequest, there are no read keys until the second ClientHello
+            skipEarlyData(len);
+            return null;
+        }
+
+        try
+        {
+            TlsDecodeResult decoded = decodeAndVerify(recordType, recordVersion, ciphertext, off, len);
+
+            // The client has switched to the handshake keys, so there is no more early data
+            this.earlyDataSkipLimit = 0;
+            return decoded;
+        }
+        catch (TlsFatalAlert e)
+        {
+            if (AlertDescription.bad_record_mac != e.getAlertDescription())
+            {
+                throw e;
+            }
+
+            // NOTE: Nothing has yet been decoded with the handshake keys
+            readSeqNo.reset();
+            skipEarlyData(len);
+            return null;
+        }
+    }
+
+    private void skipEarlyData(int len)
+        throws IOException
+    {
+        if (len > earlyDataSkipLimit)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message, "Too much rejected early data");
+        }
+
+        this.earlyDataSkipLimit -= len;
+    }
+
     void writeRecord(short contentType, byte[] plaintext, int plaintextOffset, int plaintextLength)
         throws IOException
     {
@@ -313,11 +464,14 @@ class RecordStream
             throw new TlsFatalAlert(AlertDescription.internal_error, e);
         }
 
+        bytesWritten += encoded.len;
+
         output.flush();
     }
 
     void close() throws IOException
     {
+        // NOTE: A blocked reader may still be filling a record buffer, so it isn't returned to any pool
         inputRecord.reset();
 
         IOException io = null;
@@ -368,7 +522,7 @@ class RecordStream
     {
         short recordType = TlsUtils.readUint8(buf, off);
 
-        if (null != readCipherDeferred && recordType == ContentType.application_data)
+        if (null != readCipherDeferred && recordType == ContentType.application_data && !earlyDataRead)
         {
             this.readCipher = readCipherDeferred;
             this.readCipherDeferred = null;
@@ -396,7 +550,7 @@ class RecordStream
             {
             case ContentType.application_data:
             {
-                if (!handler.isApplicationDataReady())
+                if (!handler.isApplicationDataReady() && earlyDataSkipLimit < 1)
                 {
                     throw new TlsFatalAlert(AlertDescription.unexpected_message,
                         "Not ready for " + ContentType.getText(ContentType.application_data));
@@ -433,6 +587,11 @@ class RecordStream
         volatile byte[] buf = header;
         volatile int pos = 0;
 
+        TlsBufferPool pool = null;
+
+        // The pool 'buf' was borrowed from, or null if it wasn't
+        volatile TlsBufferPool bufPool = null;
+
         void fillTo(InputStream input, int length) throws IOException
         {
             while (pos < length)
@@ -493,16 +652,30 @@ class RecordStream
         void reset()
         {
             buf = header;
+            bufPool = null;
             pos = 0;
         }
 
+        void release(byte[] recordBuf, TlsBufferPool recordBufPool)
+        {
+            if (null != recordBufPool && recordBuf != buf)
+            {
+                recordBufPool.release(recordBuf);
+            }
+        }
+
         private void resize(int length)
         {
             if (buf.length < length)
             {
-                byte[] tmp = new byte[length];
+                TlsBufferPool tmpPool = pool;
+                byte[] tmp = null == tmpPool ? new byte[length] : tmpPool.borrow(length);
                 System.arraycopy(buf, 0, tmp, 0, pos);
+                byte[] old = buf;
+                TlsBufferPool oldPool = bufPool;
                 buf = tmp;
+                bufPool = tmpPool;
+                release(old, oldPool);
             }
         }
     }
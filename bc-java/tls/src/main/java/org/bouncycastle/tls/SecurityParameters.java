@@ -59,6 +59,11 @@ public class SecurityParameters
     int statusRequestVersion = 0;
     short clientCertificateType = CertificateType.X509;
     short serverCertificateType = CertificateType.X509;
+    int negotiatedGroup = -1;
+    boolean helloRetryRequest = false;
+    boolean earlyDataAccepted = false;
+    int kemAuthenticationGroup = -1;
+    long handshakeBytesSent = 0L;
 
     // TODO[tls-ops] Investigate whether we can handle verify data using TlsSecret
     byte[] localVerifyData = null;
@@ -395,6 +400,48 @@ public class SecurityParameters
         return serverCertificateType;
     }
 
+    /**
+     * @return {@link NamedGroup} of the (EC)DHE or key share agreement, or -1 if not applicable.
+     */
+    public int getNegotiatedGroup()
+    {
+        return negotiatedGroup;
+    }
+
+    /**
+     * @return true if the handshake included a (TLS 1.3) HelloRetryRequest.
+     */
+    public boolean isHelloRetryRequest()
+    {
+        return helloRetryRequest;
+    }
+
+    /**
+     * @return true if (TLS 1.3) 0-RTT early data was offered by the client and accepted by the server.
+     */
+    public boolean isEarlyDataAccepted()
+    {
+        return earlyDataAccepted;
+    }
+
+    /**
+     * @return the {@link NamedGroup} of the server's (static) KEM key if the (TLS 1.3) server was
+     *         authenticated using (experimental) KEM-based server authentication, or -1 otherwise.
+     * @see ExtensionType#kem_authentication
+     */
+    public int getKEMAuthenticationGroup()
+    {
+        return kemAuthenticationGroup;
+    }
+
+    /**
+     * @return the number of record-layer bytes written by the local endpoint during the handshake.
+     */
+    public long getHandshakeBytesSent()
+    {
+        return handshakeBytesSent;
+    }
+
     private static TlsSecret clearSecret(TlsSecret secret)
     {
         if (null != secret)
@@ -0,0 +1,240 @@
+package org.bouncycastle.tls;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Integers;
+
+/**
+ * A pool of byte arrays used by {@link TlsProtocol} for queueing record and message data, which may be
+ * shared by any number of connections (see {@link TlsProtocol#setBufferPool(TlsBufferPool)}).
+ * <p>
+ * Arrays are pooled in power-of-two size classes. Each thread has a small cache of free arrays for each
+ * class, in front of a bounded free list per class shared by all threads, so a connection mostly re-uses
+ * arrays released on the same thread without any locking. Requests larger than the largest size class are
+ * simply allocated, and dropped again when released.
+ * </p>
+ * <p>
+ * Arrays are zeroed when they are released, so data from one connection is never visible to another.
+ * </p>
+ */
+public class TlsBufferPool
+{
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1 << 18;
+    public static final int DEFAULT_THREAD_CACHE_SIZE = 2;
+    public static final int DEFAULT_SHARED_CACHE_SIZE = 64;
+
+    private static final int MIN_BUFFER_SHIFT = 8;
+
+    private final int classCount;
+    private final int threadCacheSize;
+    private final int sharedCacheSize;
+
+    private final byte[][][] sharedBuffers;
+    private final int[] sharedCounts;
+
+    private final ThreadLocal threadCaches = new ThreadLocal();
+
+    private final AtomicLong outstanding = new AtomicLong(0L);
+    private final AtomicLong allocations = new AtomicLong(0L);
+
+    public TlsBufferPool()
+    {
+        this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_THREAD_CACHE_SIZE, DEFAULT_SHARED_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxBufferSize
+     *            the size of the largest pooled arrays (rounded up to a power of two, at least 256).
+     * @param threadCacheSize
+     *            the maximum number of free arrays of each size cached per thread.
+     * @param sharedCacheSize
+     *            the maximum number of free arrays of each size shared between threads.
+     */
+    public TlsBufferPool(int maxBufferSize, int threadCacheSize, int sharedCacheSize)
+    {
+        if (maxBufferSize < 1 || maxBufferSize > (1 << 30))
+        {
+            throw new IllegalArgumentException("'maxBufferSize' must be in the range [1, 2^30]");
+        }
+        if (threadCacheSize < 0)
+        {
+            throw new IllegalArgumentException("'threadCacheSize' cannot be negative");
+        }
+        if (sharedCacheSize < 0)
+        {
+            throw new IllegalArgumentException("'sharedCacheSize' cannot be negative");
+        }
+
+        this.classCount = getClassIndex(maxBufferSize) + 1;
+        this.threadCacheSize = threadCacheSize;
+        this.sharedCacheSize = sharedCacheSize;
+
+        this.sharedBuffers = new byte[classCount][sharedCacheSize][];
+        this.sharedCounts = new int[classCount];
+    }
+
+    /**
+     * Get an array of at least the requested length. The array is zeroed, and its length may be larger
+     * than requested (see {@link #getBufferSize(int)}).
+     *
+     * @param length
+     *            the minimum length of the array.
+     * @return an array that should be passed to {@link #release(byte[])} once it is no longer in use.
+     */
+    public byte[] borrow(int length)
+    {
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("'length' cannot be negative");
+        }
+
+        int index = getClassIndex(length);
+        if (index >= classCount)
+        {
+            return new byte[length];
+        }
+
+        outstanding.incrementAndGet();
+
+        ThreadCache cache = getThreadCache();
+        if (cache.counts[index] > 0)
+        {
+            byte[][] buffers = cache.buffers[index];
+            int count = --cache.counts[index];
+            byte[] buf = buffers[count];
+            buffers[count] = null;
+            return buf;
+        }
+
+        synchronized (sharedBuffers[index])
+        {
+            if (sharedCounts[index] > 0)
+            {
+                byte[][] buffers = sharedBuffers[index];
+                int count = --sharedCounts[index];
+                byte[] buf = buffers[count];
+                buffers[count] = null;
+                return buf;
+            }
+        }
+
+        allocations.incrementAndGet();
+
+        return new byte[getClassSize(index)];
+    }
+
+    /**
+     * Return an array obtained from {@link #borrow(int)} to the pool. The caller must not use the array
+     * afterwards.
+     *
+     * @param buf
+     *            an array previously returned by {@link #borrow(int)}, or null.
+     */
+    public void release(byte[] buf)
+    {
+        if (null == buf)
+        {
+            return;
+        }
+
+        int index = getClassIndex(buf.length);
+        if (index >= classCount || buf.length != getClassSize(index))
+        {
+            // NOTE: Not a pooled size, so it was allocated directly
+            return;
+        }
+
+        outstanding.decrementAndGet();
+
+        Arrays.fill(buf, (byte)0);
+
+        ThreadCache cache = getThreadCache();
+        if (cache.counts[index] < threadCacheSize)
+        {
+            cache.buffers[index][cache.counts[index]++] = buf;
+            return;
+        }
+
+        synchronized (sharedBuffers[index])
+        {
+            if (sharedCounts[index] < sharedCacheSize)
+            {
+                sharedBuffers[index][sharedCounts[index]++] = buf;
+            }
+        }
+    }
+
+    /**
+     * @param length
+     *            a requested length.
+     * @return the length of the array {@link #borrow(int)} returns for this requested length.
+     */
+    public int getBufferSize(int length)
+    {
+        int index = getClassIndex(length);
+        return index >= classCount ? length : getClassSize(index);
+    }
+
+    public int getMaxBufferSize()
+    {
+        return getClassSize(classCount - 1);
+    }
+
+    /**
+     * Get the number of pooled arrays currently borrowed and not yet released. Once every connection using
+     * the pool is closed (and its received data has been read), this should return to zero; a persistently
+     * growing value indicates a leak.
+     *
+     * @return the number of outstanding arrays.
+     */
+    public long getOutstandingCount()
+    {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the total number of arrays the pool has had to allocate because no free one was available.
+     */
+    public long getAllocationCount()
+    {
+        return allocations.get();
+    }
+
+    private ThreadCache getThreadCache()
+    {
+        ThreadCache cache = (ThreadCache)threadCaches.get();
+        if (null == cache)
+        {
+            cache = new ThreadCache(classCount, threadCacheSize);
+            threadCaches.set(cache);
+        }
+        return cache;
+    }
+
+    private static int getClassIndex(int length)
+    {
+        if (length <= (1 << MIN_BUFFER_SHIFT))
+        {
+            return 0;
+        }
+        return 32 - Integers.numberOfLeadingZeros(length - 1) - MIN_BUFFER_SHIFT;
+    }
+
+    private static int getClassSize(int index)
+    {
+        return 1 << (MIN_BUFFER_SHIFT + index);
+    }
+
+    private static final class ThreadCache
+    {
+        final byte[][][] buffers;
+        final int[] counts;
+
+        ThreadCache(int classCount, int threadCacheSize)
+        {
+            this.buffers = new byte[classCount][threadCacheSize][];
+            this.counts = new int[classCount];
+        }
+    }
+}
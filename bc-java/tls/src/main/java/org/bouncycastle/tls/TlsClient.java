@@ -32,6 +32,24 @@ public interface TlsClient
      */
     Vector getExternalPSKs();
 
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * (TLS 1.3) Return application data to send as 0-RTT early data (RFC 8446 4.2.10). Early data is
+     * only offered when the first PSK returned by {@link #getExternalPSKs()} has a compatible offered
+     * cipher suite, and is sent (protected with that PSK) immediately after the ClientHello. Whether the
+     * server accepted it is available from {@link SecurityParameters#isEarlyDataAccepted()} once the
+     * handshake completes; if it wasn't accepted, the data was not delivered and it is up to the
+     * application to send it again.
+     * <p>
+     * NOTE: Early data has no protection against replay by an attacker (RFC 8446 8), so it should
+     * only carry requests that are safe to process more than once.
+     * </p>
+     * 
+     * @return the early data, or null to not offer early data.
+     */
+    byte[] getEarlyData() throws IOException;
+
     boolean isFallback();
 
     // Hashtable is (Integer -> byte[])
@@ -9,6 +9,8 @@ import java.util.Hashtable;
 import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCipher;
+import org.bouncycastle.tls.crypto.TlsCryptoUtils;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.util.Arrays;
@@ -29,6 +31,12 @@ public class TlsClientProtocol
     protected CertificateStatus certificateStatus = null;
     protected CertificateRequest certificateRequest = null;
 
+    // NOTE: (TLS 1.3) 0-RTT early data sent after the first ClientHello (null if none)
+    protected byte[] earlyData = null;
+    int earlyDataCipherSuite = -1;
+    // NOTE: (TLS 1.3) Writes use the early data keys (until EndOfEarlyData or HelloRetryRequest)
+    boolean earlyDataWriting = false;
+
     /**
      * Constructor for non-blocking mode.<br>
      * <br>
@@ -119,6 +127,10 @@ public class TlsClientProtocol
 
         this.certificateStatus = null;
         this.certificateRequest = null;
+
+        this.earlyData = null;
+        this.earlyDataCipherSuite = -1;
+        this.earlyDataWriting = false;
     }
 
     protected TlsContext getContext()
@@ -159,6 +171,11 @@ public class TlsClientProtocol
             {
                 receive13ServerCertificate(buf);
                 this.connection_state = CS_SERVER_CERTIFICATE;
+
+                if (tlsClientContext.getSecurityParametersHandshake().getKEMAuthenticationGroup() >= 0)
+                {
+                    send13KEMAuthentication();
+                }
                 break;
             }
             default:
@@ -177,6 +194,12 @@ public class TlsClientProtocol
             }
             case CS_SERVER_ENCRYPTED_EXTENSIONS:
             {
+                // NOTE: Client authentication isn't supported with KEM-based server authentication
+                if (tlsClientContext.getSecurityParametersHandshake().getKEMAuthenticationGroup() >= 0)
+                {
+                    throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                }
+
                 receive13CertificateRequest(buf, false);
                 this.connection_state = CS_SERVER_CERTIFICATE_REQUEST;
                 break;
@@ -243,10 +266,21 @@ public class TlsClientProtocol
                 recordStream.setIgnoreChangeCipherSpec(false);
 
                 /*
-                 * TODO[tls13] After receiving the server's Finished message, if the server has accepted early
+                 * RFC 8446 4.5. After receiving the server's Finished message, if the server has accepted early
                  * data, an EndOfEarlyData message will be sent to indicate the key change. This message will
                  * be encrypted with the 0-RTT traffic keys.
                  */
+                if (earlyDataWriting)
+                {
+                    if (tlsClientContext.getSecurityParametersHandshake().isEarlyDataAccepted())
+                    {
+                        send13EndOfEarlyDataMessage();
+                        this.connection_state = CS_CLIENT_END_OF_EARLY_DATA;
+                    }
+
+                    recordStream.enablePendingCipherWrite();
+                    this.earlyDataWriting = false;
+                }
 
                 if (null != certificateRequest)
                 {
@@ -288,6 +322,28 @@ public class TlsClientProtocol
                 completeHandshake();
                 break;
             }
+            case CS_CLIENT_FINISHED:
+            {
+                /*
+                 * (Experimental) KEM-based server authentication: the server's Finished follows ours.
+                 */
+                receive13ServerFinished(buf);
+                buf.updateHash(handshakeHash);
+                this.connection_state = CS_SERVER_FINISHED;
+
+                byte[] serverFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                // See RFC 8446 D.4.
+                recordStream.setIgnoreChangeCipherSpec(false);
+
+                TlsUtils.establish13PhaseApplication(tlsClientContext, serverFinishedTranscriptHash, recordStream);
+
+                recordStream.enablePendingCipherWrite();
+                recordStream.enablePendingCipherRead(false);
+
+                completeHandshake();
+                break;
+            }
             default:
                 throw new TlsFatalAlert(AlertDescription.unexpected_message);
             }
@@ -482,6 +538,13 @@ public class TlsClientProtocol
                 // TODO[tls13] Only treat as HRR if it's TLS 1.3??
                 if (serverHello.isHelloRetryRequest())
                 {
+                    if (earlyDataWriting)
+                    {
+                        // RFC 8446 4.2.10. Early data is rejected; the second ClientHello is unprotected
+                        recordStream.disableEarlyDataWrite();
+                        this.earlyDataWriting = false;
+                    }
+
                     process13HelloRetryRequest(serverHello);
                     handshakeHash.notifyPRFDetermined();
                     handshakeHash.sealHashAlgorithms();
@@ -924,6 +987,8 @@ public class TlsClientProtocol
         this.clientAgreements = null;
         this.retryCookie = cookie;
         this.retryGroup = selected_group;
+
+        securityParameters.helloRetryRequest = true;
     }
 
     protected void process13ServerHello(ServerHello serverHello, boolean afterHelloRetryRequest)
@@ -1021,6 +1086,12 @@ public class TlsClientProtocol
                 pskEarlySecret = clientBinders.earlySecrets[selected_identity];
 
                 this.selectedPSK13 = true;
+
+                if (0 != selected_identity)
+                {
+                    // NOTE: Early data was protected with the first PSK, so can't be accepted
+                    this.earlyDataCipherSuite = -1;
+                }
             }
 
             tlsClient.notifySelectedPSK(selectedPSK);
@@ -1055,6 +1126,8 @@ public class TlsClientProtocol
 
                 agreement.receivePeerValue(keyShareEntry.getKeyExchange());
                 sharedSecret = agreement.calculateSecret();
+
+                securityParameters.negotiatedGroup = namedGroup;
             }
         }
 
@@ -1074,13 +1147,12 @@ public class TlsClientProtocol
         TlsUtils.establish13PhaseHandshake(tlsClientContext, serverHelloTranscriptHash, recordStream);
 
         // See RFC 8446 D.4.
-        if (!afterHelloRetryRequest)
+        if (!afterHelloRetryRequest && null == earlyData)
         {
             recordStream.setIgnoreChangeCipherSpec(true);
 
             /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
-             * ClientHello.
+             * NOTE: If offering early_data, the record was placed immediately after the first ClientHello.
              */
             /*
              * TODO[tls13] Ideally wait until just after Server Finished received, but then we'd need to defer
@@ -1089,7 +1161,11 @@ public class TlsClientProtocol
             sendChangeCipherSpecMessage();
         }
 
-        recordStream.enablePendingCipherWrite();
+        // NOTE: While early data is in progress, the handshake write cipher is enabled after EndOfEarlyData
+        if (!earlyDataWriting)
+        {
+            recordStream.enablePendingCipherWrite();
+        }
         recordStream.enablePendingCipherRead(false);
     }
 
@@ -1118,6 +1194,15 @@ public class TlsClientProtocol
             server_version = supported_version;
         }
 
+        /*
+         * RFC 8446 D.3. A client that attempts to send 0-RTT data MUST fail a connection if it receives
+         * a ServerHello with TLS 1.2 or older.
+         */
+        if (null != earlyData && !TlsUtils.isTLSv13(server_version))
+        {
+            throw new TlsFatalAlert(AlertDescription.protocol_version);
+        }
+
         final SecurityParameters securityParameters = tlsClientContext.getSecurityParametersHandshake();
 
         if (securityParameters.isRenegotiating())
@@ -1514,9 +1599,35 @@ public class TlsClientProtocol
         final SecurityParameters securityParameters = tlsClientContext.getSecurityParametersHandshake();
         final ProtocolVersion negotiatedVersion = securityParameters.getNegotiatedVersion();
 
+        if (TlsExtensionsUtils.hasEarlyDataIndication(serverExtensions))
+        {
+            /*
+             * RFC 8446 4.2.10. If the server accepts early data, it MUST have selected the first offered
+             * PSK and the cipher suite associated with it.
+             */
+            if (!earlyDataWriting || securityParameters.getCipherSuite() != earlyDataCipherSuite)
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            securityParameters.earlyDataAccepted = true;
+        }
+
         securityParameters.applicationProtocol = TlsExtensionsUtils.getALPNExtensionServer(serverExtensions);
         securityParameters.applicationProtocolSet = true;
 
+        int kemAuthenticationGroup = TlsExtensionsUtils.getKEMAuthenticationExtensionServer(serverExtensions);
+        if (kemAuthenticationGroup >= 0)
+        {
+            int[] kemGroups = TlsExtensionsUtils.getKEMAuthenticationExtensionClient(clientExtensions);
+            if (selectedPSK13 || !Arrays.contains(kemGroups, kemAuthenticationGroup))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            securityParameters.kemAuthenticationGroup = kemAuthenticationGroup;
+        }
+
         Hashtable sessionClientExtensions = clientExtensions, sessionServerExtensions = serverExtensions;
         if (securityParameters.isResumedSession())
         {
@@ -1591,6 +1702,7 @@ public class TlsClientProtocol
         }
 
         this.authentication = TlsUtils.receive13ServerCertificate(tlsClientContext, tlsClient, buf, serverExtensions);
+        this.certificateStatus = TlsUtils.receive13ServerCertificateStatus(tlsClientContext);
 
         // NOTE: In TLS 1.3 we don't have to wait for a possible CertificateStatus message.
         handleServerCertificate();
@@ -1612,6 +1724,49 @@ public class TlsClientProtocol
         TlsUtils.verify13CertificateVerifyServer(tlsClientContext, handshakeHash, certificateVerify);
     }
 
+    /**
+     * (Experimental) KEM-based server authentication: encapsulate a secret to the server's certificate key,
+     * send it in a KEMEncapsulation message, mix it into the key schedule and then send our Finished (under
+     * the authenticated handshake traffic keys).
+     */
+    protected void send13KEMAuthentication()
+        throws IOException
+    {
+        /*
+         * NOTE: KEM-based server authentication is only negotiated without a PSK, so any early data was
+         * rejected.
+         */
+        if (earlyDataWriting)
+        {
+            recordStream.enablePendingCipherWrite();
+            this.earlyDataWriting = false;
+        }
+
+        TlsAgreement encapsulator = TlsUtils.createKEMAuthenticationEncapsulator(tlsClientContext);
+
+        send13KEMEncapsulationMessage(encapsulator.generateEphemeral());
+        this.connection_state = CS_CLIENT_KEM_ENCAPSULATION;
+
+        byte[] kemEncapsulationTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+        TlsUtils.establish13PhaseAuthenticatedHandshake(tlsClientContext, encapsulator.calculateSecret(),
+            kemEncapsulationTranscriptHash, recordStream);
+
+        recordStream.enablePendingCipherWrite();
+        recordStream.enablePendingCipherRead(false);
+
+        send13FinishedMessage();
+        this.connection_state = CS_CLIENT_FINISHED;
+    }
+
+    protected void send13KEMEncapsulationMessage(byte[] encapsulation)
+        throws IOException
+    {
+        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.kem_encapsulation);
+        TlsUtils.writeOpaque16(encapsulation, message);
+        message.send(this);
+    }
+
     protected void receive13ServerFinished(ByteArrayInputStream buf)
         throws IOException
     {
@@ -1713,12 +1868,12 @@ public class TlsClientProtocol
          */
 
         // See RFC 8446 D.4.
+        if (null == earlyData)
         {
             recordStream.setIgnoreChangeCipherSpec(true);
 
             /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
-             * ClientHello.
+             * NOTE: If offering early_data, the record was placed immediately after the first ClientHello.
              */
             sendChangeCipherSpecMessage();
         }
@@ -1879,6 +2034,30 @@ public class TlsClientProtocol
         // TODO[tls13-psk] Perhaps don't add key_share if external PSK(s) offered and 'psk_dhe_ke' not offered  
         this.clientAgreements = TlsUtils.addKeyShareToClientHello(tlsClientContext, tlsClient, clientExtensions);
 
+        byte[] earlyDataToOffer = null;
+        if (null != clientBinders && !securityParameters.isRenegotiating())
+        {
+            earlyDataToOffer = tlsClient.getEarlyData();
+            if (null != earlyDataToOffer)
+            {
+                this.earlyDataCipherSuite = TlsUtils.getEarlyDataCipherSuite(offeredCipherSuites,
+                    clientBinders.psks[0]);
+                if (earlyDataCipherSuite < 0)
+                {
+                    earlyDataToOffer = null;
+                }
+            }
+        }
+
+        if (null == earlyDataToOffer)
+        {
+            this.clientExtensions.remove(TlsExtensionsUtils.EXT_early_data);
+        }
+        else
+        {
+            TlsExtensionsUtils.addEarlyDataIndication(clientExtensions);
+        }
+
         if (shouldUseEMS && TlsUtils.isExtendedMasterSecretOptional(supportedVersions))
         {
             TlsExtensionsUtils.addExtendedMasterSecretExtension(this.clientExtensions);
@@ -1942,7 +2121,36 @@ public class TlsClientProtocol
             offeredCipherSuites = Arrays.append(offeredCipherSuites, CipherSuite.TLS_FALLBACK_SCSV);
         }
 
+        if (offeringTLSv13Plus)
+        {
+            /*
+             * Hash the transcript as it is written for the PRF hash of each offered TLS 1.3 cipher suite (and
+             * any PSKs), rather than buffering and re-hashing it for binders, early data and the ServerHello.
+             */
+            int[] prfAlgorithms13 = TlsUtils.getPRFAlgorithms13(offeredCipherSuites);
+            for (int i = 0; i < prfAlgorithms13.length; ++i)
+            {
+                handshakeHash.trackCandidateHashAlgorithm(TlsCryptoUtils.getHashForPRF(prfAlgorithms13[i]));
+            }
 
+            if (null != clientBinders)
+            {
+                for (int i = 0; i < clientBinders.psks.length; ++i)
+                {
+                    handshakeHash.trackCandidateHashAlgorithm(
+                        TlsCryptoUtils.getHashForPRF(clientBinders.psks[i].getPRFAlgorithm()));
+                }
+            }
+
+            /*
+             * Without earlier versions on offer, no hash can be tracked later (nor buffering forced), so the
+             * transcript need never be buffered.
+             */
+            if (!offeringTLSv12Minus)
+            {
+                handshakeHash.stopBuffering();
+            }
+        }
 
         int bindersSize = null == clientBinders ? 0 : clientBinders.bindersSize;
 
@@ -1950,6 +2158,42 @@ public class TlsClientProtocol
             null, offeredCipherSuites, clientExtensions, bindersSize);
 
         sendClientHelloMessage();
+
+        if (null != earlyDataToOffer)
+        {
+            send13EarlyData(earlyDataToOffer);
+        }
+    }
+
+    protected void send13EarlyData(byte[] earlyData) throws IOException
+    {
+        TlsPSK psk = clientBinders.psks[0];
+        byte[] clientHelloTranscriptHash = TlsUtils.getEarlyDataTranscriptHash(tlsClientContext, handshakeHash, psk);
+
+        TlsCipher earlyDataCipher = TlsUtils.init13EarlyDataCipher(tlsClientContext, clientBinders.earlySecrets[0],
+            earlyDataCipherSuite, clientHelloTranscriptHash);
+
+        // See RFC 8446 D.4.
+        recordStream.setIgnoreChangeCipherSpec(true);
+        sendChangeCipherSpecMessage();
+
+        recordStream.enableEarlyDataWrite(earlyDataCipher);
+        this.earlyData = earlyData;
+        this.earlyDataWriting = true;
+
+        int off = 0, len = earlyData.length;
+        while (len > 0)
+        {
+            int toWrite = Math.min(len, recordStream.getPlaintextLimit());
+            safeWriteRecord(ContentType.application_data, earlyData, off, toWrite);
+            off += toWrite;
+            len -= toWrite;
+        }
+    }
+
+    protected void send13EndOfEarlyDataMessage() throws IOException
+    {
+        HandshakeMessageOutput.send(this, HandshakeType.end_of_early_data, TlsUtils.EMPTY_BYTES);
     }
 
     protected void sendClientHelloMessage() throws IOException
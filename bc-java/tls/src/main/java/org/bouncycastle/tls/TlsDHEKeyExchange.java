@@ -77,6 +77,7 @@ public class TlsDHEKeyExchange
         TlsDHUtils.writeDHConfig(dhConfig, digestBuffer);
 
         this.agreement = context.getCrypto().createDHDomain(dhConfig).createDH();
+        context.getSecurityParametersHandshake().negotiatedGroup = dhConfig.getNamedGroup();
 
         byte[] y = agreement.generateEphemeral();
 
@@ -99,6 +100,7 @@ public class TlsDHEKeyExchange
         TlsUtils.verifyServerKeyExchangeSignature(context, input, serverCertificate, null, digestBuffer);
 
         this.agreement = context.getCrypto().createDHDomain(dhConfig).createDH();
+        context.getSecurityParametersHandshake().negotiatedGroup = dhConfig.getNamedGroup();
 
         agreement.receivePeerValue(y);
     }
@@ -73,6 +73,7 @@ public class TlsECDHEKeyExchange
         TlsECCUtils.writeECConfig(ecConfig, digestBuffer);
 
         this.agreement = context.getCrypto().createECDomain(ecConfig).createECDH();
+        context.getSecurityParametersHandshake().negotiatedGroup = ecConfig.getNamedGroup();
 
         generateEphemeral(digestBuffer);
 
@@ -93,6 +94,7 @@ public class TlsECDHEKeyExchange
         TlsUtils.verifyServerKeyExchangeSignature(context, input, serverCertificate, null, digestBuffer);
 
         this.agreement = context.getCrypto().createECDomain(ecConfig).createECDH();
+        context.getSecurityParametersHandshake().negotiatedGroup = ecConfig.getNamedGroup();
 
         processEphemeral(point);
     }
@@ -0,0 +1,24 @@
+package org.bouncycastle.tls;
+
+/**
+ * Interface for a server-side (TLS 1.3) anti-replay mechanism for 0-RTT early data (see RFC 8446 8).
+ * Early data is only accepted when this mechanism confirms that the ClientHello is being seen for the
+ * first time.
+ */
+public interface TlsEarlyDataAntiReplay
+{
+    /**
+     * Check whether a ClientHello offering early data is fresh, and record it so that any replay of it
+     * will be refused.
+     * 
+     * @param context
+     *            the {@link TlsServerContext} of the handshake in progress.
+     * @param pskIdentity
+     *            the identity of the (first offered) PSK that the early data would be protected with.
+     * @param binder
+     *            the PSK binder for that identity, which is unique to the ClientHello.
+     * @return true if the early data may be accepted, otherwise false (the handshake then continues
+     *         without early data).
+     */
+    boolean checkAndRecord(TlsServerContext context, byte[] pskIdentity, byte[] binder);
+}
@@ -28,6 +28,7 @@ public class TlsExtensionsUtils
     public static final Integer EXT_encrypt_then_mac = Integers.valueOf(ExtensionType.encrypt_then_mac);
     public static final Integer EXT_extended_master_secret = Integers.valueOf(ExtensionType.extended_master_secret);
     public static final Integer EXT_heartbeat = Integers.valueOf(ExtensionType.heartbeat);
+    public static final Integer EXT_kem_authentication = Integers.valueOf(ExtensionType.kem_authentication);
     public static final Integer EXT_key_share = Integers.valueOf(ExtensionType.key_share);
     public static final Integer EXT_max_fragment_length = Integers.valueOf(ExtensionType.max_fragment_length);
     public static final Integer EXT_oid_filters = Integers.valueOf(ExtensionType.oid_filters);
@@ -139,6 +140,24 @@ public class TlsExtensionsUtils
         extensions.put(EXT_key_share, createKeyShareClientHello(clientShares));
     }
 
+    /**
+     * (Experimental) Offer KEM-based server authentication, see {@link ExtensionType#kem_authentication}.
+     *
+     * @param kemGroups the {@link NamedGroup}s of the (static) KEM keys the client accepts in the
+     *                  server's certificate, in order of preference.
+     */
+    public static void addKEMAuthenticationExtensionClient(Hashtable extensions, int[] kemGroups)
+        throws IOException
+    {
+        extensions.put(EXT_kem_authentication, createKEMAuthenticationExtensionClient(kemGroups));
+    }
+
+    public static void addKEMAuthenticationExtensionServer(Hashtable extensions, int kemGroup)
+        throws IOException
+    {
+        extensions.put(EXT_kem_authentication, createKEMAuthenticationExtensionServer(kemGroup));
+    }
+
     public static void addKeyShareHelloRetryRequest(Hashtable extensions, int namedGroup)
         throws IOException
     {
@@ -367,6 +386,20 @@ public class TlsExtensionsUtils
         return extensionData == null ? null : readKeyShareClientHello(extensionData);
     }
 
+    public static int[] getKEMAuthenticationExtensionClient(Hashtable extensions)
+        throws IOException
+    {
+        byte[] extensionData = TlsUtils.getExtensionData(extensions, EXT_kem_authentication);
+        return extensionData == null ? null : readKEMAuthenticationExtensionClient(extensionData);
+    }
+
+    public static int getKEMAuthenticationExtensionServer(Hashtable extensions)
+        throws IOException
+    {
+        byte[] extensionData = TlsUtils.getExtensionData(extensions, EXT_kem_authentication);
+        return extensionData == null ? -1 : readKEMAuthenticationExtensionServer(extensionData);
+    }
+
     public static int getKeyShareHelloRetryRequest(Hashtable extensions)
         throws IOException
     {
@@ -735,6 +768,23 @@ public class TlsExtensionsUtils
         return patchOpaque16(buf);
     }
 
+    public static byte[] createKEMAuthenticationExtensionClient(int[] kemGroups)
+        throws IOException
+    {
+        if (kemGroups == null || kemGroups.length < 1)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        return TlsUtils.encodeUint16ArrayWithUint16Length(kemGroups);
+    }
+
+    public static byte[] createKEMAuthenticationExtensionServer(int kemGroup)
+        throws IOException
+    {
+        return TlsUtils.encodeUint16(kemGroup);
+    }
+
     public static byte[] createKeyShareHelloRetryRequest(int namedGroup)
         throws IOException
     {
@@ -1197,6 +1247,19 @@ public class TlsExtensionsUtils
         return clientShares;
     }
 
+    public static int[] readKEMAuthenticationExtensionClient(byte[] extensionData)
+        throws IOException
+    {
+        // NOTE: Same encoding as the supported_groups extension
+        return readSupportedGroupsExtension(extensionData);
+    }
+
+    public static int readKEMAuthenticationExtensionServer(byte[] extensionData)
+        throws IOException
+    {
+        return TlsUtils.decodeUint16(extensionData);
+    }
+
     public static int readKeyShareHelloRetryRequest(byte[] extensionData)
         throws IOException
     {
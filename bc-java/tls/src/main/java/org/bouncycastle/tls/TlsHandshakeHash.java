@@ -17,8 +17,23 @@ public interface TlsHandshakeHash
 
     void notifyPRFDetermined();
 
+    /**
+     * Track a hash algorithm that may turn out to be needed for the PRF, so that the transcript can be hashed
+     * as it arrives rather than buffered and hashed later. Unless it is also tracked via
+     * {@link #trackHashAlgorithm(int)}, it is dropped by {@link #notifyPRFDetermined()} if it isn't the PRF
+     * hash.
+     */
+    void trackCandidateHashAlgorithm(int cryptoHashAlgorithm);
+
     void trackHashAlgorithm(int cryptoHashAlgorithm);
 
+    /**
+     * Stop buffering the transcript before the hash algorithms are sealed, when every hash that could still be
+     * needed is already tracked (or a candidate). Once there is any input, no further hash algorithms can then be
+     * tracked, and buffering can no longer be forced.
+     */
+    void stopBuffering();
+
     void sealHashAlgorithms();
 
     void stopTracking();
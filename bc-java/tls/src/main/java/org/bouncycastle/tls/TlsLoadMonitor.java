@@ -0,0 +1,15 @@
+package org.bouncycastle.tls;
+
+/**
+ * Interface for a source of load information used to adapt server behaviour to current demand.
+ */
+public interface TlsLoadMonitor
+{
+    /**
+     * Return the current load, normalised so that 0.0 means idle and 1.0 means the monitored resource
+     * is at its configured capacity. Values above 1.0 indicate overload.
+     * 
+     * @return the current (non-negative) load.
+     */
+    double getLoad();
+}
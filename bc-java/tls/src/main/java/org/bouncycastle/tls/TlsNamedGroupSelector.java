@@ -0,0 +1,22 @@
+package org.bouncycastle.tls;
+
+/**
+ * Interface for a (TLS 1.3) server-side strategy that decides, per handshake, which of the server's
+ * supported groups should be preferred for the key share.
+ */
+public interface TlsNamedGroupSelector
+{
+    /**
+     * Order (and optionally restrict) the server's supported groups for key share selection in the
+     * current handshake.
+     * 
+     * @param context
+     *            the {@link TlsServerContext} of the handshake in progress.
+     * @param supportedGroups
+     *            the server's supported groups (see {@link NamedGroup}), in static preference order.
+     * @return the groups (a subset of supportedGroups) acceptable for the key share in this
+     *         handshake, most preferred first, or null to keep the default (client preference)
+     *         selection.
+     */
+    int[] getKeyShareGroupPreferences(TlsServerContext context, int[] supportedGroups);
+}
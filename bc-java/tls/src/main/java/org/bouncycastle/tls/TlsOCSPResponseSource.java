@@ -0,0 +1,27 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.x509.Certificate;
+
+/**
+ * Interface for a source of OCSP responses for a server's own certificates, for use with
+ * {@link OCSPStaplingManager}.
+ */
+public interface TlsOCSPResponseSource
+{
+    /**
+     * Obtain a current OCSP response for a certificate, e.g. by querying the issuer's OCSP responder.
+     * This is called from a background thread of an {@link OCSPStaplingManager}, so it may block.
+     *
+     * @param subject
+     *            the certificate whose status is required.
+     * @param issuer
+     *            the certificate of the issuer of 'subject'.
+     * @return an {@link OCSPResponse}, or null if none is available.
+     * @throws IOException
+     *             if the response could not be obtained.
+     */
+    OCSPResponse getOCSPResponse(Certificate subject, Certificate issuer) throws IOException;
+}
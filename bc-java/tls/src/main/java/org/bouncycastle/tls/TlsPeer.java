@@ -51,6 +51,20 @@ public interface TlsPeer
      */
     int getHandshakeResendTimeMillis();
 
+    /**
+     * <p>
+     * NOTE: Currently only respected by DTLS protocols.
+     * </p>
+     * <p>
+     * Specify the size of the anti-replay window (RFC 6347 4.1.2.6), i.e. how far (in record sequence
+     * numbers) a record may arrive behind the latest one received without being discarded. A larger window
+     * suits links that reorder heavily (e.g. multi-path); it costs one long for every 16 sequence numbers.
+     * </p>
+     *
+     * @return the replay window size, in the range [1, 2^20].
+     */
+    int getReplayWindowSize();
+
     boolean allowLegacyResumption();
 
     int getMaxCertificateChainLength();
@@ -51,6 +51,7 @@ public abstract class TlsProtocol
     protected static final short CS_SERVER_SESSION_TICKET = 19;
     protected static final short CS_SERVER_FINISHED = 20;
     protected static final short CS_END = 21;
+    protected static final short CS_CLIENT_KEM_ENCAPSULATION = 22;
 
     protected boolean isLegacyConnectionState()
     {
@@ -80,6 +81,7 @@ public abstract class TlsProtocol
         case CS_SERVER_ENCRYPTED_EXTENSIONS:
         case CS_SERVER_CERTIFICATE_VERIFY:
         case CS_CLIENT_END_OF_EARLY_DATA:
+        case CS_CLIENT_KEM_ENCAPSULATION:
         default:
             return false;
         }
@@ -103,6 +105,7 @@ public abstract class TlsProtocol
         case CS_CLIENT_CERTIFICATE:
         case CS_CLIENT_CERTIFICATE_VERIFY:
         case CS_CLIENT_FINISHED:
+        case CS_CLIENT_KEM_ENCAPSULATION:
         case CS_END:
             return true;
 
@@ -151,8 +154,13 @@ public abstract class TlsProtocol
 //    private volatile boolean keyUpdatePendingReceive = false;
     private volatile boolean keyUpdatePendingSend = false;
     private volatile boolean resumableHandshake = false;
+    private volatile boolean idleBufferCompaction = false;
+    private TlsBufferPool bufferPool = null;
     private volatile int appDataSplitMode = ADS_MODE_1_Nsub1;
 
+    // NOTE: (TLS 1.3) Server: bytes of accepted 0-RTT early data that may still be received, or -1
+    int earlyDataReceiveLimit = -1;
+
     protected TlsSession tlsSession = null;
     protected SessionParameters sessionParameters = null;
     protected TlsSecret sessionMasterSecret = null;
@@ -167,6 +175,8 @@ public abstract class TlsProtocol
     protected boolean receivedChangeCipherSpec = false;
     protected boolean expectSessionTicket = false;
 
+    private long handshakeBytesWrittenMark = 0L;
+
     protected boolean blocking;
     protected ByteQueueInputStream inputBuffers;
     protected ByteQueueOutputStream outputBuffer;
@@ -216,6 +226,14 @@ public abstract class TlsProtocol
     protected void closeConnection() throws IOException
     {
         recordStream.close();
+
+        if (!blocking)
+        {
+            // NOTE: No more input will be accepted, but received application data and output may still be read
+            inputBuffers.getBuffer().clear();
+            handshakeQueue.clear();
+            alertQueue.clear();
+        }
     }
 
     protected abstract TlsContext getContext();
@@ -439,6 +457,7 @@ public abstract class TlsProtocol
         this.handshakeHash = new DeferredHash(context);
         this.connection_state = CS_START;
         this.selectedPSK13 = false;
+        this.handshakeBytesWrittenMark = recordStream.getBytesWritten();
 
         context.handshakeBeginning(peer);
 
@@ -475,6 +494,7 @@ public abstract class TlsProtocol
         this.selectedPSK13 = false;
         this.receivedChangeCipherSpec = false;
         this.expectSessionTicket = false;
+        this.earlyDataReceiveLimit = -1;
     }
 
     protected void completeHandshake()
@@ -499,7 +519,23 @@ public abstract class TlsProtocol
             this.handshakeHash = new DeferredHash(context);
 
             this.alertQueue.shrink();
-            this.handshakeQueue.shrink();
+            this.applicationDataQueue.shrink();
+
+            /*
+             * NOTE: The message being handled may still be reading from the handshake queue's buffer, so a pooled
+             * buffer is only compacted (by processRecord) once the message has been processed.
+             */
+            if (null == bufferPool)
+            {
+                this.handshakeQueue.shrink();
+            }
+
+            if (!blocking)
+            {
+                // NOTE: These may still hold the tail of the final flight, or records received after it
+                this.inputBuffers.getBuffer().shrink();
+                this.outputBuffer.getBuffer().shrink();
+            }
 
             ProtocolVersion negotiatedVersion = securityParameters.getNegotiatedVersion();
 
@@ -541,6 +577,8 @@ public abstract class TlsProtocol
                 securityParameters.srpIdentity = sessionParameters.getSRPIdentity();
             }
 
+            securityParameters.handshakeBytesSent = recordStream.getBytesWritten() - handshakeBytesWrittenMark;
+
             context.handshakeComplete(getPeer(), this.tlsSession);
         }
         finally
@@ -567,7 +605,15 @@ public abstract class TlsProtocol
         {
             if (!appDataReady)
             {
-                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                if (earlyDataReceiveLimit < 0)
+                {
+                    throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                }
+                if (len > earlyDataReceiveLimit)
+                {
+                    throw new TlsFatalAlert(AlertDescription.unexpected_message, "Early data exceeds the maximum size");
+                }
+                earlyDataReceiveLimit -= len;
             }
             applicationDataQueue.addData(buf, off, len);
             processApplicationDataQueue();
@@ -595,6 +641,11 @@ public abstract class TlsProtocol
                     handshakeQueue.addData(buf, off + len - remaining, remaining);
                 }
             }
+
+            if (appDataReady)
+            {
+                compactIfDrained(handshakeQueue);
+            }
             break;
         }
 //        case ContentType.heartbeat:
@@ -739,6 +790,8 @@ public abstract class TlsProtocol
 
             handleAlertMessage(alertLevel, alertDescription);
         }
+
+        compactIfDrained(alertQueue);
     }
 
     /**
@@ -844,6 +897,7 @@ public abstract class TlsProtocol
 
         len = Math.min(len, applicationDataQueue.available());
         applicationDataQueue.removeData(buf, off, len, 0);
+        compactIfDrained(applicationDataQueue);
         return len;
     }
 
@@ -1098,6 +1152,88 @@ public abstract class TlsProtocol
         this.resumableHandshake = resumableHandshake;
     }
 
+    public boolean isIdleBufferCompaction()
+    {
+        return idleBufferCompaction;
+    }
+
+    /**
+     * Enable or disable idle buffer compaction. When enabled, the buffers queueing received application
+     * data, received (non-blocking) input, pending (non-blocking) output and post-handshake messages are
+     * released as soon as they are drained, so a connection that is mostly idle retains (almost) no buffer
+     * space between bursts of traffic, at the cost of re-allocating buffers for each burst. Buffers are
+     * always compacted when a handshake completes, whether or not this is enabled.
+     *
+     * @param idleBufferCompaction
+     *            whether to release buffers as soon as they are drained (disabled by default).
+     * @see #getRetainedBufferSize()
+     */
+    public void setIdleBufferCompaction(boolean idleBufferCompaction)
+    {
+        this.idleBufferCompaction = idleBufferCompaction;
+    }
+
+    public TlsBufferPool getBufferPool()
+    {
+        return bufferPool;
+    }
+
+    /**
+     * Set a pool that this connection borrows its record and message buffers from, and returns them to as
+     * soon as they are drained (regardless of {@link #setIdleBufferCompaction(boolean)}). A single pool is
+     * intended to be shared by many connections. Must be called before the handshake begins.
+     *
+     * @param bufferPool
+     *            the {@link TlsBufferPool} to use, or null to allocate buffers as needed (the default).
+     */
+    public void setBufferPool(TlsBufferPool bufferPool)
+    {
+        if (CS_START != connection_state)
+        {
+            throw new IllegalStateException("Buffer pool can only be set before the handshake begins");
+        }
+
+        this.bufferPool = bufferPool;
+
+        applicationDataQueue.setBufferPool(bufferPool);
+        alertQueue.setBufferPool(bufferPool);
+        handshakeQueue.setBufferPool(bufferPool);
+        recordStream.setBufferPool(bufferPool);
+
+        if (!blocking)
+        {
+            inputBuffers.getBuffer().setBufferPool(bufferPool);
+            outputBuffer.getBuffer().setBufferPool(bufferPool);
+        }
+    }
+
+    /**
+     * Get the total size of the buffers currently retained by this connection for queueing record and
+     * message data, whether or not they hold any data. This doesn't include cipher or session state.
+     *
+     * @return the retained buffer size in bytes.
+     */
+    public int getRetainedBufferSize()
+    {
+        int size = applicationDataQueue.capacity() + alertQueue.capacity() + handshakeQueue.capacity()
+            + recordStream.getRetainedBufferSize();
+
+        if (!blocking)
+        {
+            size += inputBuffers.getBuffer().capacity() + outputBuffer.getBuffer().capacity();
+        }
+
+        return size;
+    }
+
+    private void compactIfDrained(ByteQueue queue)
+    {
+        if ((idleBufferCompaction || null != bufferPool) && queue.available() == 0)
+        {
+            queue.shrink();
+        }
+    }
+
     void writeHandshakeMessage(byte[] buf, int off, int len) throws IOException
     {
         if (len < 4)
@@ -1409,6 +1545,8 @@ public abstract class TlsProtocol
                 break;
             }
         }
+
+        compactIfDrained(inputBuffers.getBuffer());
     }
 
     public int getApplicationDataLimit()
@@ -1459,6 +1597,7 @@ public abstract class TlsProtocol
         }
 
         applicationDataQueue.removeData(buffer, offset, length, 0);
+        compactIfDrained(applicationDataQueue);
         return length;
     }
 
@@ -1489,6 +1628,7 @@ public abstract class TlsProtocol
         }
 
         applicationDataQueue.removeData(buffer, length, 0);
+        compactIfDrained(applicationDataQueue);
         return length;
     }
 
@@ -1532,6 +1672,7 @@ public abstract class TlsProtocol
         
         int bytesToRead = Math.min(getAvailableOutputBytes(), length);
         outputBuffer.getBuffer().removeData(buffer, offset, bytesToRead, 0);
+        compactIfDrained(outputBuffer.getBuffer());
         return bytesToRead;
     }
 
@@ -1556,6 +1697,7 @@ public abstract class TlsProtocol
 
         int bytesToRead = Math.min(getAvailableOutputBytes(), length);
         outputBuffer.getBuffer().removeData(buffer, bytesToRead, 0);
+        compactIfDrained(outputBuffer.getBuffer());
         return bytesToRead;
     }
 
@@ -58,6 +58,37 @@ public interface TlsServer
     int[] getSupportedGroups()
         throws IOException;
 
+    /**
+     * (TLS 1.3) Return how the key share group is chosen, in combination with
+     * {@link AbstractTlsServer#getKeyShareGroupPreferences()} (when applicable).
+     * 
+     * @return a {@link KeyShareSelectionMode} value.
+     */
+    int getKeyShareSelectionMode()
+        throws IOException;
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * (TLS 1.3) Return the maximum number of bytes of 0-RTT early data to accept in a handshake.
+     * Early data is only accepted when this is positive and {@link #getEarlyDataAntiReplay()} is
+     * non-null.
+     * 
+     * @return the maximum early data size, or 0 to reject early data.
+     */
+    int getMaxEarlyDataSize()
+        throws IOException;
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * (TLS 1.3) Return the mechanism used to refuse replayed 0-RTT early data.
+     * 
+     * @return the {@link TlsEarlyDataAntiReplay}, or null to reject early data.
+     */
+    TlsEarlyDataAntiReplay getEarlyDataAntiReplay()
+        throws IOException;
+
     int getSelectedCipherSuite()
         throws IOException;
 
@@ -84,11 +115,34 @@ public interface TlsServer
     TlsCredentials getCredentials()
         throws IOException;
 
+    /**
+     * (Experimental) Called (only) for a TLS 1.3 handshake without a PSK, if the client offered KEM-based
+     * server authentication (see {@link ExtensionType#kem_authentication}). If credentials are returned,
+     * the server authenticates by being able to decapsulate a secret the client encapsulates to the KEM
+     * public key in the certificate, instead of by a CertificateVerify signature; that secret is mixed into
+     * the key schedule, and the server's Finished then follows the client's. Client authentication is not
+     * supported in this mode, so {@link #getCertificateRequest()} is not called.
+     *
+     * @param kemGroups
+     *            the {@link NamedGroup}s of the KEM keys acceptable to the client, in order of preference.
+     * @return a {@link TlsCredentialedDecryptor} whose end-entity certificate has a KEM public key for one
+     *         of the offered groups, or null to authenticate with a signature as usual.
+     * @throws IOException
+     */
+    TlsCredentialedDecryptor getKEMAuthenticationCredentials(int[] kemGroups)
+        throws IOException;
+
     /**
      * This method will be called (only) if the server included an extension of type
      * "status_request" with empty "extension_data" in the extended server hello. See <i>RFC 3546
      * 3.6. Certificate Status Request</i>. If a non-null {@link CertificateStatus} is returned, it
      * is sent to the client as a handshake message of type "certificate_status".
+     * <p>
+     * In TLS 1.3 this method will be called (only) if the client offered the "status_request"
+     * extension, and the returned {@link CertificateStatus} (which must then be of type
+     * {@link CertificateStatusType#ocsp}) is sent in the "status_request" extension of the end-entity
+     * CertificateEntry. See {@link OCSPStaplingManager} for a cache of OCSP responses.
+     * </p>
      * 
      * @return A {@link CertificateStatus} to be sent to the client (or null for none).
      * @throws IOException
@@ -9,7 +9,10 @@ import java.util.Hashtable;
 import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsCryptoParameters;
+import org.bouncycastle.tls.crypto.TlsCryptoUtils;
 import org.bouncycastle.tls.crypto.TlsDHConfig;
 import org.bouncycastle.tls.crypto.TlsECConfig;
 import org.bouncycastle.tls.crypto.TlsPQCConfig;
@@ -26,6 +29,9 @@ public class TlsServerProtocol
     protected int[] offeredCipherSuites = null;
     protected TlsKeyExchange keyExchange = null;
     protected CertificateRequest certificateRequest = null;
+    protected TlsCredentialedDecryptor kemCredentials = null;
+
+    TlsCipher earlyDataCipher = null;
 
     /**
      * Constructor for non-blocking mode.<br>
@@ -104,6 +110,8 @@ public class TlsServerProtocol
         this.offeredCipherSuites = null;
         this.keyExchange = null;
         this.certificateRequest = null;
+        this.kemCredentials = null;
+        this.earlyDataCipher = null;
     }
 
     protected boolean expectCertificateVerifyMessage()
@@ -220,6 +228,18 @@ public class TlsServerProtocol
             }
             this.retryCookie = null;
 
+            /*
+             * RFC 8446 4.2.10. A client MUST NOT include the "early_data" extension in its followup
+             * ClientHello.
+             */
+            if (TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            // Any early data preceded this ClientHello
+            recordStream.setEarlyDataSkipLimit(0);
+
             clientShare = TlsUtils.selectKeyShare(clientShares, retryGroup);
             if (null == clientShare)
             {
@@ -297,14 +317,23 @@ public class TlsServerProtocol
 
             int[] clientSupportedGroups = securityParameters.getClientSupportedGroups();
             int[] serverSupportedGroups = securityParameters.getServerSupportedGroups();
+            int[] keyShareGroupPreferences = (tlsServer instanceof AbstractTlsServer)
+                ? ((AbstractTlsServer)tlsServer).getKeyShareGroupPreferences()
+                : null;
+            int keyShareSelectionMode = tlsServer.getKeyShareSelectionMode();
+
+            if (!KeyShareSelectionMode.isValid(keyShareSelectionMode))
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
 
             clientShare = TlsUtils.selectKeyShare(crypto, serverVersion, clientShares, clientSupportedGroups,
-                serverSupportedGroups);
+                serverSupportedGroups, keyShareGroupPreferences, keyShareSelectionMode);
 
             if (null == clientShare)
             {
                 this.retryGroup = TlsUtils.selectKeyShareGroup(crypto, serverVersion, clientSupportedGroups,
-                    serverSupportedGroups);
+                    serverSupportedGroups, keyShareGroupPreferences, keyShareSelectionMode);
                 if (retryGroup < 0)
                 {
                     throw new TlsFatalAlert(AlertDescription.handshake_failure);
@@ -312,6 +341,17 @@ public class TlsServerProtocol
 
                 this.retryCookie = tlsServerContext.getNonceGenerator().generateNonce(16);
 
+                securityParameters.helloRetryRequest = true;
+
+                /*
+                 * RFC 8446 4.2.10. Early data is rejected by a HelloRetryRequest; skip any that the
+                 * client sends before its second ClientHello.
+                 */
+                if (TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+                {
+                    recordStream.setEarlyDataSkipLimit(getEarlyDataSkipLimit());
+                }
+
                 return generate13HelloRetryRequest(clientHello);
             }
 
@@ -375,7 +415,7 @@ public class TlsServerProtocol
         securityParameters.truncatedHMac = false;
 
         /*
-         * TODO[tls13] RFC 8446 4.4.2.1. OCSP Status and SCT Extensions.
+         * RFC 8446 4.4.2.1. OCSP Status and SCT Extensions.
          * 
          * OCSP information is carried in an extension for a CertificateEntry.
          */
@@ -394,6 +434,32 @@ public class TlsServerProtocol
             TlsExtensionsUtils.addPreSharedKeyServerHello(serverHelloExtensions, selectedPSK.index);
         }
 
+        if (!afterHelloRetryRequest && TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+        {
+            int maxEarlyDataSize = tlsServer.getMaxEarlyDataSize();
+
+            if (acceptEarlyData(clientHelloExtensions, selectedPSK, maxEarlyDataSize))
+            {
+                byte[] clientHelloTranscriptHash = TlsUtils.getEarlyDataTranscriptHash(tlsServerContext,
+                    handshakeHash, selectedPSK.psk);
+
+                this.earlyDataCipher = TlsUtils.init13EarlyDataCipher(tlsServerContext, selectedPSK.earlySecret,
+                    securityParameters.getCipherSuite(), clientHelloTranscriptHash);
+                this.earlyDataReceiveLimit = maxEarlyDataSize;
+
+                TlsExtensionsUtils.addEarlyDataIndication(serverEncryptedExtensions);
+                securityParameters.earlyDataAccepted = true;
+            }
+            else
+            {
+                /*
+                 * RFC 8446 4.2.10. [..] skips past early data by attempting to deprotect received
+                 * records using the handshake traffic key, discarding records which fail deprotection.
+                 */
+                recordStream.setEarlyDataSkipLimit(getEarlyDataSkipLimit());
+            }
+        }
+
         TlsSecret sharedSecret;
         {
             int namedGroup = clientShare.getNamedGroup();
@@ -423,6 +489,8 @@ public class TlsServerProtocol
             TlsExtensionsUtils.addKeyShareServerHello(serverHelloExtensions, serverShare);
 
             sharedSecret = agreement.calculateSecret();
+
+            securityParameters.negotiatedGroup = namedGroup;
         }
 
         TlsUtils.establish13PhaseSecrets(tlsServerContext, pskEarlySecret, sharedSecret);
@@ -438,6 +506,50 @@ public class TlsServerProtocol
             securityParameters.getCipherSuite(), serverHelloExtensions);
     }
 
+    private boolean acceptEarlyData(Hashtable clientHelloExtensions, OfferedPsks.SelectedConfig selectedPSK,
+        int maxEarlyDataSize) throws IOException
+    {
+        /*
+         * RFC 8446 4.2.10. In order to accept early data, the server MUST have accepted a PSK cipher
+         * suite and selected the first key offered in the client's "pre_shared_key" extension.
+         */
+        if (null == selectedPSK || 0 != selectedPSK.index || maxEarlyDataSize < 1)
+        {
+            return false;
+        }
+
+        int cipherSuite = tlsServerContext.getSecurityParametersHandshake().getCipherSuite();
+        if (cipherSuite != TlsUtils.getEarlyDataCipherSuite(offeredCipherSuites, selectedPSK.psk))
+        {
+            return false;
+        }
+
+        TlsEarlyDataAntiReplay antiReplay = tlsServer.getEarlyDataAntiReplay();
+        if (null == antiReplay)
+        {
+            return false;
+        }
+
+        OfferedPsks offeredPsks = TlsExtensionsUtils.getPreSharedKeyClientHello(clientHelloExtensions);
+        byte[] binder = (byte[])offeredPsks.getBinders().elementAt(0);
+
+        return antiReplay.checkAndRecord(tlsServerContext, selectedPSK.psk.getIdentity(), binder);
+    }
+
+    private void checkNoEarlyDataPending() throws IOException
+    {
+        // NOTE: If early data was accepted, EndOfEarlyData must precede the rest of the client's flight
+        if (tlsServerContext.getSecurityParametersHandshake().isEarlyDataAccepted())
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+    }
+
+    private int getEarlyDataSkipLimit() throws IOException
+    {
+        return Math.max(tlsServer.getMaxEarlyDataSize(), 1 << 14);
+    }
+
     protected ServerHello generateServerHello(ClientHello clientHello, HandshakeMessageInput clientHelloMessage)
         throws IOException
     {
@@ -532,6 +644,18 @@ public class TlsServerProtocol
 
             recordStream.setWriteVersion(ProtocolVersion.TLSv12);
 
+            /*
+             * The ClientHello is hashed (for any PSK binder) before the cipher suite is selected, so hash it for
+             * the PRF hash of each offered TLS 1.3 cipher suite instead of buffering it; TLS 1.3 never needs the
+             * raw transcript.
+             */
+            int[] prfAlgorithms13 = TlsUtils.getPRFAlgorithms13(offeredCipherSuites);
+            for (int i = 0; i < prfAlgorithms13.length; ++i)
+            {
+                handshakeHash.trackCandidateHashAlgorithm(TlsCryptoUtils.getHashForPRF(prfAlgorithms13[i]));
+            }
+            handshakeHash.stopBuffering();
+
             return generate13ServerHello(clientHello, clientHelloMessage, false);
         }
 
@@ -890,6 +1014,11 @@ public class TlsServerProtocol
             switch (this.connection_state)
             {
             case CS_SERVER_FINISHED:
+            {
+                checkNoEarlyDataPending();
+                // NB: Fall through to next case label
+            }
+            case CS_CLIENT_END_OF_EARLY_DATA:
             {
                 receive13ClientCertificate(buf);
                 this.connection_state = CS_CLIENT_CERTIFICATE;
@@ -947,6 +1076,11 @@ public class TlsServerProtocol
             switch (this.connection_state)
             {
             case CS_SERVER_FINISHED:
+            {
+                checkNoEarlyDataPending();
+                // NB: Fall through to next case label
+            }
+            case CS_CLIENT_END_OF_EARLY_DATA:
             {
                 skip13ClientCertificate();
                 // NB: Fall through to next case label
@@ -970,6 +1104,61 @@ public class TlsServerProtocol
                 completeHandshake();
                 break;
             }
+            case CS_CLIENT_KEM_ENCAPSULATION:
+            {
+                /*
+                 * (Experimental) KEM-based server authentication: our Finished follows the client's.
+                 */
+                receive13ClientFinished(buf);
+                buf.updateHash(handshakeHash);
+                this.connection_state = CS_CLIENT_FINISHED;
+
+                // See RFC 8446 D.4.
+                recordStream.setIgnoreChangeCipherSpec(false);
+
+                send13FinishedMessage();
+                this.connection_state = CS_SERVER_FINISHED;
+
+                byte[] serverFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                TlsUtils.establish13PhaseApplication(tlsServerContext, serverFinishedTranscriptHash, recordStream);
+
+                recordStream.enablePendingCipherWrite();
+                recordStream.enablePendingCipherRead(false);
+
+                completeHandshake();
+                break;
+            }
+            default:
+                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+            }
+            break;
+        }
+        case HandshakeType.kem_encapsulation:
+        {
+            switch (this.connection_state)
+            {
+            case CS_SERVER_CERTIFICATE:
+            {
+                receive13KEMEncapsulation(buf);
+                this.connection_state = CS_CLIENT_KEM_ENCAPSULATION;
+                break;
+            }
+            default:
+                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+            }
+            break;
+        }
+        case HandshakeType.end_of_early_data:
+        {
+            switch (this.connection_state)
+            {
+            case CS_SERVER_FINISHED:
+            {
+                receive13EndOfEarlyData(buf);
+                this.connection_state = CS_CLIENT_END_OF_EARLY_DATA;
+                break;
+            }
             default:
                 throw new TlsFatalAlert(AlertDescription.unexpected_message);
             }
@@ -987,7 +1176,6 @@ public class TlsServerProtocol
         case HandshakeType.client_key_exchange:
         case HandshakeType.compressed_certificate:
         case HandshakeType.encrypted_extensions:
-        case HandshakeType.end_of_early_data:
         case HandshakeType.hello_request:
         case HandshakeType.hello_verify_request:
         case HandshakeType.message_hash:
@@ -1446,6 +1634,20 @@ public class TlsServerProtocol
         TlsUtils.processClientCertificate(tlsServerContext, clientCertificate, keyExchange, tlsServer);
     }
 
+    protected void receive13EndOfEarlyData(ByteArrayInputStream buf)
+        throws IOException
+    {
+        if (!tlsServerContext.getSecurityParametersHandshake().isEarlyDataAccepted())
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+
+        assertEmpty(buf);
+
+        recordStream.notifyEndOfEarlyDataReceived();
+        this.earlyDataReceiveLimit = -1;
+    }
+
     protected void receive13ClientCertificate(ByteArrayInputStream buf)
         throws IOException
     {
@@ -1488,6 +1690,30 @@ public class TlsServerProtocol
         process13FinishedMessage(buf);
     }
 
+    protected void receive13KEMEncapsulation(ByteArrayInputStream buf) throws IOException
+    {
+        if (null == kemCredentials)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        byte[] encapsulation = TlsUtils.readOpaque16(buf, 1);
+
+        assertEmpty(buf);
+
+        TlsSecret kemSecret = kemCredentials.decrypt(new TlsCryptoParameters(tlsServerContext), encapsulation);
+        this.kemCredentials = null;
+
+        // NOTE: The transcript already includes the KEMEncapsulation message
+        byte[] kemEncapsulationTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+        TlsUtils.establish13PhaseAuthenticatedHandshake(tlsServerContext, kemSecret, kemEncapsulationTranscriptHash,
+            recordStream);
+
+        recordStream.enablePendingCipherRead(false);
+        recordStream.enablePendingCipherWrite();
+    }
+
     protected void receiveCertificateMessage(ByteArrayInputStream buf)
         throws IOException
     {
@@ -1566,6 +1792,25 @@ public class TlsServerProtocol
         message.send(this);
     }
 
+    protected void send13ServerCertificateMessage(Certificate serverCertificate) throws IOException
+    {
+        SecurityParameters securityParameters = tlsServerContext.getSecurityParametersHandshake();
+
+        /*
+         * No CertificateStatus message is sent; TLS 1.3 uses per-CertificateEntry "status_request"
+         * extension instead.
+         */
+        if (securityParameters.getStatusRequestVersion() > 0)
+        {
+            serverCertificate = TlsUtils.add13ServerCertificateStatus(serverCertificate,
+                tlsServer.getCertificateStatus());
+        }
+
+        send13CertificateMessage(serverCertificate);
+        securityParameters.tlsServerEndPoint = null;
+        this.connection_state = CS_SERVER_CERTIFICATE;
+    }
+
     protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHelloRetryRequest) throws IOException
     {
         final SecurityParameters securityParameters = tlsServerContext.getSecurityParametersHandshake();
@@ -1577,9 +1822,42 @@ public class TlsServerProtocol
         recordStream.enablePendingCipherWrite();
         recordStream.enablePendingCipherRead(true);
 
+        if (null != earlyDataCipher)
+        {
+            // NOTE: The handshake read cipher is deferred until EndOfEarlyData is received
+            recordStream.enableEarlyDataRead(earlyDataCipher);
+            this.earlyDataCipher = null;
+        }
+
+        if (!selectedPSK13)
+        {
+            int[] kemGroups = TlsExtensionsUtils.getKEMAuthenticationExtensionClient(clientExtensions);
+            if (null != kemGroups)
+            {
+                this.kemCredentials = TlsUtils.establish13ServerKEMCredentials(tlsServerContext, tlsServer,
+                    kemGroups);
+
+                if (null != kemCredentials)
+                {
+                    TlsExtensionsUtils.addKEMAuthenticationExtensionServer(serverExtensions,
+                        securityParameters.getKEMAuthenticationGroup());
+                }
+            }
+        }
+
         send13EncryptedExtensionsMessage(serverExtensions);
         this.connection_state = CS_SERVER_ENCRYPTED_EXTENSIONS;
 
+        if (null != kemCredentials)
+        {
+            /*
+             * (Experimental) KEM-based server authentication: there's no CertificateRequest or
+             * CertificateVerify, and our Finished waits for the client's KEMEncapsulation and Finished.
+             */
+            send13ServerCertificateMessage(kemCredentials.getCertificate());
+            return;
+        }
+
         if (selectedPSK13)
         {
             /*
@@ -1612,21 +1890,7 @@ public class TlsServerProtocol
             }
     
             // Certificate
-            {
-                /*
-                 * TODO[tls13] Note that we are expecting the TlsServer implementation to take care of e.g.
-                 * adding optional "status_request" extension to each CertificateEntry.
-                 */
-                /*
-                 * No CertificateStatus message is sent; TLS 1.3 uses per-CertificateEntry "status_request"
-                 * extension instead.
-                 */
-
-                Certificate serverCertificate = serverCredentials.getCertificate();
-                send13CertificateMessage(serverCertificate);
-                securityParameters.tlsServerEndPoint = null;
-                this.connection_state = CS_SERVER_CERTIFICATE;
-            }
+            send13ServerCertificateMessage(serverCredentials.getCertificate());
     
             // CertificateVerify
             {
@@ -18,6 +18,7 @@ import org.bouncycastle.asn1.ASN1Object;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.bc.BCObjectIdentifiers;
 import org.bouncycastle.asn1.bsi.BSIObjectIdentifiers;
 import org.bouncycastle.asn1.eac.EACObjectIdentifiers;
 import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
@@ -26,6 +27,7 @@ import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.RSASSAPSSparams;
 import org.bouncycastle.asn1.rosstandart.RosstandartObjectIdentifiers;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
 import org.bouncycastle.tls.crypto.Tls13Verifier;
@@ -39,7 +41,7 @@ import org.bouncycastle.tls.crypto.TlsDHConfig;
 import org.bouncycastle.tls.crypto.TlsECConfig;
 import org.bouncycastle.tls.crypto.TlsEncryptor;
 import org.bouncycastle.tls.crypto.TlsHash;
-import org.bouncycastle.tls.crypto.TlsHashOutputStream;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCConfig;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
@@ -1910,6 +1912,68 @@ public class TlsUtils
             clientHelloTranscriptHash);
     }
 
+    /**
+     * RFC 8446 4.2.10. For an external PSK, early data uses the "associated" cipher suite; both peers
+     * take this to be the first TLS 1.3 cipher suite offered by the client with the PSK's hash.
+     */
+    static int getEarlyDataCipherSuite(int[] offeredCipherSuites, TlsPSK psk)
+    {
+        int pskPRFAlgorithm = psk.getPRFAlgorithm();
+
+        for (int i = 0; i < offeredCipherSuites.length; ++i)
+        {
+            int cipherSuite = offeredCipherSuites[i];
+            if (isValidVersionForCipherSuite(cipherSuite, ProtocolVersion.TLSv13)
+                && getPRFAlgorithm13(cipherSuite) == pskPRFAlgorithm)
+            {
+                return cipherSuite;
+            }
+        }
+        return -1;
+    }
+
+    static byte[] getEarlyDataTranscriptHash(TlsContext context, TlsHandshakeHash handshakeHash, TlsPSK psk)
+        throws IOException
+    {
+        return handshakeHash.getFinalHash(TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm()));
+    }
+
+    /**
+     * Create the cipher for (client-&gt;server) 0-RTT early data, keyed from client_early_traffic_secret.
+     * On the client this happens before the ServerHello, so the cipher is created from separate security
+     * parameters for the early data cipher suite, leaving those of the handshake untouched.
+     */
+    static TlsCipher init13EarlyDataCipher(TlsContext context, TlsSecret pskEarlySecret, int cipherSuite,
+        byte[] clientHelloTranscriptHash) throws IOException
+    {
+        int encryptionAlgorithm = getEncryptionAlgorithm(cipherSuite);
+        int macAlgorithm = getMACAlgorithm(cipherSuite);
+
+        if (encryptionAlgorithm < 0 || macAlgorithm < 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        SecurityParameters earlyDataParameters = new SecurityParameters();
+        earlyDataParameters.entity = context.getSecurityParametersHandshake().getEntity();
+        earlyDataParameters.negotiatedVersion = ProtocolVersion.TLSv13;
+        negotiatedCipherSuite(earlyDataParameters, cipherSuite);
+
+        TlsSecret earlyTrafficSecret = deriveSecret(earlyDataParameters, pskEarlySecret, "c e traffic",
+            clientHelloTranscriptHash);
+        try
+        {
+            earlyDataParameters.trafficSecretClient = earlyTrafficSecret;
+
+            return context.getCrypto().createCipher(new EarlyDataCryptoParameters(context, earlyDataParameters),
+                encryptionAlgorithm, macAlgorithm);
+        }
+        finally
+        {
+            earlyTrafficSecret.destroy();
+        }
+    }
+
     static void establish13PhaseHandshake(TlsContext context, byte[] serverHelloTranscriptHash,
         RecordStream recordStream) throws IOException
     {
@@ -1923,6 +1987,48 @@ public class TlsUtils
         securityParameters.baseKeyServer = securityParameters.getTrafficSecretServer();
     }
 
+    /**
+     * (Experimental) KEM-based server authentication, after draft-celi-wiggers-tls-authkem. The secret
+     * encapsulated to the server's certificate key is mixed into the key schedule after the handshake
+     * secret, and the Finished messages and the master secret are derived from the result:
+     * <pre>
+     * AHS = HKDF-Extract(Derive-Secret(HS, "derived", ""), SS)
+     * [c|s] ahs traffic = Derive-Secret(AHS, "[c|s] ahs traffic", ClientHello...KEMEncapsulation)
+     * MS = HKDF-Extract(Derive-Secret(AHS, "derived", ""), 0)
+     * </pre>
+     */
+    static void establish13PhaseAuthenticatedHandshake(TlsContext context, TlsSecret kemSecret,
+        byte[] kemEncapsulationTranscriptHash, RecordStream recordStream) throws IOException
+    {
+        TlsCrypto crypto = context.getCrypto();
+        SecurityParameters securityParameters = context.getSecurityParametersHandshake();
+        int cryptoHashAlgorithm = securityParameters.getPRFCryptoHashAlgorithm();
+        byte[] emptyTranscriptHash = crypto.createHash(cryptoHashAlgorithm).calculateHash();
+
+        TlsSecret authenticatedHandshakeSecret = deriveSecret(securityParameters,
+            securityParameters.getHandshakeSecret(), "derived", emptyTranscriptHash)
+            .hkdfExtract(cryptoHashAlgorithm, kemSecret);
+
+        kemSecret.destroy();
+
+        TlsSecret masterSecret = deriveSecret(securityParameters, authenticatedHandshakeSecret, "derived",
+            emptyTranscriptHash).hkdfExtract(cryptoHashAlgorithm, crypto.hkdfInit(cryptoHashAlgorithm));
+
+        establish13TrafficSecrets(context, kemEncapsulationTranscriptHash, authenticatedHandshakeSecret,
+            "c ahs traffic", "s ahs traffic", recordStream);
+
+        authenticatedHandshakeSecret.destroy();
+
+        // NOTE: The handshake traffic secrets were only still referenced as the Finished base keys
+        securityParameters.baseKeyClient.destroy();
+        securityParameters.baseKeyServer.destroy();
+        securityParameters.baseKeyClient = securityParameters.getTrafficSecretClient();
+        securityParameters.baseKeyServer = securityParameters.getTrafficSecretServer();
+
+        securityParameters.masterSecret.destroy();
+        securityParameters.masterSecret = masterSecret;
+    }
+
     static void update13TrafficSecretLocal(TlsContext context) throws IOException
     {
         update13TrafficSecret(context, context.isServer());
@@ -5247,6 +5353,87 @@ public class TlsUtils
         return authentication;
     }
 
+    static CertificateStatus receive13ServerCertificateStatus(TlsClientContext clientContext) throws IOException
+    {
+        SecurityParameters securityParameters = clientContext.getSecurityParametersHandshake();
+        Certificate serverCertificate = securityParameters.getPeerCertificate();
+
+        CertificateStatus serverCertificateStatus = null;
+
+        CertificateEntry[] entries = serverCertificate.getCertificateEntryList();
+        for (int i = 0; i < entries.length; ++i)
+        {
+            byte[] extensionData = getExtensionData(entries[i].getExtensions(), TlsExtensionsUtils.EXT_status_request);
+            if (null == extensionData)
+            {
+                continue;
+            }
+
+            /*
+             * RFC 8446 4.4.2. Extensions in the Certificate message from the server MUST correspond to
+             * ones from the ClientHello message.
+             */
+            if (securityParameters.getStatusRequestVersion() < 1)
+            {
+                throw new TlsFatalAlert(AlertDescription.unsupported_extension);
+            }
+
+            // NOTE: Status for certificates other than the end-entity certificate is currently ignored
+            if (i == 0)
+            {
+                ByteArrayInputStream buf = new ByteArrayInputStream(extensionData);
+                CertificateStatus certificateStatus = CertificateStatus.parse(clientContext, buf);
+                TlsProtocol.assertEmpty(buf);
+
+                /*
+                 * RFC 8446 4.4.2.1. The "status_request" extension [..] contains a CertificateStatus
+                 * structure as defined in [RFC6066].
+                 */
+                if (CertificateStatusType.ocsp != certificateStatus.getStatusType())
+                {
+                    throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+                }
+
+                serverCertificateStatus = certificateStatus;
+            }
+        }
+
+        return serverCertificateStatus;
+    }
+
+    /**
+     * RFC 8446 4.4.2.1. Add the OCSP response in a "status_request" extension of the end-entity
+     * CertificateEntry.
+     */
+    static Certificate add13ServerCertificateStatus(Certificate serverCertificate,
+        CertificateStatus serverCertificateStatus) throws IOException
+    {
+        if (null == serverCertificateStatus)
+        {
+            return serverCertificate;
+        }
+
+        if (CertificateStatusType.ocsp != serverCertificateStatus.getStatusType()
+            || CertificateType.X509 != serverCertificate.getCertificateType()
+            || serverCertificate.isEmpty())
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        serverCertificateStatus.encode(buf);
+
+        CertificateEntry[] entries = serverCertificate.getCertificateEntryList();
+        Hashtable extensions = null == entries[0].getExtensions()
+            ?   new Hashtable()
+            :   new Hashtable(entries[0].getExtensions());
+        extensions.put(TlsExtensionsUtils.EXT_status_request, buf.toByteArray());
+        entries[0] = new CertificateEntry(entries[0].getCertificate(), extensions);
+
+        return new Certificate(serverCertificate.getCertificateType(),
+            serverCertificate.getCertificateRequestContext(), entries);
+    }
+
     static TlsAuthentication skip13ServerCertificate(TlsClientContext clientContext) throws IOException
     {
         SecurityParameters securityParameters = clientContext.getSecurityParametersHandshake();
@@ -5347,6 +5534,8 @@ public class TlsUtils
             return;
         }
 
+        Vector shareGroups = new Vector(keyShareGroups.size());
+
         for (int i = 0; i < supportedGroups.length; ++i)
         {
             int supportedGroup = supportedGroups[i];
@@ -5383,13 +5572,52 @@ public class TlsUtils
             }
             if (null != agreement)
             {
-                byte[] key_exchange = agreement.generateEphemeral();
-                KeyShareEntry clientShare = new KeyShareEntry(supportedGroup, key_exchange);
-
-                clientShares.addElement(clientShare);
                 clientAgreements.put(supportedGroupElement, agreement);
+                shareGroups.addElement(supportedGroupElement);
             }
         }
+
+        /*
+         * NOTE: Classical agreements generate their ephemeral keys first, so that a hybrid agreement can
+         * share the key pair of a classical agreement for the same group. The key shares are still sent
+         * in preference order.
+         */
+        int count = shareGroups.size();
+        byte[][] keyExchanges = new byte[count][];
+
+        for (int i = 0; i < count; ++i)
+        {
+            TlsAgreement agreement = (TlsAgreement)clientAgreements.get(shareGroups.elementAt(i));
+            if (!(agreement instanceof TlsHybridAgreement))
+            {
+                keyExchanges[i] = agreement.generateEphemeral();
+            }
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            TlsAgreement agreement = (TlsAgreement)clientAgreements.get(shareGroups.elementAt(i));
+            if (agreement instanceof TlsHybridAgreement)
+            {
+                TlsHybridAgreement hybridAgreement = (TlsHybridAgreement)agreement;
+
+                TlsAgreement classicalAgreement = (TlsAgreement)clientAgreements.get(
+                    Integers.valueOf(hybridAgreement.getClassicalNamedGroup()));
+                if (null != classicalAgreement && !(classicalAgreement instanceof TlsHybridAgreement))
+                {
+                    hybridAgreement.shareClassicalKeyPair(classicalAgreement);
+                }
+
+                keyExchanges[i] = hybridAgreement.generateEphemeral();
+            }
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            int group = ((Integer)shareGroups.elementAt(i)).intValue();
+
+            clientShares.addElement(new KeyShareEntry(group, keyExchanges[i]));
+        }
     }
 
     static KeyShareEntry selectKeyShare(Vector clientShares, int keyShareGroup)
@@ -5444,6 +5672,146 @@ public class TlsUtils
         return null;
     }
 
+    /**
+     * @param keyShareGroupPreferences
+     *            the acceptable groups in server preference order, or null to use the order of
+     *            serverSupportedGroups.
+     * @param keyShareSelectionMode
+     *            a {@link KeyShareSelectionMode} value.
+     */
+    static KeyShareEntry selectKeyShare(TlsCrypto crypto, ProtocolVersion negotiatedVersion, Vector clientShares,
+        int[] clientSupportedGroups, int[] serverSupportedGroups, int[] keyShareGroupPreferences,
+        int keyShareSelectionMode)
+    {
+        int[] serverGroups = getKeyShareServerGroups(serverSupportedGroups, keyShareGroupPreferences);
+
+        switch (keyShareSelectionMode)
+        {
+        case KeyShareSelectionMode.OFFERED_SERVER_ORDER:
+        {
+            if (null != clientShares && !isNullOrEmpty(clientSupportedGroups) && !isNullOrEmpty(serverGroups))
+            {
+                for (int i = 0; i < serverGroups.length; ++i)
+                {
+                    int group = serverGroups[i];
+
+                    if (!Arrays.contains(clientSupportedGroups, group) ||
+                        !isUsableKeyShareGroup(crypto, negotiatedVersion, group))
+                    {
+                        continue;
+                    }
+
+                    KeyShareEntry clientShare = findKeyShare(clientShares, group);
+                    if (null != clientShare)
+                    {
+                        return clientShare;
+                    }
+                }
+            }
+            return null;
+        }
+        case KeyShareSelectionMode.SERVER_ORDER:
+        {
+            if (null == clientShares)
+            {
+                return null;
+            }
+
+            int group = selectKeyShareGroup(crypto, negotiatedVersion, clientSupportedGroups, serverSupportedGroups,
+                keyShareGroupPreferences, keyShareSelectionMode);
+
+            return group < 0 ? null : findKeyShare(clientShares, group);
+        }
+        case KeyShareSelectionMode.CLIENT_ORDER:
+        default:
+            return selectKeyShare(crypto, negotiatedVersion, clientShares, clientSupportedGroups, serverGroups);
+        }
+    }
+
+    /**
+     * @param keyShareGroupPreferences
+     *            the acceptable groups in server preference order, or null to use the order of
+     *            serverSupportedGroups.
+     * @param keyShareSelectionMode
+     *            a {@link KeyShareSelectionMode} value.
+     */
+    static int selectKeyShareGroup(TlsCrypto crypto, ProtocolVersion negotiatedVersion,
+        int[] clientSupportedGroups, int[] serverSupportedGroups, int[] keyShareGroupPreferences,
+        int keyShareSelectionMode)
+    {
+        int[] serverGroups = getKeyShareServerGroups(serverSupportedGroups, keyShareGroupPreferences);
+
+        switch (keyShareSelectionMode)
+        {
+        case KeyShareSelectionMode.OFFERED_SERVER_ORDER:
+        case KeyShareSelectionMode.SERVER_ORDER:
+        {
+            if (!isNullOrEmpty(clientSupportedGroups) && !isNullOrEmpty(serverGroups))
+            {
+                for (int i = 0; i < serverGroups.length; ++i)
+                {
+                    int group = serverGroups[i];
+
+                    if (Arrays.contains(clientSupportedGroups, group) &&
+                        isUsableKeyShareGroup(crypto, negotiatedVersion, group))
+                    {
+                        return group;
+                    }
+                }
+            }
+            return -1;
+        }
+        case KeyShareSelectionMode.CLIENT_ORDER:
+        default:
+            return selectKeyShareGroup(crypto, negotiatedVersion, clientSupportedGroups, serverGroups);
+        }
+    }
+
+    /**
+     * @return the groups in keyShareGroupPreferences (in that order) that are also in
+     *         serverSupportedGroups, or serverSupportedGroups if keyShareGroupPreferences is null.
+     */
+    private static int[] getKeyShareServerGroups(int[] serverSupportedGroups, int[] keyShareGroupPreferences)
+    {
+        if (null == keyShareGroupPreferences || isNullOrEmpty(serverSupportedGroups))
+        {
+            return serverSupportedGroups;
+        }
+
+        int[] result = new int[keyShareGroupPreferences.length];
+        int count = 0;
+        for (int i = 0; i < keyShareGroupPreferences.length; ++i)
+        {
+            int group = keyShareGroupPreferences[i];
+            if (Arrays.contains(serverSupportedGroups, group))
+            {
+                result[count++] = group;
+            }
+        }
+        return truncate(result, count);
+    }
+
+    private static KeyShareEntry findKeyShare(Vector clientShares, int keyShareGroup)
+    {
+        for (int i = 0; i < clientShares.size(); ++i)
+        {
+            KeyShareEntry clientShare = (KeyShareEntry)clientShares.elementAt(i);
+            if (clientShare.getNamedGroup() == keyShareGroup)
+            {
+                return clientShare;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUsableKeyShareGroup(TlsCrypto crypto, ProtocolVersion negotiatedVersion, int group)
+    {
+        return NamedGroup.canBeNegotiated(group, negotiatedVersion)
+            && crypto.hasNamedGroup(group)
+            && !(NamedGroup.refersToASpecificCurve(group) && !crypto.hasECDHAgreement())
+            && !(NamedGroup.refersToASpecificFiniteField(group) && !crypto.hasDHAgreement());
+    }
+
     static int selectKeyShareGroup(TlsCrypto crypto, ProtocolVersion negotiatedVersion,
         int[] clientSupportedGroups, int[] serverSupportedGroups)
     {
@@ -5563,6 +5931,122 @@ public class TlsUtils
         return validate13Credentials(server.getCredentials());
     }
 
+    static TlsCredentialedDecryptor establish13ServerKEMCredentials(TlsServerContext serverContext, TlsServer server,
+        int[] kemGroups) throws IOException
+    {
+        TlsCredentialedDecryptor kemCredentials = server.getKEMAuthenticationCredentials(kemGroups);
+        if (null == kemCredentials)
+        {
+            return null;
+        }
+
+        SecurityParameters securityParameters = serverContext.getSecurityParametersHandshake();
+
+        Certificate certificate = kemCredentials.getCertificate();
+        if (null == certificate || certificate.isEmpty())
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        SubjectPublicKeyInfo keyInfo = getSubjectPublicKeyInfo(securityParameters.getServerCertificateType(),
+            certificate.getCertificateAt(0));
+
+        int kemGroup = getKEMAuthenticationGroup(keyInfo.getAlgorithm().getAlgorithm());
+        if (!Arrays.contains(kemGroups, kemGroup))
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error,
+                "KEM authentication credentials not valid for any offered group");
+        }
+
+        securityParameters.kemAuthenticationGroup = kemGroup;
+        return kemCredentials;
+    }
+
+    /**
+     * (Experimental) KEM-based server authentication: create a {@link TlsAgreement} that has encapsulated a
+     * fresh secret to the server's certificate key, i.e. whose
+     * {@link TlsAgreement#generateEphemeral() ephemeral value} is the encapsulation to send, and whose
+     * {@link TlsAgreement#calculateSecret() secret} is the encapsulated secret.
+     */
+    static TlsAgreement createKEMAuthenticationEncapsulator(TlsClientContext clientContext) throws IOException
+    {
+        SecurityParameters securityParameters = clientContext.getSecurityParametersHandshake();
+        int kemGroup = securityParameters.getKEMAuthenticationGroup();
+
+        Certificate serverCertificate = securityParameters.getPeerCertificate();
+        if (kemGroup < 0 || null == serverCertificate || serverCertificate.isEmpty())
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        SubjectPublicKeyInfo keyInfo = getSubjectPublicKeyInfo(securityParameters.getServerCertificateType(),
+            serverCertificate.getCertificateAt(0));
+
+        if (getKEMAuthenticationGroup(keyInfo.getAlgorithm().getAlgorithm()) != kemGroup)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter,
+                "Server certificate key doesn't match the KEM authentication group");
+        }
+
+        TlsAgreement encapsulator = clientContext.getCrypto()
+            .createPQCDomain(new TlsPQCConfig(kemGroup, TlsPQCKemMode.PQC_KEM_SERVER)).createPQC();
+
+        try
+        {
+            encapsulator.receivePeerValue(keyInfo.getPublicKeyData().getOctets());
+        }
+        catch (RuntimeException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, e);
+        }
+
+        return encapsulator;
+    }
+
+    /**
+     * @return the {@link NamedGroup} (currently only the Kyber ones) of a KEM public key with the given
+     *         algorithm OID, or -1 if it's not a supported KEM.
+     */
+    static int getKEMAuthenticationGroup(ASN1ObjectIdentifier algorithm)
+    {
+        if (BCObjectIdentifiers.kyber512.equals(algorithm))
+        {
+            return NamedGroup.kyber512;
+        }
+        if (BCObjectIdentifiers.kyber768.equals(algorithm))
+        {
+            return NamedGroup.kyber768;
+        }
+        if (BCObjectIdentifiers.kyber1024.equals(algorithm))
+        {
+            return NamedGroup.kyber1024;
+        }
+        return -1;
+    }
+
+    private static SubjectPublicKeyInfo getSubjectPublicKeyInfo(short certificateType, TlsCertificate certificate)
+        throws IOException
+    {
+        byte[] encoding = certificate.getEncoded();
+
+        try
+        {
+            switch (certificateType)
+            {
+            case CertificateType.X509:
+                return org.bouncycastle.asn1.x509.Certificate.getInstance(encoding).getSubjectPublicKeyInfo();
+            case CertificateType.RawPublicKey:
+                return SubjectPublicKeyInfo.getInstance(encoding);
+            default:
+                throw new TlsFatalAlert(AlertDescription.unsupported_certificate);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, e);
+        }
+    }
+
     static void establishServerSigAlgs(SecurityParameters securityParameters, CertificateRequest certificateRequest)
         throws IOException
     {
@@ -5773,6 +6257,7 @@ public class TlsUtils
         case ExtensionType.application_layer_protocol_negotiation:
         case ExtensionType.client_certificate_type:
         case ExtensionType.server_certificate_type:
+        case ExtensionType.kem_authentication:
         {
             switch (handshakeType)
             {
@@ -6031,22 +6516,18 @@ public class TlsUtils
                         boolean isExternalPSK = true;
                         int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
 
+                        if (!afterHelloRetryRequest)
+                        {
+                            handshakeHash.trackCandidateHashAlgorithm(pskCryptoHashAlgorithm);
+                        }
+
                         byte[] transcriptHash;
                         {
                             handshakeHashUpdated = true;
                             int bindersSize = offeredPsks.getBindersSize();
                             clientHelloMessage.updateHashPrefix(handshakeHash, bindersSize);
 
-                            if (afterHelloRetryRequest)
-                            {
-                                transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
-                            }
-                            else
-                            {
-                                TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
-                                handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
-                                transcriptHash = hash.calculateHash();
-                            }
+                            transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
 
                             clientHelloMessage.updateHashSuffix(handshakeHash, bindersSize);
                         }
@@ -55,4 +55,15 @@ public class TlsCryptoParameters
     {
         return context.getNonceGenerator();
     }
+
+    /**
+     * (TLS 1.3) Whether these parameters are for a 0-RTT early data cipher, which is only keyed (from
+     * client_early_traffic_secret) for the client-&gt;server direction.
+     *
+     * @return true for early data, otherwise false.
+     */
+    public boolean isEarlyData()
+    {
+        return false;
+    }
 }
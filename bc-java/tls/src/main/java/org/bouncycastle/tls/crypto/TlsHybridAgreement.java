@@ -0,0 +1,32 @@
+package org.bouncycastle.tls.crypto;
+
+/**
+ * Interface for a hybrid (classical + PQC) {@link TlsAgreement} whose classical component can reuse the
+ * ephemeral key pair of a classical agreement for the same group, e.g. when a client offers both
+ * x25519 and x25519Kyber768 key shares in one ClientHello.
+ * <p>
+ * Since the server selects at most one of the key shares, the shared key pair is only ever used in a
+ * single agreement per handshake.
+ * </p>
+ */
+public interface TlsHybridAgreement
+    extends TlsAgreement
+{
+    /**
+     * @return the {@link org.bouncycastle.tls.NamedGroup} of the classical component.
+     */
+    int getClassicalNamedGroup();
+
+    /**
+     * Use the ephemeral key pair of a classical agreement (for the group returned by
+     * {@link #getClassicalNamedGroup()}) for the classical component of this agreement. Must be called
+     * after {@link TlsAgreement#generateEphemeral()} has been called on the classical agreement, and
+     * before it is called on this one.
+     *
+     * @param classicalAgreement
+     *            the classical agreement whose ephemeral key pair is to be shared.
+     * @return true if the key pair will be shared, or false if the agreement isn't compatible (in which
+     *         case this agreement generates its own key pair as usual).
+     */
+    boolean shareClassicalKeyPair(TlsAgreement classicalAgreement);
+}
@@ -9,6 +9,24 @@ import org.bouncycastle.tls.crypto.TlsSecret;
 public abstract class AbstractTlsCrypto
     implements TlsCrypto
 {
+    private volatile TlsCertificateCache certificateCache = null;
+
+    public TlsCertificateCache getCertificateCache()
+    {
+        return certificateCache;
+    }
+
+    /**
+     * Set a cache of parsed peer certificates for {@link #createCertificate(short, byte[])}, or null (the
+     * default) for none. A cache must not be shared with another {@link TlsCrypto}.
+     *
+     * @param certificateCache the {@link TlsCertificateCache} to use.
+     */
+    public void setCertificateCache(TlsCertificateCache certificateCache)
+    {
+        this.certificateCache = certificateCache;
+    }
+
     public TlsSecret adoptSecret(TlsSecret secret)
     {
         // TODO[tls] Need an alternative that doesn't require AbstractTlsSecret (which holds literal data)
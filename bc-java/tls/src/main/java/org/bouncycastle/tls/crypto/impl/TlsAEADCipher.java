@@ -381,9 +381,14 @@ public final class TlsAEADCipher
             ?   securityParameters.getTrafficSecretServer()
             :   securityParameters.getTrafficSecretClient();
 
-        // TODO[tls13] For early data, have to disable server->client
         if (null == secret)
         {
+            // NOTE: The 0-RTT early data cipher has no server->client direction, so leave it unkeyed
+            if (serverSecret && cryptoParams.isEarlyData())
+            {
+                return;
+            }
+
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
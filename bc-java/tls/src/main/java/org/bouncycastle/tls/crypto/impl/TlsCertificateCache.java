@@ -0,0 +1,137 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.tls.crypto.TlsCertificate;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * A bounded, least-recently-used cache of parsed {@link TlsCertificate}s, keyed by a SHA-256 hash of
+ * their encoding, so that the intermediate and end-entity certificates that a peer sends in every
+ * handshake are decoded (including their public keys) only once.
+ * <p>
+ * Cached certificates are shared by all connections using the {@link AbstractTlsCrypto} the cache is set
+ * on, so they must be safe for concurrent use; the implementations in this package only memoize values
+ * derived from the encoding.
+ * </p>
+ */
+public class TlsCertificateCache
+{
+    private final int maxEntries;
+    private final LinkedHashMap entries;
+
+    /**
+     * @param maxEntries
+     *            the maximum number of certificates cached at once.
+     */
+    public TlsCertificateCache(final int maxEntries)
+    {
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("'maxEntries' must be >= 1");
+        }
+
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    /**
+     * @param certificateType
+     *            the {@link org.bouncycastle.tls.CertificateType} of the certificate.
+     * @param encoding
+     *            the encoding of the certificate.
+     * @return the cached {@link TlsCertificate} for this encoding, or null if there is none.
+     */
+    public TlsCertificate get(short certificateType, byte[] encoding)
+    {
+        String key = createKey(certificateType, encoding);
+
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = (Entry)entries.get(key);
+        }
+
+        // NOTE: Also compare the full encoding, so the cache never relies on the hash alone
+        if (null == entry || !Arrays.areEqual(entry.encoding, encoding))
+        {
+            return null;
+        }
+
+        return entry.certificate;
+    }
+
+    /**
+     * @param certificateType
+     *            the {@link org.bouncycastle.tls.CertificateType} of the certificate.
+     * @param encoding
+     *            the encoding of the certificate.
+     * @param certificate
+     *            the {@link TlsCertificate} parsed from the encoding.
+     */
+    public void put(short certificateType, byte[] encoding, TlsCertificate certificate)
+    {
+        String key = createKey(certificateType, encoding);
+        Entry entry = new Entry(Arrays.clone(encoding), certificate);
+
+        synchronized (entries)
+        {
+            entries.put(key, entry);
+        }
+    }
+
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    private static String createKey(short certificateType, byte[] encoding)
+    {
+        Digest digest = new SHA256Digest();
+        digest.update((byte)certificateType);
+        digest.update(encoding, 0, encoding.length);
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+
+        return Hex.toHexString(hash);
+    }
+
+    private static final class Entry
+    {
+        final byte[] encoding;
+        final TlsCertificate certificate;
+
+        Entry(byte[] encoding, TlsCertificate certificate)
+        {
+            this.encoding = encoding;
+            this.certificate = certificate;
+        }
+    }
+}
@@ -17,11 +17,18 @@ public class BcChaCha20Poly1305 implements TlsAEADCipherImpl
 {
     private static final byte[] ZEROES = new byte[15];
 
+    // NOTE: A multiple of both the ChaCha20 and Poly1305 block sizes
+    private static final int CHUNK_SIZE = 1024;
+
     protected final ChaCha7539Engine cipher = new ChaCha7539Engine();
     protected final Poly1305 mac = new Poly1305();
 
     protected final boolean isEncrypting;
 
+    private final byte[] lengths = new byte[16];
+    private final byte[] expectedMac = new byte[16];
+    private final byte[] firstBlock = new byte[64];
+
     public BcChaCha20Poly1305(boolean isEncrypting)
     {
         this.isEncrypting = isEncrypting;
@@ -42,15 +49,21 @@ public class BcChaCha20Poly1305 implements TlsAEADCipherImpl
         {
             int ciphertextLength = inputLength;
 
-            int outputLength = cipher.processBytes(input, inputOffset, inputLength, output, outputOffset);
-            if (ciphertextLength != outputLength)
+            /*
+             * NOTE: Encrypt-then-MAC a chunk at a time, so that the MAC reads the ciphertext while it is
+             * still in cache.
+             */
+            for (int pos = 0; pos < ciphertextLength; pos += CHUNK_SIZE)
             {
-                throw new IllegalStateException();
+                int chunk = Math.min(CHUNK_SIZE, ciphertextLength - pos);
+                if (chunk != cipher.processBytes(input, inputOffset + pos, chunk, output, outputOffset + pos))
+                {
+                    throw new IllegalStateException();
+                }
+                mac.update(output, outputOffset + pos, chunk);
             }
+            padMAC(ciphertextLength);
 
-            updateMAC(output, outputOffset, ciphertextLength);
-
-            byte[] lengths = new byte[16];
             Pack.longToLittleEndian(additionalDataLength & 0xFFFFFFFFL, lengths, 0);
             Pack.longToLittleEndian(ciphertextLength & 0xFFFFFFFFL, lengths, 8);
             mac.update(lengths, 0, 16);
@@ -63,27 +76,33 @@ public class BcChaCha20Poly1305 implements TlsAEADCipherImpl
         {
             int ciphertextLength = inputLength - 16;
 
-            updateMAC(input, inputOffset, ciphertextLength);
+            /*
+             * NOTE: MAC-then-decrypt a chunk at a time (so that decryption in place still works). The
+             * plaintext is cleared if the MAC turns out to be invalid.
+             */
+            for (int pos = 0; pos < ciphertextLength; pos += CHUNK_SIZE)
+            {
+                int chunk = Math.min(CHUNK_SIZE, ciphertextLength - pos);
+                mac.update(input, inputOffset + pos, chunk);
+                if (chunk != cipher.processBytes(input, inputOffset + pos, chunk, output, outputOffset + pos))
+                {
+                    throw new IllegalStateException();
+                }
+            }
+            padMAC(ciphertextLength);
 
-            byte[] expectedMac = new byte[16];
-            Pack.longToLittleEndian(additionalDataLength & 0xFFFFFFFFL, expectedMac, 0);
-            Pack.longToLittleEndian(ciphertextLength & 0xFFFFFFFFL, expectedMac, 8);
-            mac.update(expectedMac, 0, 16);
+            Pack.longToLittleEndian(additionalDataLength & 0xFFFFFFFFL, lengths, 0);
+            Pack.longToLittleEndian(ciphertextLength & 0xFFFFFFFFL, lengths, 8);
+            mac.update(lengths, 0, 16);
             mac.doFinal(expectedMac, 0);
 
             boolean badMac = !TlsUtils.constantTimeAreEqual(16, expectedMac, 0, input, inputOffset + ciphertextLength);
             if (badMac)
             {
+                Arrays.fill(output, outputOffset, outputOffset + ciphertextLength, (byte)0);
                 throw new TlsFatalAlert(AlertDescription.bad_record_mac);
             }
 
-            int outputLength = cipher.processBytes(input, inputOffset, ciphertextLength, output, outputOffset);
-
-            if (ciphertextLength != outputLength)
-            {
-                throw new IllegalStateException();
-            }
-
             return ciphertextLength;
         }
     }
@@ -112,7 +131,6 @@ public class BcChaCha20Poly1305 implements TlsAEADCipherImpl
 
     protected void initMAC()
     {
-        byte[] firstBlock = new byte[64];
         cipher.processBytes(firstBlock, 0, 64, firstBlock, 0);
         mac.init(new KeyParameter(firstBlock, 0, 32));
         Arrays.fill(firstBlock, (byte)0);
@@ -121,7 +139,11 @@ public class BcChaCha20Poly1305 implements TlsAEADCipherImpl
     protected void updateMAC(byte[] buf, int off, int len)
     {
         mac.update(buf, off, len);
+        padMAC(len);
+    }
 
+    protected void padMAC(int len)
+    {
         int partial = len % 16;
         if (partial != 0)
         {
@@ -0,0 +1,87 @@
+package org.bouncycastle.tls.crypto.impl.bc;
+
+import java.io.IOException;
+
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMExtractor;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.TlsCredentialedDecryptor;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.crypto.TlsCryptoParameters;
+import org.bouncycastle.tls.crypto.TlsSecret;
+
+/**
+ * Credentialed class decapsulating secrets encapsulated by a peer to the (static) KEM key in our certificate,
+ * for (experimental) TLS 1.3 KEM-based server authentication, using the BC light-weight API. Currently only
+ * Kyber keys are supported.
+ *
+ * @see org.bouncycastle.tls.TlsServer#getKEMAuthenticationCredentials(int[])
+ */
+public class BcDefaultTlsCredentialedKEMDecryptor
+    implements TlsCredentialedDecryptor
+{
+    protected BcTlsCrypto crypto;
+    protected Certificate certificate;
+    protected AsymmetricKeyParameter privateKey;
+
+    public BcDefaultTlsCredentialedKEMDecryptor(BcTlsCrypto crypto, Certificate certificate,
+        AsymmetricKeyParameter privateKey)
+    {
+        if (crypto == null)
+        {
+            throw new IllegalArgumentException("'crypto' cannot be null");
+        }
+        if (certificate == null)
+        {
+            throw new IllegalArgumentException("'certificate' cannot be null");
+        }
+        if (certificate.isEmpty())
+        {
+            throw new IllegalArgumentException("'certificate' cannot be empty");
+        }
+        if (privateKey == null)
+        {
+            throw new IllegalArgumentException("'privateKey' cannot be null");
+        }
+        if (!privateKey.isPrivate())
+        {
+            throw new IllegalArgumentException("'privateKey' must be private");
+        }
+
+        if (privateKey instanceof KyberPrivateKeyParameters)
+        {
+        }
+        else
+        {
+            throw new IllegalArgumentException("'privateKey' type not supported: "
+                + privateKey.getClass().getName());
+        }
+
+        this.crypto = crypto;
+        this.certificate = certificate;
+        this.privateKey = privateKey;
+    }
+
+    public Certificate getCertificate()
+    {
+        return certificate;
+    }
+
+    public TlsSecret decrypt(TlsCryptoParameters cryptoParams, byte[] ciphertext) throws IOException
+    {
+        KyberKEMExtractor kemExtractor = new KyberKEMExtractor((KyberPrivateKeyParameters)privateKey);
+
+        if (ciphertext.length != kemExtractor.getEncapsulationLength())
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        /*
+         * NOTE: Kyber decapsulation uses implicit rejection, so a bad encapsulation just gives a different
+         * secret, and then the Finished messages won't verify.
+         */
+        return crypto.adoptLocalSecret(kemExtractor.extractSecret(ciphertext));
+    }
+}
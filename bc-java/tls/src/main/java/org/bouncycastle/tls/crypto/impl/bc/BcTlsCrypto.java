@@ -65,6 +65,7 @@ import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.impl.AbstractTlsCrypto;
 import org.bouncycastle.tls.crypto.impl.TlsAEADCipher;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipher;
+import org.bouncycastle.tls.crypto.impl.TlsCertificateCache;
 import org.bouncycastle.tls.crypto.impl.TlsImplUtils;
 import org.bouncycastle.tls.crypto.impl.TlsNullCipher;
 import org.bouncycastle.util.Arrays;
@@ -111,15 +112,46 @@ public class BcTlsCrypto
     public TlsCertificate createCertificate(short type, byte[] encoding)
         throws IOException
     {
+        TlsCertificateCache certificateCache = getCertificateCache();
+        if (null != certificateCache)
+        {
+            TlsCertificate cached = certificateCache.get(type, encoding);
+            if (null != cached)
+            {
+                return cached;
+            }
+        }
+
+        BcTlsRawKeyCertificate certificate;
         switch (type)
         {
         case CertificateType.X509:
-            return new BcTlsCertificate(this, encoding);
+            certificate = new BcTlsCertificate(this, encoding);
+            break;
         case CertificateType.RawPublicKey:
-            return new BcTlsRawKeyCertificate(this, encoding);
+            certificate = new BcTlsRawKeyCertificate(this, encoding);
+            break;
         default:
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
+
+        if (null != certificateCache)
+        {
+            try
+            {
+                // Decode (and validate) the public key now, so that it's only done once
+                certificate.getPublicKey();
+            }
+            catch (IOException e)
+            {
+                // NOTE: Not a signing/agreement key we can decode (e.g. a KEM key); don't cache it
+                return certificate;
+            }
+
+            certificateCache.put(type, encoding, certificate);
+        }
+
+        return certificate;
     }
 
     public TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAlgorithm, int macAlgorithm)
@@ -7,12 +7,15 @@ import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class BcTlsECDHKyberHybrid implements TlsAgreement
+public class BcTlsECDHKyberHybrid implements TlsHybridAgreement
 {
     protected final BcTlsECDHKyberHybridDomain domain;
 
@@ -29,10 +32,34 @@ public class BcTlsECDHKyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return domain.getEcDomain().config.getNamedGroup();
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof BcTlsECDH))
+        {
+            return false;
+        }
+
+        BcTlsECDH ecdh = (BcTlsECDH)classicalAgreement;
+        if (null == ecdh.localKeyPair || ecdh.domain.config.getNamedGroup() != getClassicalNamedGroup())
+        {
+            return false;
+        }
+
+        this.ecLocalKeyPair = ecdh.localKeyPair;
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.ecLocalKeyPair = domain.getEcDomain().generateKeyPair();
-        byte[] ecKey = domain.getEcDomain().encodePublicKey((ECPublicKeyParameters)ecLocalKeyPair.getPublic());
+        if (null == ecLocalKeyPair)
+        {
+            this.ecLocalKeyPair = domain.getEcDomain().generateKeyPair();
+        }
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
@@ -41,19 +68,29 @@ public class BcTlsECDHKyberHybrid implements TlsAgreement
         }
         else
         {
-            kyberKey = Arrays.clone(kyberCiphertext);
+            kyberKey = kyberCiphertext;
         }
-        return Arrays.concatenate(ecKey, kyberKey);
+
+        int ecKeyLength = domain.getEcDomain().getPublicKeyByteLength();
+        byte[] ephemeral = new byte[ecKeyLength + kyberKey.length];
+        domain.getEcDomain().encodePublicKey((ECPublicKeyParameters)ecLocalKeyPair.getPublic(), ephemeral, 0);
+        System.arraycopy(kyberKey, 0, ephemeral, ecKeyLength, kyberKey.length);
+        return ephemeral;
     }
 
     public void receivePeerValue(byte[] peerValue) throws IOException
     {
-        byte[] ecKey = Arrays.copyOf(peerValue, domain.getEcDomain().getPublicKeyByteLength());
-        byte[] kyberKey = Arrays.copyOfRange(peerValue, domain.getEcDomain().getPublicKeyByteLength(), peerValue.length);
-        this.ecPeerPublicKey = domain.getEcDomain().decodePublicKey(ecKey);
+        int ecKeyLength = domain.getEcDomain().getPublicKeyByteLength();
+        if (peerValue == null || peerValue.length <= ecKeyLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        this.ecPeerPublicKey = domain.getEcDomain().decodePublicKey(peerValue, 0, ecKeyLength);
+        byte[] kyberKey = Arrays.copyOfRange(peerValue, ecKeyLength, peerValue.length);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
-            this.kyberCiphertext = Arrays.clone(kyberKey);
+            this.kyberCiphertext = kyberKey;
         }
         else
         {
@@ -66,12 +103,15 @@ public class BcTlsECDHKyberHybrid implements TlsAgreement
 
     public TlsSecret calculateSecret() throws IOException
     {
-        byte[] ecSecret = domain.getEcDomain().calculateECDHAgreementBytes((ECPrivateKeyParameters)ecLocalKeyPair.getPrivate(), ecPeerPublicKey);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
             kyberSecret = domain.getKyberDomain().deCap((KyberPrivateKeyParameters)kyberLocalKeyPair.getPrivate(), kyberCiphertext);
         }
 
-        return domain.getKyberDomain().adoptLocalSecret(Arrays.concatenate(ecSecret, kyberSecret));
+        int ecSecretLength = domain.getEcDomain().getAgreementByteLength();
+        byte[] secret = new byte[ecSecretLength + kyberSecret.length];
+        domain.getEcDomain().calculateECDHAgreement((ECPrivateKeyParameters)ecLocalKeyPair.getPrivate(), ecPeerPublicKey, secret, 0);
+        System.arraycopy(kyberSecret, 0, secret, ecSecretLength, kyberSecret.length);
+        return domain.getKyberDomain().adoptLocalSecret(secret);
     }
 }
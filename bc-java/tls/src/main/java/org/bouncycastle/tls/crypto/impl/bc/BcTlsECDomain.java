@@ -13,13 +13,22 @@ import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.crypto.params.ECKeyGenerationParameters;
 import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.math.ec.ECConstants;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECMultiplier;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointBlockCombMultiplier;
+import org.bouncycastle.math.ec.FixedWindowMultiplier;
+import org.bouncycastle.math.ec.custom.sec.SecP256R1Curve;
+import org.bouncycastle.math.ec.custom.sec.SecP384R1Curve;
+import org.bouncycastle.math.ec.custom.sec.SecP521R1Curve;
 import org.bouncycastle.tls.AlertDescription;
 import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsECConfig;
 import org.bouncycastle.tls.crypto.TlsECDomain;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.BigIntegers;
 
 /**
@@ -27,10 +36,19 @@ import org.bouncycastle.util.BigIntegers;
  */
 public class BcTlsECDomain implements TlsECDomain
 {
+    /*
+     * For the NIST prime curves, key generation uses a multi-block comb for the base point (8 tables of 32 points,
+     * built once and cached with the base point), and ECDH uses a constant-time fixed window for the peer's point.
+     * On secp384r1/secp521r1 the fixed window is slower than the curve's default (non-constant-time) wNAF, but
+     * side-channel resistance takes priority here.
+     */
+    private static final FixedPointBlockCombMultiplier BASE_POINT_MULTIPLIER = new FixedPointBlockCombMultiplier();
+    private static final ECMultiplier FIXED_WINDOW_MULTIPLIER = new FixedWindowMultiplier();
+
     public static BcTlsSecret calculateECDHAgreement(BcTlsCrypto crypto, ECPrivateKeyParameters privateKey,
         ECPublicKeyParameters publicKey)
     {
-        ECDHBasicAgreement basicAgreement = new ECDHBasicAgreement();
+        ECDHBasicAgreement basicAgreement = createBasicAgreement(privateKey.getParameters().getCurve());
         basicAgreement.init(privateKey);
         BigInteger agreementValue = basicAgreement.calculateAgreement(publicKey);
 
@@ -71,7 +89,59 @@ public class BcTlsECDomain implements TlsECDomain
         // It's a bit inefficient to do this conversion every time
         return new ECDomainParameters(ecP.getCurve(), ecP.getG(), ecP.getN(), ecP.getH(), ecP.getSeed());
     }
-    
+
+    /**
+     * Whether a curve is one of the custom NIST prime curve implementations (secp256r1, secp384r1, secp521r1),
+     * which have constant-time lookup tables, cofactor 1 and an odd order.
+     */
+    protected static boolean isCustomPrimeCurve(ECCurve curve)
+    {
+        return curve instanceof SecP256R1Curve
+            || curve instanceof SecP384R1Curve
+            || curve instanceof SecP521R1Curve;
+    }
+
+    protected static ECKeyPairGenerator createKeyPairGenerator(ECCurve curve)
+    {
+        if (!isCustomPrimeCurve(curve))
+        {
+            return new ECKeyPairGenerator();
+        }
+
+        return new ECKeyPairGenerator()
+        {
+            protected ECMultiplier createBasePointMultiplier()
+            {
+                return BASE_POINT_MULTIPLIER;
+            }
+        };
+    }
+
+    protected static ECDHBasicAgreement createBasicAgreement(ECCurve curve)
+    {
+        if (!isCustomPrimeCurve(curve))
+        {
+            return new ECDHBasicAgreement();
+        }
+
+        return new ECDHBasicAgreement()
+        {
+            protected ECMultiplier createPointMultiplier(ECCurve curve)
+            {
+                return getAgreementMultiplier(curve);
+            }
+        };
+    }
+
+    /**
+     * The multiplier for the peer's point in ECDH, for both {@link #createBasicAgreement(ECCurve)} and the fast path
+     * in {@link #calculateECDHAgreement(ECPrivateKeyParameters, ECPublicKeyParameters, byte[], int)}.
+     */
+    protected static ECMultiplier getAgreementMultiplier(ECCurve curve)
+    {
+        return isCustomPrimeCurve(curve) ? FIXED_WINDOW_MULTIPLIER : curve.getMultiplier();
+    }
+
     protected final BcTlsCrypto crypto;
     protected final TlsECConfig config;
     protected final ECDomainParameters domainParameters;
@@ -81,6 +151,11 @@ public class BcTlsECDomain implements TlsECDomain
         this.crypto = crypto;
         this.config = ecConfig;
         this.domainParameters = getDomainParameters(ecConfig);
+
+        if (null != domainParameters && isCustomPrimeCurve(domainParameters.getCurve()))
+        {
+            BASE_POINT_MULTIPLIER.precompute(domainParameters.getG());
+        }
     }
 
     public int getPublicKeyByteLength()
@@ -88,17 +163,62 @@ public class BcTlsECDomain implements TlsECDomain
         return (((domainParameters.getCurve().getFieldSize() + 7) / 8) * 2) + 1;
     }
 
+    /**
+     * The length of the ECDH shared secret, i.e. of an encoded field element.
+     */
+    public int getAgreementByteLength()
+    {
+        return (domainParameters.getCurve().getFieldSize() + 7) / 8;
+    }
+
     public byte[] calculateECDHAgreementBytes(ECPrivateKeyParameters privateKey, ECPublicKeyParameters publicKey)
     {
-        ECDHBasicAgreement basicAgreement = new ECDHBasicAgreement();
-        basicAgreement.init(privateKey);
-        BigInteger agreementValue = basicAgreement.calculateAgreement(publicKey);
-        return BigIntegers.asUnsignedByteArray(basicAgreement.getFieldSize(), agreementValue);
+        byte[] secret = new byte[getAgreementByteLength()];
+        calculateECDHAgreement(privateKey, publicKey, secret, 0);
+        return secret;
+    }
+
+    /**
+     * Calculate the ECDH shared secret (the encoded x-coordinate of the shared point) directly into an existing
+     * buffer, which must have at least {@link #getAgreementByteLength()} bytes available at 'secretOff'.
+     * <p>
+     * When both keys are for this domain (with cofactor 1), the peer's point was already validated when the
+     * public key was created, so it is used as is rather than being re-encoded and re-decoded by
+     * {@link ECDHBasicAgreement}.
+     * </p>
+     * <p>
+     * NOTE: That fast path does not go through {@link #createBasicAgreement(ECCurve)}, but multiplies with the same
+     * {@link #getAgreementMultiplier(ECCurve)} that the basic agreement is configured with.
+     * </p>
+     */
+    public void calculateECDHAgreement(ECPrivateKeyParameters privateKey, ECPublicKeyParameters publicKey,
+        byte[] secret, int secretOff)
+    {
+        if (!domainParameters.equals(privateKey.getParameters())
+            || !domainParameters.equals(publicKey.getParameters())
+            || !ECConstants.ONE.equals(domainParameters.getH()))
+        {
+            ECDHBasicAgreement basicAgreement = createBasicAgreement(privateKey.getParameters().getCurve());
+            basicAgreement.init(privateKey);
+            BigInteger agreementValue = basicAgreement.calculateAgreement(publicKey);
+            BigIntegers.asUnsignedByteArray(agreementValue, secret, secretOff, basicAgreement.getFieldSize());
+            return;
+        }
+
+        ECPoint Q = publicKey.getQ();
+        ECPoint P = getAgreementMultiplier(Q.getCurve()).multiply(Q, privateKey.getD()).normalize();
+        if (P.isInfinity())
+        {
+            throw new IllegalStateException("Infinity is not a valid agreement value for ECDH");
+        }
+
+        BigIntegers.asUnsignedByteArray(P.getAffineXCoord().toBigInteger(), secret, secretOff,
+            getAgreementByteLength());
     }
 
     public BcTlsSecret calculateECDHAgreement(ECPrivateKeyParameters privateKey, ECPublicKeyParameters publicKey)
     {
-        return calculateECDHAgreement(crypto, privateKey, publicKey);
+        return crypto.adoptLocalSecret(calculateECDHAgreementBytes(privateKey, publicKey));
     }
 
     public TlsAgreement createECDH()
@@ -111,11 +231,36 @@ public class BcTlsECDomain implements TlsECDomain
         return domainParameters.getCurve().decodePoint(encoding);
     }
 
+    /**
+     * Decode a point from part of a larger buffer (e.g. a hybrid key share). The uncompressed format is decoded in
+     * place; other formats are copied out and decoded as for {@link #decodePoint(byte[])}.
+     */
+    public ECPoint decodePoint(byte[] buf, int off, int len)
+    {
+        ECCurve curve = domainParameters.getCurve();
+        int fieldLength = (curve.getFieldSize() + 7) / 8;
+
+        if (len == (2 * fieldLength + 1) && buf[off] == 0x04)
+        {
+            BigInteger X = BigIntegers.fromUnsignedByteArray(buf, off + 1, fieldLength);
+            BigInteger Y = BigIntegers.fromUnsignedByteArray(buf, off + 1 + fieldLength, fieldLength);
+
+            return curve.validatePoint(X, Y);
+        }
+
+        return curve.decodePoint(Arrays.copyOfRange(buf, off, off + len));
+    }
+
     public ECPublicKeyParameters decodePublicKey(byte[] encoding) throws IOException
+    {
+        return decodePublicKey(encoding, 0, encoding.length);
+    }
+
+    public ECPublicKeyParameters decodePublicKey(byte[] buf, int off, int len) throws IOException
     {
         try
         {
-            ECPoint point = decodePoint(encoding);
+            ECPoint point = decodePoint(buf, off, len);
 
             return new ECPublicKeyParameters(point, domainParameters);
         }
@@ -135,9 +280,23 @@ public class BcTlsECDomain implements TlsECDomain
         return encodePoint(publicKey.getQ());
     }
 
+    /**
+     * Write the (uncompressed) encoding of a public key into an existing buffer, which must have at least
+     * {@link #getPublicKeyByteLength()} bytes available at 'off'.
+     */
+    public void encodePublicKey(ECPublicKeyParameters publicKey, byte[] buf, int off)
+    {
+        ECPoint Q = publicKey.getQ().normalize();
+        int fieldLength = getAgreementByteLength();
+
+        buf[off] = 0x04;
+        BigIntegers.asUnsignedByteArray(Q.getAffineXCoord().toBigInteger(), buf, off + 1, fieldLength);
+        BigIntegers.asUnsignedByteArray(Q.getAffineYCoord().toBigInteger(), buf, off + 1 + fieldLength, fieldLength);
+    }
+
     public AsymmetricCipherKeyPair generateKeyPair()
     {
-        ECKeyPairGenerator keyPairGenerator = new ECKeyPairGenerator();
+        ECKeyPairGenerator keyPairGenerator = createKeyPairGenerator(domainParameters.getCurve());
         keyPairGenerator.init(new ECKeyGenerationParameters(domainParameters, crypto.getSecureRandom()));
         return keyPairGenerator.generateKeyPair();
     }
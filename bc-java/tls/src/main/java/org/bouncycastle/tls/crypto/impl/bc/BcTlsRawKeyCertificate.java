@@ -56,6 +56,8 @@ public class BcTlsRawKeyCertificate
     protected Ed448PublicKeyParameters pubKeyEd448 = null;
     protected RSAKeyParameters pubKeyRSA = null;
 
+    private volatile AsymmetricKeyParameter publicKey = null;
+
     public BcTlsRawKeyCertificate(BcTlsCrypto crypto, byte[] keyInfo)
     {
         this(crypto, SubjectPublicKeyInfo.getInstance(keyInfo));
@@ -429,14 +431,22 @@ public class BcTlsRawKeyCertificate
 
     protected AsymmetricKeyParameter getPublicKey() throws IOException
     {
-        try
-        {
-            return PublicKeyFactory.createKey(keyInfo);
-        }
-        catch (RuntimeException e)
-        {
-            throw new TlsFatalAlert(AlertDescription.unsupported_certificate, e);
-        }
+        // NOTE: Decoding can be expensive (e.g. EC point validation), so it's only done once
+        AsymmetricKeyParameter result = publicKey;
+        if (null == result)
+        {
+            try
+            {
+                result = PublicKeyFactory.createKey(keyInfo);
+            }
+            catch (RuntimeException e)
+            {
+                throw new TlsFatalAlert(AlertDescription.unsupported_certificate, e);
+            }
+
+            this.publicKey = result;
+        }
+        return result;
     }
 
     protected boolean supportsKeyUsage(int keyUsageBits)
@@ -1,18 +1,20 @@
 package org.bouncycastle.tls.crypto.impl.bc;
 
 import java.io.IOException;
-import java.math.BigInteger;
-
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class BcTlsX25519KyberHybrid implements TlsAgreement
+public class BcTlsX25519KyberHybrid implements TlsHybridAgreement
 {
     protected final BcTlsX25519KyberHybridDomain domain;
 
@@ -29,10 +31,35 @@ public class BcTlsX25519KyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return NamedGroup.x25519;
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof BcX25519))
+        {
+            return false;
+        }
+
+        // NOTE: The private key is all zeroes until generated (and again once used)
+        byte[] privateKey = ((BcX25519)classicalAgreement).privateKey;
+        if (Arrays.areAllZeroes(privateKey, 0, privateKey.length))
+        {
+            return false;
+        }
+
+        this.x25519PrivateKey = Arrays.clone(privateKey);
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.x25519PrivateKey = domain.generateX25519PrivateKey();
-        byte[] x25519Key = domain.getX25519PublicKey(x25519PrivateKey);
+        if (null == x25519PrivateKey)
+        {
+            this.x25519PrivateKey = domain.generateX25519PrivateKey();
+        }
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
@@ -41,18 +68,29 @@ public class BcTlsX25519KyberHybrid implements TlsAgreement
         }
         else
         {
-            kyberKey = Arrays.clone(kyberCiphertext);
+            kyberKey = kyberCiphertext;
         }
-        return Arrays.concatenate(x25519Key, kyberKey);
+
+        int x25519KeyLength = domain.getX25519PublicKeyByteLength();
+        byte[] ephemeral = new byte[x25519KeyLength + kyberKey.length];
+        domain.getX25519Domain().generatePublicKey(x25519PrivateKey, 0, ephemeral, 0);
+        System.arraycopy(kyberKey, 0, ephemeral, x25519KeyLength, kyberKey.length);
+        return ephemeral;
     }
 
     public void receivePeerValue(byte[] peerValue) throws IOException
     {
-        this.x25519PeerPublicKey = Arrays.copyOf(peerValue, domain.getX25519PublicKeyByteLength());
-        byte[] kyberKey = Arrays.copyOfRange(peerValue, domain.getX25519PublicKeyByteLength(), peerValue.length);
+        int x25519KeyLength = domain.getX25519PublicKeyByteLength();
+        if (peerValue == null || peerValue.length <= x25519KeyLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        this.x25519PeerPublicKey = Arrays.copyOfRange(peerValue, 0, x25519KeyLength);
+        byte[] kyberKey = Arrays.copyOfRange(peerValue, x25519KeyLength, peerValue.length);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
-            this.kyberCiphertext = Arrays.clone(kyberKey);
+            this.kyberCiphertext = kyberKey;
         }
         else
         {
@@ -65,11 +103,15 @@ public class BcTlsX25519KyberHybrid implements TlsAgreement
 
     public TlsSecret calculateSecret() throws IOException
     {
-        byte[] x25519Secret = domain.calculateX25519Secret(x25519PrivateKey, x25519PeerPublicKey);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
             kyberSecret = domain.getKyberDomain().deCap((KyberPrivateKeyParameters)kyberLocalKeyPair.getPrivate(), kyberCiphertext);
         }
-        return domain.getKyberDomain().adoptLocalSecret(Arrays.concatenate(x25519Secret, kyberSecret));
+
+        int x25519SecretLength = domain.getX25519PublicKeyByteLength();
+        byte[] secret = new byte[x25519SecretLength + kyberSecret.length];
+        domain.getX25519Domain().calculateAgreement(x25519PrivateKey, 0, x25519PeerPublicKey, 0, secret, 0);
+        System.arraycopy(kyberSecret, 0, secret, x25519SecretLength, kyberSecret.length);
+        return domain.getKyberDomain().adoptLocalSecret(secret);
     }
 }
@@ -2,8 +2,6 @@ package org.bouncycastle.tls.crypto.impl.bc;
 
 import java.io.IOException;
 import org.bouncycastle.math.ec.rfc7748.X25519;
-import org.bouncycastle.tls.AlertDescription;
-import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCConfig;
 import org.bouncycastle.tls.crypto.TlsPQCDomain;
@@ -11,11 +9,13 @@ import org.bouncycastle.tls.crypto.TlsPQCDomain;
 public class BcTlsX25519KyberHybridDomain implements TlsPQCDomain
 {
     protected final BcTlsKyberDomain kyberDomain;
+    protected final BcX25519Domain x25519Domain;
     protected final BcTlsCrypto crypto;
 
     public BcTlsX25519KyberHybridDomain(BcTlsCrypto crypto, TlsPQCConfig pqcConfig)
     {
         this.kyberDomain = new BcTlsKyberDomain(crypto, pqcConfig);
+        this.x25519Domain = new BcX25519Domain(crypto);
         this.crypto = crypto;
     }
 
@@ -29,17 +29,20 @@ public class BcTlsX25519KyberHybridDomain implements TlsPQCDomain
         return kyberDomain;
     }
 
+    public BcX25519Domain getX25519Domain()
+    {
+        return x25519Domain;
+    }
+
     public byte[] generateX25519PrivateKey() throws IOException
     {
-        byte[] privateKey = new byte[X25519.SCALAR_SIZE];
-        crypto.getSecureRandom().nextBytes(privateKey);
-        return privateKey;
+        return x25519Domain.generatePrivateKey();
     }
 
     public byte[] getX25519PublicKey(byte[] privateKey) throws IOException
     {
         byte[] publicKey = new byte[X25519.POINT_SIZE];
-        X25519.scalarMultBase(privateKey, 0, publicKey, 0);
+        x25519Domain.generatePublicKey(privateKey, 0, publicKey, 0);
         return publicKey;
     }
 
@@ -51,10 +54,7 @@ public class BcTlsX25519KyberHybridDomain implements TlsPQCDomain
     public byte[] calculateX25519Secret(byte[] privateKey, byte[] peerPublicKey) throws IOException
     {
         byte[] secret = new byte[X25519.POINT_SIZE];
-        if (!X25519.calculateAgreement(privateKey, 0, peerPublicKey, 0, secret, 0))
-        {
-            throw new TlsFatalAlert(AlertDescription.handshake_failure);
-        }
+        x25519Domain.calculateAgreement(privateKey, 0, peerPublicKey, 0, secret, 0);
         return secret;
     }
 }
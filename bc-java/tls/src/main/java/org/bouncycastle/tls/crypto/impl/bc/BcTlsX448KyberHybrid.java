@@ -5,12 +5,16 @@ import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class BcTlsX448KyberHybrid implements TlsAgreement
+public class BcTlsX448KyberHybrid implements TlsHybridAgreement
 {
     protected final BcTlsX448KyberHybridDomain domain;
 
@@ -27,10 +31,35 @@ public class BcTlsX448KyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return NamedGroup.x448;
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof BcX448))
+        {
+            return false;
+        }
+
+        // NOTE: The private key is all zeroes until generated (and again once used)
+        byte[] privateKey = ((BcX448)classicalAgreement).privateKey;
+        if (Arrays.areAllZeroes(privateKey, 0, privateKey.length))
+        {
+            return false;
+        }
+
+        this.x448PrivateKey = Arrays.clone(privateKey);
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.x448PrivateKey = domain.generateX448PrivateKey();
-        byte[] x448Key = domain.getX448PublicKey(x448PrivateKey);
+        if (null == x448PrivateKey)
+        {
+            this.x448PrivateKey = domain.generateX448PrivateKey();
+        }
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
@@ -39,18 +68,29 @@ public class BcTlsX448KyberHybrid implements TlsAgreement
         }
         else
         {
-            kyberKey = Arrays.clone(kyberCiphertext);
+            kyberKey = kyberCiphertext;
         }
-        return Arrays.concatenate(x448Key, kyberKey);
+
+        int x448KeyLength = domain.getX448PublicKeyByteLength();
+        byte[] ephemeral = new byte[x448KeyLength + kyberKey.length];
+        domain.getX448Domain().generatePublicKey(x448PrivateKey, 0, ephemeral, 0);
+        System.arraycopy(kyberKey, 0, ephemeral, x448KeyLength, kyberKey.length);
+        return ephemeral;
     }
 
     public void receivePeerValue(byte[] peerValue) throws IOException
     {
-        this.x448PeerPublicKey = Arrays.copyOf(peerValue, domain.getX448PublicKeyByteLength());
-        byte[] kyberKey = Arrays.copyOfRange(peerValue, domain.getX448PublicKeyByteLength(), peerValue.length);
+        int x448KeyLength = domain.getX448PublicKeyByteLength();
+        if (peerValue == null || peerValue.length <= x448KeyLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        this.x448PeerPublicKey = Arrays.copyOfRange(peerValue, 0, x448KeyLength);
+        byte[] kyberKey = Arrays.copyOfRange(peerValue, x448KeyLength, peerValue.length);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
-            this.kyberCiphertext = Arrays.clone(kyberKey);
+            this.kyberCiphertext = kyberKey;
         }
         else
         {
@@ -63,11 +103,15 @@ public class BcTlsX448KyberHybrid implements TlsAgreement
 
     public TlsSecret calculateSecret() throws IOException
     {
-        byte[] x448Secret = domain.calculateX448Secret(x448PrivateKey, x448PeerPublicKey);
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
         {
             kyberSecret = domain.getKyberDomain().deCap((KyberPrivateKeyParameters)kyberLocalKeyPair.getPrivate(), kyberCiphertext);
         }
-        return domain.getKyberDomain().adoptLocalSecret(Arrays.concatenate(x448Secret, kyberSecret));
+
+        int x448SecretLength = domain.getX448PublicKeyByteLength();
+        byte[] secret = new byte[x448SecretLength + kyberSecret.length];
+        domain.getX448Domain().calculateAgreement(x448PrivateKey, 0, x448PeerPublicKey, 0, secret, 0);
+        System.arraycopy(kyberSecret, 0, secret, x448SecretLength, kyberSecret.length);
+        return domain.getKyberDomain().adoptLocalSecret(secret);
     }
 }
@@ -2,8 +2,6 @@ package org.bouncycastle.tls.crypto.impl.bc;
 
 import java.io.IOException;
 import org.bouncycastle.math.ec.rfc7748.X448;
-import org.bouncycastle.tls.AlertDescription;
-import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCConfig;
 import org.bouncycastle.tls.crypto.TlsPQCDomain;
@@ -11,11 +9,13 @@ import org.bouncycastle.tls.crypto.TlsPQCDomain;
 public class BcTlsX448KyberHybridDomain implements TlsPQCDomain
 {
     protected final BcTlsKyberDomain kyberDomain;
+    protected final BcX448Domain x448Domain;
     protected final BcTlsCrypto crypto;
 
     public BcTlsX448KyberHybridDomain(BcTlsCrypto crypto, TlsPQCConfig pqcConfig)
     {
         this.kyberDomain = new BcTlsKyberDomain(crypto, pqcConfig);
+        this.x448Domain = new BcX448Domain(crypto);
         this.crypto = crypto;
     }
 
@@ -29,17 +29,20 @@ public class BcTlsX448KyberHybridDomain implements TlsPQCDomain
         return kyberDomain;
     }
 
+    public BcX448Domain getX448Domain()
+    {
+        return x448Domain;
+    }
+
     public byte[] generateX448PrivateKey() throws IOException
     {
-        byte[] privateKey = new byte[X448.SCALAR_SIZE];
-        crypto.getSecureRandom().nextBytes(privateKey);
-        return privateKey;
+        return x448Domain.generatePrivateKey();
     }
 
     public byte[] getX448PublicKey(byte[] privateKey) throws IOException
     {
         byte[] publicKey = new byte[X448.POINT_SIZE];
-        X448.scalarMultBase(privateKey, 0, publicKey, 0);
+        x448Domain.generatePublicKey(privateKey, 0, publicKey, 0);
         return publicKey;
     }
 
@@ -51,10 +54,7 @@ public class BcTlsX448KyberHybridDomain implements TlsPQCDomain
     public byte[] calculateX448Secret(byte[] privateKey, byte[] peerPublicKey) throws IOException
     {
         byte[] secret = new byte[X448.POINT_SIZE];
-        if (!X448.calculateAgreement(privateKey, 0, peerPublicKey, 0, secret, 0))
-        {
-            throw new TlsFatalAlert(AlertDescription.handshake_failure);
-        }
+        x448Domain.calculateAgreement(privateKey, 0, peerPublicKey, 0, secret, 0);
         return secret;
     }
 }
@@ -1,5 +1,10 @@
 package org.bouncycastle.tls.crypto.impl.bc;
 
+import java.io.IOException;
+
+import org.bouncycastle.math.ec.rfc7748.X25519;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsECDomain;
 
@@ -16,4 +21,38 @@ public class BcX25519Domain implements TlsECDomain
     {
         return new BcX25519(crypto);
     }
+
+    public int getPublicKeyByteLength()
+    {
+        return X25519.POINT_SIZE;
+    }
+
+    public byte[] generatePrivateKey()
+    {
+        byte[] privateKey = new byte[X25519.SCALAR_SIZE];
+        crypto.getSecureRandom().nextBytes(privateKey);
+        return privateKey;
+    }
+
+    /**
+     * Write the public key for a private key into an existing buffer (e.g. one also holding other key shares).
+     */
+    public void generatePublicKey(byte[] privateKey, int privateKeyOff, byte[] buf, int off)
+    {
+        X25519.scalarMultBase(privateKey, privateKeyOff, buf, off);
+    }
+
+    /**
+     * Calculate the shared secret directly into an existing buffer, reading the peer's public key in place.
+     *
+     * @throws TlsFatalAlert (handshake_failure) if the shared secret is all zeroes.
+     */
+    public void calculateAgreement(byte[] privateKey, int privateKeyOff, byte[] peerPublicKey, int peerPublicKeyOff,
+        byte[] secret, int secretOff) throws IOException
+    {
+        if (!X25519.calculateAgreement(privateKey, privateKeyOff, peerPublicKey, peerPublicKeyOff, secret, secretOff))
+        {
+            throw new TlsFatalAlert(AlertDescription.handshake_failure);
+        }
+    }
 }
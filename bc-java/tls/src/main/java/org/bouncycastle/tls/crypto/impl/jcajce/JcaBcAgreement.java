@@ -0,0 +1,39 @@
+package org.bouncycastle.tls.crypto.impl.jcajce;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsSecret;
+
+/**
+ * Adapts a key agreement from the BC light-weight library for use with a {@link JcaTlsCrypto}, by adopting
+ * the calculated secret into the JCA crypto.
+ */
+class JcaBcAgreement
+    implements TlsAgreement
+{
+    protected final JcaTlsCrypto crypto;
+    protected final TlsAgreement bcAgreement;
+
+    JcaBcAgreement(JcaTlsCrypto crypto, TlsAgreement bcAgreement)
+    {
+        this.crypto = crypto;
+        this.bcAgreement = bcAgreement;
+    }
+
+    public byte[] generateEphemeral() throws IOException
+    {
+        return bcAgreement.generateEphemeral();
+    }
+
+    public void receivePeerValue(byte[] peerValue) throws IOException
+    {
+        bcAgreement.receivePeerValue(peerValue);
+    }
+
+    public TlsSecret calculateSecret() throws IOException
+    {
+        // NOTE: extract() also destroys the light-weight secret
+        return crypto.adoptLocalSecret(bcAgreement.calculateSecret().extract());
+    }
+}
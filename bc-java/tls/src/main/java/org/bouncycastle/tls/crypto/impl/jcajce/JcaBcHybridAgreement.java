@@ -0,0 +1,35 @@
+package org.bouncycastle.tls.crypto.impl.jcajce;
+
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
+
+/**
+ * A {@link JcaBcAgreement} for a hybrid agreement, so that it can still share the classical key pair of a
+ * (similarly adapted) classical agreement.
+ */
+class JcaBcHybridAgreement
+    extends JcaBcAgreement
+    implements TlsHybridAgreement
+{
+    JcaBcHybridAgreement(JcaTlsCrypto crypto, TlsHybridAgreement bcAgreement)
+    {
+        super(crypto, bcAgreement);
+    }
+
+    public int getClassicalNamedGroup()
+    {
+        return ((TlsHybridAgreement)bcAgreement).getClassicalNamedGroup();
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof JcaBcAgreement))
+        {
+            return false;
+        }
+
+        TlsAgreement bcClassicalAgreement = ((JcaBcAgreement)classicalAgreement).bcAgreement;
+
+        return ((TlsHybridAgreement)bcAgreement).shareClassicalKeyPair(bcClassicalAgreement);
+    }
+}
@@ -0,0 +1,98 @@
+package org.bouncycastle.tls.crypto.impl.jcajce;
+
+import java.security.SecureRandom;
+
+import org.bouncycastle.jcajce.util.JcaJceHelper;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsDHConfig;
+import org.bouncycastle.tls.crypto.TlsDHDomain;
+import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsECDomain;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
+import org.bouncycastle.tls.crypto.TlsPQCConfig;
+import org.bouncycastle.tls.crypto.TlsPQCDomain;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+
+/**
+ * A {@link JcaTlsCrypto} that performs (EC)DH, X25519/X448 and PQC/hybrid key exchange using the BC
+ * light-weight library, while record ciphers, hashes, HMACs, signatures and certificates still use the
+ * JCA/JCE provider.
+ * <p>
+ * This suits a provider whose bulk ciphers use CPU intrinsics (e.g. AES-GCM in the SunJCE provider), but
+ * whose key exchange is slower than, or doesn't support the groups of, the light-weight implementations.
+ * Use {@link JcaTlsCryptoProvider#setLightweightKeyExchange(boolean)} to create one.
+ * </p>
+ */
+public class JcaBcTlsCrypto
+    extends JcaTlsCrypto
+{
+    protected final BcTlsCrypto bcCrypto;
+
+    /**
+     * Base constructor.
+     *
+     * @param helper a JCA/JCE helper configured for the class's default provider.
+     * @param entropySource primary entropy source, used for key generation.
+     * @param nonceEntropySource secondary entropy source, used for nonce and IV generation.
+     */
+    protected JcaBcTlsCrypto(JcaJceHelper helper, SecureRandom entropySource, SecureRandom nonceEntropySource)
+    {
+        super(helper, entropySource, nonceEntropySource);
+
+        this.bcCrypto = new BcTlsCrypto(entropySource);
+    }
+
+    public TlsDHDomain createDHDomain(TlsDHConfig dhConfig)
+    {
+        final TlsDHDomain bcDomain = bcCrypto.createDHDomain(dhConfig);
+
+        return new TlsDHDomain()
+        {
+            public TlsAgreement createDH()
+            {
+                return adaptAgreement(bcDomain.createDH());
+            }
+        };
+    }
+
+    public TlsECDomain createECDomain(TlsECConfig ecConfig)
+    {
+        final TlsECDomain bcDomain = bcCrypto.createECDomain(ecConfig);
+
+        return new TlsECDomain()
+        {
+            public TlsAgreement createECDH()
+            {
+                return adaptAgreement(bcDomain.createECDH());
+            }
+        };
+    }
+
+    public TlsPQCDomain createPQCDomain(TlsPQCConfig pqcConfig)
+    {
+        final TlsPQCDomain bcDomain = bcCrypto.createPQCDomain(pqcConfig);
+
+        return new TlsPQCDomain()
+        {
+            public TlsAgreement createPQC()
+            {
+                return adaptAgreement(bcDomain.createPQC());
+            }
+        };
+    }
+
+    public boolean hasNamedGroup(int namedGroup)
+    {
+        return bcCrypto.hasNamedGroup(namedGroup);
+    }
+
+    protected TlsAgreement adaptAgreement(TlsAgreement bcAgreement)
+    {
+        if (bcAgreement instanceof TlsHybridAgreement)
+        {
+            return new JcaBcHybridAgreement(this, (TlsHybridAgreement)bcAgreement);
+        }
+
+        return new JcaBcAgreement(this, bcAgreement);
+    }
+}
@@ -62,6 +62,7 @@ import org.bouncycastle.tls.crypto.impl.TlsAEADCipher;
 import org.bouncycastle.tls.crypto.impl.TlsAEADCipherImpl;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipher;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipherImpl;
+import org.bouncycastle.tls.crypto.impl.TlsCertificateCache;
 import org.bouncycastle.tls.crypto.impl.TlsImplUtils;
 import org.bouncycastle.tls.crypto.impl.TlsNullCipher;
 import org.bouncycastle.tls.crypto.impl.jcajce.srp.SRP6Client;
@@ -165,7 +166,34 @@ public class JcaTlsCrypto
             throw new TlsFatalAlert(AlertDescription.unsupported_certificate);
         }
 
-        return new JcaTlsCertificate(this, encoding);
+        TlsCertificateCache certificateCache = getCertificateCache();
+        if (null == certificateCache)
+        {
+            return new JcaTlsCertificate(this, encoding);
+        }
+
+        TlsCertificate cached = certificateCache.get(type, encoding);
+        if (null != cached)
+        {
+            return cached;
+        }
+
+        JcaTlsCertificate certificate = new JcaTlsCertificate(this, encoding);
+
+        try
+        {
+            // Decode the public key now, so that it's only done once
+            certificate.getPublicKey();
+        }
+        catch (IOException e)
+        {
+            // NOTE: Not a signing/agreement key we can decode (e.g. a KEM key); don't cache it
+            return certificate;
+        }
+
+        certificateCache.put(type, encoding, certificate);
+
+        return certificate;
     }
 
     public TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAlgorithm, int macAlgorithm)
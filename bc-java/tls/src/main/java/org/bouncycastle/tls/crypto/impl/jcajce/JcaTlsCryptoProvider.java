@@ -12,6 +12,7 @@ import org.bouncycastle.jcajce.util.JcaJceHelper;
 import org.bouncycastle.jcajce.util.NamedJcaJceHelper;
 import org.bouncycastle.jcajce.util.ProviderJcaJceHelper;
 import org.bouncycastle.tls.crypto.TlsCryptoProvider;
+import org.bouncycastle.tls.crypto.impl.TlsCertificateCache;
 
 /**
  * Basic builder class for constructing standard JcaTlsCrypto classes.
@@ -20,6 +21,8 @@ public class JcaTlsCryptoProvider
     implements TlsCryptoProvider
 {
     private JcaJceHelper helper = new DefaultJcaJceHelper();
+    private boolean lightweightKeyExchange = false;
+    private int certificateCacheSize = 0;
 
     public JcaTlsCryptoProvider()
     {
@@ -51,6 +54,40 @@ public class JcaTlsCryptoProvider
         return this;
     }
 
+    /**
+     * Set whether any JcaTlsCrypto we build should perform key exchange (including PQC/hybrid groups) using
+     * the BC light-weight library, while still sourcing record ciphers, hashes and HMACs from the provider
+     * (see {@link JcaBcTlsCrypto}).
+     *
+     * @param lightweightKeyExchange true to use the light-weight key exchange implementations.
+     * @return the current builder instance.
+     */
+    public JcaTlsCryptoProvider setLightweightKeyExchange(boolean lightweightKeyExchange)
+    {
+        this.lightweightKeyExchange = lightweightKeyExchange;
+
+        return this;
+    }
+
+    /**
+     * Set the size of the cache of parsed peer certificates for any JcaTlsCrypto we build (see
+     * {@link TlsCertificateCache}).
+     *
+     * @param certificateCacheSize the maximum number of cached certificates, or 0 (the default) for no cache.
+     * @return the current builder instance.
+     */
+    public JcaTlsCryptoProvider setCertificateCacheSize(int certificateCacheSize)
+    {
+        if (certificateCacheSize < 0)
+        {
+            throw new IllegalArgumentException("'certificateCacheSize' cannot be negative");
+        }
+
+        this.certificateCacheSize = certificateCacheSize;
+
+        return this;
+    }
+
     /**
      * Create a new JcaTlsCrypto using the current builder configuration and the passed in entropy source..
      *
@@ -90,7 +127,16 @@ public class JcaTlsCryptoProvider
      */
     public JcaTlsCrypto create(SecureRandom keyRandom, SecureRandom nonceRandom)
     {
-        return new JcaTlsCrypto(helper, keyRandom, nonceRandom);
+        JcaTlsCrypto crypto = lightweightKeyExchange
+            ?   new JcaBcTlsCrypto(helper, keyRandom, nonceRandom)
+            :   new JcaTlsCrypto(helper, keyRandom, nonceRandom);
+
+        if (certificateCacheSize > 0)
+        {
+            crypto.setCertificateCache(new TlsCertificateCache(certificateCacheSize));
+        }
+
+        return crypto;
     }
 
     public JcaJceHelper getHelper()
@@ -10,11 +10,12 @@ import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class JceTlsECDHKyberHybrid implements TlsAgreement
+public class JceTlsECDHKyberHybrid implements TlsHybridAgreement
 {
     protected final JceTlsECDHKyberHybridDomain domain;
 
@@ -31,9 +32,34 @@ public class JceTlsECDHKyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return domain.getEcDomain().ecConfig.getNamedGroup();
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof JceTlsECDH))
+        {
+            return false;
+        }
+
+        JceTlsECDH ecdh = (JceTlsECDH)classicalAgreement;
+        if (null == ecdh.localKeyPair || ecdh.domain.ecConfig.getNamedGroup() != getClassicalNamedGroup())
+        {
+            return false;
+        }
+
+        this.ecLocalKeyPair = ecdh.localKeyPair;
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.ecLocalKeyPair = domain.getEcDomain().generateKeyPair();
+        if (null == ecLocalKeyPair)
+        {
+            this.ecLocalKeyPair = domain.getEcDomain().generateKeyPair();
+        }
         byte[] ecKey = domain.getEcDomain().encodePublicKey(ecLocalKeyPair.getPublic());
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
@@ -9,12 +9,14 @@ import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class JceTlsX25519KyberHybrid implements TlsAgreement
+public class JceTlsX25519KyberHybrid implements TlsHybridAgreement
 {
     protected final JceTlsX25519KyberHybridDomain domain;
 
@@ -31,9 +33,28 @@ public class JceTlsX25519KyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return NamedGroup.x25519;
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof JceX25519) || null == ((JceX25519)classicalAgreement).localKeyPair)
+        {
+            return false;
+        }
+
+        this.x25519LocalKeyPair = ((JceX25519)classicalAgreement).localKeyPair;
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.x25519LocalKeyPair = domain.generateX25519KeyPair();
+        if (null == x25519LocalKeyPair)
+        {
+            this.x25519LocalKeyPair = domain.generateX25519KeyPair();
+        }
         byte[] x25519Key = domain.encodeX25519PublicKey(x25519LocalKeyPair.getPublic());
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
@@ -8,12 +8,14 @@ import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
 import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
 import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
-public class JceTlsX448KyberHybrid implements TlsAgreement
+public class JceTlsX448KyberHybrid implements TlsHybridAgreement
 {
     protected final JceTlsX448KyberHybridDomain domain;
 
@@ -30,9 +32,28 @@ public class JceTlsX448KyberHybrid implements TlsAgreement
         this.domain = domain;
     }
 
+    public int getClassicalNamedGroup()
+    {
+        return NamedGroup.x448;
+    }
+
+    public boolean shareClassicalKeyPair(TlsAgreement classicalAgreement)
+    {
+        if (!(classicalAgreement instanceof JceX448) || null == ((JceX448)classicalAgreement).localKeyPair)
+        {
+            return false;
+        }
+
+        this.x448LocalKeyPair = ((JceX448)classicalAgreement).localKeyPair;
+        return true;
+    }
+
     public byte[] generateEphemeral() throws IOException
     {
-        this.x448LocalKeyPair = domain.generateX448KeyPair();
+        if (null == x448LocalKeyPair)
+        {
+            this.x448LocalKeyPair = domain.generateX448KeyPair();
+        }
         byte[] x448Key = domain.encodeX448PublicKey(x448LocalKeyPair.getPublic());
         byte[] kyberKey;
         if (TlsPQCKemMode.PQC_KEM_CLIENT.equals(domain.getKyberDomain().getTlsPQCConfig().getTlsPQCKemMode()))
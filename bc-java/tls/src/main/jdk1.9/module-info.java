@@ -3,6 +3,7 @@ module org.bouncycastle.tls
     provides java.security.Provider with org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
     
     requires java.logging;
+    requires java.management;
     requires org.bouncycastle.provider;
     requires org.bouncycastle.util;
 
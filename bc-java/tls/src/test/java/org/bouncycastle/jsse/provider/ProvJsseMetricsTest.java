@@ -0,0 +1,165 @@
+package org.bouncycastle.jsse.provider;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import junit.framework.TestCase;
+import org.bouncycastle.jsse.BCJsseMetricsMBean;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.SecurityParameters;
+
+/**
+ * Tests for the BCJSSE handshake counters and the metrics MBean (which is normally only registered when the
+ * "org.bouncycastle.jsse.enableMetrics" system property is set).
+ */
+public class ProvJsseMetricsTest
+    extends TestCase
+{
+    private static final String TEST_OBJECT_NAME = "org.bouncycastle.jsse.test:type=Metrics";
+
+    public void testStripedCounter()
+    {
+        StripedCounter counter = new StripedCounter();
+        assertEquals(0L, counter.sum());
+
+        counter.increment();
+        counter.add(41L);
+        counter.add(-2L);
+        assertEquals(40L, counter.sum());
+
+        counter.reset();
+        assertEquals(0L, counter.sum());
+    }
+
+    public void testStripedCounterConcurrent() throws Exception
+    {
+        final StripedCounter counter = new StripedCounter();
+        final int threads = 8, increments = 10000;
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; ++i)
+        {
+            workers[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < increments; ++j)
+                    {
+                        counter.increment();
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for (int i = 0; i < threads; ++i)
+        {
+            workers[i].join();
+        }
+
+        assertEquals((long)threads * increments, counter.sum());
+    }
+
+    public void testHandshakeCounters()
+    {
+        ProvJsseMetrics metrics = new ProvJsseMetrics();
+
+        long start = metrics.handshakeBeginning(false);
+        metrics.handshakeBeginning(true);
+        metrics.handshakeBeginning(true);
+        assertEquals(1L, metrics.getClientHandshakesStarted());
+        assertEquals(2L, metrics.getServerHandshakesStarted());
+        assertEquals(3L, metrics.getHandshakesInProgress());
+
+        metrics.handshakeComplete(false, start, new SecurityParameters());
+        metrics.handshakeFailed(true, AlertDescription.handshake_failure);
+        metrics.alertRaised(AlertDescription.handshake_failure);
+        metrics.sessionCacheLookup(true);
+        metrics.sessionCacheLookup(false);
+        metrics.sessionCacheLookup(false);
+        metrics.sessionCacheLookup(false);
+
+        assertEquals(1L, metrics.getClientHandshakesCompleted());
+        assertEquals(1L, metrics.getServerHandshakesFailed());
+        assertEquals(0L, metrics.getServerHandshakesCompleted());
+        assertEquals(1L, metrics.getHandshakesInProgress());
+        assertEquals(0.25, metrics.getSessionCacheHitRate(), 0.0);
+
+        long[] histogram = metrics.getClientHandshakeLatencyHistogram();
+        assertEquals(metrics.getHandshakeLatencyBucketsMillis().length + 1, histogram.length);
+        long total = 0L;
+        for (int i = 0; i < histogram.length; ++i)
+        {
+            total += histogram[i];
+        }
+        assertEquals(1L, total);
+
+        assertEquals(1L, getCount(metrics.getHandshakeFailureReasons(), "handshake_failure"));
+        assertEquals(1L, getCount(metrics.getAlertsRaised(), "handshake_failure"));
+        assertEquals(1L, getCount(metrics.getHandshakesByCipherSuite(), "SSL_NULL_WITH_NULL_NULL"));
+        assertTrue(metrics.getHandshakesByNamedGroup().isEmpty());
+
+        metrics.reset();
+        assertEquals(0L, metrics.getClientHandshakesStarted());
+        assertEquals(0L, metrics.getClientHandshakesCompleted());
+        assertEquals(0L, getCount(metrics.getHandshakeFailureReasons(), "handshake_failure"));
+        assertEquals(0.0, metrics.getSessionCacheHitRate(), 0.0);
+
+        // The in-progress gauge is not reset
+        assertEquals(1L, metrics.getHandshakesInProgress());
+    }
+
+    public void testMBeanOpenTypes() throws Exception
+    {
+        ProvJsseMetrics metrics = new ProvJsseMetrics();
+        metrics.handshakeBeginning(true);
+        metrics.handshakeFailed(true, AlertDescription.bad_certificate);
+        metrics.alertReceived(AlertDescription.bad_certificate);
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(TEST_OBJECT_NAME);
+        mbeanServer.registerMBean(new StandardMBean(metrics, BCJsseMetricsMBean.class), objectName);
+        try
+        {
+            // Every attribute must be readable by a generic client, i.e. be an open type
+            MBeanAttributeInfo[] attributes = mbeanServer.getMBeanInfo(objectName).getAttributes();
+            assertTrue(attributes.length > 0);
+            for (int i = 0; i < attributes.length; ++i)
+            {
+                String type = attributes[i].getType();
+                assertFalse(attributes[i].getName(), type.startsWith("java.util."));
+
+                Object value = mbeanServer.getAttribute(objectName, attributes[i].getName());
+                assertNotNull(attributes[i].getName(), value);
+            }
+
+            assertEquals(Long.valueOf(1L), mbeanServer.getAttribute(objectName, "ServerHandshakesFailed"));
+
+            Object reasons = mbeanServer.getAttribute(objectName, "HandshakeFailureReasons");
+            assertTrue(reasons instanceof TabularData);
+            assertEquals(1L, getCount((TabularData)reasons, "bad_certificate"));
+            assertEquals(1L, getCount((TabularData)mbeanServer.getAttribute(objectName, "AlertsReceived"),
+                "bad_certificate"));
+            assertEquals(BCJsseMetricsMBean.COUNT_TYPE_NAME,
+                ((TabularData)reasons).getTabularType().getRowType().getTypeName());
+
+            mbeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+            assertEquals(Long.valueOf(0L), mbeanServer.getAttribute(objectName, "ServerHandshakesFailed"));
+        }
+        finally
+        {
+            mbeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    private static long getCount(TabularData counts, String name)
+    {
+        CompositeData row = counts.get(new Object[]{ name });
+        return null == row ? 0L : ((Long)row.get("count")).longValue();
+    }
+}
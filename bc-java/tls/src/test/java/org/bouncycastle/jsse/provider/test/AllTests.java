@@ -4,6 +4,7 @@ import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.bouncycastle.jsse.provider.ProvJsseMetricsTest;
 import org.bouncycastle.test.PrintTestResult;
 
 public class AllTests
@@ -28,9 +29,11 @@ public class AllTests
         suite.addTestSuite(EdDSACredentialsTest.class);
         suite.addTestSuite(InstanceTest.class);
         suite.addTestSuite(KeyManagerFactoryTest.class);
+        suite.addTestSuite(ProvJsseMetricsTest.class);
         suite.addTestSuite(PSSCredentialsTest.class);
         suite.addTestSuite(SSLServerSocketTest.class);
         suite.addTestSuite(SSLSocketTest.class);
+        suite.addTestSuite(SSLContextWarmUpTest.class);
 
         if (hasClass("javax.net.ssl.CertPathTrustManagerParameters"))
         {
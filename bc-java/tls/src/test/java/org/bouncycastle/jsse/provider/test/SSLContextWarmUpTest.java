@@ -0,0 +1,177 @@
+package org.bouncycastle.jsse.provider.test;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.bouncycastle.jsse.util.SSLContextWarmUp;
+
+import junit.framework.TestCase;
+
+public class SSLContextWarmUpTest
+    extends TestCase
+{
+    private static final String PROPERTY_WARM_UP = "org.bouncycastle.jsse.warmUp";
+
+    protected void setUp()
+    {
+        ProviderUtils.setupLowPriority(false);
+    }
+
+    public void testLoopbackHandshakes() throws Exception
+    {
+        SSLContext context = createContext();
+
+        int completed = SSLContextWarmUp.runLoopbackHandshakes(context, context,
+            new String[]{ "x25519", "secp256r1" }, 2);
+        assertEquals(4, completed);
+    }
+
+    public void testStartLoopbackHandshakes() throws Exception
+    {
+        SSLContext context = createContext();
+
+        LogCapture capture = new LogCapture(SSLContextWarmUp.class.getName());
+        try
+        {
+            Thread thread = SSLContextWarmUp.startLoopbackHandshakes(context, context, null, 2);
+            assertTrue(thread.isDaemon());
+
+            thread.join(60000);
+            assertFalse(thread.isAlive());
+        }
+        finally
+        {
+            capture.close();
+        }
+
+        assertTrue(capture.contains("SSLContext warm-up completed 2 handshakes"));
+    }
+
+    public void testWarmUpSystemProperty() throws Exception
+    {
+        String previous = System.getProperty(PROPERTY_WARM_UP);
+        try
+        {
+            System.clearProperty(PROPERTY_WARM_UP);
+            assertFalse(initWarmedUp());
+
+            System.setProperty(PROPERTY_WARM_UP, "true");
+            assertTrue(initWarmedUp());
+
+            System.setProperty(PROPERTY_WARM_UP, "false");
+            assertFalse(initWarmedUp());
+        }
+        finally
+        {
+            if (null == previous)
+            {
+                System.clearProperty(PROPERTY_WARM_UP);
+            }
+            else
+            {
+                System.setProperty(PROPERTY_WARM_UP, previous);
+            }
+        }
+    }
+
+    private static SSLContext createContext() throws Exception
+    {
+        char[] keyPass = "keyPassword".toCharArray();
+
+        KeyPair caKeyPair = TestUtils.generateRSAKeyPair();
+        X509Certificate caCert = TestUtils.generateRootCert(caKeyPair);
+
+        KeyStore ks = KeyStore.getInstance("JKS");
+        ks.load(null, null);
+        ks.setKeyEntry("server", caKeyPair.getPrivate(), keyPass, new X509Certificate[]{ caCert });
+
+        KeyStore ts = KeyStore.getInstance("JKS");
+        ts.load(null, null);
+        ts.setCertificateEntry("ca", caCert);
+
+        KeyManagerFactory keyMgrFact = KeyManagerFactory.getInstance("PKIX", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        keyMgrFact.init(ks, keyPass);
+
+        TrustManagerFactory trustMgrFact = TrustManagerFactory.getInstance("PKIX",
+            ProviderUtils.PROVIDER_NAME_BCJSSE);
+        trustMgrFact.init(ts);
+
+        SSLContext context = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        context.init(keyMgrFact.getKeyManagers(), trustMgrFact.getTrustManagers(), null);
+        return context;
+    }
+
+    /*
+     * Initializes a BCJSSE SSLContext and reports whether the provider's initialization-time warm-up ran.
+     */
+    private static boolean initWarmedUp() throws Exception
+    {
+        LogCapture capture = new LogCapture("org.bouncycastle.jsse.provider.ContextData");
+        try
+        {
+            SSLContext context = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+            context.init(null, null, null);
+        }
+        finally
+        {
+            capture.close();
+        }
+        return capture.contains("SSLContext warm-up took");
+    }
+
+    private static class LogCapture
+        extends Handler
+    {
+        private final Logger logger;
+        private final Level previousLevel;
+        private final List<String> messages = new ArrayList<String>();
+
+        LogCapture(String loggerName)
+        {
+            this.logger = Logger.getLogger(loggerName);
+            this.previousLevel = logger.getLevel();
+
+            setLevel(Level.ALL);
+            logger.setLevel(Level.FINE);
+            logger.addHandler(this);
+        }
+
+        public synchronized void publish(LogRecord record)
+        {
+            messages.add(record.getMessage());
+        }
+
+        public void flush()
+        {
+        }
+
+        public void close()
+        {
+            logger.removeHandler(this);
+            logger.setLevel(previousLevel);
+        }
+
+        synchronized boolean contains(String prefix)
+        {
+            for (String message : messages)
+            {
+                if (null != message && message.startsWith(prefix))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.bouncycastle.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.security.SecureRandom;
+
+import junit.framework.TestCase;
+import org.bouncycastle.tls.crypto.CryptoHashAlgorithm;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsCryptoUtils;
+import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * Tests for the handshake transcript hash, in particular that hashing the transcript incrementally into
+ * candidate hashes gives the same results as buffering it until the hash algorithm is known.
+ */
+public class DeferredHashTest
+    extends TestCase
+{
+    private static final byte[] CLIENT_HELLO_1 = createMessage(HandshakeType.client_hello, 3000, 1);
+    private static final byte[] HELLO_RETRY_REQUEST = createMessage(HandshakeType.server_hello, 80, 2);
+    private static final byte[] CLIENT_HELLO_2 = createMessage(HandshakeType.client_hello, 4200, 3);
+    private static final byte[] SERVER_HELLO = createMessage(HandshakeType.server_hello, 1200, 4);
+
+    private final TlsCrypto crypto = new BcTlsCrypto(new SecureRandom());
+
+    public void testCandidatesDroppedAfterNegotiation() throws Exception
+    {
+        TestContext context = new TestContext(crypto);
+        DeferredHash hash = new DeferredHash(context);
+
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha256);
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha384);
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha512);
+        hash.trackHashAlgorithm(CryptoHashAlgorithm.sha512);
+        update(hash, CLIENT_HELLO_1);
+
+        // Candidates are usable before the PRF is determined (e.g. for PSK binders)
+        assertHash(CryptoHashAlgorithm.sha384, hash.getFinalHash(CryptoHashAlgorithm.sha384), CLIENT_HELLO_1);
+
+        context.setPRFAlgorithm(PRFAlgorithm.tls13_hkdf_sha256);
+        hash.notifyPRFDetermined();
+        hash.sealHashAlgorithms();
+        update(hash, SERVER_HELLO);
+
+        assertHash(CryptoHashAlgorithm.sha256, hash.forkPRFHash().calculateHash(), CLIENT_HELLO_1, SERVER_HELLO);
+
+        // Explicitly tracked, so not just a candidate
+        assertHash(CryptoHashAlgorithm.sha512, hash.getFinalHash(CryptoHashAlgorithm.sha512), CLIENT_HELLO_1,
+            SERVER_HELLO);
+
+        // Neither the PRF hash nor explicitly tracked, and no longer buffered
+        try
+        {
+            hash.getFinalHash(CryptoHashAlgorithm.sha384);
+            fail("candidate hash not dropped");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    public void testForceBuffering() throws Exception
+    {
+        TestContext context = new TestContext(crypto);
+        DeferredHash hash = new DeferredHash(context);
+
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha256);
+        update(hash, CLIENT_HELLO_1);
+
+        context.setPRFAlgorithm(PRFAlgorithm.tls13_hkdf_sha256);
+        hash.notifyPRFDetermined();
+        hash.forceBuffering();
+        hash.sealHashAlgorithms();
+        update(hash, SERVER_HELLO);
+
+        // Still buffered after sealing, including input since
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        hash.copyBufferTo(buffered);
+        assertTrue(Arrays.areEqual(Arrays.concatenate(CLIENT_HELLO_1, SERVER_HELLO), buffered.toByteArray()));
+
+        assertHash(CryptoHashAlgorithm.sha256, hash.forkPRFHash().calculateHash(), CLIENT_HELLO_1, SERVER_HELLO);
+        assertHash(CryptoHashAlgorithm.sha1, hash.getFinalHash(CryptoHashAlgorithm.sha1), CLIENT_HELLO_1,
+            SERVER_HELLO);
+
+        try
+        {
+            hash.forceBuffering();
+            fail("forced buffering after sealing");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        // Without forced buffering, the buffer is dropped when sealed
+        DeferredHash unforced = new DeferredHash(context);
+        update(unforced, CLIENT_HELLO_1);
+        unforced.notifyPRFDetermined();
+        unforced.sealHashAlgorithms();
+
+        try
+        {
+            unforced.copyBufferTo(new ByteArrayOutputStream());
+            fail("buffer not dropped");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    public void testStopBuffering() throws Exception
+    {
+        TestContext context = new TestContext(crypto);
+        DeferredHash hash = new DeferredHash(context);
+
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha256);
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha384);
+        hash.stopBuffering();
+
+        // Still possible before there is any input (e.g. a PSK hash, once the PSK is known)
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha512);
+
+        update(hash, CLIENT_HELLO_1);
+
+        try
+        {
+            hash.copyBufferTo(new ByteArrayOutputStream());
+            fail("still buffering");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            hash.trackHashAlgorithm(CryptoHashAlgorithm.sha224);
+            fail("hash tracked without the earlier transcript");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            hash.forceBuffering();
+            fail("forced buffering after stopping");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        assertHash(CryptoHashAlgorithm.sha512, hash.getFinalHash(CryptoHashAlgorithm.sha512), CLIENT_HELLO_1);
+
+        context.setPRFAlgorithm(PRFAlgorithm.tls13_hkdf_sha384);
+        hash.notifyPRFDetermined();
+        hash.sealHashAlgorithms();
+        update(hash, SERVER_HELLO);
+
+        assertHash(CryptoHashAlgorithm.sha384, hash.forkPRFHash().calculateHash(), CLIENT_HELLO_1, SERVER_HELLO);
+    }
+
+    public void testFinalHashUntrackedWhileBuffering() throws Exception
+    {
+        TestContext context = new TestContext(crypto);
+        DeferredHash hash = new DeferredHash(context);
+
+        hash.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha256);
+        update(hash, CLIENT_HELLO_1);
+
+        // Hashed from the buffer, without starting to track it
+        assertHash(CryptoHashAlgorithm.sha384, hash.getFinalHash(CryptoHashAlgorithm.sha384), CLIENT_HELLO_1);
+
+        update(hash, SERVER_HELLO);
+        assertHash(CryptoHashAlgorithm.sha384, hash.getFinalHash(CryptoHashAlgorithm.sha384), CLIENT_HELLO_1,
+            SERVER_HELLO);
+
+        context.setPRFAlgorithm(PRFAlgorithm.tls13_hkdf_sha256);
+        hash.notifyPRFDetermined();
+        hash.sealHashAlgorithms();
+
+        try
+        {
+            hash.getFinalHash(CryptoHashAlgorithm.sha384);
+            fail("untracked hash started tracking");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    public void testTranscriptAcrossHelloRetryRequest() throws Exception
+    {
+        implTestTranscriptAcrossHelloRetryRequest(PRFAlgorithm.tls13_hkdf_sha256);
+        implTestTranscriptAcrossHelloRetryRequest(PRFAlgorithm.tls13_hkdf_sha384);
+    }
+
+    private void implTestTranscriptAcrossHelloRetryRequest(int prfAlgorithm) throws Exception
+    {
+        int prfHashAlgorithm = TlsCryptoUtils.getHashForPRF(prfAlgorithm);
+
+        // As the client now does: candidate hashes for each offered TLS 1.3 PRF, hashed incrementally
+        TestContext incrementalContext = new TestContext(crypto);
+        DeferredHash incremental = new DeferredHash(incrementalContext);
+        incremental.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha256);
+        incremental.trackCandidateHashAlgorithm(CryptoHashAlgorithm.sha384);
+
+        // As before: buffered until the PRF is determined, then replayed into the PRF hash
+        TestContext bufferedContext = new TestContext(crypto);
+        DeferredHash buffered = new DeferredHash(bufferedContext);
+
+        byte[] incrementalResult = runHelloRetryRequestTranscript(incrementalContext, incremental, prfAlgorithm);
+        byte[] bufferedResult = runHelloRetryRequestTranscript(bufferedContext, buffered, prfAlgorithm);
+
+        assertTrue(Arrays.areEqual(bufferedResult, incrementalResult));
+
+        // RFC 8446 4.4.1. The first ClientHello is replaced by a synthetic message_hash message
+        byte[] clientHello1Hash = calculateHash(prfHashAlgorithm, new byte[][]{ CLIENT_HELLO_1 });
+        byte[] messageHash = new byte[4 + clientHello1Hash.length];
+        TlsUtils.writeUint8(HandshakeType.message_hash, messageHash, 0);
+        TlsUtils.writeUint24(clientHello1Hash.length, messageHash, 1);
+        System.arraycopy(clientHello1Hash, 0, messageHash, 4, clientHello1Hash.length);
+
+        assertHash(prfHashAlgorithm, incrementalResult, messageHash, HELLO_RETRY_REQUEST, CLIENT_HELLO_2,
+            SERVER_HELLO);
+    }
+
+    private byte[] runHelloRetryRequestTranscript(TestContext context, DeferredHash hash, int prfAlgorithm)
+        throws Exception
+    {
+        update(hash, CLIENT_HELLO_1);
+
+        context.setPRFAlgorithm(prfAlgorithm);
+        hash.notifyPRFDetermined();
+        TlsUtils.adjustTranscriptForRetry(hash);
+
+        update(hash, HELLO_RETRY_REQUEST);
+        update(hash, CLIENT_HELLO_2);
+        update(hash, SERVER_HELLO);
+
+        hash.sealHashAlgorithms();
+
+        byte[] result = hash.forkPRFHash().calculateHash();
+        assertTrue(Arrays.areEqual(result, hash.getFinalHash(context.getSecurityParametersHandshake()
+            .getPRFCryptoHashAlgorithm())));
+        return result;
+    }
+
+    private void assertHash(int cryptoHashAlgorithm, byte[] actual, byte[] message)
+    {
+        assertHash(cryptoHashAlgorithm, actual, new byte[][]{ message });
+    }
+
+    private void assertHash(int cryptoHashAlgorithm, byte[] actual, byte[] message1, byte[] message2)
+    {
+        assertHash(cryptoHashAlgorithm, actual, new byte[][]{ message1, message2 });
+    }
+
+    private void assertHash(int cryptoHashAlgorithm, byte[] actual, byte[] message1, byte[] message2,
+        byte[] message3, byte[] message4)
+    {
+        assertHash(cryptoHashAlgorithm, actual, new byte[][]{ message1, message2, message3, message4 });
+    }
+
+    private void assertHash(int cryptoHashAlgorithm, byte[] actual, byte[][] messages)
+    {
+        assertTrue(Arrays.areEqual(calculateHash(cryptoHashAlgorithm, messages), actual));
+    }
+
+    private byte[] calculateHash(int cryptoHashAlgorithm, byte[][] messages)
+    {
+        TlsHash hash = crypto.createHash(cryptoHashAlgorithm);
+        for (int i = 0; i < messages.length; ++i)
+        {
+            hash.update(messages[i], 0, messages[i].length);
+        }
+        return hash.calculateHash();
+    }
+
+    private static byte[] createMessage(short type, int length, int seed)
+    {
+        byte[] message = new byte[4 + length];
+        TlsUtils.writeUint8(type, message, 0);
+        TlsUtils.writeUint24(length, message, 1);
+        for (int i = 4; i < message.length; ++i)
+        {
+            message[i] = (byte)(i * 31 + seed);
+        }
+        return message;
+    }
+
+    private static void update(DeferredHash hash, byte[] message)
+    {
+        hash.update(message, 0, message.length);
+    }
+
+    private static class TestContext
+        extends TlsClientContextImpl
+    {
+        private final SecurityParameters securityParameters = new SecurityParameters();
+
+        TestContext(TlsCrypto crypto)
+        {
+            super(crypto);
+        }
+
+        public SecurityParameters getSecurityParametersHandshake()
+        {
+            return securityParameters;
+        }
+
+        void setPRFAlgorithm(int prfAlgorithm)
+        {
+            securityParameters.prfAlgorithm = prfAlgorithm;
+            securityParameters.prfCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(prfAlgorithm);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.bouncycastle.tls.crypto.test;
+
+import java.security.SecureRandom;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCryptoProvider;
+
+public class JcaBcTlsCryptoTest
+    extends TlsCryptoTest
+{
+    public JcaBcTlsCryptoTest()
+    {
+        super(new JcaTlsCryptoProvider().setProvider(new BouncyCastleProvider()).setLightweightKeyExchange(true)
+            .create(new SecureRandom()));
+    }
+}
@@ -3,6 +3,25 @@ package org.bouncycastle.tls.crypto.test;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V3TBSCertificateGenerator;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.crypto.util.SubjectPublicKeyInfoFactory;
 
 import org.bouncycastle.tls.CombinedHash;
 import org.bouncycastle.tls.DefaultTlsDHGroupVerifier;
@@ -29,10 +48,15 @@ import org.bouncycastle.tls.crypto.TlsDHDomain;
 import org.bouncycastle.tls.crypto.TlsECConfig;
 import org.bouncycastle.tls.crypto.TlsECDomain;
 import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.TlsHybridAgreement;
+import org.bouncycastle.tls.crypto.TlsPQCConfig;
+import org.bouncycastle.tls.crypto.TlsPQCKemMode;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.tls.crypto.TlsStreamVerifier;
 import org.bouncycastle.tls.crypto.TlsVerifier;
+import org.bouncycastle.tls.crypto.impl.AbstractTlsCrypto;
+import org.bouncycastle.tls.crypto.impl.TlsCertificateCache;
 import org.bouncycastle.tls.test.TlsTestUtils;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
@@ -199,6 +223,83 @@ public abstract class TlsCryptoTest
         }
     }
 
+    public void testCertificateCache() throws Exception
+    {
+        if (!(crypto instanceof AbstractTlsCrypto))
+        {
+            return;
+        }
+
+        AbstractTlsCrypto abstractCrypto = (AbstractTlsCrypto)crypto;
+        TlsCryptoParameters cryptoParams = new TestTlsCryptoParameters(ProtocolVersion.TLSv13);
+
+        byte[] ecdsaEncoding = loadCredentialedSigner13(cryptoParams, SignatureScheme.ecdsa_secp256r1_sha256)
+            .getCertificate().getCertificateAt(0).getEncoded();
+        byte[] rsaEncoding = loadCredentialedSigner13(cryptoParams, SignatureScheme.rsa_pss_rsae_sha256)
+            .getCertificate().getCertificateAt(0).getEncoded();
+
+        TlsCertificateCache cache = new TlsCertificateCache(1);
+        abstractCrypto.setCertificateCache(cache);
+        try
+        {
+            TlsCertificate ecdsaCert = crypto.createCertificate(ecdsaEncoding);
+            assertTrue(Arrays.areEqual(ecdsaEncoding, ecdsaCert.getEncoded()));
+            assertTrue(ecdsaCert.supportsSignatureAlgorithm(SignatureAlgorithm.ecdsa));
+
+            // Same encoding (in a different array) is served from the cache
+            assertSame(ecdsaCert, crypto.createCertificate(Arrays.clone(ecdsaEncoding)));
+
+            TlsCertificate rsaCert = crypto.createCertificate(rsaEncoding);
+            assertNotSame(ecdsaCert, rsaCert);
+            assertTrue(rsaCert.supportsSignatureAlgorithm(SignatureAlgorithm.rsa_pss_rsae_sha256));
+            assertEquals(1, cache.size());
+
+            // Evicted by the RSA certificate
+            assertNotSame(ecdsaCert, crypto.createCertificate(ecdsaEncoding));
+        }
+        finally
+        {
+            abstractCrypto.setCertificateCache(null);
+        }
+    }
+
+    public void testCertificateCacheUndecodableKey() throws Exception
+    {
+        if (!(crypto instanceof AbstractTlsCrypto))
+        {
+            return;
+        }
+
+        AbstractTlsCrypto abstractCrypto = (AbstractTlsCrypto)crypto;
+        TlsCryptoParameters cryptoParams = new TestTlsCryptoParameters(ProtocolVersion.TLSv13);
+
+        byte[] kyberEncoding = createKyberCertificate();
+        byte[] ecdsaEncoding = loadCredentialedSigner13(cryptoParams, SignatureScheme.ecdsa_secp256r1_sha256)
+            .getCertificate().getCertificateAt(0).getEncoded();
+
+        TlsCertificateCache cache = new TlsCertificateCache(4);
+        abstractCrypto.setCertificateCache(cache);
+        try
+        {
+            // A KEM key isn't a signature/agreement key, but the certificate must still be created
+            TlsCertificate kyberCert = crypto.createCertificate(kyberEncoding);
+            assertTrue(Arrays.areEqual(kyberEncoding, kyberCert.getEncoded()));
+
+            // Only cached if the provider could decode the key
+            TlsCertificate kyberCert2 = crypto.createCertificate(Arrays.clone(kyberEncoding));
+            assertTrue(Arrays.areEqual(kyberEncoding, kyberCert2.getEncoded()));
+            assertEquals(kyberCert == kyberCert2 ? 1 : 0, cache.size());
+
+            // The cache remains usable for other certificates
+            TlsCertificate ecdsaCert = crypto.createCertificate(ecdsaEncoding);
+            assertSame(ecdsaCert, crypto.createCertificate(Arrays.clone(ecdsaEncoding)));
+        }
+        finally
+        {
+            abstractCrypto.setCertificateCache(null);
+        }
+    }
+
     public void testDHDomain() throws Exception
     {
         if (!crypto.hasDHAgreement())
@@ -260,6 +361,55 @@ public abstract class TlsCryptoTest
         }
     }
 
+    public void testHybridAgreement() throws Exception
+    {
+        if (!crypto.hasPQCAgreement() || !crypto.hasECDHAgreement())
+        {
+            return;
+        }
+
+        int[] hybridGroups = new int[]{ NamedGroup.secp256Kyber512, NamedGroup.secp384Kyber768,
+            NamedGroup.secp521Kyber1024, NamedGroup.x25519Kyber512, NamedGroup.x25519Kyber768,
+            NamedGroup.x448Kyber768 };
+
+        for (int i = 0; i < hybridGroups.length; ++i)
+        {
+            int hybridGroup = hybridGroups[i];
+            if (!crypto.hasNamedGroup(hybridGroup))
+            {
+                continue;
+            }
+
+            for (int round = 0; round < 3; ++round)
+            {
+                implTestHybridAgreement(hybridGroup);
+            }
+        }
+    }
+
+    public void testHybridSharedClassicalKeyPair() throws Exception
+    {
+        if (!crypto.hasPQCAgreement() || !crypto.hasECDHAgreement())
+        {
+            return;
+        }
+
+        int[] hybridGroups = new int[]{ NamedGroup.secp256Kyber512, NamedGroup.secp384Kyber768,
+            NamedGroup.secp521Kyber1024, NamedGroup.x25519Kyber512, NamedGroup.x25519Kyber768,
+            NamedGroup.x448Kyber768 };
+
+        for (int i = 0; i < hybridGroups.length; ++i)
+        {
+            int hybridGroup = hybridGroups[i];
+            if (!crypto.hasNamedGroup(hybridGroup))
+            {
+                continue;
+            }
+
+            implTestHybridSharedClassicalKeyPair(hybridGroup);
+        }
+    }
+
     public void testHKDF() throws IOException
     {
         /*
@@ -597,6 +747,35 @@ public abstract class TlsCryptoTest
         }
     }
 
+    private static byte[] createKyberCertificate() throws IOException
+    {
+        KyberKeyPairGenerator kpGen = new KyberKeyPairGenerator();
+        kpGen.init(new KyberKeyGenerationParameters(new SecureRandom(), KyberParameters.kyber768));
+        AsymmetricCipherKeyPair kp = kpGen.generateKeyPair();
+
+        // NOTE: Certificates are not verified when created, so a placeholder signature suffices
+        AlgorithmIdentifier sigAlgID = new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption,
+            DERNull.INSTANCE);
+        X500Name name = new X500Name("CN=Kyber");
+        long now = System.currentTimeMillis();
+
+        V3TBSCertificateGenerator tbsGen = new V3TBSCertificateGenerator();
+        tbsGen.setSerialNumber(new ASN1Integer(now));
+        tbsGen.setSignature(sigAlgID);
+        tbsGen.setIssuer(name);
+        tbsGen.setStartDate(new Time(new Date(now - 60000L)));
+        tbsGen.setEndDate(new Time(new Date(now + 3600000L)));
+        tbsGen.setSubject(name);
+        tbsGen.setSubjectPublicKeyInfo(SubjectPublicKeyInfoFactory.createSubjectPublicKeyInfo(kp.getPublic()));
+
+        ASN1EncodableVector v = new ASN1EncodableVector(3);
+        v.add(tbsGen.generateTBSCertificate());
+        v.add(sigAlgID);
+        v.add(new DERBitString(new byte[256]));
+
+        return new DERSequence(v).getEncoded(ASN1Encoding.DER);
+    }
+
     private void expect(TlsSecret secret, String expectedHex)
     {
         expect(extract(secret), hex(expectedHex));
@@ -696,6 +875,64 @@ public abstract class TlsCryptoTest
         }
     }
 
+    private void implTestHybridAgreement(int hybridGroup) throws IOException
+    {
+        TlsAgreement client = crypto.createPQCDomain(new TlsPQCConfig(hybridGroup, TlsPQCKemMode.PQC_KEM_CLIENT))
+            .createPQC();
+        TlsAgreement server = crypto.createPQCDomain(new TlsPQCConfig(hybridGroup, TlsPQCKemMode.PQC_KEM_SERVER))
+            .createPQC();
+
+        byte[] clientShare = client.generateEphemeral();
+        server.receivePeerValue(clientShare);
+        byte[] serverShare = server.generateEphemeral();
+        client.receivePeerValue(serverShare);
+
+        // The peer values must not be retained, since the caller is free to re-use them
+        Arrays.fill(clientShare, (byte)0);
+        Arrays.fill(serverShare, (byte)0);
+
+        byte[] clientSecret = extract(client.calculateSecret());
+        byte[] serverSecret = extract(server.calculateSecret());
+
+        assertArrayEquals(clientSecret, serverSecret);
+
+        // The classical shared secret (one field element) comes first, followed by the 32-byte Kyber secret
+        int classicalGroup = ((TlsHybridAgreement)client).getClassicalNamedGroup();
+        assertEquals((NamedGroup.getCurveBits(classicalGroup) + 7) / 8 + 32, clientSecret.length);
+    }
+
+    private void implTestHybridSharedClassicalKeyPair(int hybridGroup) throws IOException
+    {
+        TlsAgreement client = crypto.createPQCDomain(new TlsPQCConfig(hybridGroup, TlsPQCKemMode.PQC_KEM_CLIENT))
+            .createPQC();
+        assertTrue(client instanceof TlsHybridAgreement);
+
+        TlsHybridAgreement hybridClient = (TlsHybridAgreement)client;
+
+        int classicalGroup = hybridClient.getClassicalNamedGroup();
+        assertTrue(crypto.hasNamedGroup(classicalGroup));
+
+        TlsAgreement classicalClient = crypto.createECDomain(new TlsECConfig(classicalGroup)).createECDH();
+
+        // No key pair to share until the classical agreement has generated one
+        assertFalse(hybridClient.shareClassicalKeyPair(classicalClient));
+
+        byte[] classicalShare = classicalClient.generateEphemeral();
+
+        assertTrue(hybridClient.shareClassicalKeyPair(classicalClient));
+
+        byte[] hybridShare = hybridClient.generateEphemeral();
+        assertArrayEquals(classicalShare, Arrays.copyOf(hybridShare, classicalShare.length));
+
+        // The hybrid agreement (using the shared key pair) must still agree with a server
+        TlsAgreement server = crypto.createPQCDomain(new TlsPQCConfig(hybridGroup, TlsPQCKemMode.PQC_KEM_SERVER))
+            .createPQC();
+        server.receivePeerValue(hybridShare);
+        hybridClient.receivePeerValue(server.generateEphemeral());
+
+        assertArrayEquals(extract(server.calculateSecret()), extract(hybridClient.calculateSecret()));
+    }
+
     private void implTestSignatureLegacy(TlsCredentialedSigner credentialedSigner) throws IOException
     {
         byte[] message = crypto.createNonceGenerator(TlsUtils.EMPTY_BYTES).generateNonce(100);
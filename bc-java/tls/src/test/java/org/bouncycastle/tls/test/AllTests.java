@@ -5,6 +5,7 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import org.bouncycastle.test.PrintTestResult;
+import org.bouncycastle.tls.DeferredHashTest;
 
 public class AllTests
     extends TestCase
@@ -25,9 +26,19 @@ public class AllTests
         suite.addTestSuite(DTLSProtocolTest.class);
         suite.addTestSuite(DTLSPSKProtocolTest.class);
         suite.addTestSuite(DTLSRawKeysProtocolTest.class);
+        suite.addTestSuite(DTLSMultiplexServerTest.class);
+        suite.addTestSuite(DTLSRecordPackingTest.class);
+        suite.addTestSuite(DTLSReplayWindowTest.class);
+        suite.addTestSuite(DeferredHashTest.class);
+        suite.addTestSuite(DatagramChannelTransportTest.class);
+        suite.addTestSuite(KeyShareSelectionModeTest.class);
+        suite.addTestSuite(LoadAdaptiveNamedGroupSelectorTest.class);
         suite.addTestSuite(OCSPTest.class);
+        suite.addTestSuite(OCSPStaplingTest.class);
         suite.addTestSuite(PRFTest.class);
+        suite.addTestSuite(Tls13EarlyDataTest.class);
         suite.addTestSuite(Tls13PSKProtocolTest.class);
+        suite.addTestSuite(TlsBufferPoolTest.class);
         suite.addTestSuite(TlsProtocolNonBlockingTest.class);
         suite.addTestSuite(TlsProtocolTest.class);
         suite.addTestSuite(TlsPSKProtocolTest.class);
@@ -35,6 +46,7 @@ public class AllTests
         suite.addTestSuite(TlsSRPProtocolTest.class);
         suite.addTestSuite(TlsUtilsTest.class);
         suite.addTestSuite(TlsKyberHybridProtocolTest.class);
+        suite.addTestSuite(TlsKEMAuthenticationProtocolTest.class);
 
         suite.addTest(DTLSTestSuite.suite());
         suite.addTest(TlsTestSuite.suite());
@@ -0,0 +1,370 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSMultiplexHandler;
+import org.bouncycastle.tls.DTLSMultiplexServer;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramTransport;
+import org.bouncycastle.tls.TlsServer;
+import org.bouncycastle.tls.UDPTransport;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+
+import junit.framework.TestCase;
+
+public class DTLSMultiplexServerTest
+    extends TestCase
+{
+    private static final int MTU = 1500;
+
+    private DatagramChannel channel;
+    private ExecutorService executor;
+    private EchoHandler handler;
+    private DTLSMultiplexServer server;
+    private Thread serverThread;
+
+    protected void setUp() throws Exception
+    {
+        channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+
+        executor = Executors.newFixedThreadPool(2);
+        handler = new EchoHandler();
+        server = new DTLSMultiplexServer(new BcTlsCrypto(), channel, MTU, executor, handler);
+
+        serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    server.run();
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        };
+        serverThread.start();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        server.close();
+        serverThread.join();
+        executor.shutdown();
+        channel.close();
+    }
+
+    public void testMultipleAssociations() throws Exception
+    {
+        ClientThread[] clients = new ClientThread[4];
+        for (int i = 0; i < clients.length; ++i)
+        {
+            clients[i] = new ClientThread();
+            clients[i].start();
+        }
+        for (int i = 0; i < clients.length; ++i)
+        {
+            clients[i].join();
+            if (null != clients[i].failure)
+            {
+                throw clients[i].failure;
+            }
+        }
+
+        waitFor(handler.closedCount, clients.length);
+
+        assertEquals(clients.length, handler.acceptedCount.get());
+        assertEquals(0, server.getAssociationCount());
+    }
+
+    public void testConnectionIDAddressChange() throws Exception
+    {
+        handler.useConnectionIDs = true;
+
+        SwitchableTransport clientTransport = new SwitchableTransport(connectClientSocket());
+
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new ConnectionIDClient(), clientTransport);
+        echo(dtlsClient, 1);
+
+        // Move to a new local port, as a NAT rebinding would; the connection ID keeps the association
+        clientTransport.switchTo(connectClientSocket());
+        echo(dtlsClient, 2);
+
+        assertEquals(1, server.getAssociationCount());
+
+        dtlsClient.close();
+
+        waitFor(handler.closedCount, 1);
+        assertEquals(1, handler.acceptedCount.get());
+        assertEquals(0, server.getAssociationCount());
+    }
+
+    public void testIdleTimeout() throws Exception
+    {
+        server.setIdleTimeoutMillis(200);
+
+        UDPTransport clientTransport = new UDPTransport(connectClientSocket(), MTU);
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null), clientTransport);
+        echo(dtlsClient, 1);
+
+        waitFor(handler.closedCount, 1);
+        assertEquals(0, server.getAssociationCount());
+
+        dtlsClient.close();
+    }
+
+    public void testSilentPeers() throws Exception
+    {
+        assertEquals(DTLSMultiplexServer.DEFAULT_HANDSHAKE_TIMEOUT_MILLIS, server.getHandshakeTimeoutMillis());
+        assertEquals(DTLSMultiplexServer.DEFAULT_IDLE_TIMEOUT_MILLIS, server.getIdleTimeoutMillis());
+
+        server.setHandshakeTimeoutMillis(500);
+
+        // Each silent peer gets its handshake started, then holds an executor thread by going silent
+        int executorThreads = 2;
+        for (int i = 0; i < executorThreads; ++i)
+        {
+            SilentTransport silentTransport = new SilentTransport(connectClientSocket(), 2);
+            try
+            {
+                new DTLSClientProtocol().connect(new TimeoutClient(200), silentTransport);
+                fail("silent peer completed handshake");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+
+        // The silent peers' handshakes time out, freeing the executor for this one
+        UDPTransport clientTransport = new UDPTransport(connectClientSocket(), MTU);
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new TimeoutClient(10000), clientTransport);
+        echo(dtlsClient, 1);
+
+        dtlsClient.close();
+
+        waitFor(handler.closedCount, executorThreads + 1);
+        assertEquals(1, handler.acceptedCount.get());
+        assertEquals(0, server.getAssociationCount());
+    }
+
+    private DatagramSocket connectClientSocket() throws IOException
+    {
+        DatagramSocket socket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        socket.connect(channel.socket().getLocalSocketAddress());
+        return socket;
+    }
+
+    private static void echo(DTLSTransport dtlsClient, int value) throws IOException
+    {
+        byte[] data = new byte[100];
+        Arrays.fill(data, (byte)value);
+        dtlsClient.send(data, 0, data.length);
+
+        byte[] buf = new byte[dtlsClient.getReceiveLimit()];
+        int length = dtlsClient.receive(buf, 0, buf.length, 5000);
+
+        assertEquals(data.length, length);
+        assertTrue(Arrays.areEqual(data, Arrays.copyOf(buf, length)));
+    }
+
+    private static void waitFor(AtomicInteger count, int expected) throws InterruptedException
+    {
+        for (int i = 0; i < 100 && count.get() < expected; ++i)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, count.get());
+    }
+
+    class ClientThread
+        extends Thread
+    {
+        Exception failure = null;
+
+        public void run()
+        {
+            try
+            {
+                UDPTransport clientTransport = new UDPTransport(connectClientSocket(), MTU);
+                DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null),
+                    clientTransport);
+
+                for (int i = 1; i <= 5; ++i)
+                {
+                    echo(dtlsClient, i);
+                }
+
+                dtlsClient.close();
+            }
+            catch (Exception e)
+            {
+                this.failure = e;
+            }
+        }
+    }
+
+    static class EchoHandler
+        implements DTLSMultiplexHandler
+    {
+        final AtomicInteger acceptedCount = new AtomicInteger(0);
+        final AtomicInteger closedCount = new AtomicInteger(0);
+        final AtomicInteger nextConnectionID = new AtomicInteger(1);
+
+        volatile boolean useConnectionIDs = false;
+
+        public TlsServer createServer(SocketAddress peerAddress) throws IOException
+        {
+            if (!useConnectionIDs)
+            {
+                return new MockDTLSServer();
+            }
+
+            final byte[] connectionID = Pack.intToBigEndian(nextConnectionID.getAndIncrement());
+
+            return new MockDTLSServer()
+            {
+                protected byte[] getNewConnectionID()
+                {
+                    return connectionID;
+                }
+            };
+        }
+
+        public void notifyAccepted(DTLSTransport transport, SocketAddress peerAddress)
+        {
+            acceptedCount.incrementAndGet();
+        }
+
+        public void notifyDataReceived(DTLSTransport transport, byte[] buf, int off, int len) throws IOException
+        {
+            transport.send(buf, off, len);
+        }
+
+        public void notifyClosed(DTLSTransport transport, SocketAddress peerAddress)
+        {
+            closedCount.incrementAndGet();
+        }
+    }
+
+    static class ConnectionIDClient
+        extends MockDTLSClient
+    {
+        ConnectionIDClient()
+        {
+            super(null);
+        }
+
+        protected byte[] getNewConnectionID()
+        {
+            return new byte[]{ 0x42 };
+        }
+    }
+
+    static class TimeoutClient
+        extends MockDTLSClient
+    {
+        private final int handshakeTimeoutMillis;
+
+        TimeoutClient(int handshakeTimeoutMillis)
+        {
+            super(null);
+
+            this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+        }
+
+        public int getHandshakeTimeoutMillis()
+        {
+            return handshakeTimeoutMillis;
+        }
+    }
+
+    /**
+     * A transport that stops sending after a given number of datagrams.
+     */
+    static class SilentTransport
+        extends UDPTransport
+    {
+        private int remainingSends;
+
+        SilentTransport(DatagramSocket socket, int sends) throws IOException
+        {
+            super(socket, MTU);
+
+            this.remainingSends = sends;
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            if (remainingSends > 0)
+            {
+                --remainingSends;
+                super.send(buf, off, len);
+            }
+        }
+    }
+
+    static class SwitchableTransport
+        implements DatagramTransport
+    {
+        private volatile UDPTransport transport;
+        private volatile DatagramSocket socket;
+
+        SwitchableTransport(DatagramSocket socket) throws IOException
+        {
+            switchTo(socket);
+        }
+
+        void switchTo(DatagramSocket socket) throws IOException
+        {
+            DatagramSocket previous = this.socket;
+
+            this.transport = new UDPTransport(socket, MTU);
+            this.socket = socket;
+
+            if (null != previous)
+            {
+                previous.close();
+            }
+        }
+
+        public int getReceiveLimit()
+        {
+            return transport.getReceiveLimit();
+        }
+
+        public int getSendLimit()
+        {
+            return transport.getSendLimit();
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            return transport.receive(buf, off, len, waitMillis);
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            transport.send(buf, off, len);
+        }
+
+        public void close() throws IOException
+        {
+            transport.close();
+        }
+    }
+}
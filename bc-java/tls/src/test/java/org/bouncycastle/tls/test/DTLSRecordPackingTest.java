@@ -0,0 +1,303 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.bouncycastle.tls.ContentType;
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSServerProtocol;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramTransport;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Counts the datagrams of a DTLS 1.2 handshake, where records for a flight should be packed together.
+ */
+public class DTLSRecordPackingTest
+    extends TestCase
+{
+    private static final int RECORD_HEADER_LENGTH = 13;
+
+    public void testFullHandshakeDatagramCount() throws Exception
+    {
+        CountingDatagramTransport[] transports = runHandshake(1500);
+        CountingDatagramTransport client = transports[0], server = transports[1];
+
+        System.out.println("DTLS handshake datagrams (MTU 1500): client " + client.getCount() + " ("
+            + client.getTotalLength() + " bytes), server " + server.getCount() + " (" + server.getTotalLength()
+            + " bytes)");
+
+        // ServerHello..ServerHelloDone, then ChangeCipherSpec and Finished in one datagram
+        int serverCount = server.getCount();
+        assertEquals(minDatagrams(server, 0, serverCount - 1) + 1, serverCount);
+
+        // ClientHello, then Certificate..Finished
+        int clientCount = client.getCount();
+        assertEquals(1 + minDatagrams(client, 1, clientCount), clientCount);
+
+        assertDatagramsFilled(server);
+        assertDatagramsFilled(client);
+    }
+
+    public void testSmallMTUDatagramCount() throws Exception
+    {
+        CountingDatagramTransport[] transports = runHandshake(576);
+        CountingDatagramTransport server = transports[1];
+
+        System.out.println("DTLS handshake datagrams (MTU 576): server " + server.getCount() + " ("
+            + server.getTotalLength() + " bytes)");
+
+        int serverCount = server.getCount();
+        assertEquals(minDatagrams(server, 0, serverCount - 1) + 1, serverCount);
+        assertDatagramsFilled(server);
+    }
+
+    /*
+     * The finished message is sent in the next epoch, so must be sized for that epoch's cipher (after the
+     * change_cipher_spec record) to share its datagram.
+     */
+    public void testFinishedPackedWithChangeCipherSpec() throws Exception
+    {
+        for (int mtu = 500; mtu <= 1500; mtu += 25)
+        {
+            CountingDatagramTransport[] transports = runHandshake(mtu);
+            for (int i = 0; i < transports.length; ++i)
+            {
+                assertEquals("MTU " + mtu, 0, transports[i].getSplitChangeCipherSpecs());
+            }
+        }
+    }
+
+    /*
+     * Dropping datagrams causes whole (packed) flights to be retransmitted.
+     */
+    public void testHandshakeWithLoss() throws Exception
+    {
+        CountingDatagramTransport[] transports = runHandshake(1500, 2);
+        CountingDatagramTransport client = transports[0], server = transports[1];
+
+        System.out.println("DTLS handshake datagrams (MTU 1500, with loss): client " + client.getCount()
+            + ", server " + server.getCount());
+
+        assertTrue(client.getDropped() + server.getDropped() > 0);
+    }
+
+    /*
+     * The fewest datagrams that could hold the data sent in the given range of (one flight's) datagrams.
+     */
+    private static int minDatagrams(CountingDatagramTransport transport, int from, int to)
+    {
+        int length = 0;
+        for (int i = from; i < to; ++i)
+        {
+            length += transport.getLength(i);
+        }
+
+        int sendLimit = transport.getSendLimit();
+        return (length + sendLimit - 1) / sendLimit;
+    }
+
+    /*
+     * Every datagram but the last of a flight should be close to the send limit.
+     */
+    private static void assertDatagramsFilled(CountingDatagramTransport transport)
+    {
+        int sendLimit = transport.getSendLimit();
+        int full = 0;
+        for (int i = 0; i < transport.getCount(); ++i)
+        {
+            if (transport.getLength(i) > sendLimit - 64)
+            {
+                ++full;
+            }
+        }
+
+        int totalLength = transport.getTotalLength();
+        assertTrue(full >= totalLength / sendLimit - 1);
+    }
+
+    private static CountingDatagramTransport[] runHandshake(int mtu) throws Exception
+    {
+        return runHandshake(mtu, 0);
+    }
+
+    private static CountingDatagramTransport[] runHandshake(int mtu, int dropInterval) throws Exception
+    {
+        MockDatagramAssociation network = new MockDatagramAssociation(mtu);
+
+        final CountingDatagramTransport clientTransport = new CountingDatagramTransport(network.getClient());
+        final CountingDatagramTransport serverTransport = new CountingDatagramTransport(network.getServer());
+        clientTransport.dropInterval = dropInterval;
+        serverTransport.dropInterval = dropInterval;
+
+        final Exception[] serverFailure = new Exception[1];
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    DTLSTransport dtlsServer = new DTLSServerProtocol().accept(new MockDTLSServer(),
+                        serverTransport);
+
+                    byte[] buf = new byte[dtlsServer.getReceiveLimit()];
+                    int length = dtlsServer.receive(buf, 0, buf.length, 5000);
+                    dtlsServer.send(buf, 0, length);
+                    dtlsServer.close();
+                }
+                catch (Exception e)
+                {
+                    serverFailure[0] = e;
+                }
+            }
+        };
+        serverThread.start();
+
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null), clientTransport);
+
+        // Only count the handshake
+        CountingDatagramTransport clientCount = clientTransport.snapshot();
+        CountingDatagramTransport serverCount = serverTransport.snapshot();
+        clientTransport.dropInterval = 0;
+        serverTransport.dropInterval = 0;
+
+        byte[] data = new byte[100];
+        Arrays.fill(data, (byte)1);
+        dtlsClient.send(data, 0, data.length);
+
+        byte[] buf = new byte[dtlsClient.getReceiveLimit()];
+        assertEquals(data.length, dtlsClient.receive(buf, 0, buf.length, 5000));
+        dtlsClient.close();
+
+        serverThread.join();
+        if (null != serverFailure[0])
+        {
+            throw serverFailure[0];
+        }
+
+        return new CountingDatagramTransport[]{ clientCount, serverCount };
+    }
+
+    static class CountingDatagramTransport
+        implements DatagramTransport
+    {
+        private final DatagramTransport transport;
+        private final Vector lengths = new Vector();
+        private int dropped = 0;
+        private int splitChangeCipherSpecs = 0;
+
+        // Drop every n-th datagram sent (if non-zero)
+        volatile int dropInterval = 0;
+
+        CountingDatagramTransport(DatagramTransport transport)
+        {
+            this.transport = transport;
+        }
+
+        synchronized CountingDatagramTransport snapshot()
+        {
+            CountingDatagramTransport copy = new CountingDatagramTransport(transport);
+            copy.lengths.addAll(lengths);
+            copy.dropped = dropped;
+            copy.splitChangeCipherSpecs = splitChangeCipherSpecs;
+            return copy;
+        }
+
+        synchronized int getCount()
+        {
+            return lengths.size();
+        }
+
+        synchronized int getDropped()
+        {
+            return dropped;
+        }
+
+        /*
+         * The number of datagrams ending with a change_cipher_spec record, i.e. with the finished message
+         * (in the next epoch) sent separately.
+         */
+        synchronized int getSplitChangeCipherSpecs()
+        {
+            return splitChangeCipherSpecs;
+        }
+
+        synchronized int getLength(int index)
+        {
+            return ((Integer)lengths.elementAt(index)).intValue();
+        }
+
+        synchronized int getTotalLength()
+        {
+            int total = 0;
+            for (int i = 0; i < lengths.size(); ++i)
+            {
+                total += getLength(i);
+            }
+            return total;
+        }
+
+        public int getReceiveLimit() throws IOException
+        {
+            return transport.getReceiveLimit();
+        }
+
+        public int getSendLimit()
+        {
+            try
+            {
+                return transport.getSendLimit();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            return transport.receive(buf, off, len, waitMillis);
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            synchronized (this)
+            {
+                lengths.addElement(Integer.valueOf(len));
+
+                if (ContentType.change_cipher_spec == getLastRecordType(buf, off, len))
+                {
+                    ++splitChangeCipherSpecs;
+                }
+
+                int dropInterval = this.dropInterval;
+                if (dropInterval > 0 && lengths.size() % dropInterval == 0)
+                {
+                    ++dropped;
+                    return;
+                }
+            }
+            transport.send(buf, off, len);
+        }
+
+        public void close() throws IOException
+        {
+            transport.close();
+        }
+
+        private static short getLastRecordType(byte[] buf, int off, int len)
+        {
+            short recordType = -1;
+            int pos = off, end = off + len;
+            while (pos + RECORD_HEADER_LENGTH <= end)
+            {
+                recordType = TlsUtils.readUint8(buf, pos);
+                pos += RECORD_HEADER_LENGTH + TlsUtils.readUint16(buf, pos + RECORD_HEADER_LENGTH - 2);
+            }
+            return recordType;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSServerProtocol;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramTransport;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Check which reordered and duplicated records a DTLS server accepts, for different replay window sizes.
+ */
+public class DTLSReplayWindowTest
+    extends TestCase
+{
+    private static final int RECORD_COUNT = 200;
+
+    public void testReorderedRecordsDefaultWindow() throws Exception
+    {
+        // Sent in reverse order, only records at most 63 behind the first (newest) one are accepted
+        assertEquals(64, runReordered(64, false));
+    }
+
+    public void testReorderedRecordsWideWindow() throws Exception
+    {
+        assertEquals(RECORD_COUNT, runReordered(1024, false));
+    }
+
+    public void testDuplicatedRecordsWideWindow() throws Exception
+    {
+        assertEquals(RECORD_COUNT, runReordered(1024, true));
+    }
+
+    public void testSmallWindow() throws Exception
+    {
+        assertEquals(20, runReordered(20, true));
+    }
+
+    private static int runReordered(final int windowSize, boolean duplicate) throws Exception
+    {
+        MockDatagramAssociation network = new MockDatagramAssociation(1500);
+
+        ReorderingDatagramTransport clientTransport = new ReorderingDatagramTransport(network.getClient());
+        final DatagramTransport serverTransport = network.getServer();
+
+        final int[] received = new int[1];
+        final Exception[] serverFailure = new Exception[1];
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    MockDTLSServer server = new MockDTLSServer()
+                    {
+                        public int getReplayWindowSize()
+                        {
+                            return windowSize;
+                        }
+                    };
+
+                    DTLSTransport dtlsServer = new DTLSServerProtocol().accept(server, serverTransport);
+
+                    byte[] buf = new byte[dtlsServer.getReceiveLimit()];
+                    while (dtlsServer.receive(buf, 0, buf.length, 1000) >= 0)
+                    {
+                        ++received[0];
+                    }
+                    dtlsServer.close();
+                }
+                catch (Exception e)
+                {
+                    serverFailure[0] = e;
+                }
+            }
+        };
+        serverThread.start();
+
+        MockDTLSClient client = new MockDTLSClient(null)
+        {
+            public int getReplayWindowSize()
+            {
+                return windowSize;
+            }
+        };
+
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(client, clientTransport);
+
+        clientTransport.reverseNext(RECORD_COUNT, duplicate);
+
+        for (int i = 0; i < RECORD_COUNT; ++i)
+        {
+            byte[] data = new byte[10];
+            Arrays.fill(data, (byte)i);
+            dtlsClient.send(data, 0, data.length);
+        }
+
+        serverThread.join();
+        dtlsClient.close();
+
+        if (null != serverFailure[0])
+        {
+            throw serverFailure[0];
+        }
+
+        return received[0];
+    }
+
+    static class ReorderingDatagramTransport
+        implements DatagramTransport
+    {
+        private final DatagramTransport transport;
+        private final Vector held = new Vector();
+
+        private int holdCount = 0;
+        private boolean duplicate = false;
+
+        ReorderingDatagramTransport(DatagramTransport transport)
+        {
+            this.transport = transport;
+        }
+
+        /*
+         * Hold back the next 'count' datagrams, then send them in reverse order (optionally twice each).
+         */
+        synchronized void reverseNext(int count, boolean duplicate)
+        {
+            this.holdCount = count;
+            this.duplicate = duplicate;
+        }
+
+        public int getReceiveLimit() throws IOException
+        {
+            return transport.getReceiveLimit();
+        }
+
+        public int getSendLimit() throws IOException
+        {
+            return transport.getSendLimit();
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            return transport.receive(buf, off, len, waitMillis);
+        }
+
+        public synchronized void send(byte[] buf, int off, int len) throws IOException
+        {
+            if (holdCount < 1)
+            {
+                transport.send(buf, off, len);
+                return;
+            }
+
+            held.addElement(Arrays.copyOfRange(buf, off, off + len));
+
+            if (held.size() == holdCount)
+            {
+                for (int i = held.size() - 1; i >= 0; --i)
+                {
+                    byte[] datagram = (byte[])held.elementAt(i);
+                    transport.send(datagram, 0, datagram.length);
+                    if (duplicate)
+                    {
+                        transport.send(datagram, 0, datagram.length);
+                    }
+                }
+
+                held.removeAllElements();
+                holdCount = 0;
+            }
+        }
+
+        public void close() throws IOException
+        {
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSServerProtocol;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramChannelTransport;
+
+import junit.framework.TestCase;
+
+public class DatagramChannelTransportTest
+    extends TestCase
+{
+    private static final int MTU = 1500;
+    private static final int MESSAGE_COUNT = 10;
+
+    private DatagramChannelTransport clientTransport, serverTransport;
+
+    protected void setUp() throws Exception
+    {
+        InetAddress localhost = InetAddress.getByName("127.0.0.1");
+
+        DatagramChannel clientChannel = DatagramChannel.open();
+        DatagramChannel serverChannel = DatagramChannel.open();
+        clientChannel.socket().bind(new InetSocketAddress(localhost, 0));
+        serverChannel.socket().bind(new InetSocketAddress(localhost, 0));
+        clientChannel.connect(serverChannel.socket().getLocalSocketAddress());
+        serverChannel.connect(clientChannel.socket().getLocalSocketAddress());
+
+        clientTransport = new BufferOnlyTransport(clientChannel, MTU);
+        serverTransport = new BufferOnlyTransport(serverChannel, MTU);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        clientTransport.close();
+        serverTransport.close();
+    }
+
+    public void testReceiveTimeout() throws Exception
+    {
+        ByteBuffer buf = ByteBuffer.allocateDirect(clientTransport.getReceiveLimit());
+
+        long start = System.currentTimeMillis();
+        assertEquals(-1, clientTransport.receive(buf, 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(0, buf.position());
+    }
+
+    public void testDirectBuffers() throws Throwable
+    {
+        runEcho(true);
+    }
+
+    public void testHeapBuffers() throws Throwable
+    {
+        runEcho(false);
+    }
+
+    private void runEcho(final boolean direct) throws Throwable
+    {
+        final Throwable[] serverFailure = new Throwable[1];
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    DTLSTransport dtlsServer = new DTLSServerProtocol().accept(new MockDTLSServer(),
+                        serverTransport);
+
+                    ByteBuffer buf = allocate(dtlsServer.getReceiveLimit(), direct);
+                    for (int i = 0; i < MESSAGE_COUNT; ++i)
+                    {
+                        buf.clear();
+                        assertTrue(dtlsServer.receive(buf, 5000) >= 0);
+                        buf.flip();
+                        dtlsServer.send(buf);
+                    }
+                    dtlsServer.close();
+                }
+                catch (Throwable t)
+                {
+                    serverFailure[0] = t;
+                }
+            }
+        };
+        serverThread.start();
+
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null), clientTransport);
+
+        ByteBuffer out = allocate(dtlsClient.getSendLimit(), direct);
+        ByteBuffer in = allocate(dtlsClient.getReceiveLimit(), direct);
+
+        for (int i = 1; i <= MESSAGE_COUNT; ++i)
+        {
+            out.clear();
+            for (int j = 0; j < 100 * i; ++j)
+            {
+                out.put((byte)(i + j));
+            }
+            out.flip();
+
+            dtlsClient.send(out);
+            assertFalse(out.hasRemaining());
+
+            in.clear();
+            assertEquals(100 * i, dtlsClient.receive(in, 5000));
+            assertEquals(100 * i, in.position());
+
+            in.flip();
+            out.rewind();
+            assertEquals(out, in);
+        }
+
+        dtlsClient.close();
+        serverThread.join();
+
+        if (null != serverFailure[0])
+        {
+            throw serverFailure[0];
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct)
+    {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /*
+     * Checks that the DTLS record layer only uses the ByteBuffer methods of a DatagramBufferTransport.
+     */
+    private static class BufferOnlyTransport
+        extends DatagramChannelTransport
+    {
+        BufferOnlyTransport(DatagramChannel channel, int mtu) throws IOException
+        {
+            super(channel, mtu);
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            throw new IllegalStateException("byte[] receive used");
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            throw new IllegalStateException("byte[] send used");
+        }
+    }
+}
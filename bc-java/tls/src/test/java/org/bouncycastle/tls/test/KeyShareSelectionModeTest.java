@@ -0,0 +1,164 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Vector;
+
+import org.bouncycastle.tls.KeyShareSelectionMode;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.util.Integers;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class KeyShareSelectionModeTest
+    extends TestCase
+{
+    private static final int[] X25519_ONLY = new int[]{ NamedGroup.x25519 };
+    private static final int[] X25519_SECP256R1 = new int[]{ NamedGroup.x25519, NamedGroup.secp256r1 };
+    private static final int[] SECP256R1_X25519 = new int[]{ NamedGroup.secp256r1, NamedGroup.x25519 };
+
+    /*
+     * Unless noted otherwise, the client offers a key share only for x25519, but also supports
+     * secp256r1, which the server prefers.
+     */
+    public void testClientOrder() throws Exception
+    {
+        SecurityParameters securityParameters = runHandshake(KeyShareSelectionMode.CLIENT_ORDER);
+        assertEquals(NamedGroup.x25519, securityParameters.getNegotiatedGroup());
+        assertFalse(securityParameters.isHelloRetryRequest());
+    }
+
+    public void testOfferedServerOrder() throws Exception
+    {
+        SecurityParameters securityParameters = runHandshake(KeyShareSelectionMode.OFFERED_SERVER_ORDER);
+        assertEquals(NamedGroup.x25519, securityParameters.getNegotiatedGroup());
+        assertFalse(securityParameters.isHelloRetryRequest());
+    }
+
+    /*
+     * The client offers key shares for both x25519 and secp256r1 (in that order); the server's
+     * preference for secp256r1 wins without a HelloRetryRequest.
+     */
+    public void testOfferedServerOrderMultipleShares() throws Exception
+    {
+        SecurityParameters securityParameters = runHandshake(KeyShareSelectionMode.OFFERED_SERVER_ORDER,
+            X25519_SECP256R1, SECP256R1_X25519, null);
+        assertEquals(NamedGroup.secp256r1, securityParameters.getNegotiatedGroup());
+        assertFalse(securityParameters.isHelloRetryRequest());
+    }
+
+    public void testServerOrder() throws Exception
+    {
+        SecurityParameters securityParameters = runHandshake(KeyShareSelectionMode.SERVER_ORDER);
+        assertEquals(NamedGroup.secp256r1, securityParameters.getNegotiatedGroup());
+        assertTrue(securityParameters.isHelloRetryRequest());
+    }
+
+    /*
+     * Key share group preferences outside the server's supported groups are ignored.
+     */
+    public void testServerOrderPreferencesNotSupported() throws Exception
+    {
+        SecurityParameters securityParameters = runHandshake(KeyShareSelectionMode.SERVER_ORDER, X25519_ONLY,
+            X25519_ONLY, SECP256R1_X25519);
+        assertEquals(NamedGroup.x25519, securityParameters.getNegotiatedGroup());
+        assertFalse(securityParameters.isHelloRetryRequest());
+    }
+
+    private static SecurityParameters runHandshake(int keyShareSelectionMode) throws Exception
+    {
+        return runHandshake(keyShareSelectionMode, X25519_ONLY, SECP256R1_X25519, null);
+    }
+
+    private static SecurityParameters runHandshake(final int keyShareSelectionMode, final int[] clientShareGroups,
+        final int[] serverSupportedGroups, final int[] keyShareGroupPreferences) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        final TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    serverProtocol.accept(new MockTlsServer()
+                    {
+                        public int[] getSupportedGroups() throws IOException
+                        {
+                            return serverSupportedGroups;
+                        }
+
+                        public int[] getKeyShareGroupPreferences() throws IOException
+                        {
+                            return keyShareGroupPreferences;
+                        }
+
+                        public int getKeyShareSelectionMode() throws IOException
+                        {
+                            return keyShareSelectionMode;
+                        }
+                    });
+                    Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                    serverProtocol.close();
+                }
+                catch (Exception e)
+                {
+                }
+            }
+        };
+        serverThread.start();
+
+        final SecurityParameters[] result = new SecurityParameters[1];
+
+        MockTlsClient client = new MockTlsClient(null)
+        {
+            public void notifyHandshakeComplete() throws IOException
+            {
+                super.notifyHandshakeComplete();
+
+                result[0] = context.getSecurityParametersConnection();
+            }
+
+            public Vector getEarlyKeyShareGroups()
+            {
+                Vector groups = new Vector();
+                for (int i = 0; i < clientShareGroups.length; ++i)
+                {
+                    groups.addElement(Integers.valueOf(clientShareGroups[i]));
+                }
+                return groups;
+            }
+
+            protected ProtocolVersion[] getSupportedVersions()
+            {
+                return ProtocolVersion.TLSv13.only();
+            }
+
+            protected Vector getSupportedGroups(Vector namedGroupRoles)
+            {
+                Vector groups = new Vector();
+                groups.addElement(Integers.valueOf(NamedGroup.x25519));
+                groups.addElement(Integers.valueOf(NamedGroup.secp256r1));
+                return groups;
+            }
+        };
+        clientProtocol.connect(client);
+
+        clientProtocol.close();
+        serverThread.join();
+
+        return result[0];
+    }
+}
@@ -0,0 +1,92 @@
+package org.bouncycastle.tls.test;
+
+import org.bouncycastle.tls.LoadAdaptiveNamedGroupSelector;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.TlsLoadMonitor;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class LoadAdaptiveNamedGroupSelectorTest
+    extends TestCase
+{
+    private static final int[][] TIERS = new int[][]{
+        new int[]{ NamedGroup.secp521Kyber1024, NamedGroup.secp384Kyber768 },
+        new int[]{ NamedGroup.x25519Kyber768 },
+        new int[]{ NamedGroup.x25519Kyber512 } };
+
+    private static final int[] SUPPORTED = new int[]{ NamedGroup.x25519Kyber512, NamedGroup.x25519Kyber768,
+        NamedGroup.secp384Kyber768, NamedGroup.secp521Kyber1024, NamedGroup.x25519 };
+
+    private static class FixedLoadMonitor
+        implements TlsLoadMonitor
+    {
+        double load = 0.0;
+
+        public double getLoad()
+        {
+            return load;
+        }
+    }
+
+    public void testDegradeAndRestore()
+    {
+        FixedLoadMonitor monitor = new FixedLoadMonitor();
+        LoadAdaptiveNamedGroupSelector selector = new LoadAdaptiveNamedGroupSelector(TIERS, monitor, 0.8, 0.5, 0L);
+
+        int[] prefs = selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        assertTrue(Arrays.areEqual(new int[]{ NamedGroup.secp521Kyber1024, NamedGroup.secp384Kyber768,
+            NamedGroup.x25519Kyber768, NamedGroup.x25519Kyber512 }, prefs));
+        assertEquals(0, selector.getCurrentTier());
+
+        monitor.load = 0.9;
+        prefs = selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        assertEquals(1, selector.getCurrentTier());
+        assertTrue(Arrays.areEqual(new int[]{ NamedGroup.x25519Kyber768, NamedGroup.x25519Kyber512,
+            NamedGroup.secp521Kyber1024, NamedGroup.secp384Kyber768 }, prefs));
+
+        selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        assertEquals(2, selector.getCurrentTier());
+
+        // Between the thresholds, the tier is unchanged
+        monitor.load = 0.6;
+        selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        assertEquals(2, selector.getCurrentTier());
+
+        monitor.load = 0.1;
+        selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        assertEquals(1, selector.getCurrentTier());
+
+        assertEquals(3, selector.getTierTransitions());
+        assertEquals(-1, selector.getTier(NamedGroup.x25519));
+        assertEquals(2, selector.getTier(NamedGroup.x25519Kyber512));
+    }
+
+    public void testMinimumDwell()
+    {
+        FixedLoadMonitor monitor = new FixedLoadMonitor();
+        LoadAdaptiveNamedGroupSelector selector = new LoadAdaptiveNamedGroupSelector(TIERS, monitor, 0.8, 0.5,
+            60000L);
+
+        monitor.load = 1.0;
+        for (int i = 0; i < 10; ++i)
+        {
+            selector.getKeyShareGroupPreferences(null, SUPPORTED);
+        }
+
+        // Only the first move is allowed within the dwell time
+        assertEquals(1, selector.getCurrentTier());
+        assertEquals(1, selector.getTierTransitions());
+        assertEquals(10, selector.getTierSelections()[1]);
+    }
+
+    public void testUnsupportedGroupsExcluded()
+    {
+        LoadAdaptiveNamedGroupSelector selector = new LoadAdaptiveNamedGroupSelector(TIERS, new FixedLoadMonitor());
+
+        int[] prefs = selector.getKeyShareGroupPreferences(null,
+            new int[]{ NamedGroup.x25519, NamedGroup.x25519Kyber512 });
+        assertTrue(Arrays.areEqual(new int[]{ NamedGroup.x25519Kyber512 }, prefs));
+    }
+}
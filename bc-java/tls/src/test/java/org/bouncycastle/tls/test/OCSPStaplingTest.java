@@ -0,0 +1,532 @@
+package org.bouncycastle.tls.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.security.Security;
+import java.util.Date;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pkix.PKIXIdentity;
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.CertificateStatus;
+import org.bouncycastle.tls.CertificateStatusType;
+import org.bouncycastle.tls.DefaultTlsClient;
+import org.bouncycastle.tls.HttpOCSPResponseSource;
+import org.bouncycastle.tls.OCSPStaplingManager;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.ServerOnlyTlsAuthentication;
+import org.bouncycastle.tls.SignatureAndHashAlgorithm;
+import org.bouncycastle.tls.TlsAuthentication;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsCredentialedSigner;
+import org.bouncycastle.tls.TlsCredentials;
+import org.bouncycastle.tls.TlsServerCertificate;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.crypto.TlsCertificate;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Strings;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class OCSPStaplingTest
+    extends TestCase
+{
+    private static TestOCSPCertServer ocspCertServer;
+    private static Certificate serverChain;
+
+    protected void setUp() throws Exception
+    {
+        if (Security.getProvider("BC") == null)
+        {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        if (null == ocspCertServer)
+        {
+            ocspCertServer = new TestOCSPCertServer();
+
+            PKIXIdentity identity = ocspCertServer.issueClientCert("CN=Stapling Server", false);
+            X509CertificateHolder[] holders = identity.getCertificateChain();
+
+            BcTlsCrypto crypto = new BcTlsCrypto();
+            TlsCertificate[] chain = new TlsCertificate[holders.length];
+            for (int i = 0; i < holders.length; ++i)
+            {
+                chain[i] = crypto.createCertificate(holders[i].getEncoded());
+            }
+            serverChain = new Certificate(chain);
+        }
+    }
+
+    public void testFetchOnFirstUse() throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(60000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        try
+        {
+            CertificateStatus status = manager.getCertificateStatus(serverChain);
+            for (int i = 0; null == status && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+                status = manager.getCertificateStatus(serverChain);
+            }
+
+            assertNotNull(status);
+            assertEquals(CertificateStatusType.ocsp, status.getStatusType());
+            checkGoodStatus(status, serverChain);
+
+            // Subsequent requests are served from the cache
+            assertSame(status, manager.getCertificateStatus(serverChain));
+            assertEquals(1, responder.getRequestCount());
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    public void testRefreshBeforeNextUpdate() throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(2000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        manager.setMinRefreshInterval(100L);
+        try
+        {
+            assertTrue(manager.refresh(serverChain));
+            assertEquals(1, responder.getRequestCount());
+
+            CertificateStatus first = manager.getCertificateStatus(serverChain);
+
+            // Refreshed half-way to nextUpdate, without a gap in service
+            CertificateStatus second = first;
+            for (int i = 0; second == first && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+
+                second = manager.getCertificateStatus(serverChain);
+                assertNotNull(second);
+            }
+
+            assertTrue(responder.getRequestCount() >= 2);
+            assertNotSame(first, second);
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    public void testServeStaleWhileRevalidating() throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(4000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        manager.setMinRefreshInterval(100L);
+        manager.setRetryInterval(100L);
+        try
+        {
+            long start = System.currentTimeMillis();
+
+            assertTrue(manager.refresh(serverChain));
+            CertificateStatus status = manager.getCertificateStatus(serverChain);
+
+            responder.setFailing(true);
+
+            // Refreshes (from half-way) fail, but the unexpired response is still served
+            // NOTE: nextUpdate has a granularity of one second
+            Thread.sleep(Math.max(0L, start + 2600L - System.currentTimeMillis()));
+
+            assertTrue(responder.getRequestCount() > 2);
+            assertSame(status, manager.getCertificateStatus(serverChain));
+
+            // ...but never after its nextUpdate
+            Thread.sleep(Math.max(0L, start + 4500L - System.currentTimeMillis()));
+
+            assertNull(manager.getCertificateStatus(serverChain));
+
+            // ...until a refresh succeeds again
+            responder.setFailing(false);
+            status = null;
+            for (int i = 0; null == status && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+                status = manager.getCertificateStatus(serverChain);
+            }
+            assertNotNull(status);
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    public void testUnregister() throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(60000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        try
+        {
+            assertTrue(manager.refresh(serverChain));
+            assertNotNull(manager.getCertificateStatus(serverChain));
+
+            manager.unregister(serverChain);
+
+            // The cached response is gone, so the next request starts a new fetch
+            assertNull(manager.getCertificateStatus(serverChain));
+            for (int i = 0; responder.getRequestCount() < 2 && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+            }
+            assertEquals(2, responder.getRequestCount());
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    public void testIdleEviction() throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(6000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        manager.setMinRefreshInterval(100L);
+        manager.setIdleTimeout(200L);
+        try
+        {
+            long start = System.currentTimeMillis();
+
+            assertTrue(manager.refresh(serverChain));
+
+            /*
+             * The refresh (due half-way to nextUpdate, i.e. after 2.5-3s) finds the entry idle and drops
+             * it, although the cached response hasn't expired yet.
+             */
+            Thread.sleep(Math.max(0L, start + 4000L - System.currentTimeMillis()));
+
+            assertEquals(1, responder.getRequestCount());
+            assertNull(manager.getCertificateStatus(serverChain));
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    public void testStaplingTLSv12() throws Exception
+    {
+        implTestStapling(ProtocolVersion.TLSv12);
+    }
+
+    public void testStaplingTLSv13() throws Exception
+    {
+        implTestStapling(ProtocolVersion.TLSv13);
+    }
+
+    private void implTestStapling(ProtocolVersion version) throws Exception
+    {
+        LocalOCSPResponder responder = new LocalOCSPResponder(60000L);
+        OCSPStaplingManager manager = new OCSPStaplingManager(responder.createSource());
+        try
+        {
+            // The first handshake starts a fetch, but doesn't wait for it
+            StaplingClient client = new StaplingClient(version);
+            StaplingServer server = new StaplingServer(manager);
+            runClientServer(client, server);
+
+            assertTrue(client.certificateReceived);
+            Certificate chain = server.credentials.getCertificate();
+
+            for (int i = 0; responder.getRequestCount() < 1 && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+            }
+            for (int i = 0; null == manager.getCertificateStatus(chain) && i < 100; ++i)
+            {
+                Thread.sleep(50L);
+            }
+
+            client = new StaplingClient(version);
+            runClientServer(client, new StaplingServer(manager));
+
+            assertNotNull(client.certificateStatus);
+            assertEquals(CertificateStatusType.ocsp, client.certificateStatus.getStatusType());
+            checkGoodStatus(client.certificateStatus, chain);
+            assertEquals(1, responder.getRequestCount());
+        }
+        finally
+        {
+            manager.close();
+            responder.close();
+        }
+    }
+
+    private static void checkGoodStatus(CertificateStatus status, Certificate chain) throws Exception
+    {
+        OCSPResp ocspResp = new OCSPResp(status.getOCSPResponse());
+        assertEquals(OCSPResp.SUCCESSFUL, ocspResp.getStatus());
+
+        SingleResp[] singleResps = ((BasicOCSPResp)ocspResp.getResponseObject()).getResponses();
+        assertEquals(1, singleResps.length);
+        assertEquals(chain.getCertificateAt(0).getSerialNumber(), singleResps[0].getCertID().getSerialNumber());
+        assertNull(singleResps[0].getCertStatus());
+    }
+
+    private static void runClientServer(StaplingClient client, StaplingServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        final TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        final TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        byte[] data = Strings.toUTF8ByteArray("ping");
+        clientProtocol.getOutputStream().write(data);
+
+        byte[] echo = new byte[data.length];
+        assertEquals(data.length, Streams.readFully(clientProtocol.getInputStream(), echo));
+
+        clientProtocol.close();
+
+        serverThread.join();
+    }
+
+    static class StaplingClient
+        extends DefaultTlsClient
+    {
+        private final ProtocolVersion version;
+
+        boolean certificateReceived = false;
+        CertificateStatus certificateStatus = null;
+
+        StaplingClient(ProtocolVersion version)
+        {
+            super(new BcTlsCrypto());
+
+            this.version = version;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return version.only();
+        }
+
+        public TlsAuthentication getAuthentication() throws IOException
+        {
+            return new ServerOnlyTlsAuthentication()
+            {
+                public void notifyServerCertificate(TlsServerCertificate serverCertificate) throws IOException
+                {
+                    certificateReceived = true;
+                    certificateStatus = serverCertificate.getCertificateStatus();
+                }
+            };
+        }
+    }
+
+    static class StaplingServer
+        extends MockTlsServer
+    {
+        private final OCSPStaplingManager manager;
+
+        TlsCredentials credentials = null;
+
+        StaplingServer(OCSPStaplingManager manager)
+        {
+            this.manager = manager;
+        }
+
+        public TlsCredentials getCredentials() throws IOException
+        {
+            this.credentials = super.getCredentials();
+            return credentials;
+        }
+
+        protected TlsCredentialedSigner getRSASignerCredentials() throws IOException
+        {
+            // NOTE: The issuer certificate is needed for the OCSP request
+            return TlsTestUtils.loadSignerCredentials(context,
+                new String[]{ "x509-server-rsa-sign.pem", "x509-ca-rsa.pem" }, "x509-server-key-rsa-sign.pem",
+                SignatureAndHashAlgorithm.rsa_pss_rsae_sha256);
+        }
+
+        public CertificateStatus getCertificateStatus() throws IOException
+        {
+            return manager.getCertificateStatus(credentials.getCertificate());
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final StaplingServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, StaplingServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+
+    /**
+     * A minimal HTTP OCSP responder on the loopback interface, issuing responses that are valid for a
+     * fixed period.
+     */
+    static class LocalOCSPResponder
+        extends Thread
+    {
+        private final ServerSocket serverSocket;
+        private final long validityMillis;
+
+        private volatile boolean failing = false;
+        private int requestCount = 0;
+
+        LocalOCSPResponder(long validityMillis) throws IOException
+        {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            this.validityMillis = validityMillis;
+
+            setDaemon(true);
+            start();
+        }
+
+        HttpOCSPResponseSource createSource() throws IOException
+        {
+            return new HttpOCSPResponseSource(new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + "/"),
+                5000);
+        }
+
+        synchronized int getRequestCount()
+        {
+            return requestCount;
+        }
+
+        void setFailing(boolean failing)
+        {
+            this.failing = failing;
+        }
+
+        void close() throws IOException
+        {
+            serverSocket.close();
+        }
+
+        public void run()
+        {
+            try
+            {
+                for (;;)
+                {
+                    Socket s = serverSocket.accept();
+                    try
+                    {
+                        handle(s);
+                    }
+                    catch (Exception e)
+                    {
+                    }
+                    finally
+                    {
+                        s.close();
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                // Closed
+            }
+        }
+
+        private void handle(Socket s) throws Exception
+        {
+            InputStream input = s.getInputStream();
+
+            int contentLength = 0;
+            String line;
+            while ((line = readLine(input)).length() > 0)
+            {
+                if (Strings.toLowerCase(line).startsWith("content-length:"))
+                {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+
+            byte[] body = new byte[contentLength];
+            Streams.readFully(input, body);
+
+            synchronized (this)
+            {
+                ++requestCount;
+            }
+
+            OutputStream output = s.getOutputStream();
+            if (failing)
+            {
+                output.write(Strings.toByteArray("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n"
+                    + "Connection: close\r\n\r\n"));
+            }
+            else
+            {
+                Date nextUpdate = new Date(System.currentTimeMillis() + validityMillis);
+                byte[] response = ocspCertServer.respond(new OCSPReq(body), nextUpdate).getEncoded();
+
+                output.write(Strings.toByteArray("HTTP/1.1 200 OK\r\nContent-Type: application/ocsp-response\r\n"
+                    + "Content-Length: " + response.length + "\r\nConnection: close\r\n\r\n"));
+                output.write(response);
+            }
+            output.flush();
+        }
+
+        private static String readLine(InputStream input) throws IOException
+        {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            int b;
+            while ((b = input.read()) >= 0 && b != '\n')
+            {
+                if (b != '\r')
+                {
+                    buf.write(b);
+                }
+            }
+            return Strings.fromByteArray(buf.toByteArray());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ocsp.RevokedInfo;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.asn1.x509.KeyPurposeId;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
@@ -107,6 +108,12 @@ public class TestOCSPCertServer
 
     public OCSPResp respond(OCSPReq request)
         throws Exception
+    {
+        return respond(request, null);
+    }
+
+    public OCSPResp respond(OCSPReq request, Date nextUpdate)
+        throws Exception
     {
         BasicOCSPRespBuilder respGen = new JcaBasicOCSPRespBuilder(signKP.getPublic(), digCalcProv.get(RespID.HASH_SHA1));
 
@@ -120,11 +127,12 @@ public class TestOCSPCertServer
             {
                 respGen.addResponse(id, new RevokedStatus(
                     new RevokedInfo(
-                        new ASN1GeneralizedTime(new Date(System.currentTimeMillis() - 1000L * 60)), CRLReason.lookup(CRLReason.superseded))));
+                        new ASN1GeneralizedTime(new Date(System.currentTimeMillis() - 1000L * 60)), CRLReason.lookup(CRLReason.superseded))),
+                    nextUpdate, (Extensions)null);
             }
             else
             {
-                respGen.addResponse(id, CertificateStatus.GOOD);
+                respGen.addResponse(id, CertificateStatus.GOOD, nextUpdate, (Extensions)null);
             }
         }
 
@@ -0,0 +1,226 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import org.bouncycastle.tls.BasicTlsEarlyDataAntiReplay;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.TlsClientContext;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsEarlyDataAntiReplay;
+import org.bouncycastle.tls.TlsServerContext;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class Tls13EarlyDataTest
+    extends TestCase
+{
+    public void testEarlyDataAccepted() throws Exception
+    {
+        byte[] earlyData = Strings.toUTF8ByteArray("GET / HTTP/1.1\r\n\r\n");
+
+        EarlyDataServer server = new EarlyDataServer(1024, new BasicTlsEarlyDataAntiReplay(10000L, 16));
+        EarlyDataClient client = new EarlyDataClient(earlyData);
+
+        runClientServer(client, server, earlyData, true);
+
+        assertTrue(client.getContext().getSecurityParametersConnection().isEarlyDataAccepted());
+        assertTrue(server.getContext().getSecurityParametersConnection().isEarlyDataAccepted());
+    }
+
+    public void testEarlyDataRejectedBySize() throws Exception
+    {
+        byte[] earlyData = new byte[100];
+
+        EarlyDataServer server = new EarlyDataServer(0, new BasicTlsEarlyDataAntiReplay(10000L, 16));
+        EarlyDataClient client = new EarlyDataClient(earlyData);
+
+        runClientServer(client, server, earlyData, false);
+
+        assertFalse(client.getContext().getSecurityParametersConnection().isEarlyDataAccepted());
+        assertFalse(server.getContext().getSecurityParametersConnection().isEarlyDataAccepted());
+    }
+
+    public void testEarlyDataRejectedByAntiReplay() throws Exception
+    {
+        byte[] earlyData = new byte[100];
+
+        TlsEarlyDataAntiReplay refuseAll = new TlsEarlyDataAntiReplay()
+        {
+            public boolean checkAndRecord(TlsServerContext context, byte[] pskIdentity,
+                byte[] binder)
+            {
+                return false;
+            }
+        };
+
+        EarlyDataServer server = new EarlyDataServer(1024, refuseAll);
+        EarlyDataClient client = new EarlyDataClient(earlyData);
+
+        runClientServer(client, server, earlyData, false);
+
+        assertFalse(client.getContext().getSecurityParametersConnection().isEarlyDataAccepted());
+    }
+
+    /*
+     * The client's key share (x25519) isn't acceptable to the server, so the server sends a
+     * HelloRetryRequest, which rejects the early data.
+     */
+    public void testEarlyDataRejectedByHelloRetryRequest() throws Exception
+    {
+        byte[] earlyData = Strings.toUTF8ByteArray("GET / HTTP/1.1\r\n\r\n");
+
+        EarlyDataServer server = new EarlyDataServer(1024, new BasicTlsEarlyDataAntiReplay(10000L, 16))
+        {
+            public int[] getSupportedGroups() throws IOException
+            {
+                return new int[]{ NamedGroup.secp256r1 };
+            }
+        };
+        EarlyDataClient client = new EarlyDataClient(earlyData);
+
+        runClientServer(client, server, earlyData, false);
+
+        SecurityParameters clientParameters = client.getContext().getSecurityParametersConnection();
+        SecurityParameters serverParameters = server.getContext().getSecurityParametersConnection();
+
+        assertTrue(clientParameters.isHelloRetryRequest());
+        assertTrue(serverParameters.isHelloRetryRequest());
+        assertEquals(NamedGroup.secp256r1, serverParameters.getNegotiatedGroup());
+        assertFalse(clientParameters.isEarlyDataAccepted());
+        assertFalse(serverParameters.isEarlyDataAccepted());
+    }
+
+    public void testAntiReplayRecords() throws Exception
+    {
+        BasicTlsEarlyDataAntiReplay antiReplay = new BasicTlsEarlyDataAntiReplay(10000L, 2);
+
+        byte[] identity = Strings.toUTF8ByteArray("client");
+
+        assertTrue(antiReplay.checkAndRecord(null, identity, new byte[]{ 1 }));
+        assertFalse(antiReplay.checkAndRecord(null, identity, new byte[]{ 1 }));
+        assertTrue(antiReplay.checkAndRecord(null, identity, new byte[]{ 2 }));
+
+        // Full, so fail closed
+        assertFalse(antiReplay.checkAndRecord(null, identity, new byte[]{ 3 }));
+        assertEquals(2, antiReplay.size());
+    }
+
+    private void runClientServer(EarlyDataClient client, EarlyDataServer server, byte[] earlyData,
+        boolean expectEarlyData) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        byte[] data = new byte[1000];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        OutputStream output = clientProtocol.getOutputStream();
+        output.write(data);
+
+        // The server echoes everything it receives, including any accepted early data
+        byte[] expected = expectEarlyData ? Arrays.concatenate(earlyData, data) : data;
+
+        byte[] echo = new byte[expected.length];
+        int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+        assertEquals(expected.length, count);
+        assertTrue(Arrays.areEqual(expected, echo));
+
+        output.close();
+
+        serverThread.join();
+    }
+
+    static class EarlyDataClient
+        extends MockPSKTls13Client
+    {
+        private final byte[] earlyData;
+
+        EarlyDataClient(byte[] earlyData)
+        {
+            this.earlyData = earlyData;
+        }
+
+        TlsClientContext getContext()
+        {
+            return context;
+        }
+
+        public byte[] getEarlyData() throws IOException
+        {
+            return earlyData;
+        }
+    }
+
+    static class EarlyDataServer
+        extends MockPSKTls13Server
+    {
+        private final int maxEarlyDataSize;
+        private final TlsEarlyDataAntiReplay antiReplay;
+
+        EarlyDataServer(int maxEarlyDataSize, TlsEarlyDataAntiReplay antiReplay)
+        {
+            this.maxEarlyDataSize = maxEarlyDataSize;
+            this.antiReplay = antiReplay;
+        }
+
+        TlsServerContext getContext()
+        {
+            return context;
+        }
+
+        public int getMaxEarlyDataSize() throws IOException
+        {
+            return maxEarlyDataSize;
+        }
+
+        public TlsEarlyDataAntiReplay getEarlyDataAntiReplay() throws IOException
+        {
+            return antiReplay;
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final EarlyDataServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, EarlyDataServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.bouncycastle.tls.test;
+
+import org.bouncycastle.tls.TlsBufferPool;
+
+import junit.framework.TestCase;
+
+public class TlsBufferPoolTest
+    extends TestCase
+{
+    public void testSizeClasses()
+    {
+        TlsBufferPool pool = new TlsBufferPool(65536, 2, 4);
+
+        assertEquals(256, pool.getBufferSize(0));
+        assertEquals(256, pool.getBufferSize(256));
+        assertEquals(512, pool.getBufferSize(257));
+        assertEquals(32768, pool.getBufferSize(16389));
+        assertEquals(65536, pool.getBufferSize(65536));
+        assertEquals(65537, pool.getBufferSize(65537));
+        assertEquals(65536, pool.getMaxBufferSize());
+
+        assertEquals(512, pool.borrow(300).length);
+        assertEquals(70000, pool.borrow(70000).length);
+    }
+
+    public void testReuseAndZeroing()
+    {
+        TlsBufferPool pool = new TlsBufferPool();
+
+        byte[] a = pool.borrow(1000);
+        a[0] = 1;
+        a[a.length - 1] = 1;
+        pool.release(a);
+
+        byte[] b = pool.borrow(1000);
+        assertSame(a, b);
+        assertEquals(0, b[0]);
+        assertEquals(0, b[b.length - 1]);
+        pool.release(b);
+
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    public void testSharedCacheAcrossThreads() throws Exception
+    {
+        final TlsBufferPool pool = new TlsBufferPool(TlsBufferPool.DEFAULT_MAX_BUFFER_SIZE, 0, 4);
+
+        final byte[] a = pool.borrow(4096);
+
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                pool.release(a);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertSame(a, pool.borrow(4096));
+    }
+
+    public void testOutstandingCount()
+    {
+        TlsBufferPool pool = new TlsBufferPool(65536, 2, 4);
+
+        byte[] a = pool.borrow(100);
+        byte[] b = pool.borrow(20000);
+        byte[] c = pool.borrow(100000);
+        assertEquals(2, pool.getOutstandingCount());
+
+        pool.release(a);
+        pool.release(c);
+        assertEquals(1, pool.getOutstandingCount());
+
+        pool.release(b);
+        pool.release(null);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+}
@@ -0,0 +1,323 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.crypto.util.SubjectPublicKeyInfoFactory;
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.CertificateEntry;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.TlsAuthentication;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsCredentialedDecryptor;
+import org.bouncycastle.tls.TlsCredentials;
+import org.bouncycastle.tls.TlsExtensionsUtils;
+import org.bouncycastle.tls.TlsServerCertificate;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.tls.crypto.TlsCertificate;
+import org.bouncycastle.tls.crypto.impl.bc.BcDefaultTlsCredentialedKEMDecryptor;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class TlsKEMAuthenticationProtocolTest
+    extends TestCase
+{
+    private static byte[] kemCertificate;
+    private static AsymmetricKeyParameter kemPrivateKey;
+
+    protected void setUp() throws Exception
+    {
+        if (null == kemCertificate)
+        {
+            AsymmetricCipherKeyPair keyPair = generateKyberKeyPair();
+            kemCertificate = createKEMCertificate(keyPair.getPublic());
+            kemPrivateKey = keyPair.getPrivate();
+        }
+    }
+
+    public void testKEMAuthentication() throws Exception
+    {
+        KEMClient client = new KEMClient(new int[]{ NamedGroup.kyber768 });
+        KEMServer server = new KEMServer(kemPrivateKey);
+
+        runClientServer(client, server);
+
+        assertEquals(NamedGroup.kyber768, client.result.getKEMAuthenticationGroup());
+        assertEquals(NamedGroup.kyber768, server.result.getKEMAuthenticationGroup());
+        assertTrue(client.kemCertificateReceived);
+        assertFalse(server.signerCredentialsRequested);
+
+        assertTrue(Arrays.areEqual(client.result.getLocalVerifyData(), server.result.getPeerVerifyData()));
+        assertTrue(Arrays.areEqual(client.result.getPeerVerifyData(), server.result.getLocalVerifyData()));
+    }
+
+    public void testKEMAuthenticationNotOffered() throws Exception
+    {
+        KEMClient client = new KEMClient(null);
+        KEMServer server = new KEMServer(kemPrivateKey);
+
+        runClientServer(client, server);
+
+        assertEquals(-1, client.result.getKEMAuthenticationGroup());
+        assertEquals(-1, server.result.getKEMAuthenticationGroup());
+        assertTrue(server.signerCredentialsRequested);
+    }
+
+    public void testKEMAuthenticationGroupNotSupported() throws Exception
+    {
+        KEMClient client = new KEMClient(new int[]{ NamedGroup.kyber1024 });
+        KEMServer server = new KEMServer(kemPrivateKey);
+
+        runClientServer(client, server);
+
+        assertEquals(-1, client.result.getKEMAuthenticationGroup());
+        assertEquals(-1, server.result.getKEMAuthenticationGroup());
+        assertTrue(server.signerCredentialsRequested);
+    }
+
+    /*
+     * A server that doesn't have the private key for its certificate derives a different secret, so the
+     * client's Finished doesn't verify.
+     */
+    public void testKEMAuthenticationWrongPrivateKey() throws Exception
+    {
+        KEMClient client = new KEMClient(new int[]{ NamedGroup.kyber768 });
+        KEMServer server = new KEMServer(generateKyberKeyPair().getPrivate());
+
+        try
+        {
+            runClientServer(client, server);
+            fail("Expected handshake failure");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+
+        assertNull(client.result);
+        assertNull(server.result);
+    }
+
+    private void runClientServer(KEMClient client, KEMServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        try
+        {
+            clientProtocol.connect(client);
+
+            byte[] data = new byte[1000];
+            client.getCrypto().getSecureRandom().nextBytes(data);
+
+            OutputStream output = clientProtocol.getOutputStream();
+            output.write(data);
+
+            byte[] echo = new byte[data.length];
+            int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+            assertEquals(count, data.length);
+            assertTrue(Arrays.areEqual(data, echo));
+
+            output.close();
+        }
+        finally
+        {
+            serverThread.join();
+        }
+    }
+
+    private static AsymmetricCipherKeyPair generateKyberKeyPair()
+    {
+        KyberKeyPairGenerator kpGen = new KyberKeyPairGenerator();
+        kpGen.init(new KyberKeyGenerationParameters(new SecureRandom(), KyberParameters.kyber768));
+        return kpGen.generateKeyPair();
+    }
+
+    private static byte[] createKEMCertificate(AsymmetricKeyParameter publicKey) throws Exception
+    {
+        org.bouncycastle.asn1.x509.Certificate caCert = TlsTestUtils.loadBcCertificateResource("x509-ca-rsa.pem");
+        AsymmetricKeyParameter caKey = TlsTestUtils.loadBcPrivateKeyResource("x509-ca-key-rsa.pem");
+
+        SubjectPublicKeyInfo keyInfo = SubjectPublicKeyInfoFactory.createSubjectPublicKeyInfo(publicKey);
+
+        long now = System.currentTimeMillis();
+        X509v3CertificateBuilder builder = new X509v3CertificateBuilder(caCert.getSubject(),
+            BigInteger.valueOf(now), new Date(now - 60000L), new Date(now + 3600000L),
+            new X500Name("CN=KEM Authentication Server"), keyInfo);
+
+        AlgorithmIdentifier sigAlgID = new DefaultSignatureAlgorithmIdentifierFinder().find("SHA256withRSA");
+        AlgorithmIdentifier digAlgID = new DefaultDigestAlgorithmIdentifierFinder().find(sigAlgID);
+
+        return builder.build(new BcRSAContentSignerBuilder(sigAlgID, digAlgID).build(caKey)).getEncoded();
+    }
+
+    static class KEMClient
+        extends MockTlsClient
+    {
+        private final int[] kemGroups;
+
+        SecurityParameters result = null;
+        boolean kemCertificateReceived = false;
+
+        KEMClient(int[] kemGroups)
+        {
+            super(null);
+
+            this.kemGroups = kemGroups;
+        }
+
+        public Hashtable getClientExtensions() throws IOException
+        {
+            Hashtable clientExtensions = super.getClientExtensions();
+            if (null != kemGroups)
+            {
+                clientExtensions = TlsExtensionsUtils.ensureExtensionsInitialised(clientExtensions);
+                TlsExtensionsUtils.addKEMAuthenticationExtensionClient(clientExtensions, kemGroups);
+            }
+            return clientExtensions;
+        }
+
+        public TlsAuthentication getAuthentication() throws IOException
+        {
+            final TlsAuthentication authentication = super.getAuthentication();
+
+            return new TlsAuthentication()
+            {
+                public void notifyServerCertificate(TlsServerCertificate serverCertificate) throws IOException
+                {
+                    TlsCertificate[] chain = serverCertificate.getCertificate().getCertificateList();
+
+                    if (Arrays.areEqual(kemCertificate, chain[0].getEncoded()))
+                    {
+                        // NOTE: A real client would validate the path to a trust anchor here
+                        kemCertificateReceived = true;
+                        return;
+                    }
+
+                    authentication.notifyServerCertificate(serverCertificate);
+                }
+
+                public TlsCredentials getClientCredentials(
+                    org.bouncycastle.tls.CertificateRequest certificateRequest) throws IOException
+                {
+                    return authentication.getClientCredentials(certificateRequest);
+                }
+            };
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            this.result = context.getSecurityParametersConnection();
+        }
+    }
+
+    static class KEMServer
+        extends MockTlsServer
+    {
+        private final AsymmetricKeyParameter privateKey;
+
+        SecurityParameters result = null;
+        boolean signerCredentialsRequested = false;
+
+        KEMServer(AsymmetricKeyParameter privateKey)
+        {
+            this.privateKey = privateKey;
+        }
+
+        public TlsCredentials getCredentials() throws IOException
+        {
+            this.signerCredentialsRequested = true;
+            return super.getCredentials();
+        }
+
+        public TlsCredentialedDecryptor getKEMAuthenticationCredentials(int[] kemGroups) throws IOException
+        {
+            if (!Arrays.contains(kemGroups, NamedGroup.kyber768))
+            {
+                return null;
+            }
+
+            BcTlsCrypto crypto = (BcTlsCrypto)getCrypto();
+            TlsCertificate certificate = crypto.createCertificate(kemCertificate);
+
+            Certificate chain = new Certificate(TlsUtils.EMPTY_BYTES,
+                new CertificateEntry[]{ new CertificateEntry(certificate, null) });
+
+            return new BcDefaultTlsCredentialedKEMDecryptor(crypto, chain, privateKey);
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            this.result = context.getSecurityParametersConnection();
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final KEMServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, KEMServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+                try
+                {
+                    serverProtocol.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+}
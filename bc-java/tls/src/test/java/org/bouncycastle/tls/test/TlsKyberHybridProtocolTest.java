@@ -1,12 +1,18 @@
 package org.bouncycastle.tls.test;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Vector;
 
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.SecurityParameters;
 import org.bouncycastle.tls.TlsClientProtocol;
 import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Integers;
 import org.bouncycastle.util.io.Streams;
 
 import junit.framework.TestCase;
@@ -15,6 +21,52 @@ public class TlsKyberHybridProtocolTest
     extends TestCase
 {
     public void testClientServer() throws Exception
+    {
+        runClientServer(new MockTlsKyberHybridClient());
+    }
+
+    /*
+     * The client offers both x25519Kyber768 and x25519 key shares, with the hybrid share reusing the
+     * X25519 key pair.
+     */
+    public void testSharedClassicalKeyShare() throws Exception
+    {
+        final SecurityParameters[] result = new SecurityParameters[1];
+
+        MockTlsKyberHybridClient client = new MockTlsKyberHybridClient()
+        {
+            public void notifyHandshakeComplete() throws IOException
+            {
+                super.notifyHandshakeComplete();
+
+                result[0] = context.getSecurityParametersConnection();
+            }
+
+            protected Vector getSupportedGroups(Vector namedGroupRoles)
+            {
+                Vector supportedGroups = new Vector();
+                TlsUtils.addIfSupported(supportedGroups, getCrypto(),
+                    new int[]{ NamedGroup.x25519Kyber768, NamedGroup.x25519 });
+                return supportedGroups;
+            }
+
+            public Vector getEarlyKeyShareGroups()
+            {
+                Vector keyShareGroups = new Vector();
+                keyShareGroups.addElement(Integers.valueOf(NamedGroup.x25519Kyber768));
+                keyShareGroups.addElement(Integers.valueOf(NamedGroup.x25519));
+                return keyShareGroups;
+            }
+        };
+
+        runClientServer(client);
+
+        SecurityParameters securityParameters = result[0];
+        assertEquals(NamedGroup.x25519Kyber768, securityParameters.getNegotiatedGroup());
+        assertFalse(securityParameters.isHelloRetryRequest());
+    }
+
+    private void runClientServer(MockTlsKyberHybridClient client) throws Exception
     {
         PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
         PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
@@ -27,7 +79,6 @@ public class TlsKyberHybridProtocolTest
         ServerThread serverThread = new ServerThread(serverProtocol);
         serverThread.start();
 
-        MockTlsKyberHybridClient client = new MockTlsKyberHybridClient();
         clientProtocol.connect(client);
 
         // NOTE: Because we write-all before we read-any, this length can't be more than the pipe capacity
@@ -2,6 +2,7 @@ package org.bouncycastle.tls.test;
 
 import java.io.IOException;
 
+import org.bouncycastle.tls.TlsBufferPool;
 import org.bouncycastle.tls.TlsClientProtocol;
 import org.bouncycastle.tls.TlsProtocol;
 import org.bouncycastle.tls.TlsServerProtocol;
@@ -23,6 +24,108 @@ public class TlsProtocolNonBlockingTest
         testClientServer(false);
     }
 
+    public void testIdleBufferCompaction() throws IOException
+    {
+        TlsClientProtocol clientProtocol = new TlsClientProtocol();
+        TlsServerProtocol serverProtocol = new TlsServerProtocol();
+
+        clientProtocol.setIdleBufferCompaction(true);
+        serverProtocol.setIdleBufferCompaction(true);
+
+        MockTlsClient client = new MockTlsClient(null);
+        MockTlsServer server = new MockTlsServer();
+
+        clientProtocol.connect(client);
+        serverProtocol.accept(server);
+
+        boolean hadDataFromServer = true;
+        boolean hadDataFromClient = true;
+        while (hadDataFromServer || hadDataFromClient)
+        {
+            hadDataFromServer = pumpData(serverProtocol, clientProtocol, false);
+            hadDataFromClient = pumpData(clientProtocol, serverProtocol, false);
+        }
+
+        // NOTE: A TLS 1.3 server may still send NewSessionTicket after the client's handshake completes
+        pumpData(serverProtocol, clientProtocol, false);
+
+        byte[] data = new byte[10000];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        clientProtocol.writeApplicationData(data, 0, data.length);
+        assertTrue(clientProtocol.getRetainedBufferSize() > data.length);
+        pumpData(clientProtocol, serverProtocol, false);
+        assertTrue(serverProtocol.getRetainedBufferSize() >= data.length);
+
+        byte[] readData = new byte[data.length];
+        assertEquals(data.length, serverProtocol.readInput(readData, 0, readData.length));
+        assertArrayEquals(data, readData);
+
+        writeAndRead(serverProtocol, clientProtocol, data, false);
+
+        // With all queues drained, an idle connection retains no buffers
+        assertEquals(0, clientProtocol.getRetainedBufferSize());
+        assertEquals(0, serverProtocol.getRetainedBufferSize());
+
+        clientProtocol.close();
+        pumpData(clientProtocol, serverProtocol, false);
+        serverProtocol.closeInput();
+        checkClosed(serverProtocol);
+        checkClosed(clientProtocol);
+    }
+
+    public void testBufferPool() throws IOException
+    {
+        TlsBufferPool pool = new TlsBufferPool();
+
+        for (int i = 0; i < 2; ++i)
+        {
+            TlsClientProtocol clientProtocol = new TlsClientProtocol();
+            TlsServerProtocol serverProtocol = new TlsServerProtocol();
+
+            clientProtocol.setBufferPool(pool);
+            serverProtocol.setBufferPool(pool);
+
+            MockTlsClient client = new MockTlsClient(null);
+            MockTlsServer server = new MockTlsServer();
+
+            clientProtocol.connect(client);
+            serverProtocol.accept(server);
+
+            boolean hadDataFromServer = true;
+            boolean hadDataFromClient = true;
+            while (hadDataFromServer || hadDataFromClient)
+            {
+                hadDataFromServer = pumpData(serverProtocol, clientProtocol, i == 1);
+                hadDataFromClient = pumpData(clientProtocol, serverProtocol, i == 1);
+            }
+
+            byte[] data = new byte[65536];
+            client.getCrypto().getSecureRandom().nextBytes(data);
+
+            writeAndRead(clientProtocol, serverProtocol, data, i == 1);
+            writeAndRead(serverProtocol, clientProtocol, data, i == 1);
+
+            assertEquals(0, clientProtocol.getRetainedBufferSize());
+            assertEquals(0, serverProtocol.getRetainedBufferSize());
+
+            clientProtocol.close();
+            pumpData(clientProtocol, serverProtocol, i == 1);
+            serverProtocol.closeInput();
+
+            // Discard the server's close_notify (the client has already closed)
+            serverProtocol.readOutput(new byte[serverProtocol.getAvailableOutputBytes()], 0,
+                serverProtocol.getAvailableOutputBytes());
+            checkClosed(serverProtocol);
+            checkClosed(clientProtocol);
+        }
+
+        // Every borrowed buffer was returned, and the second connection re-used the first one's buffers
+        assertEquals(0, pool.getOutstandingCount());
+        long allocations = pool.getAllocationCount();
+        assertTrue(allocations > 0 && allocations < 20);
+    }
+
     private static void testClientServer(boolean fragment) throws IOException
     {
         TlsClientProtocol clientProtocol = new TlsClientProtocol();
@@ -1,11 +1,18 @@
 package org.bouncycastle.tls.test;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Vector;
 
+import org.bouncycastle.tls.CipherSuite;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SecurityParameters;
 import org.bouncycastle.tls.TlsClientProtocol;
 import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.util.Integers;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.io.Streams;
 
@@ -50,6 +57,56 @@ public class TlsProtocolTest
         serverThread.join();
     }
 
+    public void testNegotiatedGroupFFDHE() throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol);
+        serverThread.start();
+
+        final SecurityParameters[] result = new SecurityParameters[1];
+
+        MockTlsClient client = new MockTlsClient(null)
+        {
+            public void notifyHandshakeComplete() throws IOException
+            {
+                super.notifyHandshakeComplete();
+
+                result[0] = context.getSecurityParametersConnection();
+            }
+
+            protected ProtocolVersion[] getSupportedVersions()
+            {
+                return ProtocolVersion.TLSv12.only();
+            }
+
+            protected int[] getSupportedCipherSuites()
+            {
+                return new int[]{ CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256 };
+            }
+
+            protected Vector getSupportedGroups(Vector namedGroupRoles)
+            {
+                Vector groups = new Vector();
+                groups.addElement(Integers.valueOf(NamedGroup.ffdhe2048));
+                return groups;
+            }
+        };
+        clientProtocol.connect(client);
+
+        clientProtocol.close();
+        serverThread.join();
+
+        assertEquals(CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256, result[0].getCipherSuite());
+        assertEquals(NamedGroup.ffdhe2048, result[0].getNegotiatedGroup());
+    }
+
     static class ServerThread
         extends Thread
     {